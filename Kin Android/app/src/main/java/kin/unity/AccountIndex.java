@@ -0,0 +1,130 @@
+package kin.unity;
+
+
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Two way index between accountIds and the public address of the account they point at. Lets us find the cached
+ * accountId of a KinAccount without scanning every cached account. Reads never lock, writes are serialized since they
+ * only happen when accounts are added or freed.
+ *
+ * The address is captured when an account is added because KinAccount.getPublicAddress returns null once the account
+ * is deleted, and we still need it to clean up.
+ */
+final class AccountIndex {
+
+    private static final String[] NO_IDS = new String[0];
+
+    private final ConcurrentHashMap<String, String> _addressById = new ConcurrentHashMap<>();
+
+    // ids are kept in the order they were added and the arrays are never modified once published
+    private final ConcurrentHashMap<String, String[]> _idsByAddress = new ConcurrentHashMap<>();
+
+
+    synchronized void put(String accountId, String address)
+    {
+        if (address == null)
+            return;
+
+        String previous = _addressById.put(accountId, address);
+        if (address.equals(previous))
+            return;
+
+        if (previous != null)
+            removeId(previous, accountId);
+
+        String[] ids = _idsByAddress.get(address);
+        if (ids == null)
+            ids = NO_IDS;
+
+        String[] updated = new String[ids.length + 1];
+        System.arraycopy(ids, 0, updated, 0, ids.length);
+        updated[ids.length] = accountId;
+        _idsByAddress.put(address, updated);
+    }
+
+
+    /**
+     * @return the address accountId pointed at or null if it wasn't indexed
+     */
+    synchronized String remove(String accountId)
+    {
+        String address = _addressById.remove(accountId);
+        if (address != null)
+            removeId(address, accountId);
+
+        return address;
+    }
+
+
+    /**
+     * forgets every accountId pointing at address, used when the account itself is deleted
+     */
+    synchronized void removeAddress(String address)
+    {
+        if (address == null)
+            return;
+
+        String[] ids = _idsByAddress.remove(address);
+        if (ids == null)
+            return;
+
+        for (String id : ids)
+            _addressById.remove(id);
+    }
+
+
+    String address(String accountId)
+    {
+        return accountId != null ? _addressById.get(accountId) : null;
+    }
+
+
+    /**
+     * @return the first accountId that was added for address or null if there is none
+     */
+    String firstId(String address)
+    {
+        if (address == null)
+            return null;
+
+        String[] ids = _idsByAddress.get(address);
+        return ids != null ? ids[0] : null;
+    }
+
+
+    int size()
+    {
+        return _addressById.size();
+    }
+
+
+    private void removeId(String address, String accountId)
+    {
+        String[] ids = _idsByAddress.get(address);
+        if (ids == null)
+            return;
+
+        int index = -1;
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i].equals(accountId)) {
+                index = i;
+                break;
+            }
+        }
+
+        if (index < 0)
+            return;
+
+        if (ids.length == 1) {
+            _idsByAddress.remove(address);
+            return;
+        }
+
+        String[] updated = new String[ids.length - 1];
+        System.arraycopy(ids, 0, updated, 0, index);
+        System.arraycopy(ids, index + 1, updated, index, ids.length - index - 1);
+        _idsByAddress.put(address, updated);
+    }
+}
@@ -0,0 +1,382 @@
+package kin.unity;
+
+
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+
+/**
+ * Last known state of every account of a keystore: address, status, balance and the paging token of the newest
+ * payment. It is kept in one small file per keystore and read when a client is created, so Unity can draw the wallet
+ * from it right away and revalidate it in the background instead of waiting on the network for every account.
+ *
+ * Clients are keyed by environment, appId and storeKey rather than the clientId Unity picks, which is new every run.
+ * Updates only mark the snapshot dirty, it is written at most once per WRITE_DELAY_MILLIS on the write lane. The file
+ * is replaced through a rename so a crash mid write leaves the previous snapshot in place.
+ */
+final class AccountSnapshots {
+
+    static final int UNKNOWN_STATUS = -1;
+
+    private static final int VERSION = 1;
+    private static final long WRITE_DELAY_MILLIS = 1000;
+
+
+    interface Storage {
+        File directory();
+    }
+
+
+    private static final class Account {
+        final String address;
+        int status = UNKNOWN_STATUS;
+        String balance;
+
+        // wall clock time of the balance since it has to mean something after a reboot
+        long balanceTime;
+        String paymentCursor;
+
+        Account(String address)
+        {
+            this.address = address;
+        }
+    }
+
+
+    private static final class Snapshot {
+        final String key;
+
+        // in keystore order
+        final ArrayList<Account> accounts = new ArrayList<>();
+        boolean dirty;
+        boolean writeScheduled;
+
+        Snapshot(String key)
+        {
+            this.key = key;
+        }
+    }
+
+
+    private final PluginExecutor _executor;
+    private final Storage _storage;
+    private final HashMap<String, Snapshot> _byKey = new HashMap<>();
+    private final HashMap<String, Snapshot> _byClient = new HashMap<>();
+
+
+    AccountSnapshots(PluginExecutor executor, Storage storage)
+    {
+        _executor = executor;
+        _storage = storage;
+    }
+
+
+    /**
+     * attaches the snapshot of the keystore to clientId, reading it from disk the first time the keystore is seen
+     */
+    void load(String clientId, int environment, String appId, String storeKey)
+    {
+        String key = key(environment, appId, storeKey);
+        synchronized (this) {
+            Snapshot snapshot = _byKey.get(key);
+            if (snapshot == null) {
+                snapshot = new Snapshot(key);
+                read(snapshot);
+                _byKey.put(key, snapshot);
+            }
+            _byClient.put(clientId, snapshot);
+        }
+    }
+
+
+    synchronized void forget(String clientId)
+    {
+        _byClient.remove(clientId);
+    }
+
+
+    /**
+     * replaces the account list of the client's keystore, keeping what is known about accounts that are still there
+     */
+    synchronized void setAccounts(String clientId, List<String> addresses)
+    {
+        Snapshot snapshot = _byClient.get(clientId);
+        if (snapshot == null)
+            return;
+
+        ArrayList<Account> accounts = new ArrayList<>(addresses.size());
+        for (String address : addresses) {
+            Account account = find(snapshot, address);
+            accounts.add(account != null ? account : new Account(address));
+        }
+
+        if (!accounts.equals(snapshot.accounts)) {
+            snapshot.accounts.clear();
+            snapshot.accounts.addAll(accounts);
+            changed(snapshot);
+        }
+    }
+
+
+    synchronized void addAccount(String clientId, String address)
+    {
+        Snapshot snapshot = _byClient.get(clientId);
+        if (snapshot != null && address != null && find(snapshot, address) == null) {
+            snapshot.accounts.add(new Account(address));
+            changed(snapshot);
+        }
+    }
+
+
+    synchronized void removeAddress(String address)
+    {
+        for (Snapshot snapshot : _byKey.values()) {
+            Account account = find(snapshot, address);
+            if (account != null) {
+                snapshot.accounts.remove(account);
+                changed(snapshot);
+            }
+        }
+    }
+
+
+    synchronized void putStatus(String address, int status)
+    {
+        for (Snapshot snapshot : _byKey.values()) {
+            Account account = find(snapshot, address);
+            if (account != null && account.status != status) {
+                account.status = status;
+                changed(snapshot);
+            }
+        }
+    }
+
+
+    synchronized void putBalance(String address, String balance)
+    {
+        long now = System.currentTimeMillis();
+        for (Snapshot snapshot : _byKey.values()) {
+            Account account = find(snapshot, address);
+            if (account != null) {
+                account.balance = balance;
+                account.balanceTime = now;
+                changed(snapshot);
+            }
+        }
+    }
+
+
+    synchronized void putPaymentCursor(String address, String cursor)
+    {
+        for (Snapshot snapshot : _byKey.values()) {
+            Account account = find(snapshot, address);
+            if (account != null && !cursor.equals(account.paymentCursor)) {
+                account.paymentCursor = cursor;
+                changed(snapshot);
+            }
+        }
+    }
+
+
+    /**
+     * writes every dirty snapshot now, for shutdown where the delayed writes would be dropped
+     */
+    void flush()
+    {
+        ArrayList<Snapshot> snapshots;
+        synchronized (this) {
+            snapshots = new ArrayList<>(_byKey.values());
+        }
+        for (Snapshot snapshot : snapshots)
+            write(snapshot);
+    }
+
+
+    /**
+     * @param stale whether the last revalidation failed for any account
+     * @return {"ClientId","Stale","Accounts":[{"Index","PublicAddress","_Status","_Balance","BalanceAgeMillis","PaymentCursor"}]}
+     * as JSON, without accounts if nothing is known about the client's accounts
+     */
+    synchronized String toJson(String clientId, boolean stale)
+    {
+        Snapshot snapshot = _byClient.get(clientId);
+        List<Account> accounts = snapshot != null ? snapshot.accounts : Collections.<Account>emptyList();
+
+        long now = System.currentTimeMillis();
+        JsonWriter writer = JsonWriter.obtain()
+                .beginObject()
+                .put("ClientId", clientId)
+                .put("Stale", stale)
+                .beginArray("Accounts");
+
+        for (int i = 0; i < accounts.size(); i++) {
+            Account account = accounts.get(i);
+            writer.beginObject()
+                    .put("Index", i)
+                    .put("PublicAddress", account.address)
+                    .put("_Status", account.status)
+                    .put("_Balance", account.balance)
+                    .put("BalanceAgeMillis", account.balance != null ? Math.max(0, now - account.balanceTime) : -1)
+                    .put("PaymentCursor", account.paymentCursor)
+                    .endObject();
+        }
+
+        return writer.endArray()
+                .endObject()
+                .finish();
+    }
+
+
+    private static Account find(Snapshot snapshot, String address)
+    {
+        for (Account account : snapshot.accounts) {
+            if (account.address.equals(address))
+                return account;
+        }
+        return null;
+    }
+
+
+    private void changed(final Snapshot snapshot)
+    {
+        snapshot.dirty = true;
+        if (snapshot.writeScheduled)
+            return;
+
+        snapshot.writeScheduled = true;
+
+        // a write the lane rejects happens right away instead, otherwise no later change would schedule one again
+        _executor.schedule(PluginExecutor.Lane.WRITE, () -> write(snapshot), WRITE_DELAY_MILLIS, e -> write(snapshot));
+    }
+
+
+    private File file(String key)
+    {
+        File directory = _storage.directory();
+        return directory != null ? new File(directory, key + ".snapshot") : null;
+    }
+
+
+    /**
+     * a snapshot that can't be read is ignored, it is rebuilt as the accounts are revalidated
+     */
+    private void read(Snapshot snapshot)
+    {
+        File file = file(snapshot.key);
+        if (file == null || !file.exists())
+            return;
+
+        try {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(IoUtils.readFully(file)));
+            if (input.readInt() != VERSION)
+                return;
+
+            for (int i = 0, count = input.readInt(); i < count; i++) {
+                Account account = new Account(input.readUTF());
+                account.status = input.readInt();
+                account.balance = emptyToNull(input.readUTF());
+                account.balanceTime = input.readLong();
+                account.paymentCursor = emptyToNull(input.readUTF());
+                snapshot.accounts.add(account);
+            }
+        }
+        catch (IOException e) {
+            Log.w(KinPluginBase.TAG, "ignoring unreadable account snapshot: " + e.getMessage());
+            snapshot.accounts.clear();
+        }
+    }
+
+
+    /**
+     * snapshots are serialized and written under their own lock so an older state never overwrites a newer one
+     */
+    private void write(Snapshot snapshot)
+    {
+        synchronized (snapshot) {
+            byte[] bytes;
+            synchronized (this) {
+                snapshot.writeScheduled = false;
+                if (!snapshot.dirty)
+                    return;
+                snapshot.dirty = false;
+                bytes = serialize(snapshot);
+            }
+
+            File file = file(snapshot.key);
+            if (file == null)
+                return;
+
+            try {
+                File directory = file.getParentFile();
+                if (!directory.exists() && !directory.mkdirs())
+                    throw new IOException("could not create " + directory);
+
+                File temp = new File(directory, file.getName() + ".tmp");
+                FileOutputStream output = new FileOutputStream(temp);
+                try {
+                    output.write(bytes);
+                    output.getFD().sync();
+                }
+                finally {
+                    output.close();
+                }
+
+                if (!temp.renameTo(file))
+                    throw new IOException("could not replace " + file);
+            }
+            catch (IOException e) {
+                Log.w(KinPluginBase.TAG, "could not write the account snapshot: " + e.getMessage());
+            }
+        }
+    }
+
+
+    private static byte[] serialize(Snapshot snapshot)
+    {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream output = new DataOutputStream(bytes);
+            output.writeInt(VERSION);
+            output.writeInt(snapshot.accounts.size());
+            for (Account account : snapshot.accounts) {
+                output.writeUTF(account.address);
+                output.writeInt(account.status);
+                output.writeUTF(account.balance != null ? account.balance : "");
+                output.writeLong(account.balanceTime);
+                output.writeUTF(account.paymentCursor != null ? account.paymentCursor : "");
+            }
+            output.flush();
+            return bytes.toByteArray();
+        }
+        catch (IOException e) {
+            // writing to memory doesn't fail
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    /**
+     * file name for the keystore, a digest so the storeKey doesn't end up in the file system
+     */
+    private static String key(int environment, String appId, String storeKey)
+    {
+        return IoUtils.sha256Hex(environment + ":" + appId + ":" + (storeKey != null ? storeKey : ""));
+    }
+
+
+    private static String emptyToNull(String value)
+    {
+        return value.isEmpty() ? null : value;
+    }
+}
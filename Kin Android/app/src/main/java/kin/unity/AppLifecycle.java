@@ -0,0 +1,150 @@
+package kin.unity;
+
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Bundle;
+import android.util.Log;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+
+
+/**
+ * Tells the plugin when the app goes to the background and comes back by counting started activities. The app counts
+ * as in the background once no activity has been started for BACKGROUND_DELAY_MILLIS, so rotating the screen or
+ * opening the backup flow doesn't close and reopen every stream. The Listener runs on the read lane. Only
+ * onForeground falls back to the UI thread when the read lane rejects it, it doesn't block.
+ */
+final class AppLifecycle implements Application.ActivityLifecycleCallbacks {
+
+    private static final long BACKGROUND_DELAY_MILLIS = 5 * 1000;
+
+
+    interface Listener {
+        void onBackground();
+
+        void onForeground();
+    }
+
+
+    private final PluginExecutor _executor;
+    private final Listener _listener;
+
+    private Application _application;
+
+    // the activity that registers us has already been started
+    private int _started = 1;
+    private boolean _background;
+    private ScheduledFuture<?> _pendingBackground;
+
+
+    AppLifecycle(PluginExecutor executor, Listener listener)
+    {
+        _executor = executor;
+        _listener = listener;
+    }
+
+
+    /**
+     * starts listening to the activities of the application, only the first call does anything
+     */
+    synchronized void register(Activity activity)
+    {
+        if (_application != null || activity == null || activity.getApplication() == null)
+            return;
+
+        _application = activity.getApplication();
+        _application.registerActivityLifecycleCallbacks(this);
+    }
+
+
+    synchronized boolean isInBackground()
+    {
+        return _background;
+    }
+
+
+    @Override
+    public synchronized void onActivityStarted(Activity activity)
+    {
+        _started++;
+        if (_pendingBackground != null) {
+            _pendingBackground.cancel(false);
+            _pendingBackground = null;
+        }
+
+        if (_background) {
+            _background = false;
+
+            // coming back must not get lost or the listeners stay throttled, it doesn't block so it can run right here
+            _executor.execute(PluginExecutor.Lane.READ, _listener::onForeground, e -> _listener.onForeground());
+        }
+    }
+
+
+    @Override
+    public synchronized void onActivityStopped(Activity activity)
+    {
+        _started = Math.max(0, _started - 1);
+        // a pending switch that was cancelled by a plugin shutdown is done and must not block the next one
+        if (_started > 0 || _background || (_pendingBackground != null && !_pendingBackground.isDone()))
+            return;
+
+        _pendingBackground = _executor.schedule(PluginExecutor.Lane.READ, this::enterBackground, BACKGROUND_DELAY_MILLIS,
+                this::backgroundRejected);
+    }
+
+
+    /**
+     * the listeners keep running as in the foreground, the next stopped activity tries again
+     */
+    private synchronized void backgroundRejected(RejectedExecutionException e)
+    {
+        Log.w(KinPluginBase.TAG, "could not throttle listeners for the background: " + e.getMessage());
+        _pendingBackground = null;
+    }
+
+
+    private void enterBackground()
+    {
+        synchronized (this) {
+            _pendingBackground = null;
+            if (_started > 0 || _background)
+                return;
+            _background = true;
+        }
+
+        _listener.onBackground();
+    }
+
+
+    @Override
+    public void onActivityCreated(Activity activity, Bundle savedInstanceState)
+    {
+    }
+
+
+    @Override
+    public void onActivityResumed(Activity activity)
+    {
+    }
+
+
+    @Override
+    public void onActivityPaused(Activity activity)
+    {
+    }
+
+
+    @Override
+    public void onActivitySaveInstanceState(Activity activity, Bundle outState)
+    {
+    }
+
+
+    @Override
+    public void onActivityDestroyed(Activity activity)
+    {
+    }
+}
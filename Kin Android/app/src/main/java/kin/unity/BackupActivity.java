@@ -70,19 +70,19 @@ public class BackupActivity extends Activity {
             @Override
             public void onSuccess() {
                 Log.d(LOGTAG, "Got success from backup manager");
-                _plugin.unitySendMessage("BackupSucceeded", _plugin.callbackToJson(null, accountId));
+                _plugin.sendCallback("BackupSucceeded", null, accountId);
             }
 
             @Override
             public void onCancel() {
                 Log.d(LOGTAG, "Got cancel from backup manager");
-                _plugin.unitySendMessage("BackupCanceled", _plugin.callbackToJson(null, accountId));
+                _plugin.sendCallback("BackupCanceled", null, accountId);
             }
 
             @Override
             public void onFailure(BackupAndRestoreException e) {
                 Log.e(LOGTAG, "Got failure from backup manager");
-                _plugin.unitySendMessage("BackupFailed", _plugin.exceptionToJson(e, accountId));
+                _plugin.sendError("BackupFailed", e, accountId);
             }
         });
 
@@ -95,23 +95,23 @@ public class BackupActivity extends Activity {
                 // The account will still be added internally to the kin client until this bug will be fixed in the android b&r module
                 if (accountId == null) {
                     accountId = _plugin.generateUniqueId();
-                    _plugin._putAccount(accountId, kinAccount);
+                    _plugin._putAccount(clientId, accountId, kinAccount);
                 } else {
                     Log.d(LOGTAG, "Restored existing account");
                 }
-                _plugin.unitySendMessage("RestoreSucceeded", _plugin.callbackToJson(accountId, clientId));
+                _plugin.sendCallback("RestoreSucceeded", accountId, clientId);
             }
 
             @Override
             public void onCancel() {
                 Log.d(LOGTAG, "Got cancel from backup manager");
-                _plugin.unitySendMessage("RestoreCanceled", _plugin.callbackToJson(null, clientId));
+                _plugin.sendCallback("RestoreCanceled", null, clientId);
             }
 
             @Override
             public void onFailure(BackupAndRestoreException e) {
                 Log.e(LOGTAG, "Got failure from backup manager");
-                _plugin.unitySendMessage("RestoreFailed", _plugin.exceptionToJson(e, clientId));
+                _plugin.sendError("RestoreFailed", e, clientId);
             }
         });
 
@@ -132,7 +132,7 @@ public class BackupActivity extends Activity {
         catch (Exception e) {
             e.printStackTrace();
             Log.e(LOGTAG, "backupAccount failed", e);
-            _plugin.unitySendMessage("BackupFailed", _plugin.exceptionToJson(e, managerId));
+            _plugin.sendError("BackupFailed", e, managerId);
             finish();
         }
     }
@@ -148,7 +148,7 @@ public class BackupActivity extends Activity {
         catch (Exception e) {
             e.printStackTrace();
             Log.e(LOGTAG, "restoreAccount failed", e);
-            _plugin.unitySendMessage("onRestore", _plugin.exceptionToJson(e, managerId));
+            _plugin.sendError("onRestore", e, managerId);
             finish();
         }
     }
@@ -0,0 +1,135 @@
+package kin.unity;
+
+
+import android.os.SystemClock;
+
+import java.util.HashMap;
+
+
+/**
+ * Last known balance per public address. Values come from network fetches and from the balance listener stream, and
+ * get invalidated by payments and sends so that a balance we know has changed is never served.
+ */
+final class BalanceCache {
+
+    private static final class Entry {
+        String value;
+        long updatedAt;
+        boolean valid;
+
+        // number of active native balance listeners pushing updates for this address
+        int listeners;
+    }
+
+
+    private final HashMap<String, Entry> _entries = new HashMap<>();
+
+
+    synchronized void put(String address, String value)
+    {
+        Entry entry = entry(address);
+        entry.value = value;
+        entry.updatedAt = SystemClock.elapsedRealtime();
+        entry.valid = true;
+    }
+
+
+    /**
+     * marks the cached balance as out of date, the next lookup goes back to the network
+     */
+    synchronized void invalidate(String address)
+    {
+        Entry entry = _entries.get(address);
+        if (entry != null)
+            entry.valid = false;
+    }
+
+
+    /**
+     * forgets the balance of a deleted account. The entry stays while balance listeners still count on it, those are
+     * closed separately.
+     */
+    synchronized void remove(String address)
+    {
+        Entry entry = _entries.get(address);
+        if (entry == null)
+            return;
+
+        if (entry.listeners > 0) {
+            entry.value = null;
+            entry.valid = false;
+        }
+        else {
+            _entries.remove(address);
+        }
+    }
+
+
+    /**
+     * @param maxAgeMillis a negative value serves the cached balance only while a balance listener keeps it current,
+     *                     otherwise it is the oldest balance the caller accepts regardless of listeners
+     * @return the cached balance or null if the caller has to go to the network
+     */
+    synchronized String get(String address, long maxAgeMillis)
+    {
+        Entry entry = _entries.get(address);
+        if (entry == null || !entry.valid)
+            return null;
+
+        if (maxAgeMillis < 0)
+            return entry.listeners > 0 ? entry.value : null;
+
+        return age(entry) <= maxAgeMillis ? entry.value : null;
+    }
+
+
+    /**
+     * @return the cached balance regardless of age, or null if there is no valid one
+     */
+    synchronized String peek(String address)
+    {
+        Entry entry = _entries.get(address);
+        return entry != null && entry.valid ? entry.value : null;
+    }
+
+
+    /**
+     * @return milliseconds since the cached balance was last updated or -1 if there is no valid one
+     */
+    synchronized long age(String address)
+    {
+        Entry entry = _entries.get(address);
+        return entry != null && entry.valid ? age(entry) : -1;
+    }
+
+
+    synchronized void addListener(String address)
+    {
+        entry(address).listeners++;
+    }
+
+
+    synchronized void removeListener(String address)
+    {
+        Entry entry = _entries.get(address);
+        if (entry != null && entry.listeners > 0)
+            entry.listeners--;
+    }
+
+
+    private Entry entry(String address)
+    {
+        Entry entry = _entries.get(address);
+        if (entry == null) {
+            entry = new Entry();
+            _entries.put(address, entry);
+        }
+        return entry;
+    }
+
+
+    private static long age(Entry entry)
+    {
+        return SystemClock.elapsedRealtime() - entry.updatedAt;
+    }
+}
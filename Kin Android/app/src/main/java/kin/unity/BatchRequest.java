@@ -0,0 +1,118 @@
+package kin.unity;
+
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Runs the same call for many accounts with a limited number of workers and reports once when every account has a
+ * result. Workers pull the next account from a shared index so a slow account never holds up the rest of the batch.
+ */
+final class BatchRequest {
+
+    interface Call {
+        String call(String accountId) throws Exception;
+    }
+
+
+    interface Listener {
+        void onComplete(BatchRequest batch);
+    }
+
+
+    final String batchId;
+    final String[] accountIds;
+    final String[] values;
+    final Exception[] errors;
+
+    private final Call _call;
+    private final AtomicInteger _next = new AtomicInteger();
+    private final AtomicInteger _completed = new AtomicInteger();
+    private final AtomicInteger _workers = new AtomicInteger();
+    private Listener _listener;
+
+
+    BatchRequest(String batchId, String[] accountIds, Call call)
+    {
+        this.batchId = batchId;
+        this.accountIds = accountIds != null ? accountIds : new String[0];
+        this.values = new String[this.accountIds.length];
+        this.errors = new Exception[this.accountIds.length];
+        _call = call;
+    }
+
+
+    /**
+     * fans the batch out over at most maxParallelism workers on the given lane
+     */
+    void start(PluginExecutor executor, PluginExecutor.Lane lane, int maxParallelism, Listener listener)
+    {
+        _listener = listener;
+
+        if (accountIds.length == 0) {
+            listener.onComplete(this);
+            return;
+        }
+
+        int workers = Math.max(1, Math.min(maxParallelism, accountIds.length));
+        _workers.set(workers);
+        for (int i = 0; i < workers; i++)
+            executor.execute(lane, this::work, this::onWorkerRejected);
+    }
+
+
+    /**
+     * runs every account one after the other on the calling thread, for calls that must not run in parallel
+     */
+    void run(Listener listener)
+    {
+        _listener = listener;
+        _workers.set(1);
+
+        if (accountIds.length == 0)
+            listener.onComplete(this);
+        else
+            work();
+    }
+
+
+    private void work()
+    {
+        int index;
+        while ((index = _next.getAndIncrement()) < accountIds.length) {
+            try {
+                values[index] = _call.call(accountIds[index]);
+            }
+            catch (Exception e) {
+                errors[index] = e;
+            }
+            finishItem();
+        }
+
+        _workers.decrementAndGet();
+    }
+
+
+    /**
+     * the remaining workers pick up the slack. If no worker is left the rest of the batch fails with the rejection.
+     */
+    private void onWorkerRejected(RejectedExecutionException e)
+    {
+        if (_workers.decrementAndGet() > 0)
+            return;
+
+        int index;
+        while ((index = _next.getAndIncrement()) < accountIds.length) {
+            errors[index] = e;
+            finishItem();
+        }
+    }
+
+
+    private void finishItem()
+    {
+        if (_completed.incrementAndGet() == accountIds.length)
+            _listener.onComplete(this);
+    }
+}
@@ -0,0 +1,213 @@
+package kin.unity;
+
+
+import java.nio.charset.Charset;
+import java.util.List;
+
+import kin.sdk.PaymentInfo;
+import kin.sdk.Transaction;
+
+
+/**
+ * Compact binary encoding of the callback DTOs, decoded on the Unity side by BinaryEventReader.cs. All integers are
+ * little endian and strings are an int32 byte length (-1 for null) followed by UTF-8 bytes.
+ *
+ * A frame is: u8 version, u16 event count, then per event: string method, u8 kind, int32 body length, body.
+ * Bodies by kind:
+ *   JSON:        string json
+ *   CALLBACK:    string value, string accountId
+ *   PAYMENT:     string amount, string createdAt, string destination, string source, string hash, string memo, string accountId
+ *   PAYMENTS:    string accountId, int32 count, then count times the PAYMENT fields without accountId
+ *   TRANSACTION: string accountId, string id, string payload, string networkPassphrase
+ *   ERROR:       string message, string nativeType, string accountId
+ * Decoders skip kinds they don't know using the body length so new kinds can be added without bumping the version.
+ */
+final class BinaryCodec {
+
+    static final int VERSION = 1;
+
+    static final byte KIND_JSON = 0;
+    static final byte KIND_CALLBACK = 1;
+    static final byte KIND_PAYMENT = 2;
+    static final byte KIND_TRANSACTION = 3;
+    static final byte KIND_ERROR = 4;
+    static final byte KIND_PAYMENTS = 5;
+
+    // the frame header stores the count as u16
+    static final int MAX_EVENTS_PER_FRAME = 0xffff;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+
+    static byte[] callback(String value, String accountId)
+    {
+        return new Writer(KIND_CALLBACK)
+                .string(value)
+                .string(accountId)
+                .toByteArray();
+    }
+
+
+    static byte[] payment(PaymentInfo payment, String accountId)
+    {
+        return paymentFields(new Writer(KIND_PAYMENT), payment)
+                .string(accountId)
+                .toByteArray();
+    }
+
+
+    static byte[] payments(List<PaymentInfo> payments, String accountId)
+    {
+        Writer writer = new Writer(KIND_PAYMENTS)
+                .string(accountId)
+                .i32(payments.size());
+        for (PaymentInfo payment : payments)
+            paymentFields(writer, payment);
+
+        return writer.toByteArray();
+    }
+
+
+    static byte[] transaction(Transaction transaction, String accountId)
+    {
+        return new Writer(KIND_TRANSACTION)
+                .string(accountId)
+                .string(transaction.getId().id())
+                .string(transaction.getWhitelistableTransaction().getTransactionPayload())
+                .string(transaction.getWhitelistableTransaction().getNetworkPassphrase())
+                .toByteArray();
+    }
+
+
+    static byte[] error(Exception ex, String accountId)
+    {
+        return new Writer(KIND_ERROR)
+                .string(ex.getMessage())
+                .string(ex.getClass().getSimpleName())
+                .string(accountId)
+                .toByteArray();
+    }
+
+
+    /**
+     * packs drained events into a single frame. Payloads are either JSON strings or bodies from the methods above.
+     */
+    static byte[] frame(Object[] events)
+    {
+        int count = events.length / 2;
+        Writer writer = new Writer();
+        writer.u8(VERSION);
+        writer.u16(count);
+
+        for (int i = 0; i < count; i++) {
+            writer.string((String)events[i * 2]);
+
+            Object payload = events[i * 2 + 1];
+            byte[] body = payload instanceof byte[] ? (byte[])payload : new Writer(KIND_JSON).string((String)payload).toByteArray();
+
+            // the first byte of every body is its kind, the length covers the rest
+            writer.u8(body[0]);
+            writer.i32(body.length - 1);
+            writer.bytes(body, 1, body.length - 1);
+        }
+
+        return writer.toByteArray();
+    }
+
+
+    private static Writer paymentFields(Writer writer, PaymentInfo payment)
+    {
+        return writer.string(payment.amount().toString())
+                .string(payment.createdAt())
+                .string(payment.destinationPublicKey())
+                .string(payment.sourcePublicKey())
+                .string(payment.hash().id())
+                .string(payment.memo());
+    }
+
+
+    /**
+     * little endian growable byte writer
+     */
+    private static final class Writer {
+        private byte[] _buffer = new byte[128];
+        private int _length;
+
+
+        Writer()
+        {}
+
+
+        Writer(byte kind)
+        {
+            u8(kind);
+        }
+
+
+        Writer u8(int value)
+        {
+            ensure(1);
+            _buffer[_length++] = (byte)value;
+            return this;
+        }
+
+
+        Writer u16(int value)
+        {
+            ensure(2);
+            _buffer[_length++] = (byte)value;
+            _buffer[_length++] = (byte)(value >> 8);
+            return this;
+        }
+
+
+        Writer i32(int value)
+        {
+            ensure(4);
+            _buffer[_length++] = (byte)value;
+            _buffer[_length++] = (byte)(value >> 8);
+            _buffer[_length++] = (byte)(value >> 16);
+            _buffer[_length++] = (byte)(value >> 24);
+            return this;
+        }
+
+
+        Writer string(String value)
+        {
+            if (value == null)
+                return i32(-1);
+
+            byte[] bytes = value.getBytes(UTF_8);
+            i32(bytes.length);
+            return bytes(bytes, 0, bytes.length);
+        }
+
+
+        Writer bytes(byte[] bytes, int offset, int count)
+        {
+            ensure(count);
+            System.arraycopy(bytes, offset, _buffer, _length, count);
+            _length += count;
+            return this;
+        }
+
+
+        byte[] toByteArray()
+        {
+            byte[] bytes = new byte[_length];
+            System.arraycopy(_buffer, 0, bytes, 0, _length);
+            return bytes;
+        }
+
+
+        private void ensure(int count)
+        {
+            if (_length + count <= _buffer.length)
+                return;
+
+            byte[] buffer = new byte[Math.max(_buffer.length * 2, _length + count)];
+            System.arraycopy(_buffer, 0, buffer, 0, _length);
+            _buffer = buffer;
+        }
+    }
+}
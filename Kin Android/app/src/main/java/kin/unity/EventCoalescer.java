@@ -0,0 +1,157 @@
+package kin.unity;
+
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+
+import kin.sdk.PaymentInfo;
+
+
+/**
+ * Sits between the listener streams and the bridge so a burst of payments doesn't turn into a burst of Unity messages.
+ * Within a window only the latest balance of an account is delivered and payments are delivered as one batch per
+ * account, once the window closes or maxPaymentBatch payments are waiting. Payments are never dropped and keep the
+ * order they arrived in. A window of 0 delivers every event right away.
+ *
+ * Events are handed to the Emitter while holding the lock so that batches flushed by the timer and by a full batch at
+ * the same time can't overtake each other.
+ */
+final class EventCoalescer {
+
+    static final long DEFAULT_WINDOW_MILLIS = 50;
+    static final int DEFAULT_MAX_PAYMENT_BATCH = 32;
+    static final long MAX_WINDOW_MILLIS = 5000;
+
+
+    interface Emitter {
+        void emitBalance(String accountId, String balance);
+
+        /**
+         * @param payments one or more payments of accountId in the order they arrived
+         */
+        void emitPayments(String accountId, List<PaymentInfo> payments);
+    }
+
+
+    private final PluginExecutor _executor;
+    private final Emitter _emitter;
+
+    // both keyed by accountId in the order the first event of the window arrived
+    private final LinkedHashMap<String, String> _balances = new LinkedHashMap<>();
+    private final LinkedHashMap<String, List<PaymentInfo>> _payments = new LinkedHashMap<>();
+    private int _paymentCount;
+
+    private long _windowMillis = DEFAULT_WINDOW_MILLIS;
+    private int _maxPaymentBatch = DEFAULT_MAX_PAYMENT_BATCH;
+    private ScheduledFuture<?> _flush;
+
+    private long _balancesReceived;
+    private long _balancesDelivered;
+    private long _paymentBatches;
+
+
+    EventCoalescer(PluginExecutor executor, Emitter emitter)
+    {
+        _executor = executor;
+        _emitter = emitter;
+    }
+
+
+    /**
+     * changing the window delivers everything that is waiting first
+     */
+    synchronized void configure(long windowMillis, int maxPaymentBatch)
+    {
+        if (windowMillis < 0 || windowMillis > MAX_WINDOW_MILLIS)
+            throw new IllegalArgumentException("window must be between 0 and " + MAX_WINDOW_MILLIS + "ms");
+        if (maxPaymentBatch < 1)
+            throw new IllegalArgumentException("maxPaymentBatch must be at least 1");
+
+        flush();
+        _windowMillis = windowMillis;
+        _maxPaymentBatch = maxPaymentBatch;
+    }
+
+
+    synchronized void balance(String accountId, String balance)
+    {
+        _balancesReceived++;
+        if (_windowMillis == 0) {
+            _balancesDelivered++;
+            _emitter.emitBalance(accountId, balance);
+            return;
+        }
+
+        _balances.put(accountId, balance);
+        scheduleFlush();
+    }
+
+
+    synchronized void payment(String accountId, PaymentInfo payment)
+    {
+        List<PaymentInfo> payments = _payments.get(accountId);
+        if (payments == null) {
+            payments = new ArrayList<>();
+            _payments.put(accountId, payments);
+        }
+        payments.add(payment);
+        _paymentCount++;
+
+        if (_windowMillis == 0 || _paymentCount >= _maxPaymentBatch)
+            flush();
+        else
+            scheduleFlush();
+    }
+
+
+    /**
+     * @return {"WindowMillis","MaxPaymentBatch","BalancesReceived","BalancesDelivered","PaymentBatches"} as JSON
+     */
+    synchronized String statsToJson()
+    {
+        return JsonWriter.obtain()
+                .beginObject()
+                .put("WindowMillis", _windowMillis)
+                .put("MaxPaymentBatch", _maxPaymentBatch)
+                .put("BalancesReceived", _balancesReceived)
+                .put("BalancesDelivered", _balancesDelivered)
+                .put("PaymentBatches", _paymentBatches)
+                .endObject()
+                .finish();
+    }
+
+
+    /**
+     * delivers payments before balances since a payment is what usually moved the balance
+     */
+    private synchronized void flush()
+    {
+        for (Map.Entry<String, List<PaymentInfo>> entry : _payments.entrySet()) {
+            _paymentBatches++;
+            _emitter.emitPayments(entry.getKey(), entry.getValue());
+        }
+        _payments.clear();
+        _paymentCount = 0;
+
+        for (Map.Entry<String, String> entry : _balances.entrySet()) {
+            _balancesDelivered++;
+            _emitter.emitBalance(entry.getKey(), entry.getValue());
+        }
+        _balances.clear();
+    }
+
+
+    /**
+     * a flush the read lane rejects runs right away on the timer instead, waiting events aren't left for the next one
+     */
+    private void scheduleFlush()
+    {
+        if (_flush != null && !_flush.isDone())
+            return;
+
+        _flush = _executor.schedule(PluginExecutor.Lane.READ, this::flush, _windowMillis, e -> flush());
+    }
+}
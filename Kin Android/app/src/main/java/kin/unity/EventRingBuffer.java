@@ -0,0 +1,86 @@
+package kin.unity;
+
+
+/**
+ * FIFO ring buffer of (method, payload) pairs waiting to be drained by Unity. Payloads are JSON strings or
+ * BinaryCodec bodies. It starts small and doubles when full
+ * instead of dropping so that no callback is ever lost and ordering is preserved.
+ */
+final class EventRingBuffer {
+
+    private String[] _methods;
+    private Object[] _payloads;
+    private int _head;
+    private int _size;
+
+
+    EventRingBuffer(int initialCapacity)
+    {
+        int capacity = Integer.highestOneBit(Math.max(2, initialCapacity - 1)) << 1;
+        _methods = new String[capacity];
+        _payloads = new Object[capacity];
+    }
+
+
+    /**
+     * @return true if the buffer was empty before this event was added
+     */
+    synchronized boolean push(String method, Object payload)
+    {
+        if (_size == _methods.length)
+            grow();
+
+        int tail = (_head + _size) & (_methods.length - 1);
+        _methods[tail] = method;
+        _payloads[tail] = payload;
+        _size++;
+
+        return _size == 1;
+    }
+
+
+    /**
+     * removes up to max events
+     * @return the events flattened as method, payload, method, payload...
+     */
+    synchronized Object[] drain(int max)
+    {
+        int count = max > 0 ? Math.min(max, _size) : _size;
+        Object[] events = new Object[count * 2];
+        int mask = _methods.length - 1;
+
+        for (int i = 0; i < count; i++) {
+            events[i * 2] = _methods[_head];
+            events[i * 2 + 1] = _payloads[_head];
+            _methods[_head] = null;
+            _payloads[_head] = null;
+            _head = (_head + 1) & mask;
+        }
+
+        _size -= count;
+        return events;
+    }
+
+
+    synchronized int size()
+    {
+        return _size;
+    }
+
+
+    private void grow()
+    {
+        int capacity = _methods.length;
+        String[] methods = new String[capacity * 2];
+        Object[] payloads = new Object[capacity * 2];
+
+        for (int i = 0; i < _size; i++) {
+            methods[i] = _methods[(_head + i) & (capacity - 1)];
+            payloads[i] = _payloads[(_head + i) & (capacity - 1)];
+        }
+
+        _methods = methods;
+        _payloads = payloads;
+        _head = 0;
+    }
+}
@@ -0,0 +1,108 @@
+package kin.unity;
+
+
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Iterator;
+
+
+/**
+ * Session cache of exported accounts so exporting the same account with the same passphrase again skips the key
+ * derivation. The SDK derives the key and encrypts in one call so we keep its output, which is already encrypted with
+ * the passphrase. Passphrases are only kept as an HMAC under a random key that is replaced whenever the cache is
+ * cleared, so a dump of the process can't be used to guess them faster than through the SDK's key derivation. Off
+ * until enabled and cleared when disabled.
+ */
+final class ExportCache {
+
+
+    private static final int KEY_BYTES = 32;
+
+    private final SecureRandom _random = new SecureRandom();
+
+    // keyed by public address and passphrase HMAC
+    private final HashMap<String, String> _exports = new HashMap<>();
+    private byte[] _key;
+    private boolean _enabled;
+
+    private long _hits;
+    private long _misses;
+
+
+    synchronized void setEnabled(boolean enabled)
+    {
+        _enabled = enabled;
+        if (!enabled) {
+            _exports.clear();
+            _key = null;
+        }
+    }
+
+
+    /**
+     * @return the cached export or null if there is none or the cache is off
+     */
+    synchronized String get(String address, String passphrase)
+    {
+        if (!_enabled || address == null)
+            return null;
+
+        String export = _exports.get(key(address, passphrase));
+        if (export != null)
+            _hits++;
+        else
+            _misses++;
+
+        return export;
+    }
+
+
+    synchronized void put(String address, String passphrase, String export)
+    {
+        if (_enabled && address != null)
+            _exports.put(key(address, passphrase), export);
+    }
+
+
+    /**
+     * forgets every export of address, used when the account is deleted
+     */
+    synchronized void removeAddress(String address)
+    {
+        if (address == null)
+            return;
+
+        String prefix = address + ":";
+        Iterator<String> iterator = _exports.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().startsWith(prefix))
+                iterator.remove();
+        }
+    }
+
+
+    /**
+     * @return {"Enabled","Size","Hits","Misses"} as JSON
+     */
+    synchronized String statsToJson()
+    {
+        return JsonWriter.obtain()
+                .beginObject()
+                .put("Enabled", _enabled)
+                .put("Size", _exports.size())
+                .put("Hits", _hits)
+                .put("Misses", _misses)
+                .endObject()
+                .finish();
+    }
+
+
+    private String key(String address, String passphrase)
+    {
+        if (_key == null) {
+            _key = new byte[KEY_BYTES];
+            _random.nextBytes(_key);
+        }
+        return address + ":" + IoUtils.hmacSha256Hex(_key, passphrase != null ? passphrase : "");
+    }
+}
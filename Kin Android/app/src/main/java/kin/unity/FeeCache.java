@@ -0,0 +1,139 @@
+package kin.unity;
+
+
+import android.os.SystemClock;
+
+import java.util.HashMap;
+
+
+/**
+ * Per client cache of the minimum fee. A fee younger than the ttl is fresh, after that it is still handed out while a
+ * refresh runs until it is older than ttl + maxStale at which point callers have to wait for the network again.
+ */
+final class FeeCache {
+
+    static final long DEFAULT_TTL_MILLIS = 60 * 1000;
+    static final long DEFAULT_MAX_STALE_MILLIS = 5 * 60 * 1000;
+
+    // fees are refreshed in the background once they have used up this much of their ttl
+    private static final double REFRESH_AHEAD_FRACTION = 0.8;
+
+
+    private static final class Entry {
+        long ttlMillis = DEFAULT_TTL_MILLIS;
+        long maxStaleMillis = DEFAULT_MAX_STALE_MILLIS;
+
+        boolean hasFee;
+        long fee;
+        long fetchedAt;
+
+        // set whenever the fee is read so that we only refresh ahead for clients that are actually using it
+        boolean accessed;
+    }
+
+
+    private final HashMap<String, Entry> _entries = new HashMap<>();
+
+
+    /**
+     * sets the ttl and how long past it a stale fee may still be served. A ttl of 0 turns caching off.
+     */
+    synchronized void configure(String clientId, long ttlMillis, long maxStaleMillis)
+    {
+        if (ttlMillis < 0 || maxStaleMillis < 0)
+            throw new IllegalArgumentException("ttl and maxStale can not be negative");
+
+        Entry entry = entry(clientId);
+        entry.ttlMillis = ttlMillis;
+        entry.maxStaleMillis = ttlMillis == 0 ? 0 : maxStaleMillis;
+    }
+
+
+    /**
+     * @return the cached fee or -1 if there is none or it is too stale to be served
+     */
+    synchronized long get(String clientId)
+    {
+        Entry entry = _entries.get(clientId);
+        if (entry == null || !entry.hasFee || entry.ttlMillis == 0)
+            return -1;
+
+        if (age(entry) >= entry.ttlMillis + entry.maxStaleMillis)
+            return -1;
+
+        entry.accessed = true;
+        return entry.fee;
+    }
+
+
+    /**
+     * @return true if caching is on and the cached fee is missing, stale or about to go stale
+     */
+    synchronized boolean needsRefresh(String clientId)
+    {
+        Entry entry = _entries.get(clientId);
+        if (entry == null)
+            return true;
+
+        return entry.ttlMillis != 0 && (!entry.hasFee || age(entry) >= refreshAheadMillis(entry));
+    }
+
+
+    /**
+     * stores a freshly fetched fee
+     * @return how long until the fee should be refreshed in the background or -1 if caching is off
+     */
+    synchronized long put(String clientId, long fee)
+    {
+        Entry entry = entry(clientId);
+        entry.hasFee = true;
+        entry.fee = fee;
+        entry.fetchedAt = SystemClock.elapsedRealtime();
+        entry.accessed = false;
+
+        return entry.ttlMillis == 0 ? -1 : refreshAheadMillis(entry);
+    }
+
+
+    /**
+     * @return true if the fee was read since it was last stored. Resets the flag.
+     */
+    synchronized boolean consumeAccessed(String clientId)
+    {
+        Entry entry = _entries.get(clientId);
+        if (entry == null || !entry.accessed)
+            return false;
+
+        entry.accessed = false;
+        return true;
+    }
+
+
+    synchronized void remove(String clientId)
+    {
+        _entries.remove(clientId);
+    }
+
+
+    private Entry entry(String clientId)
+    {
+        Entry entry = _entries.get(clientId);
+        if (entry == null) {
+            entry = new Entry();
+            _entries.put(clientId, entry);
+        }
+        return entry;
+    }
+
+
+    private static long age(Entry entry)
+    {
+        return SystemClock.elapsedRealtime() - entry.fetchedAt;
+    }
+
+
+    private static long refreshAheadMillis(Entry entry)
+    {
+        return (long)(entry.ttlMillis * REFRESH_AHEAD_FRACTION);
+    }
+}
@@ -0,0 +1,89 @@
+package kin.unity;
+
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+
+import kin.sdk.exception.AccountNotFoundException;
+
+
+/**
+ * Reads pages of an account's operations from Horizon's /accounts/{address}/payments endpoint, which the SDK doesn't
+ * expose. Payments and the create_account operation that funded the account are turned into history payments, anything
+ * else only moves the paging tokens along.
+ *
+ * Like HttpWhitelistProvider every response body is read to the end so HttpURLConnection can reuse the connection.
+ */
+final class HorizonPayments implements PaymentHistory.Source {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int TIMEOUT_MILLIS = 15 * 1000;
+
+    private final String _horizonUrl;
+
+
+    HorizonPayments(String horizonUrl)
+    {
+        _horizonUrl = horizonUrl.endsWith("/") ? horizonUrl.substring(0, horizonUrl.length() - 1) : horizonUrl;
+    }
+
+
+    @Override
+    public PaymentHistory.Fetched fetch(String address, String cursor, boolean ascending, int limit) throws Exception
+    {
+        String url = _horizonUrl + "/accounts/" + address + "/payments?order=" + (ascending ? "asc" : "desc") + "&limit=" + limit;
+        if (cursor != null)
+            url += "&cursor=" + cursor;
+
+        HttpURLConnection connection = (HttpURLConnection)new URL(url).openConnection();
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+        connection.setRequestProperty("Accept", "application/json");
+
+        int status = connection.getResponseCode();
+        if (status < 200 || status >= 300) {
+            String error = IoUtils.readString(connection.getErrorStream());
+            if (status == 404)
+                throw new AccountNotFoundException(address);
+
+            // client errors won't go away by retrying
+            if (status < 500)
+                throw new IllegalStateException("horizon returned " + status + ": " + error);
+
+            throw new IOException("horizon returned " + status + ": " + error);
+        }
+
+        JSONArray records = new JSONObject(IoUtils.readString(connection.getInputStream()))
+                .getJSONObject("_embedded")
+                .getJSONArray("records");
+
+        ArrayList<PaymentHistory.Payment> payments = new ArrayList<>();
+        long firstToken = 0;
+        long lastToken = 0;
+        for (int i = 0; i < records.length(); i++) {
+            JSONObject record = records.getJSONObject(i);
+            long token = Long.parseLong(record.getString("paging_token"));
+            if (i == 0)
+                firstToken = token;
+            lastToken = token;
+
+            String type = record.optString("type");
+            if ("payment".equals(type)) {
+                payments.add(new PaymentHistory.Payment(token, record.getString("transaction_hash"), record.getString("from"),
+                        record.getString("to"), record.getString("amount"), record.getString("created_at"), null));
+            }
+            else if ("create_account".equals(type)) {
+                payments.add(new PaymentHistory.Payment(token, record.getString("transaction_hash"), record.getString("funder"),
+                        record.getString("account"), record.getString("starting_balance"), record.getString("created_at"), null));
+            }
+        }
+
+        return new PaymentHistory.Fetched(payments, records.length(), firstToken, lastToken);
+    }
+}
@@ -0,0 +1,72 @@
+package kin.unity;
+
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+
+
+/**
+ * Posts {"envelope","network_id"} to the app's whitelist service and returns the response body as the whitelisted
+ * envelope, the same contract the Kin sample whitelist servers use.
+ *
+ * HttpURLConnection keeps connections alive and reuses them as long as every response stream is read to the end and
+ * closed, so we always drain the body (error bodies included) and never call disconnect.
+ */
+final class HttpWhitelistProvider implements WhitelistProvider {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final URL _url;
+    private final int _timeoutMillis;
+
+
+    HttpWhitelistProvider(String url, int timeoutMillis) throws IOException
+    {
+        _url = new URL(url);
+        _timeoutMillis = timeoutMillis;
+    }
+
+
+    @Override
+    public String whitelist(String transactionPayload, String networkPassphrase) throws IOException
+    {
+        byte[] body = JsonWriter.obtain()
+                .beginObject()
+                .put("envelope", transactionPayload)
+                .put("network_id", networkPassphrase)
+                .endObject()
+                .finish()
+                .getBytes(UTF_8);
+
+        HttpURLConnection connection = (HttpURLConnection)_url.openConnection();
+        connection.setConnectTimeout(_timeoutMillis);
+        connection.setReadTimeout(_timeoutMillis);
+        connection.setDoOutput(true);
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setFixedLengthStreamingMode(body.length);
+
+        OutputStream output = connection.getOutputStream();
+        try {
+            output.write(body);
+        }
+        finally {
+            output.close();
+        }
+
+        int status = connection.getResponseCode();
+        if (status < 200 || status >= 300) {
+            String error = IoUtils.readString(connection.getErrorStream());
+            throw new IOException("whitelist service returned " + status + ": " + error);
+        }
+
+        String whitelist = IoUtils.readString(connection.getInputStream()).trim();
+        if (whitelist.isEmpty())
+            throw new IOException("whitelist service returned an empty envelope");
+
+        return whitelist;
+    }
+}
@@ -0,0 +1,105 @@
+package kin.unity;
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+
+/**
+ * Reading files and HTTP bodies to the end and hashing keys, shared by the caches and stores that keep things on disk
+ * or talk to Horizon.
+ */
+final class IoUtils {
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+
+    private IoUtils()
+    {
+    }
+
+
+    /**
+     * @return the lowercase hex SHA-256 digest of the UTF-8 bytes of value
+     */
+    static String sha256Hex(String value)
+    {
+        try {
+            return hex(MessageDigest.getInstance("SHA-256").digest(value.getBytes(UTF_8)));
+        }
+        catch (Exception e) {
+            // every Android device ships SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    /**
+     * @return the lowercase hex HMAC-SHA256 of the UTF-8 bytes of value under key
+     */
+    static String hmacSha256Hex(byte[] key, String value)
+    {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return hex(mac.doFinal(value.getBytes(UTF_8)));
+        }
+        catch (Exception e) {
+            // every Android device ships HmacSHA256
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    static byte[] readFully(File file) throws IOException
+    {
+        return readFully(new FileInputStream(file), (int)file.length());
+    }
+
+
+    /**
+     * reads input to the end and closes it, a null input reads as an empty string like a response without a body
+     */
+    static String readString(InputStream input) throws IOException
+    {
+        return input != null ? new String(readFully(input, 4096), UTF_8) : "";
+    }
+
+
+    private static String hex(byte[] bytes)
+    {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+
+    private static byte[] readFully(InputStream input, int sizeHint) throws IOException
+    {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(32, sizeHint));
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1)
+                bytes.write(buffer, 0, read);
+
+            return bytes.toByteArray();
+        }
+        finally {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package kin.unity;
+
+
+/**
+ * Minimal streaming JSON writer for the payloads we send to Unity. Keys and values are appended straight into a
+ * StringBuilder that is reused per thread, so serializing an event allocates nothing but the final String.
+ * Like JSONObject, null values are left out entirely.
+ */
+final class JsonWriter {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    // builders that grew past this are dropped after use so one huge payload doesn't pin memory forever
+    private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+
+    private static final ThreadLocal<JsonWriter> CACHED = new ThreadLocal<JsonWriter>() {
+        @Override
+        protected JsonWriter initialValue()
+        {
+            return new JsonWriter();
+        }
+    };
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+
+    private StringBuilder _builder = new StringBuilder(INITIAL_CAPACITY);
+    private boolean _inUse;
+    private boolean _needsComma;
+
+
+    /**
+     * returns this thread's writer, or a fresh one when it is already busy. It is busy while a payload embedding this
+     * one is written, or because a serializer threw before finishing it. The fresh writer replaces it once released, so
+     * a writer that was never released only costs one allocation.
+     */
+    static JsonWriter obtain()
+    {
+        JsonWriter writer = CACHED.get();
+        if (writer._inUse)
+            writer = new JsonWriter();
+
+        writer._inUse = true;
+        writer._needsComma = false;
+        writer._builder.setLength(0);
+        return writer;
+    }
+
+
+    JsonWriter beginObject()
+    {
+        comma();
+        _builder.append('{');
+        _needsComma = false;
+        return this;
+    }
+
+
+    JsonWriter beginObject(String key)
+    {
+        name(key);
+        _builder.append('{');
+        _needsComma = false;
+        return this;
+    }
+
+
+    JsonWriter endObject()
+    {
+        _builder.append('}');
+        _needsComma = true;
+        return this;
+    }
+
+
+    JsonWriter beginArray(String key)
+    {
+        name(key);
+        _builder.append('[');
+        _needsComma = false;
+        return this;
+    }
+
+
+    JsonWriter endArray()
+    {
+        _builder.append(']');
+        _needsComma = true;
+        return this;
+    }
+
+
+    JsonWriter put(String key, String value)
+    {
+        if (value == null)
+            return this;
+
+        name(key);
+        string(value);
+        _needsComma = true;
+        return this;
+    }
+
+
+    JsonWriter put(String key, long value)
+    {
+        name(key);
+        _builder.append(value);
+        _needsComma = true;
+        return this;
+    }
+
+
+    JsonWriter put(String key, boolean value)
+    {
+        name(key);
+        _builder.append(value);
+        _needsComma = true;
+        return this;
+    }
+
+
+    /**
+     * embeds json, which must be a complete JSON value written by another writer, as is
+     */
+    JsonWriter putJson(String key, String json)
+    {
+        if (json == null)
+            return this;
+
+        name(key);
+        _builder.append(json);
+        _needsComma = true;
+        return this;
+    }
+
+
+    /**
+     * @return the JSON written so far. The writer must not be used again afterwards.
+     */
+    String finish()
+    {
+        try {
+            return _builder.toString();
+        }
+        finally {
+            release();
+        }
+    }
+
+
+    /**
+     * hands the writer back without finishing it. Calling it again after finish or release does nothing, as long as the
+     * thread hasn't obtained the writer again in between.
+     */
+    void release()
+    {
+        if (!_inUse)
+            return;
+
+        if (_builder.capacity() > MAX_RETAINED_CAPACITY)
+            _builder = new StringBuilder(INITIAL_CAPACITY);
+
+        _inUse = false;
+
+        // the thread's writer is still busy with an outer payload or was abandoned, this one takes its place
+        if (CACHED.get()._inUse)
+            CACHED.set(this);
+    }
+
+
+    private void comma()
+    {
+        if (_needsComma)
+            _builder.append(',');
+    }
+
+
+    private void name(String key)
+    {
+        comma();
+        string(key);
+        _builder.append(':');
+    }
+
+
+    private void string(String value)
+    {
+        StringBuilder builder = _builder;
+        builder.append('"');
+
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                case '\b':
+                    builder.append("\\b");
+                    break;
+                case '\f':
+                    builder.append("\\f");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        builder.append("\\u")
+                                .append(HEX[(c >> 12) & 0xf])
+                                .append(HEX[(c >> 8) & 0xf])
+                                .append(HEX[(c >> 4) & 0xf])
+                                .append(HEX[c & 0xf]);
+                    }
+                    else {
+                        builder.append(c);
+                    }
+            }
+        }
+
+        builder.append('"');
+    }
+}
@@ -0,0 +1,13 @@
+package kin.unity;
+
+
+/**
+ * Implemented on the Unity side with an AndroidJavaProxy. Once registered, events are queued in a ring buffer instead
+ * of going through UnitySendMessage and Unity drains them with KinPlugin.drainEvents once per frame.
+ */
+public interface KinEventListener {
+    /**
+     * called from whichever thread queued an event when the event buffer goes from empty to non-empty
+     */
+    void onEventsAvailable();
+}
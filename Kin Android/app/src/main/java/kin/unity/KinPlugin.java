@@ -3,35 +3,256 @@ package kin.unity;
 
 import android.app.Activity;
 import android.content.Intent;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.Log;
 
+import java.io.File;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Map;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
 
-import kin.sdk.Balance;
+import kin.sdk.AccountStatus;
 import kin.sdk.KinAccount;
 import kin.sdk.KinClient;
-import kin.sdk.ListenerRegistration;
+import kin.sdk.PaymentInfo;
 import kin.sdk.Transaction;
 import kin.sdk.TransactionId;
 import kin.sdk.Environment;
+import kin.sdk.exception.TransactionFailedException;
 
 
 @SuppressWarnings("unused")
 public class KinPlugin extends KinPluginBase {
     private static final KinPlugin _instance = new KinPlugin();
 
-    // cache for our native classes that are mirrored in C#
-    private HashMap<String, KinClient> _clients = new HashMap<>();
-    private HashMap<String, KinAccount> _accounts = new HashMap<>();
-    private HashMap<String, Transaction> _transactions = new HashMap<>();
+    // cache for our native classes that are mirrored in C#. Worker threads use these as well so they are all concurrent.
+    private final Registry<KinClient> _clients = new Registry<>("Clients");
+    private final Registry<KinAccount> _accounts = new Registry<>("Accounts");
+
+    // how long each client took to come up, kept for getStartupTimings
+    private final Registry<StartupTimings> _startupTimings = new Registry<>("StartupTimings");
+
+    // built transactions waiting to be sent. Ones that are never sent expire or get evicted and Unity is told about it.
+    private final PendingTransactionStore _transactions = new PendingTransactionStore((transactionId, accountId, expired) -> {
+        Log.i(TAG, (expired ? "expired" : "evicted") + " pending transaction: " + transactionId);
+        sendCallback("OnTransactionEvicted", transactionId, accountId);
+    });
+    private ScheduledFuture<?> _transactionSweep;
+
+    // all async work runs on these bounded pools instead of a new Thread per call
+    private final PluginExecutor _executor = new PluginExecutor();
+
+    // listener events go through here so bursts reach Unity as the latest balance and batches of payments
+    private final EventCoalescer _eventCoalescer = new EventCoalescer(_executor, new EventCoalescer.Emitter() {
+        @Override
+        public void emitBalance(String accountId, String balance)
+        {
+            sendCallback("OnBalance", balance, accountId);
+        }
+
+        @Override
+        public void emitPayments(String accountId, List<PaymentInfo> payments)
+        {
+            sendPayments(payments, accountId);
+        }
+    });
+
+    // every payment, balance and account creation listener. Shares one stream per address between accountIds.
+    private final ListenerHub _listenerHub = new ListenerHub(_executor, new ListenerHub.Sink() {
+        @Override
+        public void onPayment(String address, String[] accountIds, PaymentInfo payment)
+        {
+            // right after coming back to the foreground the payment may already have been caught up on
+            if (!_paymentCatchUp.isFirstDelivery(address, payment.hash().id()))
+                return;
+
+            // the payment changed our balance, the balance listener (if any) will push the new value
+            _metrics.onPaymentEvent();
+            _balanceCache.invalidate(address);
+            _paymentHistory.onPayment(address, payment);
+            _paymentSubscriptions.onPayment(address);
+            for (String accountId : accountIds) {
+                if (!accountId.startsWith(PaymentSubscriptions.SUBSCRIBER_PREFIX))
+                    _eventCoalescer.payment(accountId, payment);
+            }
+        }
+
+        @Override
+        public void onBalance(String address, String[] accountIds, String balance)
+        {
+            _metrics.onBalanceEvent();
+            _balanceCache.put(address, balance);
+            _accountSnapshots.putBalance(address, balance);
+            for (String accountId : accountIds)
+                _eventCoalescer.balance(accountId, balance);
+        }
+
+        @Override
+        public void onAccountCreated(String address, String[] accountIds)
+        {
+            _metrics.onAccountCreationEvent();
+            _accountSnapshots.putStatus(address, AccountStatus.CREATED);
+            for (String accountId : accountIds)
+                unitySendMessage("OnAccountCreated", accountId);
+        }
+
+        @Override
+        public void onStream(ListenerHub.Type type, String address, boolean open)
+        {
+            if (type == ListenerHub.Type.PAYMENT)
+                _paymentHistory.onStream(address, open);
+            else if (type == ListenerHub.Type.BALANCE && open)
+                _balanceCache.addListener(address);
+            else if (type == ListenerHub.Type.BALANCE)
+                _balanceCache.removeListener(address);
+        }
+
+        @Override
+        public ListenerHub.BackgroundPolicy backgroundPolicy(String accountId)
+        {
+            String clientId = clientOf(accountId);
+            ListenerHub.BackgroundPolicy policy = clientId != null ? _backgroundPolicies.get(clientId) : null;
+            return policy != null ? policy : ListenerHub.DEFAULT_BACKGROUND_POLICY;
+        }
+
+        @Override
+        public boolean onSuspendPayments(String address, String[] accountIds)
+        {
+            PaymentHistory.Source source = paymentSource(accountIds);
+            return source != null && _paymentCatchUp.mark(address, source);
+        }
+
+        @Override
+        public void onResumePayments(String address, final String[] accountIds)
+        {
+            PaymentHistory.Source source = paymentSource(accountIds);
+            if (source != null)
+                _paymentCatchUp.resume(address, source, (caughtUp, payments) -> onCaughtUpPayments(caughtUp, accountIds, payments));
+        }
+    });
+
+    // payments that arrived while the payment streams were closed in the background
+    private final PaymentCatchUp _paymentCatchUp = new PaymentCatchUp(_executor);
+
+    // what the listeners of each client do while the app is in the background, clients that never configured it throttle
+    private final Registry<ListenerHub.BackgroundPolicy> _backgroundPolicies = new Registry<>("BackgroundPolicies");
+
+    // moves the listeners to the background and back, registered with the application at the first createClient
+    private final AppLifecycle _appLifecycle = new AppLifecycle(_executor, new AppLifecycle.Listener() {
+        @Override
+        public void onBackground()
+        {
+            Log.i(TAG, "app went to the background, throttling listeners");
+            _listenerHub.setBackground(true);
+        }
+
+        @Override
+        public void onForeground()
+        {
+            Log.i(TAG, "app came back to the foreground, resuming listeners");
+            _listenerHub.setBackground(false);
+        }
+    });
+
+    // network reads and builds are retried here before an error is reported to Unity
+    private final RetryPolicy _retryPolicy = new RetryPolicy();
+
+    // builds and sends of the same account run in order, one at a time, so they never race on the sequence number
+    private final SerialScheduler _sendScheduler = new SerialScheduler(_executor, PluginExecutor.Lane.WRITE);
+
+    // concurrent getStatus/getBalance calls for the same account share a single network request
+    private final SingleFlight<Integer> _statusFlights = new SingleFlight<>((accountId, status, error) -> {
+        if (error != null)
+            sendError("GetStatusFailed", error, accountId);
+        else
+            sendCallback("GetStatusSucceeded", String.valueOf(status), accountId);
+    });
+    private final SingleFlight<String> _balanceFlights = new SingleFlight<>((accountId, balance, error) -> {
+        if (error != null)
+            sendError("GetBalanceFailed", error, accountId);
+        else
+            sendCallback("GetBalanceSucceeded", balance, accountId);
+    });
+
+    // clients that asked for binary callbacks and the client each cached account belongs to
+    private final Set<String> _binaryClients = Collections.synchronizedSet(new HashSet<String>());
+    private final Registry<String> _accountClients = new Registry<>("AccountClients");
+
+    // accountIds by public address so we can find the cached id of a KinAccount in constant time
+    private final AccountIndex _accountIndex = new AccountIndex();
+
+    // imports write to the client's keystore, which isn't safe to modify from several threads, so they run one at a time
+    // per client
+    private final SerialScheduler _keystoreScheduler = new SerialScheduler(_executor, PluginExecutor.Lane.WRITE);
+
+    // exports by address and passphrase for the session, once enabled
+    private final ExportCache _exportCache = new ExportCache();
+
+    // payment history pages, logged to disk per address and kept current by the payment listeners
+    private final PaymentHistory _paymentHistory = new PaymentHistory(() -> {
+        Activity activity = getActivity();
+        return activity != null ? new File(activity.getFilesDir(), "KinPaymentHistory") : null;
+    });
+
+    // payment subscriptions with demand from Unity and a bounded buffer, read from Horizon so they can be replayed
+    private final PaymentSubscriptions _paymentSubscriptions = new PaymentSubscriptions(_executor, new PaymentSubscriptions.Sink() {
+        @Override
+        public void onPayments(String subscriptionId, String accountId, List<PaymentHistory.Payment> payments, long dropped)
+        {
+            unitySendMessage("OnSubscriptionPayments", subscriptionPaymentsToJson(subscriptionId, accountId, payments, dropped));
+        }
+
+        @Override
+        public void onError(String subscriptionId, Exception e)
+        {
+            sendError("SubscriptionFailed", e, subscriptionId);
+        }
+    });
+
+    // last known state of the accounts of every keystore, read at createClient so Unity can draw before the network answers
+    private final AccountSnapshots _accountSnapshots = new AccountSnapshots(_executor, () -> {
+        Activity activity = getActivity();
+        return activity != null ? new File(activity.getFilesDir(), "KinAccountSnapshots") : null;
+    });
+
+    // clients with a snapshot revalidation running, a second request while one runs shares its result
+    private final Set<String> _revalidatingSnapshots = Collections.synchronizedSet(new HashSet<String>());
+
+    // whitelist step of sendWhitelistedTransaction, per client
+    private final Registry<WhitelistStage> _whitelistStages = new Registry<>("WhitelistServices");
+
+    // every registry above, for getRegistrySizes
+    private final Registry<?>[] _registries = { _clients, _accounts, _accountClients, _whitelistStages, _startupTimings, _backgroundPolicies };
 
-    // ListenerRegistration cache
-    private HashMap<String, ListenerRegistration> _paymentListeners = new HashMap<>();
-    private HashMap<String, ListenerRegistration> _balanceListeners = new HashMap<>();
-    private HashMap<String, ListenerRegistration> _accountListeners = new HashMap<>();
+    // balances pushed by listeners or fetched from the network, keyed by public address
+    private final BalanceCache _balanceCache = new BalanceCache();
+
+    // minimum fees are served from this cache and refreshed in the background
+    private final FeeCache _feeCache = new FeeCache();
+    private final SingleFlight<Long> _feeFlights = new SingleFlight<>((clientId, fee, error) -> {
+        if (error != null)
+            sendError("GetMinimumFeeFailed", error, clientId);
+        else
+            sendCallback("GetMinimumFeeSucceeded", Long.toString(fee), clientId);
+    });
+
+    // callback formats for setBridgeFormat, mirrored by the BridgeFormat enum in C#
+    static final int BRIDGE_FORMAT_JSON = 0;
+    static final int BRIDGE_FORMAT_BINARY = 1;
+
+    // a send that fails with a stale sequence number is rebuilt and resent at most this many times
+    private static final int MAX_SEQUENCE_RESYNCS = 2;
+    private static final String TX_BAD_SEQ = "tx_bad_seq";
+
+    // bumped whenever the metrics dump interval changes so the dumps scheduled for the old interval stop
+    private int _metricsDumpGeneration;
+    private long _metricsDumpIntervalMillis;
 
     // Codes for backup and restore
     protected static final String BACKUP_ACTION = "Backup";
@@ -46,71 +267,112 @@ public class KinPlugin extends KinPluginBase {
     }
 
 
-    //region KinClient
+    //region Plugin
 
-    public void createClient(String clientId, int environment, String appId, String storeKey)
+    /**
+     * resizes the worker pools. rejectionPolicy matches the PluginExecutor.REJECT_* constants.
+     */
+    public String configureExecutor(int readThreads, int writeThreads, int queueCapacity, int rejectionPolicy)
     {
-        // KinClient defaults to null so we do as well here
-        if (storeKey == null)
-            storeKey = "";
+        try {
+            _executor.configure(readThreads, writeThreads, queueCapacity, rejectionPolicy);
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            return exceptionToJson(e, null);
+        }
 
-        Environment env = environment == 0 ? Environment.TEST : Environment.PRODUCTION;
-        KinClient client = new KinClient(getActivity(), env, appId, storeKey);
-        _clients.put(clientId, client);
+        return "";
     }
 
 
-    public KinClient _getClient(String clientId)
+    /**
+     * drains the worker pools and stops every periodic task: anything already queued still completes and reports back
+     * to Unity, every later request fails through its usual Failed message until restart is called.
+     */
+    public void shutdown()
     {
-        return _clients.get(clientId);
+        Log.i(TAG, "shutting down plugin executor");
+        synchronized (this) {
+            _metricsDumpGeneration++;
+        }
+        _executor.shutdown();
+        _accountSnapshots.flush();
     }
 
-    public KinAccount _getAccount(String accountId)
-    {
-        return _accounts.get(accountId);
-    }
 
-    public void _putAccount(String accountId, KinAccount kinAccount)
+    /**
+     * accepts requests again after shutdown and resumes the periodic tasks that shutdown stopped
+     */
+    public void restart()
     {
-        _accounts.put(accountId, kinAccount);
+        Log.i(TAG, "restarting plugin executor");
+        _executor.restart();
+
+        // snapshots changed while shut down are still marked as having a write scheduled
+        _accountSnapshots.flush();
+        _listenerHub.resume();
+        _paymentSubscriptions.resume();
+        if (_transactions.size() > 0)
+            scheduleTransactionSweep();
+
+        synchronized (this) {
+            int generation = ++_metricsDumpGeneration;
+            if (_metricsDumpIntervalMillis > 0)
+                scheduleMetricsDump(generation, _metricsDumpIntervalMillis);
+        }
     }
 
 
-    public void freeCachedClient(String clientId)
+    /**
+     * @return the current and peak number of entries of every native object registry as JSON
+     */
+    public String getRegistrySizes()
     {
-        if (_clients.containsKey(clientId)) {
-            Log.i(TAG, "freeing cached client: " + clientId);
-            _clients.remove(clientId);
+        JsonWriter writer = JsonWriter.obtain().beginObject();
+        for (Registry<?> registry : _registries) {
+            writer.beginObject(registry.name())
+                    .put("Size", registry.size())
+                    .put("Peak", registry.peakSize())
+                    .endObject();
         }
+        return writer.endObject().finish();
     }
 
 
-    public String importAccount(String clientId, String accountId, String exportedJson, String passphrase)
+    /**
+     * sets how many built but unsent transactions are kept and for how long
+     */
+    public String configureTransactionStore(int maxSize, long ttlMillis)
     {
         try {
-            KinAccount account = _clients.get(clientId).importAccount(exportedJson, passphrase);
-            _accounts.put(accountId, account);
-            return "";
+            _transactions.configure(maxSize, ttlMillis);
         }
         catch (Exception e) {
             e.printStackTrace();
             return exceptionToJson(e, null);
         }
+
+        return "";
     }
 
 
-    public int getAccountCount(String clientId) {
-        return _clients.get(clientId).getAccountCount();
+    /**
+     * @return hit, miss, expiry and eviction counts of the pending transaction store as JSON
+     */
+    public String getTransactionStoreStats()
+    {
+        return _transactions.statsToJson();
     }
 
 
-    public String addAccount(String clientId, String accountId)
+    /**
+     * sets the retry budget of one of the RetryPolicy operations
+     */
+    public String configureRetries(String operation, int maxAttempts, long baseDelayMillis, long maxDelayMillis, long budgetMillis)
     {
         try {
-            Log.i(TAG, "adding account: " + accountId);
-            KinAccount account = _clients.get(clientId).addAccount();
-            Log.i(TAG, "added account successfully");
-            _accounts.put(accountId, account);
+            _retryPolicy.configure(operation, maxAttempts, baseDelayMillis, maxDelayMillis, budgetMillis);
         }
         catch (Exception e) {
             e.printStackTrace();
@@ -121,39 +383,42 @@ public class KinPlugin extends KinPluginBase {
     }
 
 
-    public boolean getAccount(String clientId, String accountId, int index)
+    public String configureCircuitBreaker(int failureThreshold, long openMillis)
     {
-        KinAccount account = _clients.get(clientId).getAccount(index);
-        if (account == null)
-            return false;
-
-        if (!_accounts.containsValue(account))
-            _accounts.put(accountId, account);
+        try {
+            _retryPolicy.configureCircuitBreaker(failureThreshold, openMillis);
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            return exceptionToJson(e, null);
+        }
 
-        return true;
+        return "";
     }
 
 
-    public KinAccount _getRawAccount(String clientId, int index)
+    /**
+     * marks errors with the given NativeType as retryable or fatal
+     */
+    public void setRetryable(String nativeType, boolean retryable)
     {
-        return _clients.get(clientId).getAccount(index);
+        _retryPolicy.setRetryable(nativeType, retryable);
     }
 
 
-    public String deleteAccount(String clientId, int index)
+    public String getRetryStats()
     {
-        Log.i(TAG, "deleting account: " + index);
-        KinAccount account = _clients.get(clientId).getAccount(index);
-        if (account == null) {
-            Log.i(TAG, "could not find account to delete");
-            String message = "Attempted to delete account that doesn't exist at index " + index;
-            Log.e(TAG, message);
-            return exceptionToJson(new IndexOutOfBoundsException(message), null);
-        }
+        return _retryPolicy.statsToJson();
+    }
+
 
+    /**
+     * sets how many listener streams may be open at once and how often listeners past that limit are polled
+     */
+    public String configureListeners(int maxStreams, long pollIntervalMillis)
+    {
         try {
-            // attempt to delete the account
-            _clients.get(clientId).deleteAccount(index);
+            _listenerHub.configure(maxStreams, pollIntervalMillis);
         }
         catch (Exception e) {
             e.printStackTrace();
@@ -164,250 +429,1341 @@ public class KinPlugin extends KinPluginBase {
     }
 
 
-    public void clearAllAccounts(String clientId)
+    /**
+     * Sets what the client's listeners do while the app is in the background: keep running, close their streams and
+     * poll every pollIntervalMillis, or close their streams and stop polling. Listeners shared with other clients follow
+     * the least aggressive policy. Takes effect the next time the app goes to the background.
+     */
+    public String configureBackground(String clientId, int mode, long pollIntervalMillis)
     {
         try {
-            _clients.get(clientId).clearAllAccounts();
+            _clients.require(clientId);
+            _backgroundPolicies.put(clientId, new ListenerHub.BackgroundPolicy(mode, pollIntervalMillis));
         }
         catch (Exception e) {
             e.printStackTrace();
+            return exceptionToJson(e, null);
         }
-    }
-
-    //endregion
-
-
-    //region KinAccount
-
-    public void freeCachedAccount(final String accountId)
-    {
-        if (_accounts.containsKey(accountId)) {
-            Log.i(TAG, "freeing cached account: " + accountId);
-            _accounts.remove(accountId);
-        }
-    }
-
 
-    public String getPublicAddress(final String accountId)
-    {
-        return _accounts.get(accountId).getPublicAddress();
+        return "";
     }
 
 
-    public String export(final String accountId, final String passphrase)
+    /**
+     * sets how long listener events are held to coalesce balances and batch payments, 0 delivers them right away
+     */
+    public String configureEventCoalescing(long windowMillis, int maxPaymentBatch)
     {
         try {
-            return _accounts.get(accountId).export(passphrase);
+            _eventCoalescer.configure(windowMillis, maxPaymentBatch);
         }
         catch (Exception e) {
             e.printStackTrace();
             return exceptionToJson(e, null);
         }
+
+        return "";
     }
 
 
-    public void getStatus(final String accountId)
+    /**
+     * turns latency, bridge and listener metrics on or off. Turning them on starts over from zero.
+     */
+    public void setMetricsEnabled(boolean enabled)
     {
-        new Thread(() -> {
-            try {
-                int status = _accounts.get(accountId).getStatusSync();
-                unitySendMessage("GetStatusSucceeded", callbackToJson(String.valueOf(status), accountId));
-            }
-            catch (Exception e) {
-                unitySendMessage("GetStatusFailed", exceptionToJson(e, accountId));
-                Log.e(TAG, "GetStatus failed", e);
-            }
-        }).start();
+        _metrics.setEnabled(enabled);
     }
 
 
-    public void getBalance(final String accountId)
+    /**
+     * @return the metrics together with the executor queues and the stats of every cache and stage as JSON, mirrored by
+     * MetricsSnapshot in C#
+     */
+    public String getMetricsSnapshot()
     {
-        new Thread(() -> {
-            try {
-                Balance balance = _accounts.get(accountId).getBalanceSync();
-                unitySendMessage("GetBalanceSucceeded", callbackToJson(balance.value().toString(), accountId));
-            }
-            catch (Exception e) {
-                unitySendMessage("GetBalanceFailed", exceptionToJson(e, accountId));
-                Log.e(TAG, "GetBalance failed", e);
-            }
-        }).start();
+        JsonWriter writer = JsonWriter.obtain().beginObject();
+        _metrics.write(writer);
+        return writer.beginObject("Executor")
+                .put("ReadQueue", _executor.queueDepth(PluginExecutor.Lane.READ))
+                .put("WriteQueue", _executor.queueDepth(PluginExecutor.Lane.WRITE))
+                .put("ReadActive", _executor.activeCount(PluginExecutor.Lane.READ))
+                .put("WriteActive", _executor.activeCount(PluginExecutor.Lane.WRITE))
+                .endObject()
+                .putJson("Registries", getRegistrySizes())
+                .putJson("Retries", _retryPolicy.statsToJson())
+                .putJson("TransactionStore", _transactions.statsToJson())
+                .putJson("Listeners", _listenerHub.statsToJson())
+                .putJson("EventCoalescing", _eventCoalescer.statsToJson())
+                .putJson("ExportCache", _exportCache.statsToJson())
+                .putJson("PaymentHistory", _paymentHistory.statsToJson())
+                .putJson("PaymentSubscriptions", _paymentSubscriptions.statsToJson())
+                .putJson("PaymentCatchUp", _paymentCatchUp.statsToJson())
+                .endObject()
+                .finish();
     }
 
 
-    public void getMinimumFee(final String clientId)
+    /**
+     * logs a metrics snapshot and sends it to Unity as OnMetricsSnapshot every intervalMillis, 0 stops the dumps. A dump
+     * that the executor rejects is skipped and the next one is scheduled as usual. Shutdown stops the dumps and restart
+     * resumes them.
+     */
+    public synchronized String setMetricsDumpInterval(long intervalMillis)
     {
-        new Thread(() -> {
-            try {
-                long fee = _clients.get(clientId).getMinimumFeeSync();
-                unitySendMessage("GetMinimumFeeSucceeded", callbackToJson(Long.toString(fee), clientId));
-            }
-            catch (Exception e) {
-                unitySendMessage("GetMinimumFeeFailed", exceptionToJson(e, clientId));
-                Log.e(TAG, "GetMinimumFee failed", e);
-            }
-        }).start();
+        if (intervalMillis < 0)
+            return exceptionToJson(new IllegalArgumentException("intervalMillis can not be negative"), null);
+
+        int generation = ++_metricsDumpGeneration;
+        _metricsDumpIntervalMillis = intervalMillis;
+        if (intervalMillis > 0)
+            scheduleMetricsDump(generation, intervalMillis);
+
+        return "";
     }
 
 
-    public void buildTransaction(final String accountId, final String toAddress, final String kinAmount, final int fee, final String memo)
+    /**
+     * turns the session cache of exports on or off, turning it off clears it
+     */
+    public void setExportCacheEnabled(boolean enabled)
     {
-        new Thread(() -> {
-            try {
-                Log.i(TAG, "Preparing to build transaction. toAddress: " + toAddress + ", memo: " + memo);
-                Transaction transaction;
-                if (TextUtils.isEmpty(memo))
-                    transaction = _accounts.get(accountId).buildTransactionSync(toAddress, new BigDecimal(kinAmount), fee);
-                else
-                    transaction = _accounts.get(accountId).buildTransactionSync(toAddress, new BigDecimal(kinAmount), fee, memo);
-
-                _transactions.put(transaction.getId().id(), transaction);
-                unitySendMessage("BuildTransactionSucceeded", transactionToJson(transaction, accountId));
-            }
-            catch (Exception e) {
-                unitySendMessage("BuildTransactionFailed", exceptionToJson(e, accountId));
-                Log.e(TAG, "BuildTransaction failed", e);
-            }
-        }).start();
+        _exportCache.setEnabled(enabled);
     }
 
 
-    public void sendTransaction(final String accountId, final String id)
+    /**
+     * @return open streams, polled listeners and subscriber counts of the listener hub as JSON
+     */
+    public String getListenerStats()
     {
-        new Thread(() -> {
-            try {
-                Transaction transaction = _transactions.remove(id);
-                Log.i(TAG, "Preparing to send transaction: " + transaction.getDestination().getAccountId());
+        return _listenerHub.statsToJson();
+    }
 
-                TransactionId transactionId = _accounts.get(accountId).sendTransactionSync(transaction);
-                unitySendMessage("SendTransactionSucceeded", callbackToJson(transactionId.id(), accountId));
-            }
-            catch (Exception e) {
-                unitySendMessage("SendTransactionFailed", exceptionToJson(e, accountId));
-                Log.e(TAG, "SendTransaction failed", e);
-            }
-        }).start();
+    //endregion
+
+
+    //region KinClient
+
+    public void createClient(String clientId, int environment, String appId, String storeKey)
+    {
+        StartupTimings timings = new StartupTimings();
+        _appLifecycle.register(getActivity());
+        _accountSnapshots.load(clientId, environment, appId, storeKey);
+        timings.step(StartupTimings.LOAD_SNAPSHOT);
+        _clients.put(clientId, newClient(environment, appId, storeKey, timings));
+        timings.finish();
+        _startupTimings.put(clientId, timings);
     }
 
 
-    public void sendWhitelistTransaction(final String accountId, final String id, final String whitelist)
+    /**
+     * Creates the client on a worker thread so the keystore and shared preferences setup stays off the Unity thread.
+     * With warm set the accounts are loaded and the minimum fee is fetched as well, which brings up the network stack and
+     * fills the fee cache. The client is only registered once it is ready, Unity gets ClientReady with the total time in
+     * milliseconds or CreateClientFailed. The account snapshot is read right away, it is a single small file and
+     * getAccountSnapshot can be answered while the client is still being created.
+     */
+    public void createClientAsync(final String clientId, final int environment, final String appId, final String storeKey, final boolean warm)
     {
-        new Thread(() -> {
+        final StartupTimings timings = new StartupTimings();
+        _appLifecycle.register(getActivity());
+        _accountSnapshots.load(clientId, environment, appId, storeKey);
+        timings.step(StartupTimings.LOAD_SNAPSHOT);
+        runAsync(PluginExecutor.Lane.READ, "CreateClientFailed", clientId, () -> {
+            timings.step(StartupTimings.QUEUED);
+            KinClient client;
             try {
-                Transaction transaction = _transactions.remove(id);
-                Log.i(TAG, "Preparing to send transaction: " + transaction.getDestination().getAccountId());
-
-                TransactionId transactionId = _accounts.get(accountId).sendWhitelistTransactionSync(whitelist);
-                unitySendMessage("SendTransactionSucceeded", callbackToJson(transactionId.id(), accountId));
+                client = newClient(environment, appId, storeKey, timings);
             }
             catch (Exception e) {
-                unitySendMessage("SendTransactionFailed", exceptionToJson(e, accountId));
-                Log.e(TAG, "SendTransaction failed", e);
+                e.printStackTrace();
+                sendError("CreateClientFailed", e, clientId);
+                return;
             }
-        }).start();
-    }
 
+            if (warm)
+                warmUp(clientId, client, timings);
 
-    public void addPaymentListener(final String accountId)
-    {
-        // we only need one listener on the native side. Multiple listeners can be added on the Unity side.
-        if (_paymentListeners.containsKey(accountId))
-            return;
-
-        ListenerRegistration registration = _accounts.get(accountId).addPaymentListener(paymentInfo -> unitySendMessage("OnPayment", paymentInfoToJson(paymentInfo, accountId)));
-        _paymentListeners.put(accountId, registration);
+            _clients.put(clientId, client);
+            _startupTimings.put(clientId, timings);
+            sendCallback("ClientReady", Long.toString(timings.finish()), clientId);
+        });
     }
 
 
-    public void removePaymentListener(String accountId)
+    /**
+     * @return how long each step of creating the client took as JSON or null if the client was never created
+     */
+    public String getStartupTimings(String clientId)
     {
-        if (_paymentListeners.containsKey(accountId)) {
-            _paymentListeners.get(accountId).remove();
-            _paymentListeners.remove(accountId);
-        }
+        StartupTimings timings = _startupTimings.get(clientId);
+        return timings != null ? timings.toJson(clientId) : null;
     }
 
 
-    public void addBalanceListener(final String accountId)
+    public KinClient _getClient(String clientId)
     {
-        // we only need one listener on the native side. Multiple listeners can be added on the Unity side.
-        if (_balanceListeners.containsKey(accountId))
-            return;
-
-        ListenerRegistration registration = _accounts.get(accountId).addBalanceListener(balance -> unitySendMessage("OnBalance", callbackToJson(balance.value().toString(), accountId)));
-        _balanceListeners.put(accountId, registration);
+        return _clients.get(clientId);
     }
 
-
-    public void removeBalanceListener(String accountId)
+    public void _putClient(String clientId, KinClient kinClient)
     {
-        if (_balanceListeners.containsKey(accountId)) {
-            _balanceListeners.get(accountId).remove();
-            _balanceListeners.remove(accountId);
-        }
+        _clients.put(clientId, kinClient);
     }
 
+    public KinAccount _getAccount(String accountId)
+    {
+        return _accounts.get(accountId);
+    }
 
-    public void addAccountCreationListener(final String accountId)
+    public void _putAccount(String accountId, KinAccount kinAccount)
     {
-        // we only need one listener on the native side. Multiple listeners can be added on the Unity side.
-        if (_accountListeners.containsKey(accountId))
-            return;
+        cacheAccount(null, accountId, kinAccount);
+    }
 
-        ListenerRegistration registration = _accounts.get(accountId).addAccountCreationListener(data -> unitySendMessage("OnAccountCreated", accountId));
-        _accountListeners.put(accountId, registration);
+    public void _putAccount(String clientId, String accountId, KinAccount kinAccount)
+    {
+        cacheAccount(clientId, accountId, kinAccount);
     }
 
 
-    public void removeAccountCreationListener(String accountId)
+    /**
+     * switches callbacks for the client and its accounts between JSON (0) and the BinaryCodec format (1). Binary only
+     * takes effect while Unity drains events through a registered KinEventListener.
+     */
+    public void setBridgeFormat(String clientId, int format)
     {
-        if (_accountListeners.containsKey(accountId)) {
-            _accountListeners.get(accountId).remove();
-            _accountListeners.remove(accountId);
-        }
+        if (format == BRIDGE_FORMAT_BINARY)
+            _binaryClients.add(clientId);
+        else
+            _binaryClients.remove(clientId);
     }
 
-    //endregion
-
-    //region KinBackupAndRestore
 
-    public void startBackupActivity(String accountId, String clientId)
+    @Override
+    protected boolean useBinaryFormat(String id)
     {
-        Activity activity = getActivity();
-        Intent intent = new Intent(activity, BackupActivity.class);
-        intent.setAction(BACKUP_ACTION);
-        intent.putExtra(ACCOUNT_ID, accountId);
-        intent.putExtra(CLIENT_ID, clientId);
+        if (_binaryClients.isEmpty())
+            return false;
 
-        activity.startActivity(intent);
+        return _binaryClients.contains(id) || _binaryClients.contains(_accountClients.get(id));
     }
 
-    public void startRestoreActivity(String clientId)
-    {
-        Activity activity = getActivity();
-        Intent intent = new Intent(activity, BackupActivity.class);
-        intent.setAction(RESTORE_ACTION);
-        intent.putExtra(CLIENT_ID, clientId);
 
-        activity.startActivity(intent);
+    public void freeCachedClient(String clientId)
+    {
+        if (_clients.remove(clientId) != null) {
+            Log.i(TAG, "freeing cached client: " + clientId);
+            _feeCache.remove(clientId);
+            _startupTimings.remove(clientId);
+            _binaryClients.remove(clientId);
+            _whitelistStages.remove(clientId);
+            _backgroundPolicies.remove(clientId);
+            _accountSnapshots.forget(clientId);
+        }
     }
-    //endregion
 
 
     /**
-     * Gets the id of the first account that equals to the given account
-     * (There should only be one in any case)
+     * Returns the last known state of the client's accounts as JSON, straight from the snapshot read at createClient.
+     * With revalidate set the status and balance of every account are fetched again on the read lane and Unity gets
+     * AccountSnapshotRefreshed with the updated snapshot. Accounts that fail keep their last known values and the
+     * refreshed snapshot is flagged stale.
      */
-    protected String getAccountIdByAccount(KinAccount kinAccount)
+    public String getAccountSnapshot(final String clientId, boolean revalidate)
     {
-        String accountId = null;
-        for (Map.Entry<String, KinAccount> pair : _accounts.entrySet()) {
-            if (kinAccount.equals(pair.getValue())) {
-                accountId = pair.getKey();
-                break;
-            }
+        String snapshot = _accountSnapshots.toJson(clientId, false);
+        if (revalidate && _revalidatingSnapshots.add(clientId)) {
+            _executor.execute(PluginExecutor.Lane.READ, () -> revalidateSnapshot(clientId),
+                    e -> snapshotRevalidated(clientId, true));
         }
-        return accountId;
+        return snapshot;
+    }
+
+
+    public String importAccount(String clientId, String accountId, String exportedJson, String passphrase)
+    {
+        try {
+            importInto(clientId, accountId, exportedJson, passphrase);
+            return "";
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            return exceptionToJson(e, null);
+        }
+    }
+
+
+    /**
+     * imports on the write lane so the key derivation doesn't block Unity. Unity gets ImportAccountSucceeded with the
+     * public address or ImportAccountFailed.
+     */
+    public void importAccountAsync(final String clientId, final String accountId, final String exportedJson, final String passphrase)
+    {
+        _keystoreScheduler.submit(clientId, () -> {
+            try {
+                sendCallback("ImportAccountSucceeded", importInto(clientId, accountId, exportedJson, passphrase), accountId);
+            }
+            catch (Exception e) {
+                e.printStackTrace();
+                sendError("ImportAccountFailed", e, accountId);
+            }
+        }, e -> sendError("ImportAccountFailed", e, accountId));
+    }
+
+
+    /**
+     * imports every exported account under the accountId at the same index and reports them all at once through
+     * ImportAccountsCompleted with the public address of each imported account. The imports of a client run one after
+     * the other off the Unity thread since the SDK keystore can't take parallel writes.
+     */
+    public void importAccounts(final String clientId, final String batchId, final String[] accountIds, final String[] exportedJsons, final String[] passphrases)
+    {
+        final HashMap<String, Integer> indices = new HashMap<>();
+        for (int i = 0; i < accountIds.length; i++)
+            indices.put(accountIds[i], i);
+
+        _keystoreScheduler.submit(clientId, () -> {
+            new BatchRequest(batchId, accountIds, accountId -> {
+                int index = indices.get(accountId);
+                return importInto(clientId, accountId, exportedJsons[index], passphrases[index]);
+            }).run(batch -> unitySendMessage("ImportAccountsCompleted", batchToJson(batch)));
+        }, e -> new BatchRequest(batchId, accountIds, accountId -> {
+            throw e;
+        }).run(batch -> unitySendMessage("ImportAccountsCompleted", batchToJson(batch))));
+    }
+
+
+    public int getAccountCount(String clientId) {
+        return _clients.get(clientId).getAccountCount();
+    }
+
+
+    public String addAccount(String clientId, String accountId)
+    {
+        try {
+            Log.i(TAG, "adding account: " + accountId);
+            KinClient client = _clients.require(clientId);
+            KinAccount account;
+            synchronized (client) {
+                account = client.addAccount();
+            }
+            Log.i(TAG, "added account successfully");
+            cacheAccount(clientId, accountId, account);
+            _accountSnapshots.addAccount(clientId, account.getPublicAddress());
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            return exceptionToJson(e, null);
+        }
+
+        return "";
+    }
+
+
+    public boolean getAccount(String clientId, String accountId, int index)
+    {
+        KinAccount account = _clients.get(clientId).getAccount(index);
+        if (account == null)
+            return false;
+
+        if (_accountIndex.firstId(account.getPublicAddress()) == null)
+            cacheAccount(clientId, accountId, account);
+
+        return true;
+    }
+
+
+    public KinAccount _getRawAccount(String clientId, int index)
+    {
+        return _clients.get(clientId).getAccount(index);
+    }
+
+
+    public String deleteAccount(String clientId, int index)
+    {
+        Log.i(TAG, "deleting account: " + index);
+        String address;
+        try {
+            KinClient client = _clients.require(clientId);
+
+            // the keystore is shared with imports running on the write lane, see importInto
+            synchronized (client) {
+                KinAccount account = client.getAccount(index);
+                if (account == null) {
+                    Log.i(TAG, "could not find account to delete");
+                    String message = "Attempted to delete account that doesn't exist at index " + index;
+                    Log.e(TAG, message);
+                    return exceptionToJson(new IndexOutOfBoundsException(message), null);
+                }
+
+                // the address is gone once the account is deleted so grab it first
+                address = account.getPublicAddress();
+                client.deleteAccount(index);
+            }
+
+            _accountIndex.removeAddress(address);
+            _balanceCache.remove(address);
+            _exportCache.removeAddress(address);
+            _paymentHistory.remove(address);
+            _accountSnapshots.removeAddress(address);
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            return exceptionToJson(e, null);
+        }
+
+        return "";
+    }
+
+
+    public void clearAllAccounts(String clientId)
+    {
+        try {
+            KinClient client = _clients.require(clientId);
+            synchronized (client) {
+                for (int i = 0, count = client.getAccountCount(); i < count; i++) {
+                    KinAccount account = client.getAccount(i);
+                    if (account != null) {
+                        _accountIndex.removeAddress(account.getPublicAddress());
+                        _balanceCache.remove(account.getPublicAddress());
+                        _exportCache.removeAddress(account.getPublicAddress());
+                        _paymentHistory.remove(account.getPublicAddress());
+                    }
+                }
+
+                client.clearAllAccounts();
+            }
+            _accountSnapshots.setAccounts(clientId, Collections.<String>emptyList());
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    //endregion
+
+
+    //region KinAccount
+
+    public void freeCachedAccount(final String accountId)
+    {
+        if (_accounts.remove(accountId) != null) {
+            Log.i(TAG, "freeing cached account: " + accountId);
+            _accountClients.remove(accountId);
+            _accountIndex.remove(accountId);
+        }
+    }
+
+
+    public String getPublicAddress(final String accountId)
+    {
+        return _accounts.get(accountId).getPublicAddress();
+    }
+
+
+    public String export(final String accountId, final String passphrase)
+    {
+        try {
+            return exportAccount(accountId, passphrase);
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            return exceptionToJson(e, null);
+        }
+    }
+
+
+    /**
+     * exports on the write lane so the key derivation doesn't block Unity. Unity gets ExportSucceeded with the exported
+     * JSON or ExportFailed.
+     */
+    public void exportAsync(final String accountId, final String passphrase)
+    {
+        runAsync(PluginExecutor.Lane.WRITE, "ExportFailed", accountId, () -> {
+            try {
+                sendCallback("ExportSucceeded", exportAccount(accountId, passphrase), accountId);
+            }
+            catch (Exception e) {
+                e.printStackTrace();
+                sendError("ExportFailed", e, accountId);
+            }
+        });
+    }
+
+
+    public void getStatus(final String accountId)
+    {
+        final String key = coalescingKey(accountId);
+        if (!_statusFlights.join(key, accountId))
+            return;
+
+        _executor.execute(PluginExecutor.Lane.READ, () -> {
+            try {
+                final KinAccount account = _accounts.require(accountId);
+                _statusFlights.complete(key, fetchStatus(account), null);
+            }
+            catch (Exception e) {
+                Log.e(TAG, "GetStatus failed", e);
+                _statusFlights.complete(key, null, e);
+            }
+        }, e -> _statusFlights.complete(key, null, e));
+    }
+
+
+    public void getBalance(final String accountId)
+    {
+        getBalance(accountId, -1);
+    }
+
+
+    /**
+     * answers from the balance cache when it holds a usable value, see BalanceCache.get for how maxAgeMillis is used
+     */
+    public void getBalance(final String accountId, long maxAgeMillis)
+    {
+        final String key = coalescingKey(accountId);
+        String cached = _balanceCache.get(key, maxAgeMillis);
+        if (cached != null) {
+            sendCallback("GetBalanceSucceeded", cached, accountId);
+            return;
+        }
+
+        if (!_balanceFlights.join(key, accountId))
+            return;
+
+        _executor.execute(PluginExecutor.Lane.READ, () -> {
+            try {
+                String balance = fetchBalance(accountId);
+                _balanceCache.put(key, balance);
+                _balanceFlights.complete(key, balance, null);
+            }
+            catch (Exception e) {
+                Log.e(TAG, "GetBalance failed", e);
+                _balanceFlights.complete(key, null, e);
+            }
+        }, e -> _balanceFlights.complete(key, null, e));
+    }
+
+
+    /**
+     * fetches the balance of every account with at most maxParallelism requests at a time and reports them all at once
+     * through GetBalancesCompleted
+     */
+    public void getBalances(String batchId, String[] accountIds, int maxParallelism)
+    {
+        new BatchRequest(batchId, accountIds, accountId -> {
+            String key = coalescingKey(accountId);
+            String balance = _balanceCache.get(key, -1);
+            if (balance == null) {
+                balance = fetchBalance(accountId);
+                _balanceCache.put(key, balance);
+            }
+            return balance;
+        }).start(_executor, PluginExecutor.Lane.READ, maxParallelism, batch -> unitySendMessage("GetBalancesCompleted", batchToJson(batch)));
+    }
+
+
+    /**
+     * fetches the status of every account with at most maxParallelism requests at a time and reports them all at once
+     * through GetStatusesCompleted
+     */
+    public void getStatuses(String batchId, String[] accountIds, int maxParallelism)
+    {
+        new BatchRequest(batchId, accountIds, accountId -> String.valueOf(fetchStatus(_accounts.require(accountId))))
+                .start(_executor, PluginExecutor.Lane.READ, maxParallelism, batch -> unitySendMessage("GetStatusesCompleted", batchToJson(batch)));
+    }
+
+
+    /**
+     * returns the cached balance with its age in milliseconds as JSON without going to the network or an empty string
+     * if there is no valid cached balance
+     */
+    public String getCachedBalance(final String accountId)
+    {
+        String key = coalescingKey(accountId);
+        synchronized (_balanceCache) {
+            String balance = _balanceCache.peek(key);
+            if (balance == null)
+                return "";
+
+            return balanceToJson(balance, _balanceCache.age(key), accountId);
+        }
+    }
+
+
+    public void getMinimumFee(final String clientId)
+    {
+        long cached = _feeCache.get(clientId);
+        if (cached >= 0) {
+            sendCallback("GetMinimumFeeSucceeded", Long.toString(cached), clientId);
+            refreshFeeIfNeeded(clientId);
+            return;
+        }
+
+        if (_feeFlights.join(clientId, clientId))
+            _executor.execute(PluginExecutor.Lane.READ, () -> fetchFee(clientId), e -> _feeFlights.complete(clientId, null, e));
+    }
+
+
+    /**
+     * returns the cached minimum fee without going to the network or -1 if there is no usable cached fee
+     */
+    public long getCachedMinimumFee(final String clientId)
+    {
+        long cached = _feeCache.get(clientId);
+        refreshFeeIfNeeded(clientId);
+        return cached;
+    }
+
+
+    /**
+     * sets the service that whitelists transactions for sendWhitelistedTransaction. A null or empty url removes it and
+     * WhitelistStage.STUB_URL whitelists in process for tests.
+     */
+    public String setWhitelistService(String clientId, String url, int timeoutMillis, int maxConcurrent)
+    {
+        try {
+            if (TextUtils.isEmpty(url))
+                _whitelistStages.remove(clientId);
+            else
+                _whitelistStages.put(clientId, WhitelistStage.create(url, timeoutMillis, maxConcurrent));
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            return exceptionToJson(e, clientId);
+        }
+
+        return "";
+    }
+
+
+    public String configureFeeCache(String clientId, long ttlMillis, long maxStaleMillis)
+    {
+        try {
+            _feeCache.configure(clientId, ttlMillis, maxStaleMillis);
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            return exceptionToJson(e, clientId);
+        }
+
+        return "";
+    }
+
+
+    /**
+     * fetches the minimum fee on the current thread, caches it and completes the fee flight for clientId
+     */
+    private void fetchFee(final String clientId)
+    {
+        try {
+            final KinClient client = _clients.require(clientId);
+            long fee = fetchMinimumFee(client);
+            long refreshDelay = _feeCache.put(clientId, fee);
+            if (refreshDelay >= 0)
+                _executor.schedule(PluginExecutor.Lane.READ, () -> {
+                    // only keep refreshing ahead of expiry while the fee is actually being used
+                    if (_clients.contains(clientId) && _feeCache.consumeAccessed(clientId) && _feeFlights.start(clientId))
+                        fetchFee(clientId);
+                }, refreshDelay, e -> Log.w(TAG, "skipped a fee refresh: " + e.getMessage()));
+
+            _feeFlights.complete(clientId, fee, null);
+        }
+        catch (Exception e) {
+            Log.e(TAG, "GetMinimumFee failed", e);
+            _feeFlights.complete(clientId, null, e);
+        }
+    }
+
+
+    /**
+     * starts a background fee fetch when the cached fee is stale or about to be
+     */
+    private void refreshFeeIfNeeded(final String clientId)
+    {
+        if (_clients.contains(clientId) && _feeCache.needsRefresh(clientId) && _feeFlights.start(clientId))
+            _executor.execute(PluginExecutor.Lane.READ, () -> fetchFee(clientId), e -> _feeFlights.complete(clientId, null, e));
+    }
+
+
+    public void buildTransaction(final String accountId, final String toAddress, final String kinAmount, final int fee, final String memo)
+    {
+        runSerial(accountId, "BuildTransactionFailed", () -> {
+            try {
+                Log.i(TAG, "Preparing to build transaction. toAddress: " + toAddress + ", memo: " + memo);
+                BigDecimal amount = new BigDecimal(kinAmount);
+                Transaction transaction = build(_accounts.require(accountId), toAddress, amount, fee, memo);
+
+                _transactions.put(transaction.getId().id(), accountId, new PendingTransactionStore.Pending(transaction, toAddress, amount, fee, memo));
+                scheduleTransactionSweep();
+                sendTransaction("BuildTransactionSucceeded", transaction, accountId);
+            }
+            catch (Exception e) {
+                sendError("BuildTransactionFailed", e, accountId);
+                Log.e(TAG, "BuildTransaction failed", e);
+            }
+        });
+    }
+
+
+    public void sendTransaction(final String accountId, final String id)
+    {
+        runSerial(accountId, "SendTransactionFailed", () -> {
+            try {
+                PendingTransactionStore.Pending pending = takeTransaction(id);
+                Log.i(TAG, "Preparing to send transaction: " + pending.toAddress);
+
+                TransactionId transactionId = sendWithResync(_accounts.require(accountId), pending, null);
+                _balanceCache.invalidate(coalescingKey(accountId));
+                sendCallback("SendTransactionSucceeded", transactionId.id(), accountId);
+            }
+            catch (Exception e) {
+                sendError("SendTransactionFailed", e, accountId);
+                Log.e(TAG, "SendTransaction failed", e);
+            }
+        });
+    }
+
+
+    public void sendWhitelistTransaction(final String accountId, final String id, final String whitelist)
+    {
+        runSerial(accountId, "SendTransactionFailed", () -> {
+            try {
+                // the whitelist signs this exact envelope so unlike the other sends it can't be rebuilt on a stale sequence
+                PendingTransactionStore.Pending pending = takeTransaction(id);
+                Log.i(TAG, "Preparing to send transaction: " + pending.toAddress);
+
+                final KinAccount account = _accounts.require(accountId);
+                TransactionId transactionId = _metrics.time(Metrics.SEND, () -> account.sendWhitelistTransactionSync(whitelist));
+                _balanceCache.invalidate(coalescingKey(accountId));
+                sendCallback("SendTransactionSucceeded", transactionId.id(), accountId);
+            }
+            catch (Exception e) {
+                sendError("SendTransactionFailed", e, accountId);
+                Log.e(TAG, "SendTransaction failed", e);
+            }
+        });
+    }
+
+
+    /**
+     * builds a zero fee transaction, has it whitelisted by the client's whitelist service and sends it, all on one
+     * worker thread without going back to Unity in between. Reports through SendTransactionSucceeded/Failed.
+     */
+    public void sendWhitelistedTransaction(final String accountId, final String toAddress, final String kinAmount, final String memo)
+    {
+        runSerial(accountId, "SendTransactionFailed", () -> {
+            try {
+                WhitelistStage whitelistStage = _whitelistStages.get(_accountClients.get(accountId));
+                if (whitelistStage == null)
+                    throw new IllegalStateException("no whitelist service is set for the client of account " + accountId);
+
+                KinAccount account = _accounts.require(accountId);
+                BigDecimal amount = new BigDecimal(kinAmount);
+                Transaction transaction = build(account, toAddress, amount, 0, memo);
+
+                PendingTransactionStore.Pending pending = new PendingTransactionStore.Pending(transaction, toAddress, amount, 0, memo);
+                TransactionId transactionId = sendWithResync(account, pending, whitelistStage);
+                _balanceCache.invalidate(coalescingKey(accountId));
+                sendCallback("SendTransactionSucceeded", transactionId.id(), accountId);
+            }
+            catch (Exception e) {
+                sendError("SendTransactionFailed", e, accountId);
+                Log.e(TAG, "SendWhitelistedTransaction failed", e);
+            }
+        });
+    }
+
+
+    /**
+     * builds and sends every payment in paymentsJson from accountId in order without going back to Unity in between.
+     * Results are reported in SendPaymentsProgress messages of up to progressBatchSize payments (0 turns progress off)
+     * and once more in full through SendPaymentsCompleted.
+     * @return an error JSON if paymentsJson could not be parsed, otherwise an empty string
+     */
+    public String sendPayments(final String accountId, final String batchId, final String paymentsJson, final int fee, final int progressBatchSize)
+    {
+        final PaymentBatch batch;
+        try {
+            batch = PaymentBatch.fromJson(batchId, accountId, fee, progressBatchSize, paymentsJson);
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            return exceptionToJson(e, accountId);
+        }
+
+        if (batch.payments.isEmpty()) {
+            unitySendMessage("SendPaymentsCompleted", paymentBatchToJson(batch, 0, 0));
+            return "";
+        }
+
+        // every build fetches the current sequence number of the account, so each payment is its own task on the
+        // account's send queue. They still go out one after the other but never hold a write thread for the whole batch.
+        String key = coalescingKey(accountId);
+        for (final PaymentBatch.Payment payment : batch.payments) {
+            _sendScheduler.submit(key, () -> sendBatchPayment(batch, payment), e -> {
+                payment.error = e;
+                batchPaymentDone(batch);
+            });
+        }
+
+        return "";
+    }
+
+
+    private void sendBatchPayment(PaymentBatch batch, PaymentBatch.Payment payment)
+    {
+        try {
+            KinAccount account = _accounts.require(batch.accountId);
+            Transaction transaction = build(account, payment.toAddress, payment.amount, batch.fee, payment.memo);
+
+            PendingTransactionStore.Pending pending = new PendingTransactionStore.Pending(transaction, payment.toAddress, payment.amount, batch.fee, payment.memo);
+            payment.transactionId = sendWithResync(account, pending, null).id();
+        }
+        catch (Exception e) {
+            Log.e(TAG, "SendPayments failed for payment " + payment.index, e);
+            payment.error = e;
+        }
+
+        batchPaymentDone(batch);
+    }
+
+
+    /**
+     * reports progress if it is due and the whole batch once its last payment is done
+     */
+    private void batchPaymentDone(PaymentBatch batch)
+    {
+        String progress = null;
+        boolean complete;
+        synchronized (batch) {
+            int from = batch.complete(SystemClock.elapsedRealtime());
+            if (from >= 0)
+                progress = paymentBatchToJson(batch, from, batch.completed());
+            complete = batch.isComplete();
+        }
+
+        if (progress != null)
+            unitySendMessage("SendPaymentsProgress", progress);
+
+        if (complete) {
+            _balanceCache.invalidate(coalescingKey(batch.accountId));
+            unitySendMessage("SendPaymentsCompleted", paymentBatchToJson(batch, 0, batch.payments.size()));
+        }
+    }
+
+
+    /**
+     * sends up to limit payments of the account older than cursor, newest first, through GetPaymentHistorySucceeded. An
+     * empty cursor starts at the newest payment and every page carries the cursor of the next one. Pages come from the
+     * on device history and only go to Horizon for payments it doesn't have yet, see PaymentHistory.
+     */
+    public void getPaymentHistory(final String accountId, final String cursor, final int limit)
+    {
+        runAsync(PluginExecutor.Lane.READ, "GetPaymentHistoryFailed", accountId, () -> {
+            try {
+                KinAccount account = _accounts.require(accountId);
+                KinClient client = clientOfAccount(accountId);
+                PaymentHistory.Page page = _paymentHistory.query(account.getPublicAddress(),
+                        client.getEnvironment().getNetworkPassphrase(), horizonPayments(client), cursor, limit);
+                if (TextUtils.isEmpty(cursor) && !page.payments.isEmpty())
+                    _accountSnapshots.putPaymentCursor(account.getPublicAddress(), Long.toString(page.payments.get(0).token));
+                unitySendMessage("GetPaymentHistorySucceeded", paymentHistoryToJson(page, accountId));
+            }
+            catch (Exception e) {
+                sendError("GetPaymentHistoryFailed", e, accountId);
+                Log.e(TAG, "GetPaymentHistory failed", e);
+            }
+        });
+    }
+
+
+    /**
+     * Starts a payment subscription for the account that delivers payments through OnSubscriptionPayments once
+     * requestPayments asks for them, see PaymentSubscriptions. An empty cursor starts after the newest payment.
+     * @return an empty string or the error as JSON
+     */
+    public String subscribePayments(String subscriptionId, String accountId, String cursor, int capacity, int overflowPolicy)
+    {
+        try {
+            KinAccount account = _accounts.require(accountId);
+            final PaymentHistory.Source horizon = horizonPayments(accountId);
+            _paymentSubscriptions.subscribe(subscriptionId, accountId, account.getPublicAddress(), (address, from, ascending, count) -> {
+                PaymentHistory.Fetched fetched = horizon.fetch(address, from, ascending, count);
+                _paymentHistory.fillMemos(address, fetched.payments);
+                return fetched;
+            }, TextUtils.isEmpty(cursor) ? null : cursor, capacity, overflowPolicy);
+            _listenerHub.subscribe(ListenerHub.Type.PAYMENT, PaymentSubscriptions.SUBSCRIBER_PREFIX + subscriptionId, account);
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            return exceptionToJson(e, subscriptionId);
+        }
+
+        return "";
+    }
+
+
+    public void requestPayments(String subscriptionId, int count)
+    {
+        _paymentSubscriptions.request(subscriptionId, count);
+    }
+
+
+    public void acknowledgePayments(String subscriptionId, String cursor)
+    {
+        _paymentSubscriptions.acknowledge(subscriptionId, TextUtils.isEmpty(cursor) ? null : cursor);
+    }
+
+
+    public void replayPayments(String subscriptionId)
+    {
+        _paymentSubscriptions.replay(subscriptionId);
+    }
+
+
+    public void unsubscribePayments(String subscriptionId)
+    {
+        if (_paymentSubscriptions.unsubscribe(subscriptionId))
+            _listenerHub.unsubscribe(ListenerHub.Type.PAYMENT, PaymentSubscriptions.SUBSCRIBER_PREFIX + subscriptionId);
+    }
+
+
+    public void addPaymentListener(final String accountId)
+    {
+        // we only need one listener on the native side. Multiple listeners can be added on the Unity side.
+        _listenerHub.subscribe(ListenerHub.Type.PAYMENT, accountId, _accounts.require(accountId));
+    }
+
+
+    public void removePaymentListener(String accountId)
+    {
+        _listenerHub.unsubscribe(ListenerHub.Type.PAYMENT, accountId);
+    }
+
+
+    public void addBalanceListener(final String accountId)
+    {
+        _listenerHub.subscribe(ListenerHub.Type.BALANCE, accountId, _accounts.require(accountId));
+    }
+
+
+    public void removeBalanceListener(String accountId)
+    {
+        _listenerHub.unsubscribe(ListenerHub.Type.BALANCE, accountId);
+    }
+
+
+    public void addAccountCreationListener(final String accountId)
+    {
+        _listenerHub.subscribe(ListenerHub.Type.ACCOUNT_CREATION, accountId, _accounts.require(accountId));
+    }
+
+
+    public void removeAccountCreationListener(String accountId)
+    {
+        _listenerHub.unsubscribe(ListenerHub.Type.ACCOUNT_CREATION, accountId);
+    }
+
+    //endregion
+
+    //region KinBackupAndRestore
+
+    public void startBackupActivity(String accountId, String clientId)
+    {
+        Activity activity = getActivity();
+        Intent intent = new Intent(activity, BackupActivity.class);
+        intent.setAction(BACKUP_ACTION);
+        intent.putExtra(ACCOUNT_ID, accountId);
+        intent.putExtra(CLIENT_ID, clientId);
+
+        activity.startActivity(intent);
+    }
+
+    public void startRestoreActivity(String clientId)
+    {
+        Activity activity = getActivity();
+        Intent intent = new Intent(activity, BackupActivity.class);
+        intent.setAction(RESTORE_ACTION);
+        intent.putExtra(CLIENT_ID, clientId);
+
+        activity.startActivity(intent);
+    }
+    //endregion
+
+
+    /**
+     * Runs the runnable on the given executor lane. If the executor rejects it Unity gets failedMethod with the
+     * RejectedExecutionException so that the pending C# callback is never left hanging.
+     */
+    private void runAsync(PluginExecutor.Lane lane, final String failedMethod, final String id, Runnable runnable)
+    {
+        _executor.execute(lane, runnable, e -> sendError(failedMethod, e, id));
+    }
+
+
+    private KinClient newClient(int environment, String appId, String storeKey, StartupTimings timings)
+    {
+        // KinClient defaults to null so we do as well here
+        if (storeKey == null)
+            storeKey = "";
+
+        Environment env = environment == 0 ? Environment.TEST : Environment.PRODUCTION;
+        KinClient client = new KinClient(getActivity(), env, appId, storeKey);
+        timings.step(StartupTimings.CREATE_CLIENT);
+        return client;
+    }
+
+
+    /**
+     * Touches what the first real calls would otherwise pay for. Failures are only logged since the client itself is
+     * usable, the fee is fetched again on first use.
+     */
+    private void warmUp(String clientId, KinClient client, StartupTimings timings)
+    {
+        try {
+            client.getAccountCount();
+        }
+        catch (Exception e) {
+            Log.w(TAG, "loading accounts while warming up client failed: " + e.getMessage());
+        }
+        timings.step(StartupTimings.LOAD_ACCOUNTS);
+
+        try {
+            _feeCache.put(clientId, fetchMinimumFee(client));
+        }
+        catch (Exception e) {
+            Log.w(TAG, "fetching the minimum fee while warming up client failed: " + e.getMessage());
+        }
+        timings.step(StartupTimings.MINIMUM_FEE);
+    }
+
+
+    /**
+     * imports the account and caches it under accountId. Everything that changes the accounts of a client holds the
+     * client's lock since the SDK keystore reads, modifies and writes its account list without locking.
+     * @return the public address of the imported account
+     */
+    private String importInto(String clientId, String accountId, String exportedJson, String passphrase) throws Exception
+    {
+        final KinClient client = _clients.require(clientId);
+        KinAccount account;
+        synchronized (client) {
+            account = _metrics.time(Metrics.IMPORT, () -> client.importAccount(exportedJson, passphrase));
+        }
+        cacheAccount(clientId, accountId, account);
+        _accountSnapshots.addAccount(clientId, account.getPublicAddress());
+        return account.getPublicAddress();
+    }
+
+
+    private String exportAccount(String accountId, String passphrase) throws Exception
+    {
+        final KinAccount account = _accounts.require(accountId);
+        String address = _accountIndex.address(accountId);
+        String export = _exportCache.get(address, passphrase);
+        if (export == null) {
+            export = _metrics.time(Metrics.EXPORT, () -> account.export(passphrase));
+            _exportCache.put(address, passphrase, export);
+        }
+        return export;
+    }
+
+
+    /**
+     * Key used to coalesce requests. Several accountIds can point at the same wallet so we key on the public address
+     * when we know it and fall back to the accountId so that unknown accounts still fail individually.
+     */
+    private String coalescingKey(String accountId)
+    {
+        String address = _accountIndex.address(accountId);
+        return address != null ? address : accountId;
+    }
+
+
+    /**
+     * @throws IllegalStateException if the transaction is not pending anymore
+     */
+    private PendingTransactionStore.Pending takeTransaction(String id)
+    {
+        PendingTransactionStore.Pending pending = _transactions.take(id);
+        if (pending == null)
+            throw new IllegalStateException("transaction " + id + " was already sent, expired or was never built");
+
+        return pending;
+    }
+
+
+    private Transaction build(final KinAccount account, final String toAddress, final BigDecimal amount, final int fee, final String memo) throws Exception
+    {
+        return _metrics.time(Metrics.BUILD, () -> _retryPolicy.call(RetryPolicy.BUILD_TRANSACTION, () -> {
+            if (TextUtils.isEmpty(memo))
+                return account.buildTransactionSync(toAddress, amount, fee);
+
+            return account.buildTransactionSync(toAddress, amount, fee, memo);
+        }));
+    }
+
+
+    private String fetchBalance(String accountId) throws Exception
+    {
+        return fetchBalance(_accounts.require(accountId));
+    }
+
+
+    private String fetchBalance(final KinAccount account) throws Exception
+    {
+        String balance = _metrics.time(Metrics.GET_BALANCE, () -> _retryPolicy.call(RetryPolicy.GET_BALANCE, account::getBalanceSync)).value().toString();
+        _accountSnapshots.putBalance(account.getPublicAddress(), balance);
+        return balance;
+    }
+
+
+    private int fetchStatus(final KinAccount account) throws Exception
+    {
+        int status = _metrics.time(Metrics.GET_STATUS, () -> _retryPolicy.call(RetryPolicy.GET_STATUS, account::getStatusSync));
+        _accountSnapshots.putStatus(account.getPublicAddress(), status);
+        return status;
+    }
+
+
+    /**
+     * @return the client of a listener hub subscriber or null if it is gone. Payment subscriptions subscribe under
+     * their own id.
+     */
+    private String clientOf(String subscriberId)
+    {
+        String accountId = subscriberId.startsWith(PaymentSubscriptions.SUBSCRIBER_PREFIX)
+                ? _paymentSubscriptions.accountId(subscriberId.substring(PaymentSubscriptions.SUBSCRIBER_PREFIX.length()))
+                : subscriberId;
+
+        return accountId != null ? _accountClients.get(accountId) : null;
+    }
+
+
+    /**
+     * @return Horizon's payments endpoint for the first subscriber whose client is still around or null
+     */
+    private PaymentHistory.Source paymentSource(String[] subscriberIds)
+    {
+        for (String subscriberId : subscriberIds) {
+            String clientId = clientOf(subscriberId);
+            KinClient client = clientId != null ? _clients.get(clientId) : null;
+            if (client != null)
+                return horizonPayments(client);
+        }
+        return null;
+    }
+
+
+    /**
+     * payments found after coming back to the foreground, delivered like a batch from the stream
+     */
+    private void onCaughtUpPayments(String address, String[] subscriberIds, List<PaymentHistory.Payment> payments)
+    {
+        _balanceCache.invalidate(address);
+        _paymentHistory.fillMemos(address, payments);
+        _paymentSubscriptions.onPayment(address);
+        for (String subscriberId : subscriberIds) {
+            if (!subscriberId.startsWith(PaymentSubscriptions.SUBSCRIBER_PREFIX))
+                unitySendMessage("OnPayments", paymentsToJson(payments, subscriberId));
+        }
+    }
+
+
+    /**
+     * Horizon's payments endpoint of the account's client, timed and retried
+     */
+    private PaymentHistory.Source horizonPayments(String accountId)
+    {
+        return horizonPayments(clientOfAccount(accountId));
+    }
+
+
+    private KinClient clientOfAccount(String accountId)
+    {
+        String clientId = _accountClients.get(accountId);
+        if (clientId == null)
+            throw new IllegalStateException("account " + accountId + " does not belong to a client");
+
+        return _clients.require(clientId);
+    }
+
+
+    private PaymentHistory.Source horizonPayments(KinClient client)
+    {
+        final HorizonPayments horizon = new HorizonPayments(client.getEnvironment().getNetworkUrl());
+        return (address, cursor, ascending, limit) -> _metrics.time(Metrics.GET_PAYMENT_HISTORY,
+                () -> _retryPolicy.call(RetryPolicy.GET_PAYMENT_HISTORY, () -> horizon.fetch(address, cursor, ascending, limit)));
+    }
+
+
+    /**
+     * brings the client's snapshot in line with its keystore and fetches the status and balance of every account, one
+     * at a time since a wallet rarely holds more than a few
+     */
+    private void revalidateSnapshot(String clientId)
+    {
+        boolean stale = false;
+        try {
+            KinClient client = _clients.require(clientId);
+            ArrayList<KinAccount> accounts = new ArrayList<>();
+            ArrayList<String> addresses = new ArrayList<>();
+            for (int i = 0, count = client.getAccountCount(); i < count; i++) {
+                KinAccount account = client.getAccount(i);
+                if (account != null && account.getPublicAddress() != null) {
+                    accounts.add(account);
+                    addresses.add(account.getPublicAddress());
+                }
+            }
+            _accountSnapshots.setAccounts(clientId, addresses);
+
+            for (KinAccount account : accounts) {
+                try {
+                    if (fetchStatus(account) == AccountStatus.CREATED)
+                        _balanceCache.put(account.getPublicAddress(), fetchBalance(account));
+                }
+                catch (Exception e) {
+                    Log.w(TAG, "revalidating the snapshot of " + account.getPublicAddress() + " failed: " + e.getMessage());
+                    stale = true;
+                }
+            }
+        }
+        catch (Exception e) {
+            Log.e(TAG, "revalidating the account snapshot failed", e);
+            stale = true;
+        }
+        finally {
+            snapshotRevalidated(clientId, stale);
+        }
+    }
+
+
+    private void snapshotRevalidated(String clientId, boolean stale)
+    {
+        _revalidatingSnapshots.remove(clientId);
+        unitySendMessage("AccountSnapshotRefreshed", _accountSnapshots.toJson(clientId, stale));
+    }
+
+
+    private long fetchMinimumFee(final KinClient client) throws Exception
+    {
+        return _metrics.time(Metrics.GET_MINIMUM_FEE, () -> _retryPolicy.call(RetryPolicy.GET_MINIMUM_FEE, client::getMinimumFeeSync));
+    }
+
+
+    /**
+     * Sends the transaction, whitelisting it first if a whitelist stage is given. Sends themselves are never retried on
+     * network errors since the first attempt may have gone through. The SDK reads the sequence number
+     * when a transaction is built, so one built before another send from the account went through is rejected with
+     * tx_bad_seq. We rebuild it with the current sequence number and send again instead of failing the caller.
+     */
+    private TransactionId sendWithResync(KinAccount account, PendingTransactionStore.Pending pending, WhitelistStage whitelistStage) throws Exception
+    {
+        Transaction transaction = pending.transaction;
+        for (int resyncs = 0; ; resyncs++) {
+            try {
+                final Transaction attempt = transaction;
+                if (whitelistStage == null)
+                    return _metrics.time(Metrics.SEND, () -> account.sendTransactionSync(attempt));
+
+                final String envelope = _metrics.time(Metrics.WHITELIST, () -> whitelistStage.whitelist(attempt.getWhitelistableTransaction()));
+                return _metrics.time(Metrics.SEND, () -> account.sendWhitelistTransactionSync(envelope));
+            }
+            catch (TransactionFailedException e) {
+                if (resyncs >= MAX_SEQUENCE_RESYNCS || !TX_BAD_SEQ.equals(e.getTransactionResultCode()))
+                    throw e;
+
+                Log.i(TAG, "sequence number went stale, rebuilding transaction to " + pending.toAddress);
+                transaction = build(account, pending.toAddress, pending.amount, pending.fee, pending.memo);
+            }
+        }
+    }
+
+
+    /**
+     * Runs the runnable on the write lane behind every other build and send of the account. If it gets rejected Unity
+     * gets failedMethod with the RejectedExecutionException.
+     */
+    private void runSerial(final String accountId, final String failedMethod, Runnable runnable)
+    {
+        _sendScheduler.submit(coalescingKey(accountId), runnable, e -> sendError(failedMethod, e, accountId));
+    }
+
+
+    /**
+     * makes sure expired transactions get dropped even if nothing else touches the store. At most one sweep is
+     * scheduled at a time and sweeps stop once the store is empty.
+     */
+    private synchronized void scheduleTransactionSweep()
+    {
+        if (_transactionSweep != null && !_transactionSweep.isDone())
+            return;
+
+        // a rejected sweep counts as done, the next transaction that is stored schedules another
+        _transactionSweep = _executor.schedule(PluginExecutor.Lane.READ, () -> {
+            if (_transactions.sweep() > 0)
+                scheduleTransactionSweep();
+        }, _transactions.ttlMillis(), e -> clearTransactionSweep());
+    }
+
+
+    private synchronized void clearTransactionSweep()
+    {
+        _transactionSweep = null;
+    }
+
+
+    private void scheduleMetricsDump(final int generation, final long intervalMillis)
+    {
+        _executor.schedule(PluginExecutor.Lane.READ, () -> {
+            synchronized (this) {
+                if (generation != _metricsDumpGeneration)
+                    return;
+            }
+
+            String snapshot = getMetricsSnapshot();
+            Log.i(TAG, "metrics: " + snapshot);
+            unitySendMessage("OnMetricsSnapshot", snapshot);
+            scheduleMetricsDump(generation, intervalMillis);
+        }, intervalMillis, e -> metricsDumpRejected(generation, intervalMillis));
+    }
+
+
+    /**
+     * skips the dump the read lane rejected and keeps the interval going, unless dumping was turned off meanwhile
+     */
+    private void metricsDumpRejected(int generation, long intervalMillis)
+    {
+        synchronized (this) {
+            if (generation != _metricsDumpGeneration)
+                return;
+        }
+
+        Log.w(TAG, "skipped a metrics dump");
+        scheduleMetricsDump(generation, intervalMillis);
+    }
+
+
+    /**
+     * caches an account under accountId and indexes it by public address. clientId may be null when it isn't known.
+     */
+    private void cacheAccount(String clientId, String accountId, KinAccount account)
+    {
+        _accounts.put(accountId, account);
+        if (clientId != null)
+            _accountClients.put(accountId, clientId);
+        _accountIndex.put(accountId, account.getPublicAddress());
+    }
+
+
+    /**
+     * Gets the id of the first account that equals to the given account
+     * (There should only be one in any case)
+     */
+    protected String getAccountIdByAccount(KinAccount kinAccount)
+    {
+        return _accountIndex.firstId(kinAccount.getPublicAddress());
     }
 }
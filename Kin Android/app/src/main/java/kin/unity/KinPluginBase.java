@@ -2,15 +2,14 @@ package kin.unity;
 
 
 import android.app.Activity;
+import android.util.Base64;
 import android.util.Log;
 import android.widget.Toast;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.List;
 import java.util.UUID;
 
 import kin.sdk.PaymentInfo;
@@ -21,10 +20,21 @@ abstract class KinPluginBase
 {
 	static final String TAG = "KinUnity";
 
+	// method of a drained event whose parameter is a Base64 BinaryCodec frame carrying the actual event, see drainEvents
+	static final String FRAME_EVENT = "_BinaryFrame";
+
 	private Class<?> _unityPlayerClass;
 	private Field _unityPlayerActivityField;
 	private Method _unitySendMessageMethod;
 
+	// when Unity registers a listener events skip UnitySendMessage and wait in this buffer until Unity drains them
+	private static final int INITIAL_EVENT_CAPACITY = 256;
+	private final EventRingBuffer _events = new EventRingBuffer( INITIAL_EVENT_CAPACITY );
+	private volatile KinEventListener _eventListener;
+
+	// latency, bridge and listener counters, off unless Unity enables them
+	protected final Metrics _metrics = new Metrics();
+
 	// this can be set manually for the use case of testing outside of Unity
 	public Activity _fallbackActivity;
 
@@ -80,7 +90,180 @@ abstract class KinPluginBase
 
 
 	/**
-	 * calls through to UnitySendMessage
+	 * registers the Unity side listener that switches event delivery over to the ring buffer. Pass null to go back to
+	 * UnitySendMessage.
+	 * @param listener
+	 */
+	public void setEventListener( KinEventListener listener )
+	{
+		_eventListener = listener;
+	}
+
+
+	/**
+	 * removes up to max queued events, called by Unity once per frame when no client uses the binary format
+	 * @param max
+	 * @return the events flattened as method, parameter, method, parameter... A binary event queued before Unity switched
+	 * to frames comes back as FRAME_EVENT with a one event frame in Base64, Unity decodes it like drainEventFrame.
+	 */
+	public String[] drainEvents( int max )
+	{
+		Object[] events = _events.drain( max );
+		String[] strings = new String[events.length];
+		for( int i = 0; i < events.length; i += 2 )
+		{
+			if( events[i + 1] instanceof String )
+			{
+				strings[i] = (String)events[i];
+				strings[i + 1] = (String)events[i + 1];
+			}
+			else
+			{
+				byte[] frame = BinaryCodec.frame( new Object[] { events[i], events[i + 1] } );
+				strings[i] = FRAME_EVENT;
+				strings[i + 1] = Base64.encodeToString( frame, Base64.NO_WRAP );
+			}
+		}
+
+		return strings;
+	}
+
+
+	/**
+	 * removes up to max queued events and packs them into a single BinaryCodec frame, used by Unity once any client
+	 * has switched to the binary format
+	 * @param max
+	 * @return
+	 */
+	public byte[] drainEventFrame( int max )
+	{
+		return BinaryCodec.frame( _events.drain( Math.min( max, BinaryCodec.MAX_EVENTS_PER_FRAME ) ) );
+	}
+
+
+	/**
+	 * whether events routed to id (an accountId or clientId) should be sent in the binary format
+	 * @param id
+	 * @return
+	 */
+	protected boolean useBinaryFormat( String id )
+	{
+		return false;
+	}
+
+
+	/**
+	 * sends a CallbackParam shaped event in the format chosen for accountId
+	 */
+	protected void sendCallback( String method, String value, String accountId )
+	{
+		if( _eventListener != null && useBinaryFormat( accountId ) )
+			queueEvent( method, BinaryCodec.callback( value, accountId ) );
+		else
+			unitySendMessage( method, callbackToJson( value, accountId ) );
+	}
+
+
+	/**
+	 * sends an exception in the format chosen for accountId
+	 */
+	protected void sendError( String method, Exception ex, String accountId )
+	{
+		if( _eventListener != null && useBinaryFormat( accountId ) )
+			queueEvent( method, BinaryCodec.error( ex, accountId ) );
+		else
+			unitySendMessage( method, exceptionToJson( ex, accountId ) );
+	}
+
+
+	/**
+	 * sends an OnPayment event in the format chosen for accountId
+	 */
+	protected void sendPayment( PaymentInfo payment, String accountId )
+	{
+		if( _eventListener != null && useBinaryFormat( accountId ) )
+			queueEvent( "OnPayment", BinaryCodec.payment( payment, accountId ) );
+		else
+			unitySendMessage( "OnPayment", paymentInfoToJson( payment, accountId ) );
+	}
+
+
+	/**
+	 * sends several payments of accountId as a single OnPayments event in the format chosen for accountId
+	 */
+	protected void sendPayments( List<PaymentInfo> payments, String accountId )
+	{
+		if( payments.size() == 1 )
+		{
+			sendPayment( payments.get( 0 ), accountId );
+			return;
+		}
+
+		if( _eventListener != null && useBinaryFormat( accountId ) )
+		{
+			queueEvent( "OnPayments", BinaryCodec.payments( payments, accountId ) );
+			return;
+		}
+
+		String json;
+		JsonWriter writer = JsonWriter.obtain().beginObject().beginArray( "Payments" );
+		try
+		{
+			for( PaymentInfo payment : payments )
+				writePaymentInfo( writer.beginObject(), payment, accountId ).endObject();
+
+			json = writer.endArray().endObject().finish();
+		}
+		finally
+		{
+			writer.release();
+		}
+
+		unitySendMessage( "OnPayments", json );
+	}
+
+
+	/**
+	 * sends a Transaction in the format chosen for accountId
+	 */
+	protected void sendTransaction( String method, Transaction transaction, String accountId )
+	{
+		if( _eventListener != null && useBinaryFormat( accountId ) )
+			queueEvent( method, BinaryCodec.transaction( transaction, accountId ) );
+		else
+			unitySendMessage( method, transactionToJson( transaction, accountId ) );
+	}
+
+
+	/**
+	 * adds an event to the buffer Unity drains and wakes Unity up if the buffer was empty
+	 */
+	private void queueEvent( String method, Object payload )
+	{
+		KinEventListener listener = _eventListener;
+		if( listener == null )
+			return;
+
+		if( _metrics.isEnabled() )
+			_metrics.onBridgeMessage( payload instanceof byte[] ? ( (byte[])payload ).length : ( (String)payload ).length() );
+
+		// only the first event after a drain needs to wake Unity up
+		if( _events.push( method, payload ) )
+		{
+			try
+			{
+				listener.onEventsAvailable();
+			}
+			catch( Exception e )
+			{
+				Log.i( TAG, "error notifying event listener: " + e.getMessage() );
+			}
+		}
+	}
+
+
+	/**
+	 * calls through to UnitySendMessage or queues the event for Unity to drain if an event listener is registered
 	 * @param method
 	 * @param parameter
 	 */
@@ -89,9 +272,17 @@ abstract class KinPluginBase
 		if( parameter == null )
 			parameter = "";
 
+		if( _eventListener != null )
+		{
+			queueEvent( method, parameter );
+			return;
+		}
+
 		// Try for the real UnitySendMessage first
 		if( _unitySendMessageMethod != null )
 		{
+			_metrics.onBridgeMessage( parameter.length() );
+
 			try
 			{
 				_unitySendMessageMethod.invoke( null, "KinManager", method, parameter );
@@ -144,52 +335,126 @@ abstract class KinPluginBase
 	 */
 	protected String paymentInfoToJson( PaymentInfo payment, String accountId )
 	{
-		JSONObject json = new JSONObject();
-
+		JsonWriter writer = JsonWriter.obtain().beginObject();
 		try
 		{
-			json.put( "_Amount", payment.amount().toString() );
-			json.put( "CreatedAt", payment.createdAt() );
-			json.put( "DestinationPublicKey", payment.destinationPublicKey() );
-			json.put( "SourcePublicKey", payment.sourcePublicKey() );
-			json.put( "Hash", payment.hash().id() );
-			json.put( "Memo", payment.memo() );
-
-			json.put( "AccountId", accountId );
+			return writePaymentInfo( writer, payment, accountId )
+				.endObject()
+				.finish();
 		}
-		catch( JSONException e )
+		finally
 		{
-			e.printStackTrace();
+			writer.release();
 		}
+	}
+
 
-		return json.toString();
+	/**
+	 * writes the PaymentInfo fields into the currently open object
+	 */
+	private static JsonWriter writePaymentInfo( JsonWriter writer, PaymentInfo payment, String accountId )
+	{
+		return writer
+			.put( "_Amount", payment.amount().toString() )
+			.put( "CreatedAt", payment.createdAt() )
+			.put( "DestinationPublicKey", payment.destinationPublicKey() )
+			.put( "SourcePublicKey", payment.sourcePublicKey() )
+			.put( "Hash", payment.hash().id() )
+			.put( "Memo", payment.memo() )
+			.put( "AccountId", accountId );
 	}
 
 
 	/**
-	 * Converts an Exception into JSON
-	 * @param ex
+	 * Converts a page of payment history to JSON. Payments use the PaymentInfo fields so Unity can reuse its PaymentInfo.
+	 * @param page
 	 * @param accountId
 	 * @return
 	 */
-	protected String exceptionToJson( Exception ex, String accountId )
+	protected String paymentHistoryToJson( PaymentHistory.Page page, String accountId )
 	{
-		JSONObject json = new JSONObject();
+		JsonWriter json = JsonWriter.obtain()
+			.beginObject()
+			.put( "AccountId", accountId )
+			.put( "NextCursor", page.nextCursor )
+			.put( "HasMore", page.hasMore )
+			.put( "Stale", page.stale )
+			.beginArray( "Payments" );
+
+		for( PaymentHistory.Payment payment : page.payments )
+			putPayment( json, payment, accountId, null );
+
+		return json.endArray().endObject().finish();
+	}
 
-		try
-		{
-			json.put( "Message", ex.getMessage() );
-			json.put( "NativeType", ex.getClass().getSimpleName() );
 
-			if( accountId != null )
-				json.put( "AccountId", accountId );
-		}
-		catch( JSONException e )
-		{
-			e.printStackTrace();
-		}
+	/**
+	 * payments read from Horizon in the OnPayments format of the listeners
+	 */
+	protected String paymentsToJson( List<PaymentHistory.Payment> payments, String accountId )
+	{
+		JsonWriter json = JsonWriter.obtain()
+			.beginObject()
+			.beginArray( "Payments" );
+
+		for( PaymentHistory.Payment payment : payments )
+			putPayment( json, payment, accountId, null );
+
+		return json.endArray().endObject().finish();
+	}
+
+
+	/**
+	 * payments of a subscription, each with its paging token so Unity can acknowledge it
+	 */
+	protected String subscriptionPaymentsToJson( String subscriptionId, String accountId, List<PaymentHistory.Payment> payments, long dropped )
+	{
+		JsonWriter json = JsonWriter.obtain()
+			.beginObject()
+			.put( "SubscriptionId", subscriptionId )
+			.put( "Dropped", dropped )
+			.beginArray( "Payments" );
+
+		for( PaymentHistory.Payment payment : payments )
+			putPayment( json, payment, accountId, Long.toString( payment.token ) );
+
+		return json.endArray().endObject().finish();
+	}
+
 
-		return json.toString();
+	/**
+	 * @param pagingToken left out when null
+	 */
+	private static void putPayment( JsonWriter json, PaymentHistory.Payment payment, String accountId, String pagingToken )
+	{
+		json.beginObject()
+			.put( "_Amount", payment.amount )
+			.put( "CreatedAt", payment.createdAt )
+			.put( "DestinationPublicKey", payment.to )
+			.put( "SourcePublicKey", payment.from )
+			.put( "Hash", payment.hash )
+			.put( "Memo", payment.memo )
+			.put( "AccountId", accountId )
+			.put( "PagingToken", pagingToken )
+			.endObject();
+	}
+
+
+	/**
+	 * Converts an Exception into JSON
+	 * @param ex
+	 * @param accountId
+	 * @return
+	 */
+	protected String exceptionToJson( Exception ex, String accountId )
+	{
+		return JsonWriter.obtain()
+			.beginObject()
+			.put( "Message", ex.getMessage() )
+			.put( "NativeType", ex.getClass().getSimpleName() )
+			.put( "AccountId", accountId )
+			.endObject()
+			.finish();
 	}
 
 
@@ -201,19 +466,92 @@ abstract class KinPluginBase
 	 */
 	protected String callbackToJson( String value, String accountId )
 	{
-		JSONObject json = new JSONObject();
+		return JsonWriter.obtain()
+			.beginObject()
+			.put( "Value", value )
+			.put( "AccountId", accountId )
+			.endObject()
+			.finish();
+	}
 
-		try
+
+	/**
+	 * Converts a cached balance and its age with accountId to JSON
+	 * @param value
+	 * @param ageMillis
+	 * @param accountId
+	 * @return
+	 */
+	protected String balanceToJson( String value, long ageMillis, String accountId )
+	{
+		return JsonWriter.obtain()
+			.beginObject()
+			.put( "Value", value )
+			.put( "AgeMillis", ageMillis )
+			.put( "AccountId", accountId )
+			.endObject()
+			.finish();
+	}
+
+
+	/**
+	 * Converts the results of a BatchRequest to JSON. Failed items carry their exception JSON in Error.
+	 * @param batch
+	 * @return
+	 */
+	protected String batchToJson( BatchRequest batch )
+	{
+		JsonWriter json = JsonWriter.obtain()
+			.beginObject()
+			.put( "BatchId", batch.batchId )
+			.beginArray( "Items" );
+
+		for( int i = 0; i < batch.accountIds.length; i++ )
 		{
-			json.put( "Value", value );
-			json.put( "AccountId", accountId );
+			json.beginObject().put( "AccountId", batch.accountIds[i] );
+
+			if( batch.errors[i] != null )
+				json.put( "Error", exceptionToJson( batch.errors[i], batch.accountIds[i] ) );
+			else
+				json.put( "Value", batch.values[i] );
+
+			json.endObject();
 		}
-		catch( JSONException e )
+
+		return json.endArray().endObject().finish();
+	}
+
+
+	/**
+	 * Converts the results of payments from index from (inclusive) to to (exclusive) in a PaymentBatch to JSON
+	 * @param batch
+	 * @param from
+	 * @param to
+	 * @return
+	 */
+	protected String paymentBatchToJson( PaymentBatch batch, int from, int to )
+	{
+		JsonWriter json = JsonWriter.obtain()
+			.beginObject()
+			.put( "BatchId", batch.batchId )
+			.put( "AccountId", batch.accountId )
+			.put( "Total", batch.payments.size() )
+			.beginArray( "Items" );
+
+		for( int i = from; i < to; i++ )
 		{
-			e.printStackTrace();
+			PaymentBatch.Payment payment = batch.payments.get( i );
+			json.beginObject().put( "Index", payment.index );
+
+			if( payment.error != null )
+				json.put( "Error", exceptionToJson( payment.error, batch.accountId ) );
+			else
+				json.put( "TransactionId", payment.transactionId );
+
+			json.endObject();
 		}
 
-		return json.toString();
+		return json.endArray().endObject().finish();
 	}
 
 
@@ -225,21 +563,22 @@ abstract class KinPluginBase
 	 */
 	protected String transactionToJson( Transaction transaction, String accountId )
 	{
-		JSONObject json = new JSONObject();
-
+		JsonWriter writer = JsonWriter.obtain();
 		try
 		{
-			json.put( "AccountId", accountId );
-			json.put( "Id", transaction.getId().id() );
-			json.put( "WhitelistableTransactionPayLoad", transaction.getWhitelistableTransaction().getTransactionPayload() );
-			json.put( "WhitelistableTransactionNetworkPassphrase", transaction.getWhitelistableTransaction().getNetworkPassphrase() );
+			return writer
+				.beginObject()
+				.put( "AccountId", accountId )
+				.put( "Id", transaction.getId().id() )
+				.put( "WhitelistableTransactionPayLoad", transaction.getWhitelistableTransaction().getTransactionPayload() )
+				.put( "WhitelistableTransactionNetworkPassphrase", transaction.getWhitelistableTransaction().getNetworkPassphrase() )
+				.endObject()
+				.finish();
 		}
-		catch( JSONException e )
+		finally
 		{
-			e.printStackTrace();
+			writer.release();
 		}
-
-		return json.toString();
 	}
 
 	/**
@@ -0,0 +1,618 @@
+package kin.unity;
+
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+
+import kin.sdk.AccountStatus;
+import kin.sdk.Balance;
+import kin.sdk.KinAccount;
+import kin.sdk.ListenerRegistration;
+import kin.sdk.PaymentInfo;
+
+
+/**
+ * Owns every native payment, balance and account creation listener. Each SDK listener holds its own Horizon stream so
+ * the hub opens at most one stream per address and event type and fans its events out to every accountId subscribed to
+ * that address. Subscriptions are reference counted by accountId and the stream is closed with the last one.
+ *
+ * Only maxStreams streams are kept open. Balance and account creation subscriptions past the limit are served by a
+ * single poller that checks all of them in one pass and backs off while the network is failing, and they get promoted
+ * to a stream once one frees up. Payment subscriptions always get a stream since payments can't be recovered by polling.
+ * Reconnecting open streams is left to the SDK.
+ *
+ * While the app is in the background each subscription follows the BackgroundPolicy of its subscribers, the least
+ * aggressive one wins when several share an address. KEEP leaves it alone. THROTTLE closes its stream and polls balance
+ * and account creation subscriptions every background poll interval instead. SUSPEND closes its stream and doesn't poll
+ * at all. Back in the foreground the streams are reopened, balance and account creation subscriptions are polled once
+ * to pick up what changed meanwhile and the sink catches up on the payments that were missed.
+ */
+final class ListenerHub {
+
+    static final int DEFAULT_MAX_STREAMS = 32;
+    static final long DEFAULT_POLL_INTERVAL_MILLIS = 10 * 1000;
+    static final long MAX_POLL_INTERVAL_MILLIS = 2 * 60 * 1000;
+
+    // background modes, mirrored by the BackgroundMode enum in C#. Ordered from least to most aggressive.
+    static final int BACKGROUND_KEEP = 0;
+    static final int BACKGROUND_THROTTLE = 1;
+    static final int BACKGROUND_SUSPEND = 2;
+
+    static final long DEFAULT_BACKGROUND_POLL_INTERVAL_MILLIS = 60 * 1000;
+    static final long MAX_BACKGROUND_POLL_INTERVAL_MILLIS = 30 * 60 * 1000;
+    static final BackgroundPolicy DEFAULT_BACKGROUND_POLICY = new BackgroundPolicy(BACKGROUND_THROTTLE, DEFAULT_BACKGROUND_POLL_INTERVAL_MILLIS);
+
+    private static final String[] NO_IDS = new String[0];
+
+
+    enum Type {
+        PAYMENT,
+        BALANCE,
+        ACCOUNT_CREATION
+    }
+
+
+    /**
+     * what happens to the subscriptions of a subscriber while the app is in the background
+     */
+    static final class BackgroundPolicy {
+        final int mode;
+        final long pollIntervalMillis;
+
+        BackgroundPolicy(int mode, long pollIntervalMillis)
+        {
+            if (mode < BACKGROUND_KEEP || mode > BACKGROUND_SUSPEND)
+                throw new IllegalArgumentException("unknown background mode " + mode);
+            if (pollIntervalMillis < 1 || pollIntervalMillis > MAX_BACKGROUND_POLL_INTERVAL_MILLIS)
+                throw new IllegalArgumentException("pollInterval must be between 1ms and " + MAX_BACKGROUND_POLL_INTERVAL_MILLIS + "ms");
+
+            this.mode = mode;
+            this.pollIntervalMillis = pollIntervalMillis;
+        }
+    }
+
+
+    /**
+     * receives the events of every subscription, once per event for all accountIds watching the address
+     */
+    interface Sink {
+        void onPayment(String address, String[] accountIds, PaymentInfo payment);
+
+        void onBalance(String address, String[] accountIds, String balance);
+
+        void onAccountCreated(String address, String[] accountIds);
+
+        /**
+         * called when a stream of type for address opens or closes, polled subscriptions don't count as a stream
+         */
+        void onStream(Type type, String address, boolean open);
+
+        /**
+         * the policy of the subscriber, called with the hub locked so it must not block
+         */
+        BackgroundPolicy backgroundPolicy(String accountId);
+
+        /**
+         * called before the payment stream of address is closed for the background, on the thread that moved the hub
+         * to the background. Returning false keeps the stream open, for when the missed payments couldn't be found later.
+         */
+        boolean onSuspendPayments(String address, String[] accountIds);
+
+        /**
+         * called with the hub locked right before the payment stream of address is reopened in the foreground, so it
+         * must not block
+         */
+        void onResumePayments(String address, String[] accountIds);
+    }
+
+
+    private static final class Subscription {
+        final Type type;
+        final String address;
+        final KinAccount account;
+
+        // copy-on-write so stream callbacks can read it without locking
+        volatile String[] accountIds = NO_IDS;
+
+        // null while the subscription is polled
+        ListenerRegistration registration;
+
+        // poller state, also set by the streams so a catch up poll doesn't repeat what they delivered
+        volatile String lastBalance;
+        volatile boolean created;
+        long dueAt;
+
+        // the stream was closed for the background and is reopened in the foreground
+        boolean suspended;
+
+        // polled once even though it has a stream, to pick up what changed while it was suspended
+        boolean catchUp;
+
+        Subscription(Type type, String address, KinAccount account)
+        {
+            this.type = type;
+            this.address = address;
+            this.account = account;
+        }
+    }
+
+
+    private final PluginExecutor _executor;
+    private final Sink _sink;
+
+    // by type and address, in the order they were subscribed so the oldest polled subscriptions are promoted first
+    private final LinkedHashMap<String, Subscription> _subscriptions = new LinkedHashMap<>();
+
+    // by type and accountId
+    private final HashMap<String, Subscription> _byAccount = new HashMap<>();
+
+    private int _maxStreams = DEFAULT_MAX_STREAMS;
+    private long _pollIntervalMillis = DEFAULT_POLL_INTERVAL_MILLIS;
+    private int _streams;
+    private int _pollFailures;
+    private ScheduledFuture<?> _poll;
+    private long _pollAt;
+    private boolean _polling;
+    private boolean _background;
+
+    // bumped by every move to the background or foreground so a slow move can tell it was overtaken
+    private int _generation;
+
+
+    ListenerHub(PluginExecutor executor, Sink sink)
+    {
+        _executor = executor;
+        _sink = sink;
+    }
+
+
+    /**
+     * sets the stream limit and poll interval. Streams that are already open stay open if the limit is lowered, raising
+     * it promotes polled subscriptions right away.
+     */
+    synchronized void configure(int maxStreams, long pollIntervalMillis)
+    {
+        if (maxStreams < 0)
+            throw new IllegalArgumentException("maxStreams can not be negative");
+        if (pollIntervalMillis < 1 || pollIntervalMillis > MAX_POLL_INTERVAL_MILLIS)
+            throw new IllegalArgumentException("pollInterval must be between 1ms and " + MAX_POLL_INTERVAL_MILLIS + "ms");
+
+        _maxStreams = maxStreams;
+        _pollIntervalMillis = pollIntervalMillis;
+        promote();
+    }
+
+
+    /**
+     * subscribes accountId to the events of type for the account's address. Subscribing twice is a no-op.
+     */
+    synchronized void subscribe(Type type, String accountId, KinAccount account)
+    {
+        if (_byAccount.containsKey(key(type, accountId)))
+            return;
+
+        String address = account.getPublicAddress();
+        Subscription subscription = _subscriptions.get(key(type, address));
+        boolean added = subscription == null;
+        if (added) {
+            subscription = new Subscription(type, address, account);
+            _subscriptions.put(key(type, address), subscription);
+        }
+
+        String[] ids = subscription.accountIds;
+        String[] updated = new String[ids.length + 1];
+        System.arraycopy(ids, 0, updated, 0, ids.length);
+        updated[ids.length] = accountId;
+        subscription.accountIds = updated;
+
+        _byAccount.put(key(type, accountId), subscription);
+        if (!added)
+            return;
+
+        // payment streams opened in the background stay open, there is no payment yet to catch up from
+        if (_background && type != Type.PAYMENT && backgroundMode(subscription) != BACKGROUND_KEEP)
+            subscription.suspended = true;
+        else if (type == Type.PAYMENT || _streams < _maxStreams)
+            open(subscription);
+
+        scheduleNextPoll();
+    }
+
+
+    /**
+     * drops the subscription of accountId and closes the stream once no accountId is watching the address anymore
+     */
+    synchronized void unsubscribe(Type type, String accountId)
+    {
+        Subscription subscription = _byAccount.remove(key(type, accountId));
+        if (subscription == null)
+            return;
+
+        String[] ids = subscription.accountIds;
+        if (ids.length > 1) {
+            String[] updated = new String[ids.length - 1];
+            int i = 0;
+            for (String id : ids) {
+                if (!id.equals(accountId))
+                    updated[i++] = id;
+            }
+            subscription.accountIds = updated;
+            return;
+        }
+
+        subscription.accountIds = NO_IDS;
+        _subscriptions.remove(key(type, subscription.address));
+        if (subscription.registration != null) {
+            close(subscription);
+            promote();
+        }
+    }
+
+
+    /**
+     * Moves the hub to the background or back to the foreground. The payment streams are closed one at a time after
+     * the sink had its say, so going to the background blocks on whatever the sink does and must not be called on the
+     * UI thread. A policy
+     * that changes only applies from the next move to the background.
+     */
+    void setBackground(boolean background)
+    {
+        if (background)
+            enterBackground();
+        else
+            enterForeground();
+    }
+
+
+    /**
+     * schedules polling again after a plugin restart dropped the pending pass
+     */
+    synchronized void resume()
+    {
+        scheduleNextPoll();
+    }
+
+
+    /**
+     * @return {"Streams","MaxStreams","Polled","Subscribers","PollFailures","Background","Suspended"} as JSON, mirrored
+     * by ListenerStats in C#
+     */
+    synchronized String statsToJson()
+    {
+        int suspended = 0;
+        for (Subscription subscription : _subscriptions.values()) {
+            if (subscription.suspended)
+                suspended++;
+        }
+
+        return JsonWriter.obtain()
+                .beginObject()
+                .put("Streams", _streams)
+                .put("MaxStreams", _maxStreams)
+                .put("Polled", _subscriptions.size() - _streams - suspended)
+                .put("Subscribers", _byAccount.size())
+                .put("PollFailures", _pollFailures)
+                .put("Background", _background)
+                .put("Suspended", suspended)
+                .endObject()
+                .finish();
+    }
+
+
+    private void enterBackground()
+    {
+        List<Subscription> payments = new ArrayList<>();
+        int generation;
+        synchronized (this) {
+            if (_background)
+                return;
+
+            _background = true;
+            generation = ++_generation;
+            long now = SystemClock.elapsedRealtime();
+            for (Subscription subscription : _subscriptions.values()) {
+                if (subscription.registration == null || backgroundMode(subscription) == BACKGROUND_KEEP)
+                    continue;
+
+                if (subscription.type == Type.PAYMENT)
+                    payments.add(subscription);
+                else
+                    suspend(subscription, now);
+            }
+            scheduleNextPoll();
+        }
+
+        for (Subscription subscription : payments) {
+            if (!_sink.onSuspendPayments(subscription.address, subscription.accountIds)) {
+                Log.i(KinPluginBase.TAG, "keeping the payment stream of " + subscription.address + " open in the background");
+                continue;
+            }
+
+            synchronized (this) {
+                // back in the foreground or unsubscribed meanwhile
+                if (generation != _generation)
+                    return;
+                if (subscription.registration == null)
+                    continue;
+
+                suspend(subscription, SystemClock.elapsedRealtime());
+            }
+        }
+    }
+
+
+    private synchronized void enterForeground()
+    {
+        if (!_background)
+            return;
+
+        _background = false;
+        _generation++;
+        for (Subscription subscription : _subscriptions.values()) {
+            // throttled and suspended pollers are due right away
+            subscription.dueAt = 0;
+            if (!subscription.suspended)
+                continue;
+
+            subscription.suspended = false;
+            if (subscription.type == Type.PAYMENT) {
+                _sink.onResumePayments(subscription.address, subscription.accountIds);
+                open(subscription);
+            }
+            else {
+                if (_streams < _maxStreams)
+                    open(subscription);
+                subscription.catchUp = true;
+            }
+        }
+        promote();
+        scheduleNextPoll();
+    }
+
+
+    private void suspend(Subscription subscription, long now)
+    {
+        close(subscription);
+        subscription.suspended = true;
+        subscription.dueAt = now + pollInterval(subscription);
+    }
+
+
+    /**
+     * @return the least aggressive mode of the subscribers of subscription
+     */
+    private int backgroundMode(Subscription subscription)
+    {
+        String[] ids = subscription.accountIds;
+        int mode = ids.length > 0 ? BACKGROUND_SUSPEND : BACKGROUND_KEEP;
+        for (String id : ids)
+            mode = Math.min(mode, _sink.backgroundPolicy(id).mode);
+
+        return mode;
+    }
+
+
+    /**
+     * @return how often subscription is polled right now, the shortest background interval of its throttling
+     * subscribers while in the background
+     */
+    private long pollInterval(Subscription subscription)
+    {
+        if (!_background)
+            return _pollIntervalMillis;
+
+        long interval = Long.MAX_VALUE;
+        for (String id : subscription.accountIds) {
+            BackgroundPolicy policy = _sink.backgroundPolicy(id);
+            if (policy.mode == BACKGROUND_KEEP)
+                return _pollIntervalMillis;
+            if (policy.mode == BACKGROUND_THROTTLE)
+                interval = Math.min(interval, policy.pollIntervalMillis);
+        }
+
+        return Math.max(_pollIntervalMillis, interval);
+    }
+
+
+    /**
+     * @return whether the poller looks at subscription at all right now, regardless of when it is due
+     */
+    private boolean isPolled(Subscription subscription)
+    {
+        // a polled account creation that already fired has nothing left to listen for
+        if (subscription.type == Type.PAYMENT || subscription.created)
+            return false;
+        if (subscription.catchUp)
+            return true;
+        if (subscription.registration != null)
+            return false;
+
+        return !_background || backgroundMode(subscription) != BACKGROUND_SUSPEND;
+    }
+
+
+    private void open(final Subscription subscription)
+    {
+        switch (subscription.type) {
+            case PAYMENT:
+                subscription.registration = subscription.account.addPaymentListener(
+                        payment -> _sink.onPayment(subscription.address, subscription.accountIds, payment));
+                break;
+            case BALANCE:
+                subscription.registration = subscription.account.addBalanceListener((Balance balance) -> {
+                    subscription.lastBalance = balance.value().toString();
+                    _sink.onBalance(subscription.address, subscription.accountIds, subscription.lastBalance);
+                });
+                break;
+            case ACCOUNT_CREATION:
+                subscription.registration = subscription.account.addAccountCreationListener(data -> {
+                    subscription.created = true;
+                    _sink.onAccountCreated(subscription.address, subscription.accountIds);
+                });
+                break;
+        }
+
+        _streams++;
+        _sink.onStream(subscription.type, subscription.address, true);
+    }
+
+
+    private void close(Subscription subscription)
+    {
+        subscription.registration.remove();
+        subscription.registration = null;
+        _streams--;
+        _sink.onStream(subscription.type, subscription.address, false);
+    }
+
+
+    /**
+     * moves polled subscriptions over to streams while we are below the limit
+     */
+    private void promote()
+    {
+        for (Subscription subscription : _subscriptions.values()) {
+            if (_streams >= _maxStreams)
+                return;
+
+            // a polled account creation that already fired has nothing left to listen for. Subscriptions that are
+            // throttled or suspended in the background wait for the foreground.
+            if (subscription.registration == null && !subscription.created && !subscription.suspended
+                    && (!_background || backgroundMode(subscription) == BACKGROUND_KEEP)) {
+                Log.i(KinPluginBase.TAG, "promoting polled " + subscription.type + " listener of " + subscription.address + " to a stream");
+                open(subscription);
+            }
+        }
+    }
+
+
+    /**
+     * schedules the next pass for the subscription that is due first. A pass that is running reschedules itself at the
+     * end, a scheduled pass is only moved if it is due later.
+     */
+    private void scheduleNextPoll()
+    {
+        if (_polling)
+            return;
+
+        long next = Long.MAX_VALUE;
+        for (Subscription subscription : _subscriptions.values()) {
+            if (isPolled(subscription))
+                next = Math.min(next, subscription.catchUp ? 0 : subscription.dueAt);
+        }
+        if (next == Long.MAX_VALUE)
+            return;
+
+        long now = SystemClock.elapsedRealtime();
+        next = Math.max(next, now);
+        if (_poll != null && !_poll.isDone()) {
+            if (_pollAt <= next)
+                return;
+            _poll.cancel(false);
+        }
+
+        schedulePoll(next, now);
+    }
+
+
+    private void schedulePoll(long at, long now)
+    {
+        final ScheduledFuture<?>[] poll = new ScheduledFuture<?>[1];
+        _pollAt = at;
+        _poll = poll[0] = _executor.schedule(PluginExecutor.Lane.READ, this::poll, at - now, e -> pollRejected(poll, e));
+    }
+
+
+    /**
+     * a pass the read lane rejects counts as a failed pass, polling is retried after the backoff so the subscriptions
+     * don't go quiet
+     */
+    private synchronized void pollRejected(ScheduledFuture<?>[] poll, RejectedExecutionException e)
+    {
+        // the pass was moved and a newer one is pending
+        if (_poll != poll[0])
+            return;
+
+        _pollFailures++;
+        long delay = Math.min(Math.max(MAX_POLL_INTERVAL_MILLIS, _pollIntervalMillis), _pollIntervalMillis << Math.min(_pollFailures, 10));
+        Log.w(KinPluginBase.TAG, "a listener poll was rejected, retrying in " + delay + "ms: " + e.getMessage());
+
+        long now = SystemClock.elapsedRealtime();
+        schedulePoll(now + delay, now);
+    }
+
+
+    /**
+     * checks every polled subscription that is due once. A pass where any request failed doubles the delay before the
+     * next one.
+     */
+    private void poll()
+    {
+        List<Subscription> polled = new ArrayList<>();
+        synchronized (this) {
+            // a pass that was moved earlier may already be running, it reschedules when it is done
+            if (_polling)
+                return;
+
+            // the timer may not have marked this pass done yet, it must not look pending when the pass reschedules
+            _poll = null;
+            _polling = true;
+            long now = SystemClock.elapsedRealtime();
+            for (Subscription subscription : _subscriptions.values()) {
+                if (isPolled(subscription) && (subscription.catchUp || subscription.dueAt <= now)) {
+                    subscription.catchUp = false;
+                    polled.add(subscription);
+                }
+            }
+        }
+
+        boolean failed = false;
+        try {
+            for (Subscription subscription : polled) {
+                try {
+                    if (subscription.type == Type.BALANCE) {
+                        String balance = subscription.account.getBalanceSync().value().toString();
+                        if (!balance.equals(subscription.lastBalance)) {
+                            subscription.lastBalance = balance;
+                            _sink.onBalance(subscription.address, subscription.accountIds, balance);
+                        }
+                    }
+                    else if (subscription.account.getStatusSync() == AccountStatus.CREATED) {
+                        subscription.created = true;
+                        _sink.onAccountCreated(subscription.address, subscription.accountIds);
+                    }
+                }
+                catch (Exception e) {
+                    Log.w(KinPluginBase.TAG, "polling " + subscription.type + " of " + subscription.address + " failed: " + e.getMessage());
+                    failed = true;
+                }
+            }
+        }
+        finally {
+            synchronized (this) {
+                _polling = false;
+                _pollFailures = failed ? _pollFailures + 1 : 0;
+
+                long now = SystemClock.elapsedRealtime();
+                for (Subscription subscription : polled) {
+                    long interval = pollInterval(subscription);
+                    subscription.dueAt = now + Math.min(Math.max(MAX_POLL_INTERVAL_MILLIS, interval), interval << Math.min(_pollFailures, 10));
+                }
+                scheduleNextPoll();
+            }
+        }
+    }
+
+
+    private static String key(Type type, String id)
+    {
+        return type.ordinal() + ":" + id;
+    }
+}
@@ -0,0 +1,243 @@
+package kin.unity;
+
+
+import android.os.SystemClock;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * Lock free counters for the plugin: a latency histogram and in flight count per operation, bridge message and byte
+ * counts and listener event counts. Everything is a no-op while disabled, which is the default, so the only cost left
+ * is a volatile read per call.
+ *
+ * Latencies go into fixed buckets and percentiles are reported as the upper bound of the bucket they fall in, which is
+ * plenty to tell a 50ms call from a 5s one without keeping samples around.
+ */
+final class Metrics {
+
+    // operations, the index into NAMES
+    static final int BUILD = 0;
+    static final int SEND = 1;
+    static final int WHITELIST = 2;
+    static final int GET_BALANCE = 3;
+    static final int GET_STATUS = 4;
+    static final int GET_MINIMUM_FEE = 5;
+    static final int IMPORT = 6;
+    static final int EXPORT = 7;
+    static final int GET_PAYMENT_HISTORY = 8;
+
+    private static final String[] NAMES = { "Build", "Send", "Whitelist", "GetBalance", "GetStatus", "GetMinimumFee",
+            "Import", "Export", "GetPaymentHistory" };
+
+    // upper bounds of the latency buckets in milliseconds, anything slower lands in one last overflow bucket
+    private static final long[] BUCKET_BOUNDS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000 };
+
+
+    interface Timed<T> {
+        T call() throws Exception;
+    }
+
+
+    private static final class Operation {
+        final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS.length + 1);
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong totalMillis = new AtomicLong();
+        final AtomicLong maxMillis = new AtomicLong();
+        final AtomicInteger inFlight = new AtomicInteger();
+    }
+
+
+    private volatile boolean _enabled;
+    private volatile long _since = SystemClock.elapsedRealtime();
+    private final Operation[] _operations = new Operation[NAMES.length];
+
+    private final AtomicLong _bridgeMessages = new AtomicLong();
+    private final AtomicLong _bridgeBytes = new AtomicLong();
+    private final AtomicLong _paymentEvents = new AtomicLong();
+    private final AtomicLong _balanceEvents = new AtomicLong();
+    private final AtomicLong _accountCreationEvents = new AtomicLong();
+
+
+    Metrics()
+    {
+        for (int i = 0; i < _operations.length; i++)
+            _operations[i] = new Operation();
+    }
+
+
+    /**
+     * enabling starts over from zero, disabling keeps the numbers so they can still be read
+     */
+    synchronized void setEnabled(boolean enabled)
+    {
+        if (enabled && !_enabled)
+            reset();
+
+        _enabled = enabled;
+    }
+
+
+    boolean isEnabled()
+    {
+        return _enabled;
+    }
+
+
+    /**
+     * runs call and records how long it took and whether it threw under operation
+     */
+    <T> T time(int operation, Timed<T> call) throws Exception
+    {
+        if (!_enabled)
+            return call.call();
+
+        Operation op = _operations[operation];
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        op.inFlight.incrementAndGet();
+        try {
+            T result = call.call();
+            succeeded = true;
+            return result;
+        }
+        finally {
+            op.inFlight.decrementAndGet();
+            record(op, (System.nanoTime() - start) / 1000000, succeeded);
+        }
+    }
+
+
+    /**
+     * counts a message sent to Unity, size is the JSON length in chars or the binary body length in bytes
+     */
+    void onBridgeMessage(int size)
+    {
+        if (!_enabled)
+            return;
+
+        _bridgeMessages.incrementAndGet();
+        _bridgeBytes.addAndGet(size);
+    }
+
+
+    void onPaymentEvent()
+    {
+        if (_enabled)
+            _paymentEvents.incrementAndGet();
+    }
+
+
+    void onBalanceEvent()
+    {
+        if (_enabled)
+            _balanceEvents.incrementAndGet();
+    }
+
+
+    void onAccountCreationEvent()
+    {
+        if (_enabled)
+            _accountCreationEvents.incrementAndGet();
+    }
+
+
+    /**
+     * writes "Enabled", "ElapsedMillis", "Operations", "Bridge" and "ListenerEvents" into the open object
+     */
+    void write(JsonWriter writer)
+    {
+        writer.put("Enabled", _enabled)
+                .put("ElapsedMillis", SystemClock.elapsedRealtime() - _since)
+                .beginArray("Operations");
+
+        for (int i = 0; i < _operations.length; i++) {
+            Operation op = _operations[i];
+            long count = op.count.get();
+            writer.beginObject()
+                    .put("Operation", NAMES[i])
+                    .put("Count", count)
+                    .put("Errors", op.errors.get())
+                    .put("InFlight", op.inFlight.get())
+                    .put("TotalMillis", op.totalMillis.get())
+                    .put("MaxMillis", op.maxMillis.get())
+                    .put("P50Millis", percentile(op, count, 50))
+                    .put("P90Millis", percentile(op, count, 90))
+                    .put("P99Millis", percentile(op, count, 99))
+                    .endObject();
+        }
+
+        writer.endArray()
+                .beginObject("Bridge")
+                .put("Messages", _bridgeMessages.get())
+                .put("Bytes", _bridgeBytes.get())
+                .endObject()
+                .beginObject("ListenerEvents")
+                .put("Payments", _paymentEvents.get())
+                .put("Balances", _balanceEvents.get())
+                .put("AccountCreations", _accountCreationEvents.get())
+                .endObject();
+    }
+
+
+    private void reset()
+    {
+        for (Operation op : _operations) {
+            for (int i = 0; i < op.buckets.length(); i++)
+                op.buckets.set(i, 0);
+            op.count.set(0);
+            op.errors.set(0);
+            op.totalMillis.set(0);
+            op.maxMillis.set(0);
+        }
+
+        _bridgeMessages.set(0);
+        _bridgeBytes.set(0);
+        _paymentEvents.set(0);
+        _balanceEvents.set(0);
+        _accountCreationEvents.set(0);
+        _since = SystemClock.elapsedRealtime();
+    }
+
+
+    private static void record(Operation op, long millis, boolean succeeded)
+    {
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS.length && millis > BUCKET_BOUNDS[bucket])
+            bucket++;
+
+        op.buckets.incrementAndGet(bucket);
+        op.count.incrementAndGet();
+        op.totalMillis.addAndGet(millis);
+        if (!succeeded)
+            op.errors.incrementAndGet();
+
+        long max;
+        while (millis > (max = op.maxMillis.get()) && !op.maxMillis.compareAndSet(max, millis)) {
+            // another thread recorded a new max, retry with its value
+        }
+    }
+
+
+    /**
+     * @return the upper bound of the bucket holding the given percentile, the max for the overflow bucket
+     */
+    private static long percentile(Operation op, long count, int percentile)
+    {
+        if (count == 0)
+            return 0;
+
+        long target = (count * percentile + 99) / 100;
+        long seen = 0;
+        for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+            seen += op.buckets.get(i);
+            if (seen >= target)
+                return BUCKET_BOUNDS[i];
+        }
+
+        return op.maxMillis.get();
+    }
+}
@@ -0,0 +1,114 @@
+package kin.unity;
+
+
+import android.os.SystemClock;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * A list of outbound payments from one account that native code builds and sends one after the other, together with
+ * the per payment results that get reported back to Unity and how far the batch got.
+ */
+final class PaymentBatch {
+
+    // a SendPaymentsProgress message goes out at least this often while the batch is running
+    private static final long PROGRESS_INTERVAL_MILLIS = 500;
+
+    static final class Payment {
+        final int index;
+        final String toAddress;
+        final BigDecimal amount;
+        final String memo;
+
+        String transactionId;
+        Exception error;
+
+
+        Payment(int index, String toAddress, BigDecimal amount, String memo)
+        {
+            this.index = index;
+            this.toAddress = toAddress;
+            this.amount = amount;
+            this.memo = memo;
+        }
+    }
+
+
+    final String batchId;
+    final String accountId;
+    final int fee;
+    final int progressBatchSize;
+    final List<Payment> payments;
+
+    private int _completed;
+    private int _reported;
+    private long _reportedAt;
+
+
+    private PaymentBatch(String batchId, String accountId, int fee, int progressBatchSize, List<Payment> payments, long now)
+    {
+        this.batchId = batchId;
+        this.accountId = accountId;
+        this.fee = fee;
+        this.progressBatchSize = progressBatchSize;
+        this.payments = payments;
+        _reportedAt = now;
+    }
+
+
+    /**
+     * counts the next payment as finished, whether it was sent or failed
+     * @return the index of the first payment the due SendPaymentsProgress message covers, it ends at completed(). -1 if
+     * no progress is due, which is always the case for the last payment since SendPaymentsCompleted reports it
+     */
+    synchronized int complete(long now)
+    {
+        _completed++;
+        if (progressBatchSize <= 0 || _completed >= payments.size())
+            return -1;
+        if (_completed - _reported < progressBatchSize && now - _reportedAt < PROGRESS_INTERVAL_MILLIS)
+            return -1;
+
+        int from = _reported;
+        _reported = _completed;
+        _reportedAt = now;
+        return from;
+    }
+
+
+    synchronized int completed()
+    {
+        return _completed;
+    }
+
+
+    synchronized boolean isComplete()
+    {
+        return _completed >= payments.size();
+    }
+
+
+    /**
+     * parses the JSON sent from Unity which mirrors the C# OutboundPayment list: {"Payments":[{"ToAddress","Amount","Memo"}]}.
+     * Progress goes out every progressBatchSize payments, 0 turns it off.
+     */
+    static PaymentBatch fromJson(String batchId, String accountId, int fee, int progressBatchSize, String json) throws JSONException
+    {
+        JSONArray array = new JSONObject(json).getJSONArray("Payments");
+        List<Payment> payments = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject payment = array.getJSONObject(i);
+            String memo = payment.optString("Memo", null);
+            payments.add(new Payment(i, payment.getString("ToAddress"), new BigDecimal(payment.getString("Amount")), memo));
+        }
+
+        return new PaymentBatch(batchId, accountId, fee, progressBatchSize, payments, SystemClock.elapsedRealtime());
+    }
+}
@@ -0,0 +1,165 @@
+package kin.unity;
+
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import kin.sdk.exception.AccountNotFoundException;
+
+
+/**
+ * Finds the payments that arrived while a payment stream was closed for the background. Before the stream is closed
+ * the paging token of the newest operation of the address is marked, once it is reopened everything after the mark is
+ * read from Horizon and handed to the Sink.
+ *
+ * The reopened stream and the catch up overlap, so for a while after resuming every payment hash is remembered and
+ * whichever of the two sees a payment first delivers it.
+ */
+final class PaymentCatchUp {
+
+    // a catch up reads at most this many pages, anything older is left to the payment history
+    private static final int MAX_PAGES = 10;
+
+    // how long hashes are remembered after the catch up is done, the stream may lag behind Horizon's read side
+    private static final long SEEN_RETENTION_MILLIS = 60 * 1000;
+
+    // marked for an address without any operation yet, the catch up then starts at the oldest
+    private static final String NO_OPERATIONS = "";
+
+
+    interface Sink {
+        void onPayments(String address, List<PaymentHistory.Payment> payments);
+    }
+
+
+    private final PluginExecutor _executor;
+
+    // paging token of the newest operation by address, for streams that are closed
+    private final HashMap<String, String> _marks = new HashMap<>();
+
+    // hashes delivered by address since the stream was reopened
+    private final HashMap<String, HashSet<String>> _seen = new HashMap<>();
+
+
+    PaymentCatchUp(PluginExecutor executor)
+    {
+        _executor = executor;
+    }
+
+
+    /**
+     * looks up the newest operation of address, blocking on Horizon
+     * @return false if it couldn't be found, the stream should stay open then
+     */
+    boolean mark(String address, PaymentHistory.Source source)
+    {
+        String mark;
+        try {
+            PaymentHistory.Fetched fetched = source.fetch(address, null, false, 1);
+            mark = fetched.count > 0 ? Long.toString(fetched.firstToken) : NO_OPERATIONS;
+        }
+        catch (AccountNotFoundException e) {
+            mark = NO_OPERATIONS;
+        }
+        catch (Exception e) {
+            Log.w(KinPluginBase.TAG, "could not mark the payments of " + address + ": " + e.getMessage());
+            return false;
+        }
+
+        synchronized (this) {
+            _marks.put(address, mark);
+        }
+        return true;
+    }
+
+
+    /**
+     * reads the payments after the mark of address on the read lane, a no-op if address wasn't marked. Call it before
+     * the stream is reopened so every streamed payment is remembered.
+     */
+    void resume(final String address, final PaymentHistory.Source source, final Sink sink)
+    {
+        final String mark;
+        final HashSet<String> seen = new HashSet<>();
+        synchronized (this) {
+            mark = _marks.remove(address);
+            if (mark == null)
+                return;
+            _seen.put(address, seen);
+        }
+
+        _executor.execute(PluginExecutor.Lane.READ, () -> {
+            try {
+                catchUp(address, source, sink, mark);
+            }
+            catch (Exception e) {
+                Log.w(KinPluginBase.TAG, "could not catch up on the payments of " + address + ": " + e.getMessage());
+            }
+            finally {
+                _executor.schedule(PluginExecutor.Lane.READ, () -> forget(address, seen), SEEN_RETENTION_MILLIS,
+                        e -> forget(address, seen));
+            }
+        }, e -> forget(address, seen));
+    }
+
+
+    /**
+     * @return whether the payment should be delivered, false if the stream or the catch up already did
+     */
+    synchronized boolean isFirstDelivery(String address, String hash)
+    {
+        HashSet<String> seen = _seen.get(address);
+        return seen == null || seen.add(hash);
+    }
+
+
+    /**
+     * @return {"Marked","CatchingUp"} as JSON
+     */
+    synchronized String statsToJson()
+    {
+        return JsonWriter.obtain()
+                .beginObject()
+                .put("Marked", _marks.size())
+                .put("CatchingUp", _seen.size())
+                .endObject()
+                .finish();
+    }
+
+
+    private void catchUp(String address, PaymentHistory.Source source, Sink sink, String mark) throws Exception
+    {
+        String cursor = mark.equals(NO_OPERATIONS) ? null : mark;
+        for (int page = 0; page < MAX_PAGES; page++) {
+            PaymentHistory.Fetched fetched = source.fetch(address, cursor, true, PaymentHistory.MAX_LIMIT);
+
+            List<PaymentHistory.Payment> payments = new ArrayList<>(fetched.payments.size());
+            for (PaymentHistory.Payment payment : fetched.payments) {
+                if (isFirstDelivery(address, payment.hash))
+                    payments.add(payment);
+            }
+            if (!payments.isEmpty())
+                sink.onPayments(address, payments);
+
+            if (fetched.count < PaymentHistory.MAX_LIMIT)
+                return;
+            cursor = Long.toString(fetched.lastToken);
+        }
+
+        Log.w(KinPluginBase.TAG, "gave up catching up on the payments of " + address + " after " + MAX_PAGES + " pages");
+    }
+
+
+    /**
+     * a newer resume of address keeps its own hashes
+     */
+    private synchronized void forget(String address, HashSet<String> seen)
+    {
+        if (_seen.get(address) == seen)
+            _seen.remove(address);
+    }
+}
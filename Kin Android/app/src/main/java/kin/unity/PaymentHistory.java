@@ -0,0 +1,672 @@
+package kin.unity;
+
+
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import kin.sdk.PaymentInfo;
+
+
+/**
+ * Payment history per address served from an append log on disk so scrolling back through history only goes to
+ * Horizon for what hasn't been seen yet. The log holds one unbroken run of Horizon's payments for the address, from the
+ * newest one synced down to the oldest one anyone scrolled to. Every network keeps its own log since the same address
+ * has a different history on each.
+ *
+ * A query for the first page syncs the newest payments with one request that starts after the newest known one. That
+ * request is skipped while a payment stream is open on the address and hasn't delivered anything since the last sync.
+ * Older pages come from the log and only fetch from Horizon once a query scrolls past the oldest stored payment. If
+ * the sync fails the stored history is still served, flagged as stale.
+ *
+ * Horizon's payments endpoint doesn't carry memos, memos of payments that came through a stream are filled in when the
+ * payment is synced.
+ */
+final class PaymentHistory {
+
+    // Horizon caps pages at this size
+    static final int MAX_LIMIT = 200;
+
+    // fetch at least this many so paging through small pages doesn't cost a request each
+    private static final int MIN_FETCH = 50;
+
+    // a query for an account with long runs of other operations gives up after this many requests and returns a short page
+    private static final int MAX_FETCHES_PER_QUERY = 10;
+
+    private static final int MAX_MEMOS = 256;
+
+    private static final byte KIND_PAYMENT = 1;
+    private static final byte KIND_STATE = 2;
+
+
+    interface Source {
+        /**
+         * @param cursor paging token to continue after or null to start at the newest (descending) or oldest (ascending)
+         */
+        Fetched fetch(String address, String cursor, boolean ascending, int limit) throws Exception;
+    }
+
+
+    interface Storage {
+        File directory();
+    }
+
+
+    static final class Payment {
+        final long token;
+        final String hash;
+        final String from;
+        final String to;
+        final String amount;
+        final String createdAt;
+        String memo;
+
+        Payment(long token, String hash, String from, String to, String amount, String createdAt, String memo)
+        {
+            this.token = token;
+            this.hash = hash;
+            this.from = from;
+            this.to = to;
+            this.amount = amount;
+            this.createdAt = createdAt;
+            this.memo = memo;
+        }
+    }
+
+
+    /**
+     * one page from Horizon. count includes operations that aren't payments, the tokens are those of the first and
+     * last operation of the page.
+     */
+    static final class Fetched {
+        final List<Payment> payments;
+        final int count;
+        final long firstToken;
+        final long lastToken;
+
+        Fetched(List<Payment> payments, int count, long firstToken, long lastToken)
+        {
+            this.payments = payments;
+            this.count = count;
+            this.firstToken = firstToken;
+            this.lastToken = lastToken;
+        }
+    }
+
+
+    static final class Page {
+        final List<Payment> payments;
+        final String nextCursor;
+        final boolean hasMore;
+        final boolean stale;
+
+        Page(List<Payment> payments, String nextCursor, boolean hasMore, boolean stale)
+        {
+            this.payments = payments;
+            this.nextCursor = nextCursor;
+            this.hasMore = hasMore;
+            this.stale = stale;
+        }
+    }
+
+
+    private static final class History {
+        final String address;
+
+        // the network passphrase of the last query and its log, null until the first query
+        String network;
+        File file;
+
+        // ascending by token
+        final ArrayList<Payment> payments = new ArrayList<>();
+
+        boolean loaded;
+        boolean removed;
+        int fetches;
+
+        // whether the first page was ever fetched, the tokens below are only valid once it was
+        boolean synced;
+
+        // where the next ascending and descending fetches continue from
+        long headToken;
+        long tailToken;
+
+        // the oldest operation of the account is stored
+        boolean complete;
+
+        // bumped by stream events, the head is current while it matches syncedChanges and a stream is open
+        final AtomicInteger changes = new AtomicInteger();
+        final AtomicInteger streams = new AtomicInteger();
+        int syncedChanges = -1;
+
+        // memos of streamed payments by transaction hash, waiting for the payment to be synced
+        final LinkedHashMap<String, String> memos = new LinkedHashMap<String, String>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest)
+            {
+                return size() > MAX_MEMOS;
+            }
+        };
+
+        History(String address)
+        {
+            this.address = address;
+        }
+    }
+
+
+    private final Storage _storage;
+    private final HashMap<String, History> _histories = new HashMap<>();
+
+    private long _queries;
+    private long _localPages;
+    private long _fetches;
+
+
+    PaymentHistory(Storage storage)
+    {
+        _storage = storage;
+    }
+
+
+    /**
+     * @param network passphrase of the network source reads from
+     * @param cursor NextCursor of the previous page or empty for the newest payments
+     * @return up to limit payments older than cursor, newest first
+     */
+    Page query(String address, String network, Source source, String cursor, int limit) throws Exception
+    {
+        if (limit < 1 || limit > MAX_LIMIT)
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+
+        long before = Long.MAX_VALUE;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                before = Long.parseLong(cursor);
+            }
+            catch (NumberFormatException e) {
+                throw new IllegalArgumentException("invalid payment history cursor: " + cursor);
+            }
+        }
+
+        History history = history(address);
+        synchronized (history) {
+            synchronized (this) {
+                _queries++;
+            }
+            bind(history, network);
+            load(history);
+
+            int fetchesBefore = history.fetches;
+            boolean stale = false;
+            if (before == Long.MAX_VALUE) {
+                try {
+                    stale = !syncHead(history, source, limit);
+                }
+                catch (Exception e) {
+                    if (!history.synced)
+                        throw e;
+
+                    Log.w(KinPluginBase.TAG, "syncing payment history of " + address + " failed, serving the stored history: " + e.getMessage());
+                    stale = true;
+                }
+            }
+
+            // a cursor from before the stored run, e.g. the log was lost since, is served straight from Horizon
+            if (!history.synced || (before < history.tailToken && !history.complete))
+                return fetchPage(history, source, cursor, limit);
+
+            ArrayList<Payment> page = new ArrayList<>(limit);
+            long bound = before;
+            for (int fetches = 0; ; fetches++) {
+                for (int i = indexBefore(history, bound); i >= 0 && page.size() < limit; i--)
+                    page.add(history.payments.get(i));
+
+                if (page.size() == limit || history.complete || fetches == MAX_FETCHES_PER_QUERY)
+                    break;
+
+                if (!page.isEmpty())
+                    bound = page.get(page.size() - 1).token;
+                extendTail(history, source, Math.max(limit - page.size(), MIN_FETCH));
+            }
+
+            if (history.fetches == fetchesBefore) {
+                synchronized (this) {
+                    _localPages++;
+                }
+            }
+
+            long last = page.isEmpty() ? before : page.get(page.size() - 1).token;
+            boolean hasMore = !history.complete || indexBefore(history, last) >= 0;
+            String nextCursor = page.isEmpty() ? (hasMore ? Long.toString(history.tailToken) : cursor) : Long.toString(last);
+            return new Page(page, nextCursor, hasMore, stale);
+        }
+    }
+
+
+    /**
+     * a payment stream on address opened or closed. Payments may have been missed while there was no stream so opening
+     * one forces the next sync.
+     */
+    void onStream(String address, boolean open)
+    {
+        History history = history(address);
+        if (open) {
+            history.changes.incrementAndGet();
+            history.streams.incrementAndGet();
+        }
+        else {
+            history.streams.decrementAndGet();
+        }
+    }
+
+
+    /**
+     * a streamed payment arrived, the head gets synced on the next first page query. Called from stream threads so it
+     * never waits for a query holding the history.
+     */
+    void onPayment(String address, PaymentInfo payment)
+    {
+        History history = history(address);
+        history.changes.incrementAndGet();
+
+        String memo = payment.memo();
+        if (memo != null && !memo.isEmpty()) {
+            synchronized (history.memos) {
+                history.memos.put(payment.hash().id(), memo);
+            }
+        }
+    }
+
+
+    /**
+     * fills in the memos of streamed payments, for payments read from Horizon outside of the history. The memos are
+     * left in place for the history's own sync.
+     */
+    void fillMemos(String address, List<Payment> payments)
+    {
+        History history;
+        synchronized (this) {
+            history = _histories.get(address);
+        }
+        if (history == null)
+            return;
+
+        synchronized (history.memos) {
+            for (Payment payment : payments) {
+                String memo = history.memos.get(payment.hash);
+                if (memo != null && payment.memo == null)
+                    payment.memo = memo;
+            }
+        }
+    }
+
+
+    /**
+     * forgets the history of address and deletes its logs of every network, used when the account is deleted
+     */
+    void remove(String address)
+    {
+        History history;
+        synchronized (this) {
+            history = _histories.remove(address);
+        }
+
+        if (history != null) {
+            synchronized (history) {
+                history.removed = true;
+                history.payments.clear();
+            }
+        }
+
+        File directory = _storage.directory();
+        File[] files = directory != null ? directory.listFiles() : null;
+        if (files == null)
+            return;
+
+        for (File file : files) {
+            if (file.getName().startsWith(address + "-") && !file.delete())
+                Log.w(KinPluginBase.TAG, "could not delete the payment history of " + address);
+        }
+    }
+
+
+    /**
+     * @return {"Addresses","Payments","Queries","LocalPages","Fetches"} as JSON
+     */
+    String statsToJson()
+    {
+        int payments = 0;
+        int addresses;
+        ArrayList<History> histories;
+        synchronized (this) {
+            addresses = _histories.size();
+            histories = new ArrayList<>(_histories.values());
+        }
+        for (History history : histories) {
+            synchronized (history) {
+                payments += history.payments.size();
+            }
+        }
+
+        synchronized (this) {
+            return JsonWriter.obtain()
+                    .beginObject()
+                    .put("Addresses", addresses)
+                    .put("Payments", payments)
+                    .put("Queries", _queries)
+                    .put("LocalPages", _localPages)
+                    .put("Fetches", _fetches)
+                    .endObject()
+                    .finish();
+        }
+    }
+
+
+    private synchronized History history(String address)
+    {
+        History history = _histories.get(address);
+        if (history == null) {
+            history = new History(address);
+            _histories.put(address, history);
+        }
+        return history;
+    }
+
+
+    private Fetched fetch(History history, Source source, String cursor, boolean ascending, int limit) throws Exception
+    {
+        history.fetches++;
+        synchronized (this) {
+            _fetches++;
+        }
+
+        Fetched fetched = source.fetch(history.address, cursor, ascending, limit);
+        synchronized (history.memos) {
+            for (Payment payment : fetched.payments) {
+                String memo = history.memos.remove(payment.hash);
+                if (memo != null && payment.memo == null)
+                    payment.memo = memo;
+            }
+        }
+        return fetched;
+    }
+
+
+    /**
+     * fetches the newest payments, the first page ever or everything after the head. An account far behind is caught up
+     * MAX_FETCHES_PER_QUERY pages at a time, the following first page queries continue where this one stopped.
+     * @return false if there are newer payments than the stored ones left to fetch
+     */
+    private boolean syncHead(History history, Source source, int limit) throws Exception
+    {
+        int changes = history.changes.get();
+        if (history.synced && history.streams.get() > 0 && changes == history.syncedChanges)
+            return true;
+
+        ArrayList<Payment> added = new ArrayList<>();
+        if (!history.synced) {
+            int count = Math.max(limit, MIN_FETCH);
+            Fetched fetched = fetch(history, source, null, false, count);
+            for (int i = fetched.payments.size() - 1; i >= 0; i--)
+                added.add(fetched.payments.get(i));
+
+            history.payments.addAll(added);
+            history.headToken = fetched.count > 0 ? fetched.firstToken : 0;
+            history.tailToken = fetched.count > 0 ? fetched.lastToken : 0;
+            history.complete = fetched.count < count;
+            history.synced = true;
+        }
+        else {
+            long headToken = history.headToken;
+            for (int fetches = 1; ; fetches++) {
+                Fetched fetched = fetch(history, source, history.headToken > 0 ? Long.toString(history.headToken) : null, true, MAX_LIMIT);
+                for (Payment payment : fetched.payments) {
+                    if (history.payments.isEmpty() || payment.token > newest(history).token)
+                        added.add(payment);
+                }
+                if (fetched.count > 0)
+                    history.headToken = fetched.lastToken;
+
+                if (fetched.count < MAX_LIMIT)
+                    break;
+
+                if (fetches == MAX_FETCHES_PER_QUERY) {
+                    history.payments.addAll(added);
+                    append(history, added);
+                    return false;
+                }
+            }
+
+            history.payments.addAll(added);
+            if (added.isEmpty() && history.headToken == headToken) {
+                history.syncedChanges = changes;
+                return true;
+            }
+        }
+
+        history.syncedChanges = changes;
+        append(history, added);
+        return true;
+    }
+
+
+    /**
+     * fetches up to count operations older than the tail and puts their payments in front of the stored ones
+     */
+    private void extendTail(History history, Source source, int count) throws Exception
+    {
+        Fetched fetched = fetch(history, source, history.tailToken > 0 ? Long.toString(history.tailToken) : null, false, count);
+
+        ArrayList<Payment> added = new ArrayList<>();
+        for (int i = fetched.payments.size() - 1; i >= 0; i--) {
+            Payment payment = fetched.payments.get(i);
+            if (history.payments.isEmpty() || payment.token < history.payments.get(0).token)
+                added.add(payment);
+        }
+
+        history.payments.addAll(0, added);
+        if (fetched.count > 0)
+            history.tailToken = fetched.lastToken;
+        history.complete = fetched.count < count;
+        append(history, added);
+    }
+
+
+    private Page fetchPage(History history, Source source, String cursor, int limit) throws Exception
+    {
+        Fetched fetched = fetch(history, source, cursor != null && !cursor.isEmpty() ? cursor : null, false, limit);
+        String nextCursor = fetched.count > 0 ? Long.toString(fetched.lastToken) : cursor;
+        return new Page(fetched.payments, nextCursor, fetched.count == limit, false);
+    }
+
+
+    /**
+     * @return the index of the newest stored payment older than token or -1
+     */
+    private static int indexBefore(History history, long token)
+    {
+        int low = 0;
+        int high = history.payments.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (history.payments.get(middle).token < token)
+                low = middle + 1;
+            else
+                high = middle - 1;
+        }
+        return low - 1;
+    }
+
+
+    private static Payment newest(History history)
+    {
+        return history.payments.get(history.payments.size() - 1);
+    }
+
+
+    /**
+     * points history at the log of network. Querying the address on another network than before starts over from that
+     * network's log, the stream events are per address and keep counting.
+     */
+    private void bind(History history, String network)
+    {
+        if (network.equals(history.network))
+            return;
+
+        history.network = network;
+        history.file = file(history.address, network);
+        history.payments.clear();
+        history.loaded = false;
+        history.removed = false;
+        history.synced = false;
+        history.headToken = 0;
+        history.tailToken = 0;
+        history.complete = false;
+        history.syncedChanges = -1;
+    }
+
+
+    private File file(String address, String network)
+    {
+        File directory = _storage.directory();
+        return directory != null ? new File(directory, address + "-" + IoUtils.sha256Hex(network).substring(0, 16) + ".log") : null;
+    }
+
+
+    /**
+     * reads the log once. A record cut short by a crash is truncated away, a log that can't be read is dropped and the
+     * history is fetched again.
+     */
+    private void load(History history)
+    {
+        if (history.loaded || history.file == null)
+            return;
+        history.loaded = true;
+
+        if (!history.file.exists())
+            return;
+
+        TreeMap<Long, Payment> payments = new TreeMap<>();
+        long validLength = 0;
+        try {
+            byte[] bytes = IoUtils.readFully(history.file);
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+            try {
+                while (true) {
+                    byte kind = input.readByte();
+                    if (kind == KIND_PAYMENT) {
+                        Payment payment = new Payment(input.readLong(), input.readUTF(), input.readUTF(), input.readUTF(),
+                                input.readUTF(), input.readUTF(), input.readUTF());
+                        if (payment.memo.isEmpty())
+                            payment.memo = null;
+                        payments.put(payment.token, payment);
+                    }
+                    else if (kind == KIND_STATE) {
+                        history.headToken = input.readLong();
+                        history.tailToken = input.readLong();
+                        history.complete = input.readBoolean();
+                        history.synced = true;
+                    }
+                    else {
+                        throw new IOException("unknown record kind " + kind);
+                    }
+                    validLength = bytes.length - input.available();
+                }
+            }
+            catch (EOFException e) {
+                // end of the log
+            }
+
+            if (validLength < bytes.length) {
+                RandomAccessFile file = new RandomAccessFile(history.file, "rw");
+                try {
+                    file.setLength(validLength);
+                }
+                finally {
+                    file.close();
+                }
+            }
+        }
+        catch (IOException e) {
+            Log.w(KinPluginBase.TAG, "dropping unreadable payment history of " + history.address + ": " + e.getMessage());
+            history.file.delete();
+            history.synced = false;
+            history.complete = false;
+            history.headToken = 0;
+            history.tailToken = 0;
+            return;
+        }
+
+        // payments past the last state record never made it in completely, the next sync fetches them again
+        if (!history.synced)
+            return;
+        for (Payment payment : payments.values()) {
+            if (payment.token >= history.tailToken || history.complete)
+                history.payments.add(payment);
+        }
+    }
+
+
+    /**
+     * appends the payments and the current state in one write. A history that can't be written is served from memory
+     * for the rest of the session and its log deleted, a log with a gap would serve wrong pages later.
+     */
+    private void append(History history, List<Payment> payments)
+    {
+        if (history.removed || history.file == null || !history.loaded)
+            return;
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream output = new DataOutputStream(bytes);
+            for (Payment payment : payments) {
+                output.writeByte(KIND_PAYMENT);
+                output.writeLong(payment.token);
+                output.writeUTF(payment.hash);
+                output.writeUTF(payment.from);
+                output.writeUTF(payment.to);
+                output.writeUTF(payment.amount);
+                output.writeUTF(payment.createdAt);
+                output.writeUTF(payment.memo != null ? payment.memo : "");
+            }
+            output.writeByte(KIND_STATE);
+            output.writeLong(history.headToken);
+            output.writeLong(history.tailToken);
+            output.writeBoolean(history.complete);
+            output.flush();
+
+            File directory = history.file.getParentFile();
+            if (!directory.exists() && !directory.mkdirs())
+                throw new IOException("could not create " + directory);
+
+            FileOutputStream file = new FileOutputStream(history.file, true);
+            try {
+                file.write(bytes.toByteArray());
+            }
+            finally {
+                file.close();
+            }
+        }
+        catch (IOException e) {
+            Log.w(KinPluginBase.TAG, "could not write the payment history of " + history.address + ", keeping it in memory: " + e.getMessage());
+            history.file.delete();
+            history.removed = true;
+        }
+    }
+}
@@ -0,0 +1,487 @@
+package kin.unity;
+
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import kin.sdk.exception.AccountNotFoundException;
+
+
+/**
+ * Payment subscriptions with flow control. Where addPaymentListener pushes every payment to Unity as it arrives, a
+ * subscription only delivers as many payments as Unity asked for through request and holds the rest in a buffer of a
+ * fixed capacity. Every payment carries its Horizon paging token so Unity can acknowledge how far it got, and replay
+ * starts over after the last acknowledged payment, for instance when the game lost what it was handed while paused.
+ *
+ * Payments are read in order from Horizon's payments endpoint, starting after the subscription's cursor. The payment
+ * stream of the address is only used as a signal that there is something new to read, which is what gives every
+ * payment a paging token and keeps payments from getting lost while the stream reconnects. Once the buffer is full:
+ *
+ *   DROP_OLDEST  the oldest buffered payment makes room for the new one
+ *   COALESCE     the new payment replaces the newest buffered one, the buffer keeps the oldest payments and the latest
+ *   BLOCK        reading stops until Unity requests more, nothing is dropped
+ *
+ * Dropped payments are counted and reported with the next delivery. Deliveries of a subscription are handed to the
+ * Sink while holding its lock so they reach Unity in order.
+ */
+final class PaymentSubscriptions {
+
+    static final int DROP_OLDEST = 0;
+    static final int COALESCE = 1;
+    static final int BLOCK = 2;
+
+    static final int MAX_CAPACITY = 1000;
+
+    // a subscription keeps the payment stream of its address open by subscribing to the listener hub under this prefix
+    static final String SUBSCRIBER_PREFIX = "PaymentSubscription:";
+
+    // most payments handed to Unity in one message
+    private static final int MAX_DELIVERY = 50;
+
+    private static final long MIN_RETRY_MILLIS = 1000;
+    private static final long MAX_RETRY_MILLIS = 60 * 1000;
+
+
+    interface Sink {
+        /**
+         * @param payments oldest first
+         * @param dropped payments dropped by the overflow policy since the previous delivery
+         */
+        void onPayments(String subscriptionId, String accountId, List<PaymentHistory.Payment> payments, long dropped);
+
+        /**
+         * reading failed, it is retried with a growing delay
+         */
+        void onError(String subscriptionId, Exception e);
+    }
+
+
+    private static final class Subscription {
+        final String id;
+        final String accountId;
+        final String address;
+        final PaymentHistory.Source source;
+        final int capacity;
+        final int policy;
+
+        final ArrayDeque<PaymentHistory.Payment> buffer = new ArrayDeque<>();
+        long demand;
+        long dropped;
+
+        // paging token the next read continues after and the last one Unity acknowledged, null for the oldest payment
+        String readCursor;
+        String acknowledged;
+
+        // the subscription starts after the newest payment, which hasn't been looked up yet
+        boolean fromNow;
+
+        // there may be payments on Horizon past readCursor
+        boolean behind = true;
+        boolean reading;
+        boolean closed;
+
+        // bumped by replay so a read that was running at the time throws its result away
+        int generation;
+        int failures;
+        ScheduledFuture<?> retry;
+
+        Subscription(String id, String accountId, String address, PaymentHistory.Source source, int capacity, int policy)
+        {
+            this.id = id;
+            this.accountId = accountId;
+            this.address = address;
+            this.source = source;
+            this.capacity = capacity;
+            this.policy = policy;
+        }
+    }
+
+
+    private final PluginExecutor _executor;
+    private final Sink _sink;
+    private final HashMap<String, Subscription> _subscriptions = new HashMap<>();
+
+    private final AtomicLong _delivered = new AtomicLong();
+    private final AtomicLong _dropped = new AtomicLong();
+    private final AtomicLong _fetches = new AtomicLong();
+
+
+    PaymentSubscriptions(PluginExecutor executor, Sink sink)
+    {
+        _executor = executor;
+        _sink = sink;
+    }
+
+
+    /**
+     * starts reading right away, nothing is delivered before the first request
+     * @param cursor paging token to start after or null to start after the newest payment
+     */
+    void subscribe(String id, String accountId, String address, PaymentHistory.Source source, String cursor, int capacity, int policy)
+    {
+        if (capacity < 1 || capacity > MAX_CAPACITY)
+            throw new IllegalArgumentException("capacity must be between 1 and " + MAX_CAPACITY);
+        if (policy < DROP_OLDEST || policy > BLOCK)
+            throw new IllegalArgumentException("unknown overflow policy " + policy);
+
+        Subscription subscription = new Subscription(id, accountId, address, source, capacity, policy);
+        subscription.readCursor = cursor;
+        subscription.acknowledged = cursor;
+        subscription.fromNow = cursor == null;
+
+        synchronized (this) {
+            if (_subscriptions.containsKey(id))
+                throw new IllegalStateException("subscription " + id + " already exists");
+            _subscriptions.put(id, subscription);
+        }
+
+        pump(subscription);
+    }
+
+
+    /**
+     * @return the accountId the subscription reads payments for or null if there is no such subscription
+     */
+    synchronized String accountId(String id)
+    {
+        Subscription subscription = _subscriptions.get(id);
+        return subscription != null ? subscription.accountId : null;
+    }
+
+
+    /**
+     * @return whether the subscription existed
+     */
+    boolean unsubscribe(String id)
+    {
+        Subscription subscription;
+        synchronized (this) {
+            subscription = _subscriptions.remove(id);
+        }
+        if (subscription == null)
+            return false;
+
+        synchronized (subscription) {
+            subscription.closed = true;
+            subscription.buffer.clear();
+            if (subscription.retry != null)
+                subscription.retry.cancel(false);
+        }
+        return true;
+    }
+
+
+    /**
+     * reads every subscription that is behind, for a plugin restart that dropped their pending retries
+     */
+    void resume()
+    {
+        ArrayList<Subscription> subscriptions;
+        synchronized (this) {
+            subscriptions = new ArrayList<>(_subscriptions.values());
+        }
+        for (Subscription subscription : subscriptions)
+            pump(subscription);
+    }
+
+
+    /**
+     * allows count more payments to be delivered
+     */
+    void request(String id, int count)
+    {
+        if (count < 1)
+            throw new IllegalArgumentException("count must be at least 1");
+
+        Subscription subscription = require(id);
+        synchronized (subscription) {
+            subscription.demand = Math.min(Long.MAX_VALUE - count, subscription.demand) + count;
+            deliver(subscription);
+        }
+        pump(subscription);
+    }
+
+
+    /**
+     * records the paging token of the last payment Unity is done with, replay starts after it
+     */
+    void acknowledge(String id, String cursor)
+    {
+        Subscription subscription = require(id);
+        synchronized (subscription) {
+            subscription.acknowledged = cursor;
+        }
+    }
+
+
+    /**
+     * drops the buffer and reads everything after the last acknowledged payment again. Demand that wasn't used up is
+     * kept.
+     */
+    void replay(String id)
+    {
+        Subscription subscription = require(id);
+        synchronized (subscription) {
+            subscription.buffer.clear();
+            subscription.dropped = 0;
+            subscription.readCursor = subscription.acknowledged;
+            subscription.behind = true;
+            subscription.generation++;
+        }
+        pump(subscription);
+    }
+
+
+    /**
+     * called for every payment streamed for address, subscriptions on it read what is new
+     */
+    void onPayment(String address)
+    {
+        ArrayList<Subscription> subscriptions = new ArrayList<>();
+        synchronized (this) {
+            for (Subscription subscription : _subscriptions.values()) {
+                if (subscription.address.equals(address))
+                    subscriptions.add(subscription);
+            }
+        }
+
+        for (Subscription subscription : subscriptions) {
+            synchronized (subscription) {
+                subscription.behind = true;
+            }
+            pump(subscription);
+        }
+    }
+
+
+    /**
+     * @return {"Subscriptions","Buffered","Delivered","Dropped","Fetches"} as JSON
+     */
+    String statsToJson()
+    {
+        ArrayList<Subscription> subscriptions;
+        synchronized (this) {
+            subscriptions = new ArrayList<>(_subscriptions.values());
+        }
+
+        int buffered = 0;
+        for (Subscription subscription : subscriptions) {
+            synchronized (subscription) {
+                buffered += subscription.buffer.size();
+            }
+        }
+
+        return JsonWriter.obtain()
+                .beginObject()
+                .put("Subscriptions", subscriptions.size())
+                .put("Buffered", buffered)
+                .put("Delivered", _delivered.get())
+                .put("Dropped", _dropped.get())
+                .put("Fetches", _fetches.get())
+                .endObject()
+                .finish();
+    }
+
+
+    private synchronized Subscription require(String id)
+    {
+        Subscription subscription = _subscriptions.get(id);
+        if (subscription == null)
+            throw new IllegalStateException("no payment subscription " + id);
+
+        return subscription;
+    }
+
+
+    private static boolean full(Subscription subscription)
+    {
+        return subscription.buffer.size() >= subscription.capacity;
+    }
+
+
+    /**
+     * starts a read on the read lane unless one is running, a retry is pending or there is nothing to read
+     */
+    private void pump(final Subscription subscription)
+    {
+        synchronized (subscription) {
+            // a retry cancelled by a plugin shutdown is done and doesn't hold the subscription back
+            boolean retrying = subscription.retry != null && !subscription.retry.isDone();
+            if (subscription.closed || subscription.reading || retrying || !subscription.behind)
+                return;
+            if (subscription.policy == BLOCK && full(subscription))
+                return;
+
+            subscription.reading = true;
+        }
+
+        _executor.execute(PluginExecutor.Lane.READ, () -> read(subscription), e -> {
+            synchronized (subscription) {
+                subscription.reading = false;
+            }
+            failed(subscription, e);
+        });
+    }
+
+
+    /**
+     * reads pages until Horizon has nothing newer or a blocking subscription's buffer is full
+     */
+    private void read(Subscription subscription)
+    {
+        try {
+            while (true) {
+                String cursor;
+                int generation;
+                int limit;
+                boolean lookUpHead;
+                synchronized (subscription) {
+                    if (subscription.closed || !subscription.behind)
+                        return;
+                    if (subscription.policy == BLOCK && full(subscription))
+                        return;
+
+                    subscription.behind = false;
+                    cursor = subscription.readCursor;
+                    generation = subscription.generation;
+                    lookUpHead = subscription.fromNow;
+                    limit = subscription.policy == BLOCK
+                            ? Math.min(PaymentHistory.MAX_LIMIT, subscription.capacity - subscription.buffer.size())
+                            : PaymentHistory.MAX_LIMIT;
+                }
+
+                // starting from now means looking up the newest operation first, everything after it is new
+                PaymentHistory.Fetched fetched = subscription.source.fetch(subscription.address, lookUpHead ? null : cursor, !lookUpHead,
+                        lookUpHead ? 1 : limit);
+                _fetches.incrementAndGet();
+
+                synchronized (subscription) {
+                    subscription.failures = 0;
+                    if (subscription.closed)
+                        return;
+
+                    if (generation != subscription.generation) {
+                        // replayed meanwhile, behind is set again and the loop continues from the acknowledged cursor
+                        continue;
+                    }
+
+                    if (lookUpHead) {
+                        subscription.fromNow = false;
+                        subscription.readCursor = fetched.count > 0 ? Long.toString(fetched.firstToken) : null;
+                        subscription.acknowledged = subscription.readCursor;
+                        subscription.behind = true;
+                        continue;
+                    }
+
+                    for (PaymentHistory.Payment payment : fetched.payments)
+                        offer(subscription, payment);
+                    if (fetched.count > 0)
+                        subscription.readCursor = Long.toString(fetched.lastToken);
+                    if (fetched.count >= limit)
+                        subscription.behind = true;
+
+                    deliver(subscription);
+                }
+            }
+        }
+        catch (AccountNotFoundException e) {
+            // nothing to read until the account is created, its first payment rings again
+        }
+        catch (Exception e) {
+            failed(subscription, e);
+        }
+        finally {
+            synchronized (subscription) {
+                subscription.reading = false;
+            }
+
+            // a payment that arrived after the last page was read found the read still running
+            pump(subscription);
+        }
+    }
+
+
+    private void offer(Subscription subscription, PaymentHistory.Payment payment)
+    {
+        if (full(subscription)) {
+            if (subscription.policy == DROP_OLDEST)
+                subscription.buffer.pollFirst();
+            else if (subscription.policy == COALESCE)
+                subscription.buffer.pollLast();
+
+            // a blocking read never asks for more than fits, anything else had to make room
+            if (subscription.policy != BLOCK) {
+                subscription.dropped++;
+                _dropped.incrementAndGet();
+            }
+        }
+
+        subscription.buffer.addLast(payment);
+    }
+
+
+    /**
+     * hands over as much of the buffer as Unity asked for, called while holding the subscription's lock
+     */
+    private void deliver(Subscription subscription)
+    {
+        while (subscription.demand > 0 && !subscription.buffer.isEmpty()) {
+            int count = (int)Math.min(Math.min(subscription.demand, subscription.buffer.size()), MAX_DELIVERY);
+            ArrayList<PaymentHistory.Payment> payments = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+                payments.add(subscription.buffer.pollFirst());
+
+            subscription.demand -= count;
+            long dropped = subscription.dropped;
+            subscription.dropped = 0;
+            _delivered.addAndGet(count);
+            _sink.onPayments(subscription.id, subscription.accountId, payments, dropped);
+        }
+    }
+
+
+    private void failed(final Subscription subscription, Exception e)
+    {
+        Log.w(KinPluginBase.TAG, "reading payment subscription " + subscription.id + " failed: " + e.getMessage());
+        synchronized (subscription) {
+            if (subscription.closed)
+                return;
+
+            subscription.behind = true;
+            subscription.failures++;
+            long delay = Math.min(MAX_RETRY_MILLIS, MIN_RETRY_MILLIS << Math.min(subscription.failures - 1, 10));
+            final ScheduledFuture<?>[] retry = new ScheduledFuture<?>[1];
+            retry[0] = subscription.retry = _executor.schedule(PluginExecutor.Lane.READ, () -> {
+                synchronized (subscription) {
+                    subscription.retry = null;
+                }
+                pump(subscription);
+            }, delay, rejected -> retryRejected(subscription, retry, rejected));
+        }
+
+        _sink.onError(subscription.id, e);
+    }
+
+
+    /**
+     * a rejected retry counts as another failed read so the subscription is retried later instead of waiting for a
+     * request or a new payment that may never come
+     */
+    private void retryRejected(Subscription subscription, ScheduledFuture<?>[] retry, Exception e)
+    {
+        synchronized (subscription) {
+            // unsubscribed or replaced meanwhile
+            if (subscription.retry != retry[0])
+                return;
+            subscription.retry = null;
+        }
+
+        failed(subscription, e);
+    }
+}
@@ -0,0 +1,245 @@
+package kin.unity;
+
+
+import android.os.SystemClock;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import kin.sdk.Transaction;
+
+
+/**
+ * Transactions that were built but not sent yet. Entries expire after a ttl and the least recently built ones are
+ * evicted once the store is full, so transactions that are never sent (canceled by the user, whitelisting failed) don't
+ * pile up for the rest of the session. The listener hears about every entry that leaves the store without being sent.
+ */
+final class PendingTransactionStore {
+
+    static final int DEFAULT_MAX_SIZE = 64;
+    static final long DEFAULT_TTL_MILLIS = 5 * 60 * 1000;
+
+
+    interface EvictionListener {
+        /**
+         * @param expired true if the transaction outlived the ttl, false if it was pushed out by newer transactions
+         */
+        void onEvicted(String transactionId, String accountId, boolean expired);
+    }
+
+
+    /**
+     * a built transaction together with what it was built from so it can be rebuilt if its sequence number goes stale
+     */
+    static final class Pending {
+        final Transaction transaction;
+        final String toAddress;
+        final BigDecimal amount;
+        final int fee;
+        final String memo;
+
+        Pending(Transaction transaction, String toAddress, BigDecimal amount, int fee, String memo)
+        {
+            this.transaction = transaction;
+            this.toAddress = toAddress;
+            this.amount = amount;
+            this.fee = fee;
+            this.memo = memo;
+        }
+    }
+
+
+    private static final class Entry {
+        final String id;
+        final String accountId;
+        final Pending pending;
+        final long createdAt;
+
+        Entry(String id, String accountId, Pending pending)
+        {
+            this.id = id;
+            this.accountId = accountId;
+            this.pending = pending;
+            this.createdAt = SystemClock.elapsedRealtime();
+        }
+    }
+
+
+    // entries only leave by being taken so insertion order is also least recently used and oldest first
+    private final LinkedHashMap<String, Entry> _entries = new LinkedHashMap<>();
+    private final EvictionListener _listener;
+
+    private int _maxSize = DEFAULT_MAX_SIZE;
+    private long _ttlMillis = DEFAULT_TTL_MILLIS;
+
+    private long _hits;
+    private long _misses;
+    private long _expired;
+    private long _evicted;
+
+
+    PendingTransactionStore(EvictionListener listener)
+    {
+        _listener = listener;
+    }
+
+
+    /**
+     * sets the maximum number of pending transactions and how long each one is kept. Applies to stored entries as well.
+     */
+    void configure(int maxSize, long ttlMillis)
+    {
+        if (maxSize < 1)
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        if (ttlMillis < 1)
+            throw new IllegalArgumentException("ttl must be at least 1ms");
+
+        List<Entry> evicted = new ArrayList<>();
+        List<Entry> expired = new ArrayList<>();
+        synchronized (this) {
+            _maxSize = maxSize;
+            _ttlMillis = ttlMillis;
+            removeExpired(expired);
+            trim(evicted);
+        }
+        notifyEvicted(expired, true);
+        notifyEvicted(evicted, false);
+    }
+
+
+    void put(String id, String accountId, Pending pending)
+    {
+        List<Entry> evicted = new ArrayList<>();
+        List<Entry> expired = new ArrayList<>();
+        synchronized (this) {
+            removeExpired(expired);
+            _entries.put(id, new Entry(id, accountId, pending));
+            trim(evicted);
+        }
+        notifyEvicted(expired, true);
+        notifyEvicted(evicted, false);
+    }
+
+
+    /**
+     * removes and returns the transaction
+     * @return the pending transaction or null if it was never stored, was already taken, expired or was evicted
+     */
+    Pending take(String id)
+    {
+        Entry entry;
+        boolean expired = false;
+        synchronized (this) {
+            entry = _entries.remove(id);
+            if (entry == null) {
+                _misses++;
+                return null;
+            }
+
+            if (isExpired(entry)) {
+                _expired++;
+                _misses++;
+                expired = true;
+            }
+            else {
+                _hits++;
+            }
+        }
+
+        if (expired) {
+            _listener.onEvicted(entry.id, entry.accountId, true);
+            return null;
+        }
+
+        return entry.pending;
+    }
+
+
+    /**
+     * drops every expired transaction
+     * @return the number of transactions still pending
+     */
+    int sweep()
+    {
+        List<Entry> expired = new ArrayList<>();
+        int size;
+        synchronized (this) {
+            removeExpired(expired);
+            size = _entries.size();
+        }
+        notifyEvicted(expired, true);
+        return size;
+    }
+
+
+    synchronized long ttlMillis()
+    {
+        return _ttlMillis;
+    }
+
+
+    synchronized int size()
+    {
+        return _entries.size();
+    }
+
+
+    /**
+     * @return {"Size","MaxSize","Hits","Misses","Expired","Evicted"} as JSON, mirrored by TransactionStoreStats in C#
+     */
+    synchronized String statsToJson()
+    {
+        return JsonWriter.obtain()
+                .beginObject()
+                .put("Size", _entries.size())
+                .put("MaxSize", _maxSize)
+                .put("Hits", _hits)
+                .put("Misses", _misses)
+                .put("Expired", _expired)
+                .put("Evicted", _evicted)
+                .endObject()
+                .finish();
+    }
+
+
+    private void removeExpired(List<Entry> expired)
+    {
+        Iterator<Entry> iterator = _entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (!isExpired(entry))
+                break;
+
+            iterator.remove();
+            expired.add(entry);
+            _expired++;
+        }
+    }
+
+
+    private void trim(List<Entry> evicted)
+    {
+        Iterator<Entry> iterator = _entries.values().iterator();
+        while (_entries.size() > _maxSize && iterator.hasNext()) {
+            evicted.add(iterator.next());
+            iterator.remove();
+            _evicted++;
+        }
+    }
+
+
+    private boolean isExpired(Entry entry)
+    {
+        return SystemClock.elapsedRealtime() - entry.createdAt >= _ttlMillis;
+    }
+
+
+    private void notifyEvicted(List<Entry> entries, boolean expired)
+    {
+        for (Entry entry : entries)
+            _listener.onEvicted(entry.id, entry.accountId, expired);
+    }
+}
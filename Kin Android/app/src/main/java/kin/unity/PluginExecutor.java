@@ -0,0 +1,409 @@
+package kin.unity;
+
+
+import android.util.Log;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Plugin owned worker pools. Fast reads (balance, status, fee) and slow writes (build, send) each get their own
+ * bounded pool and bounded queue so that a burst of one can never starve the other or spawn unlimited threads.
+ */
+final class PluginExecutor {
+
+    enum Lane {
+        READ,
+        WRITE
+    }
+
+    // rejection policies, these values are mirrored by the ExecutorRejectionPolicy enum in C#
+    static final int REJECT_ABORT = 0;
+    static final int REJECT_CALLER_RUNS = 1;
+    static final int REJECT_DISCARD_OLDEST = 2;
+
+    static final int DEFAULT_READ_THREADS = 4;
+    static final int DEFAULT_WRITE_THREADS = 2;
+    static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    // a drained pool throws this back to execute, which moves the task to the pool that replaced it
+    private static final String DRAINED = "executor has been shut down";
+
+    private static final String SHUT_DOWN = "plugin has been shut down";
+
+
+    /**
+     * called when a task could not be run, either because the queue was full or the executor was shut down
+     */
+    interface RejectionListener {
+        void onRejected(RejectedExecutionException e);
+    }
+
+
+    private int _readThreads = DEFAULT_READ_THREADS;
+    private int _writeThreads = DEFAULT_WRITE_THREADS;
+    private int _queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private int _rejectionPolicy = REJECT_ABORT;
+
+    private ThreadPoolExecutor _readPool;
+    private ThreadPoolExecutor _writePool;
+
+    // single timer thread that only hands delayed work off to one of the lanes
+    private ScheduledThreadPoolExecutor _timer;
+
+    private boolean _shutDown;
+
+
+    /**
+     * changes the pool sizing and rejection policy. Already queued tasks still run on the old pools which are then
+     * shut down, new tasks go to pools created with the new settings. Delayed tasks keep their schedule and run on the
+     * new pools.
+     */
+    synchronized void configure(int readThreads, int writeThreads, int queueCapacity, int rejectionPolicy)
+    {
+        if (readThreads < 1 || writeThreads < 1 || queueCapacity < 1)
+            throw new IllegalArgumentException("thread counts and queue capacity must be at least 1");
+
+        if (rejectionPolicy < REJECT_ABORT || rejectionPolicy > REJECT_DISCARD_OLDEST)
+            throw new IllegalArgumentException("unknown rejection policy: " + rejectionPolicy);
+
+        _readThreads = readThreads;
+        _writeThreads = writeThreads;
+        _queueCapacity = queueCapacity;
+        _rejectionPolicy = rejectionPolicy;
+
+        drainPools();
+    }
+
+
+    /**
+     * queues the runnable on the given lane. onRejected is called instead if the task can not be run, which is always
+     * the case after shutdown.
+     */
+    void execute(Lane lane, Runnable runnable, RejectionListener onRejected)
+    {
+        RejectableTask task = new RejectableTask(runnable, onRejected);
+        ThreadPoolExecutor pool = pool(lane);
+        if (pool == null) {
+            reject(task, SHUT_DOWN);
+            return;
+        }
+
+        try {
+            pool.execute(task);
+        }
+        catch (RejectedExecutionException e) {
+            // configure drained the pool between looking it up and queuing on it, the pool that replaced it takes the
+            // task. Submitting under our lock instead would run rejection listeners and caller-runs tasks under it.
+            ThreadPoolExecutor current = pool(lane);
+            if (current == null || current == pool) {
+                reject(task, current == null ? SHUT_DOWN : e.getMessage());
+                return;
+            }
+
+            try {
+                current.execute(task);
+            }
+            catch (RejectedExecutionException again) {
+                reject(task, again.getMessage());
+            }
+        }
+    }
+
+
+    /**
+     * queues the runnable on the given lane after delayMillis. onRejected is called instead if the lane rejects it once
+     * it is due, so owners that remember a pending task can clear it. Cancelling the returned future doesn't call it.
+     * After shutdown the returned future is already cancelled and onRejected isn't called either, owners that retry
+     * from it would otherwise loop.
+     */
+    synchronized ScheduledFuture<?> schedule(final Lane lane, final Runnable runnable, long delayMillis, final RejectionListener onRejected)
+    {
+        if (_shutDown)
+            return CancelledFuture.INSTANCE;
+
+        if (_timer == null) {
+            _timer = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread thread = new Thread(r, "KinPlugin-timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        return _timer.schedule(() -> execute(lane, runnable, onRejected), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * Drains the current pools and stops the timer. Tasks already queued on a lane still finish, delayed tasks are
+     * cancelled, and every later task is rejected until restart is called.
+     */
+    synchronized void shutdown()
+    {
+        _shutDown = true;
+        drainPools();
+
+        if (_timer != null) {
+            // shutdownNow only hands the pending tasks back, cancelling them marks them done for owners that check
+            for (Runnable pending : _timer.shutdownNow())
+                ((Future<?>)pending).cancel(false);
+            _timer = null;
+        }
+    }
+
+
+    /**
+     * accepts tasks again after shutdown, on fresh pools and a fresh timer. Delayed tasks cancelled by shutdown are not
+     * brought back, their owners schedule them again.
+     */
+    synchronized void restart()
+    {
+        _shutDown = false;
+    }
+
+
+    synchronized boolean isShutDown()
+    {
+        return _shutDown;
+    }
+
+
+    private void drainPools()
+    {
+        if (_readPool != null) {
+            _readPool.shutdown();
+            _readPool = null;
+        }
+
+        if (_writePool != null) {
+            _writePool.shutdown();
+            _writePool = null;
+        }
+    }
+
+
+    /**
+     * number of tasks waiting in the queue for the given lane
+     */
+    synchronized int queueDepth(Lane lane)
+    {
+        ThreadPoolExecutor pool = lane == Lane.READ ? _readPool : _writePool;
+        return pool == null ? 0 : pool.getQueue().size();
+    }
+
+
+    /**
+     * number of tasks currently running on the given lane
+     */
+    synchronized int activeCount(Lane lane)
+    {
+        ThreadPoolExecutor pool = lane == Lane.READ ? _readPool : _writePool;
+        return pool == null ? 0 : pool.getActiveCount();
+    }
+
+
+    /**
+     * @return the pool of the lane, created on first use, or null after shutdown
+     */
+    private synchronized ThreadPoolExecutor pool(Lane lane)
+    {
+        if (_shutDown)
+            return null;
+
+        if (lane == Lane.READ) {
+            if (_readPool == null)
+                _readPool = createPool("read", _readThreads);
+            return _readPool;
+        }
+
+        if (_writePool == null)
+            _writePool = createPool("write", _writeThreads);
+        return _writePool;
+    }
+
+
+    private ThreadPoolExecutor createPool(final String name, int threads)
+    {
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private final AtomicInteger _count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Worker(r, "KinPlugin-" + name + "-" + _count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(_queueCapacity), threadFactory, rejectionHandler(_rejectionPolicy));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+
+    private static RejectedExecutionHandler rejectionHandler(int rejectionPolicy)
+    {
+        switch (rejectionPolicy) {
+            case REJECT_CALLER_RUNS:
+                return (r, executor) -> {
+                    if (executor.isShutdown())
+                        throw new RejectedExecutionException(DRAINED);
+
+                    // only a worker that submitted the task while running another one takes it inline. The Unity
+                    // thread and the timer must never block on plugin work, and a worker already running a task
+                    // inline would recurse through the serial queues.
+                    Thread thread = Thread.currentThread();
+                    if (!(thread instanceof Worker) || ((Worker)thread).runningInline) {
+                        reject(r, "executor queue is full");
+                        return;
+                    }
+
+                    Worker worker = (Worker)thread;
+                    worker.runningInline = true;
+                    try {
+                        r.run();
+                    }
+                    finally {
+                        worker.runningInline = false;
+                    }
+                };
+            case REJECT_DISCARD_OLDEST:
+                return (r, executor) -> {
+                    if (executor.isShutdown())
+                        throw new RejectedExecutionException(DRAINED);
+
+                    Runnable oldest = executor.getQueue().poll();
+                    if (oldest != null)
+                        reject(oldest, "task discarded to make room for a newer one");
+                    executor.execute(r);
+                };
+            default:
+                return (r, executor) -> {
+                    if (executor.isShutdown())
+                        throw new RejectedExecutionException(DRAINED);
+                    reject(r, "executor queue is full");
+                };
+        }
+    }
+
+
+    private static void reject(Runnable r, String reason)
+    {
+        Log.w(KinPluginBase.TAG, "rejected plugin task: " + reason);
+        if (r instanceof RejectableTask)
+            ((RejectableTask)r).reject(new RejectedExecutionException(reason));
+    }
+
+
+    private static final class Worker extends Thread {
+        // only touched by the worker itself
+        boolean runningInline;
+
+        Worker(Runnable runnable, String name)
+        {
+            super(runnable, name);
+        }
+    }
+
+
+    /**
+     * what schedule returns after shutdown, it never runs
+     */
+    private static final class CancelledFuture implements ScheduledFuture<Object> {
+        static final CancelledFuture INSTANCE = new CancelledFuture();
+
+
+        @Override
+        public long getDelay(TimeUnit unit)
+        {
+            return 0;
+        }
+
+
+        @Override
+        public int compareTo(Delayed other)
+        {
+            return Long.compare(0, other.getDelay(TimeUnit.MILLISECONDS));
+        }
+
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning)
+        {
+            return false;
+        }
+
+
+        @Override
+        public boolean isCancelled()
+        {
+            return true;
+        }
+
+
+        @Override
+        public boolean isDone()
+        {
+            return true;
+        }
+
+
+        @Override
+        public Object get()
+        {
+            throw new CancellationException();
+        }
+
+
+        @Override
+        public Object get(long timeout, TimeUnit unit)
+        {
+            throw new CancellationException();
+        }
+    }
+
+
+    /**
+     * pairs a Runnable with the listener to notify if it never gets to run
+     */
+    private static final class RejectableTask implements Runnable {
+        private final Runnable _runnable;
+        private final RejectionListener _onRejected;
+
+
+        RejectableTask(Runnable runnable, RejectionListener onRejected)
+        {
+            _runnable = runnable;
+            _onRejected = onRejected;
+        }
+
+
+        @Override
+        public void run()
+        {
+            _runnable.run();
+        }
+
+
+        void reject(RejectedExecutionException e)
+        {
+            if (_onRejected != null)
+                _onRejected.onRejected(e);
+        }
+    }
+}
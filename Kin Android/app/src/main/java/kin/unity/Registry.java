@@ -0,0 +1,99 @@
+package kin.unity;
+
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Thread safe id -> object registry for the native objects mirrored in C#. Backed by a ConcurrentHashMap, so reads
+ * never lock and Unity calls and worker threads can use the registries at the same time. The ids are handed out by C#
+ * and every registry holds one type, so lookups need no handle type of their own. Listener registrations don't live
+ * here: ListenerHub keeps one per address and registers them under its own monitor.
+ */
+final class Registry<V> {
+
+    // only a hint for sizing the map to the writers we expect at once, rarely more than a handful. How writes lock is
+    // up to the map.
+    private static final int CONCURRENCY_LEVEL = 8;
+
+    private final String _name;
+    private final ConcurrentHashMap<String, V> _entries = new ConcurrentHashMap<>(16, 0.75f, CONCURRENCY_LEVEL);
+    private final AtomicInteger _peakSize = new AtomicInteger();
+
+
+    Registry(String name)
+    {
+        _name = name;
+    }
+
+
+    String name()
+    {
+        return _name;
+    }
+
+
+    V get(String id)
+    {
+        return id != null ? _entries.get(id) : null;
+    }
+
+
+    /**
+     * like get but fails with a descriptive exception instead of returning null, meant for code whose errors are
+     * reported back to Unity
+     */
+    V require(String id)
+    {
+        V value = get(id);
+        if (value == null)
+            throw new IllegalArgumentException("no " + _name + " registered with id " + id);
+
+        return value;
+    }
+
+
+    boolean contains(String id)
+    {
+        return id != null && _entries.containsKey(id);
+    }
+
+
+    void put(String id, V value)
+    {
+        _entries.put(id, value);
+        updatePeak();
+    }
+
+
+    V remove(String id)
+    {
+        return id != null ? _entries.remove(id) : null;
+    }
+
+
+    int size()
+    {
+        return _entries.size();
+    }
+
+
+    /**
+     * @return the largest size the registry has had since it was created
+     */
+    int peakSize()
+    {
+        return _peakSize.get();
+    }
+
+
+    private void updatePeak()
+    {
+        int size = _entries.size();
+        int peak;
+        while (size > (peak = _peakSize.get()) && !_peakSize.compareAndSet(peak, size)) {
+            // another writer raced us, retry with its value
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package kin.unity;
+
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+
+
+/**
+ * Retries network bound calls inside the plugin so transient Horizon errors never make it back to Unity. Each
+ * operation has its own attempt and time budget, exponential backoff with full jitter and a circuit breaker that fails
+ * calls fast while the operation keeps failing.
+ *
+ * Errors are classified by the simple class name of the exception or any of its causes, the same name Unity sees as
+ * NativeType. Names in the fatal set are never retried even if a cause is retryable.
+ *
+ * Backoff sleeps on the calling worker thread, the budget bounds how long a thread can be held.
+ */
+final class RetryPolicy {
+
+    // operations, mirrored by the RetryOperation enum in C#
+    static final String GET_BALANCE = "GetBalance";
+    static final String GET_STATUS = "GetStatus";
+    static final String GET_MINIMUM_FEE = "GetMinimumFee";
+    static final String BUILD_TRANSACTION = "BuildTransaction";
+    static final String GET_PAYMENT_HISTORY = "GetPaymentHistory";
+
+    static final int DEFAULT_MAX_ATTEMPTS = 3;
+    static final long DEFAULT_BASE_DELAY_MILLIS = 250;
+    static final long DEFAULT_MAX_DELAY_MILLIS = 2000;
+    static final long DEFAULT_BUDGET_MILLIS = 5000;
+
+    static final int DEFAULT_BREAKER_THRESHOLD = 5;
+    static final long DEFAULT_BREAKER_OPEN_MILLIS = 30 * 1000;
+
+    private static final String[] DEFAULT_RETRYABLE = { "IOException", "SocketTimeoutException", "SocketException",
+            "ConnectException", "UnknownHostException", "InterruptedIOException", "SSLException", "TimeoutException" };
+    private static final String[] DEFAULT_FATAL = { "AccountNotFoundException", "AccountNotActivatedException",
+            "InsufficientKinException", "InsufficientFeeException", "IllegalAmountException", "TransactionFailedException",
+            "CryptoException", "IllegalArgumentException", "IllegalStateException", "CircuitOpenException" };
+
+
+    interface Call<T> {
+        T call() throws Exception;
+    }
+
+
+    /**
+     * thrown instead of calling out while an operation's circuit breaker is open
+     */
+    static final class CircuitOpenException extends Exception {
+        CircuitOpenException(String operation, long retryInMillis)
+        {
+            super(operation + " is failing repeatedly, not retrying for another " + retryInMillis + "ms");
+        }
+    }
+
+
+    private static final class Operation {
+        int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+        long baseDelayMillis = DEFAULT_BASE_DELAY_MILLIS;
+        long maxDelayMillis = DEFAULT_MAX_DELAY_MILLIS;
+        long budgetMillis = DEFAULT_BUDGET_MILLIS;
+
+        // circuit breaker
+        int consecutiveFailures;
+        long openUntil;
+        boolean trialInFlight;
+
+        long calls;
+        long retries;
+        long failures;
+        long rejected;
+    }
+
+
+    private final HashMap<String, Operation> _operations = new HashMap<>();
+    private final HashSet<String> _retryable = new HashSet<>();
+    private final HashSet<String> _fatal = new HashSet<>();
+    private final Random _random = new Random();
+
+    private int _breakerThreshold = DEFAULT_BREAKER_THRESHOLD;
+    private long _breakerOpenMillis = DEFAULT_BREAKER_OPEN_MILLIS;
+
+
+    RetryPolicy()
+    {
+        for (String name : DEFAULT_RETRYABLE)
+            _retryable.add(name);
+        for (String name : DEFAULT_FATAL)
+            _fatal.add(name);
+    }
+
+
+    /**
+     * sets the budget of one operation. maxAttempts of 1 turns retries off.
+     */
+    synchronized void configure(String operation, int maxAttempts, long baseDelayMillis, long maxDelayMillis, long budgetMillis)
+    {
+        if (maxAttempts < 1)
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        if (baseDelayMillis < 0 || maxDelayMillis < baseDelayMillis || budgetMillis < 0)
+            throw new IllegalArgumentException("delays and budget can not be negative and maxDelay can not be below baseDelay");
+
+        Operation op = operation(operation);
+        op.maxAttempts = maxAttempts;
+        op.baseDelayMillis = baseDelayMillis;
+        op.maxDelayMillis = maxDelayMillis;
+        op.budgetMillis = budgetMillis;
+    }
+
+
+    /**
+     * the breaker of an operation opens after failureThreshold calls in a row failed and stays open for openMillis.
+     * A failureThreshold of 0 turns the breakers off.
+     */
+    synchronized void configureCircuitBreaker(int failureThreshold, long openMillis)
+    {
+        if (failureThreshold < 0 || openMillis < 0)
+            throw new IllegalArgumentException("failureThreshold and openMillis can not be negative");
+
+        _breakerThreshold = failureThreshold;
+        _breakerOpenMillis = openMillis;
+    }
+
+
+    /**
+     * overrides the classification of an exception by its simple class name
+     */
+    synchronized void setRetryable(String nativeType, boolean retryable)
+    {
+        if (retryable) {
+            _fatal.remove(nativeType);
+            _retryable.add(nativeType);
+        }
+        else {
+            _retryable.remove(nativeType);
+            _fatal.add(nativeType);
+        }
+    }
+
+
+    <T> T call(String operation, Call<T> call) throws Exception
+    {
+        long start = SystemClock.elapsedRealtime();
+        int maxAttempts;
+        long budgetMillis;
+        synchronized (this) {
+            Operation op = operation(operation);
+            op.calls++;
+            admit(operation, op);
+            maxAttempts = op.maxAttempts;
+            budgetMillis = op.budgetMillis;
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                T result = call.call();
+                onSuccess(operation);
+                return result;
+            }
+            catch (Exception e) {
+                boolean retryable = isRetryable(e);
+                long delay = retryable ? backoff(operation, attempt) : 0;
+                long elapsed = SystemClock.elapsedRealtime() - start;
+
+                if (!retryable || attempt >= maxAttempts || elapsed + delay > budgetMillis) {
+                    onFailure(operation, retryable);
+                    throw e;
+                }
+
+                Log.i(KinPluginBase.TAG, operation + " attempt " + attempt + " failed with " + e.getClass().getSimpleName() + ", retrying in " + delay + "ms");
+                synchronized (this) {
+                    operation(operation).retries++;
+                }
+                Thread.sleep(delay);
+            }
+        }
+    }
+
+
+    /**
+     * @return per operation call, retry, failure and fast fail counts plus whether the breaker is open as JSON, mirrored
+     * by RetryStats in C#
+     */
+    synchronized String statsToJson()
+    {
+        long now = SystemClock.elapsedRealtime();
+        JsonWriter writer = JsonWriter.obtain().beginObject().beginArray("Operations");
+        for (Map.Entry<String, Operation> entry : _operations.entrySet()) {
+            Operation op = entry.getValue();
+            writer.beginObject()
+                    .put("Operation", entry.getKey())
+                    .put("Calls", op.calls)
+                    .put("Retries", op.retries)
+                    .put("Failures", op.failures)
+                    .put("Rejected", op.rejected)
+                    .put("CircuitOpen", op.openUntil > now)
+                    .endObject();
+        }
+        return writer.endArray().endObject().finish();
+    }
+
+
+    boolean isRetryable(Throwable e)
+    {
+        boolean retryable = false;
+        synchronized (this) {
+            for (Throwable cause = e; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+                String name = cause.getClass().getSimpleName();
+                if (_fatal.contains(name))
+                    return false;
+                if (_retryable.contains(name))
+                    retryable = true;
+            }
+        }
+        return retryable;
+    }
+
+
+    /**
+     * lets the call through unless the breaker is open. Once the open period is over a single trial call is let
+     * through and decides whether the breaker closes again.
+     */
+    private void admit(String operation, Operation op) throws CircuitOpenException
+    {
+        if (_breakerThreshold == 0 || op.consecutiveFailures < _breakerThreshold)
+            return;
+
+        long now = SystemClock.elapsedRealtime();
+        if (now < op.openUntil || op.trialInFlight) {
+            op.rejected++;
+            throw new CircuitOpenException(operation, Math.max(0, op.openUntil - now));
+        }
+
+        op.trialInFlight = true;
+    }
+
+
+    private synchronized void onSuccess(String operation)
+    {
+        Operation op = operation(operation);
+        op.consecutiveFailures = 0;
+        op.trialInFlight = false;
+    }
+
+
+    /**
+     * only retryable failures count towards the breaker, a fatal error means the service itself answered fine
+     */
+    private synchronized void onFailure(String operation, boolean retryable)
+    {
+        Operation op = operation(operation);
+        op.failures++;
+        op.trialInFlight = false;
+
+        if (!retryable) {
+            op.consecutiveFailures = 0;
+            return;
+        }
+
+        op.consecutiveFailures++;
+        if (_breakerThreshold > 0 && op.consecutiveFailures >= _breakerThreshold) {
+            op.openUntil = SystemClock.elapsedRealtime() + _breakerOpenMillis;
+            Log.w(KinPluginBase.TAG, operation + " circuit breaker opened for " + _breakerOpenMillis + "ms");
+        }
+    }
+
+
+    /**
+     * full jitter: a random delay between 0 and the exponential backoff for this attempt
+     */
+    private synchronized long backoff(String operation, int attempt)
+    {
+        Operation op = operation(operation);
+        long ceiling = Math.min(op.maxDelayMillis, op.baseDelayMillis << Math.min(attempt - 1, 20));
+        return ceiling <= 0 ? 0 : (long)(_random.nextDouble() * ceiling);
+    }
+
+
+    private Operation operation(String name)
+    {
+        Operation op = _operations.get(name);
+        if (op == null) {
+            op = new Operation();
+            _operations.put(name, op);
+        }
+        return op;
+    }
+}
@@ -0,0 +1,127 @@
+package kin.unity;
+
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+
+/**
+ * Runs tasks that share a key strictly one after the other, in the order they were submitted, while tasks for
+ * different keys run in parallel on the lane. Used to order everything that touches an account's sequence number so
+ * concurrent sends from the same account never race each other.
+ *
+ * Only one task per key is ever queued on the executor. The rest wait here, so a busy account can't fill the lane's
+ * queue and other accounts still get their turn in between.
+ */
+final class SerialScheduler {
+
+    private static final class Task {
+        final Runnable runnable;
+        final PluginExecutor.RejectionListener onRejected;
+
+        Task(Runnable runnable, PluginExecutor.RejectionListener onRejected)
+        {
+            this.runnable = runnable;
+            this.onRejected = onRejected;
+        }
+    }
+
+
+    private final PluginExecutor _executor;
+    private final PluginExecutor.Lane _lane;
+
+    // the head of every queue is the task that is currently queued on or running on the executor
+    private final HashMap<String, ArrayDeque<Task>> _queues = new HashMap<>();
+
+
+    SerialScheduler(PluginExecutor executor, PluginExecutor.Lane lane)
+    {
+        _executor = executor;
+        _lane = lane;
+    }
+
+
+    /**
+     * queues runnable behind every task already submitted for key. onRejected is called instead if the executor
+     * rejects the task, which also fails everything queued behind it.
+     */
+    void submit(String key, Runnable runnable, PluginExecutor.RejectionListener onRejected)
+    {
+        boolean idle;
+        synchronized (this) {
+            ArrayDeque<Task> queue = _queues.get(key);
+            idle = queue == null;
+            if (idle) {
+                queue = new ArrayDeque<>();
+                _queues.put(key, queue);
+            }
+            queue.add(new Task(runnable, onRejected));
+        }
+
+        if (idle)
+            runHead(key);
+    }
+
+
+    /**
+     * @return number of tasks waiting or running for key
+     */
+    synchronized int pending(String key)
+    {
+        ArrayDeque<Task> queue = _queues.get(key);
+        return queue != null ? queue.size() : 0;
+    }
+
+
+    private void runHead(final String key)
+    {
+        _executor.execute(_lane, () -> {
+            Task task;
+            synchronized (this) {
+                task = _queues.get(key).peek();
+            }
+
+            try {
+                task.runnable.run();
+            }
+            finally {
+                if (advance(key))
+                    runHead(key);
+            }
+        }, e -> rejectAll(key, e));
+    }
+
+
+    /**
+     * drops the finished head of the queue
+     * @return true if another task is waiting
+     */
+    private synchronized boolean advance(String key)
+    {
+        ArrayDeque<Task> queue = _queues.get(key);
+        queue.poll();
+        if (!queue.isEmpty())
+            return true;
+
+        _queues.remove(key);
+        return false;
+    }
+
+
+    private void rejectAll(String key, RejectedExecutionException e)
+    {
+        ArrayDeque<Task> queue;
+        synchronized (this) {
+            queue = _queues.remove(key);
+        }
+
+        if (queue == null)
+            return;
+
+        for (Task task : queue) {
+            if (task.onRejected != null)
+                task.onRejected.onRejected(e);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package kin.unity;
+
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+
+
+/**
+ * Coalesces concurrent requests for the same key into a single call. The first caller to join a key becomes the
+ * leader and runs the call, everyone who joins before the leader completes is handed the same result.
+ */
+final class SingleFlight<T> {
+
+    interface Listener<T> {
+        /**
+         * called once per distinct waiter when the flight it joined completes. Exactly one of result or error is set.
+         */
+        void onComplete(String waiterId, T result, Exception error);
+    }
+
+
+    private final HashMap<String, LinkedHashSet<String>> _flights = new HashMap<>();
+    private final Listener<T> _listener;
+
+
+    SingleFlight(Listener<T> listener)
+    {
+        _listener = listener;
+    }
+
+
+    /**
+     * adds waiterId to the flight for key
+     * @return true if there was no flight in progress and the caller must run the call and then complete the key
+     */
+    synchronized boolean join(String key, String waiterId)
+    {
+        LinkedHashSet<String> waiters = _flights.get(key);
+        if (waiters != null) {
+            waiters.add(waiterId);
+            return false;
+        }
+
+        waiters = new LinkedHashSet<>();
+        waiters.add(waiterId);
+        _flights.put(key, waiters);
+        return true;
+    }
+
+
+    /**
+     * starts a flight for key without a waiter, used for background refreshes that nobody is waiting on yet
+     * @return true if there was no flight in progress and the caller must run the call and then complete the key
+     */
+    synchronized boolean start(String key)
+    {
+        if (_flights.containsKey(key))
+            return false;
+
+        _flights.put(key, new LinkedHashSet<String>());
+        return true;
+    }
+
+
+    /**
+     * ends the flight for key and hands the result to every waiter that joined it
+     */
+    void complete(String key, T result, Exception error)
+    {
+        LinkedHashSet<String> waiters;
+        synchronized (this) {
+            waiters = _flights.remove(key);
+        }
+
+        if (waiters == null)
+            return;
+
+        // listeners are called outside the lock so a waiter can immediately start a new flight for the same key
+        for (String waiterId : waiters)
+            _listener.onComplete(waiterId, result, error);
+    }
+}
@@ -0,0 +1,69 @@
+package kin.unity;
+
+
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+
+
+/**
+ * How long each step of bringing up a KinClient took, so cold start cost can be measured on device. Steps are recorded
+ * in the order they ran and the total runs from when Unity asked for the client.
+ */
+final class StartupTimings {
+
+    // steps, mirrored by the names reported to C#
+    static final String LOAD_SNAPSHOT = "LoadSnapshot";
+    static final String QUEUED = "Queued";
+    static final String CREATE_CLIENT = "CreateClient";
+    static final String LOAD_ACCOUNTS = "LoadAccounts";
+    static final String MINIMUM_FEE = "MinimumFee";
+
+    private final long _requestedAt = SystemClock.elapsedRealtime();
+    private final ArrayList<String> _names = new ArrayList<>();
+    private final ArrayList<Long> _millis = new ArrayList<>();
+    private long _stepStartedAt = _requestedAt;
+    private long _totalMillis = -1;
+
+
+    /**
+     * ends the current step under name and starts the next one
+     */
+    synchronized void step(String name)
+    {
+        long now = SystemClock.elapsedRealtime();
+        _names.add(name);
+        _millis.add(now - _stepStartedAt);
+        _stepStartedAt = now;
+    }
+
+
+    /**
+     * @return milliseconds from the request to now, also what toJson reports from here on
+     */
+    synchronized long finish()
+    {
+        _totalMillis = SystemClock.elapsedRealtime() - _requestedAt;
+        return _totalMillis;
+    }
+
+
+    /**
+     * @return {"ClientId","TotalMillis","Steps":[{"Step","Millis"}]} as JSON, mirrored by StartupTimings in C#
+     */
+    synchronized String toJson(String clientId)
+    {
+        JsonWriter writer = JsonWriter.obtain()
+                .beginObject()
+                .put("ClientId", clientId)
+                .put("TotalMillis", _totalMillis)
+                .beginArray("Steps");
+        for (int i = 0; i < _names.size(); i++) {
+            writer.beginObject()
+                    .put("Step", _names.get(i))
+                    .put("Millis", _millis.get(i))
+                    .endObject();
+        }
+        return writer.endArray().endObject().finish();
+    }
+}
@@ -0,0 +1,15 @@
+package kin.unity;
+
+
+/**
+ * In process WhitelistProvider that hands the envelope back untouched. Meant for tests of the whitelist pipeline, the
+ * resulting transaction is only accepted by the network if the fee it was built with covers it.
+ */
+final class StubWhitelistProvider implements WhitelistProvider {
+
+    @Override
+    public String whitelist(String transactionPayload, String networkPassphrase)
+    {
+        return transactionPayload;
+    }
+}
@@ -0,0 +1,13 @@
+package kin.unity;
+
+
+/**
+ * Signs a transaction envelope with the app's whitelist key so it can be sent without a fee. Implementations are
+ * called on a worker thread and may block.
+ */
+interface WhitelistProvider {
+    /**
+     * @return the whitelisted transaction envelope
+     */
+    String whitelist(String transactionPayload, String networkPassphrase) throws Exception;
+}
@@ -0,0 +1,64 @@
+package kin.unity;
+
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import kin.sdk.WhitelistableTransaction;
+
+
+/**
+ * The whitelist step of the native build -> whitelist -> send pipeline for one client. Limits how many whitelist
+ * requests run at once so a burst of payments can't flood the app's whitelist service.
+ */
+final class WhitelistStage {
+
+    static final int DEFAULT_TIMEOUT_MILLIS = 10 * 1000;
+    static final int DEFAULT_MAX_CONCURRENT = 4;
+
+    // pass this instead of a url to whitelist with the StubWhitelistProvider
+    static final String STUB_URL = "stub:";
+
+    private final WhitelistProvider _provider;
+    private final Semaphore _permits;
+    private final int _timeoutMillis;
+
+
+    WhitelistStage(WhitelistProvider provider, int timeoutMillis, int maxConcurrent)
+    {
+        if (timeoutMillis < 1)
+            throw new IllegalArgumentException("timeout must be at least 1ms");
+        if (maxConcurrent < 1)
+            throw new IllegalArgumentException("maxConcurrent must be at least 1");
+
+        _provider = provider;
+        _permits = new Semaphore(maxConcurrent, true);
+        _timeoutMillis = timeoutMillis;
+    }
+
+
+    static WhitelistStage create(String url, int timeoutMillis, int maxConcurrent) throws Exception
+    {
+        WhitelistProvider provider = STUB_URL.equals(url) ? new StubWhitelistProvider() : new HttpWhitelistProvider(url, timeoutMillis);
+        return new WhitelistStage(provider, timeoutMillis, maxConcurrent);
+    }
+
+
+    /**
+     * blocks until a permit is free (at most the timeout) and the provider returned
+     * @throws TimeoutException if too many whitelist requests are already running for too long
+     */
+    String whitelist(WhitelistableTransaction transaction) throws Exception
+    {
+        if (!_permits.tryAcquire(_timeoutMillis, TimeUnit.MILLISECONDS))
+            throw new TimeoutException("timed out waiting for a free whitelist request slot");
+
+        try {
+            return _provider.whitelist(transaction.getTransactionPayload(), transaction.getNetworkPassphrase());
+        }
+        finally {
+            _permits.release();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package kin.unity;
+
+
+import com.unity3d.player.UnityPlayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import kin.sdk.KinClient;
+
+
+/**
+ * Build and send throughput against the stub Horizon, each call waits for its callback like the C# side does. Run with
+ * more threads (-t) to see how accounts sending at the same time share the worker pools, every thread sends from its
+ * own account.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BuildSendBenchmark {
+
+    private static final String CLIENT_ID = "buildsend";
+
+
+    @State(Scope.Benchmark)
+    public static class Network {
+        @Param({ "0", "20" })
+        public long horizonLatencyMillis;
+
+        final KinPlugin plugin = KinPlugin.instance();
+        final AtomicInteger nextAccount = new AtomicInteger();
+        StubHorizon horizon;
+        Replies replies;
+        String destination;
+
+        @Setup
+        public void setUp() throws Exception
+        {
+            horizon = new StubHorizon(horizonLatencyMillis);
+            replies = Replies.install();
+            plugin._putClient(CLIENT_ID, new KinClient(UnityPlayer.currentActivity, horizon.environment(), "bnch", CLIENT_ID));
+            check(plugin.setWhitelistService(CLIENT_ID, WhitelistStage.STUB_URL, 1000, 8));
+
+            String destinationId = CLIENT_ID + "-destination";
+            check(plugin.addAccount(CLIENT_ID, destinationId));
+            destination = plugin.getPublicAddress(destinationId);
+        }
+
+        @TearDown
+        public void tearDown()
+        {
+            plugin.clearAllAccounts(CLIENT_ID);
+            plugin.freeCachedClient(CLIENT_ID);
+            UnityPlayer.setReceiver(null);
+            horizon.stop();
+        }
+    }
+
+
+    @State(Scope.Thread)
+    public static class Sender {
+        String accountId;
+
+        @Setup
+        public void setUp(Network network)
+        {
+            accountId = CLIENT_ID + "-sender" + network.nextAccount.getAndIncrement();
+            check(network.plugin.addAccount(CLIENT_ID, accountId));
+        }
+    }
+
+
+    @Benchmark
+    public String buildThenSend(Network network, Sender sender) throws Exception
+    {
+        network.plugin.buildTransaction(sender.accountId, network.destination, "1.5", StubHorizon.BASE_FEE, "bench");
+        String id = network.replies.await(sender.accountId, "BuildTransactionSucceeded").getString("Id");
+
+        network.plugin.sendTransaction(sender.accountId, id);
+        network.replies.await(sender.accountId, "SendTransactionSucceeded");
+        return id;
+    }
+
+
+    /**
+     * the one call path, build, whitelist and send on one worker thread without a round trip through Unity
+     */
+    @Benchmark
+    public String sendWhitelisted(Network network, Sender sender) throws Exception
+    {
+        network.plugin.sendWhitelistedTransaction(sender.accountId, network.destination, "1.5", "bench");
+        return network.replies.await(sender.accountId, "SendTransactionSucceeded").getString("Value");
+    }
+
+
+    private static void check(String error)
+    {
+        if (!error.isEmpty())
+            throw new IllegalStateException(error);
+    }
+}
@@ -0,0 +1,132 @@
+package kin.unity;
+
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+
+import kin.sdk.Balance;
+import kin.sdk.EventListener;
+import kin.sdk.KinAccount;
+import kin.sdk.ListenerRegistration;
+import kin.sdk.PaymentInfo;
+import kin.sdk.TransactionId;
+
+
+/**
+ * SDK objects for benchmarks that feed events in directly instead of going through Horizon. They are proxies so they
+ * only answer what the plugin actually calls.
+ */
+final class Fakes {
+
+    /**
+     * the listeners the plugin registered on a fake account, null until registered
+     */
+    static final class Streams {
+        volatile EventListener<PaymentInfo> payments;
+        volatile EventListener<Balance> balances;
+        volatile EventListener<Void> accountCreation;
+    }
+
+
+    private Fakes()
+    {
+    }
+
+
+    @SuppressWarnings("unchecked")
+    static KinAccount account(final String address, final Streams streams)
+    {
+        return proxy(KinAccount.class, (method, args) -> {
+            switch (method) {
+                case "getPublicAddress":
+                    return address;
+                case "addPaymentListener":
+                    streams.payments = (EventListener<PaymentInfo>)args[0];
+                    return registration(() -> streams.payments = null);
+                case "addBalanceListener":
+                    streams.balances = (EventListener<Balance>)args[0];
+                    return registration(() -> streams.balances = null);
+                case "addAccountCreationListener":
+                    streams.accountCreation = (EventListener<Void>)args[0];
+                    return registration(() -> streams.accountCreation = null);
+                default:
+                    throw new UnsupportedOperationException(method);
+            }
+        });
+    }
+
+
+    static PaymentInfo payment(final String from, final String to, final String hash)
+    {
+        final BigDecimal amount = new BigDecimal("12.5");
+        final TransactionId id = proxy(TransactionId.class, (method, args) -> hash);
+
+        return proxy(PaymentInfo.class, (method, args) -> {
+            switch (method) {
+                case "createdAt":
+                    return "2018-11-01T12:00:00Z";
+                case "destinationPublicKey":
+                    return to;
+                case "sourcePublicKey":
+                    return from;
+                case "amount":
+                    return amount;
+                case "hash":
+                    return id;
+                case "memo":
+                    return "1-bnch-benchmark";
+                case "fee":
+                    return 100L;
+                default:
+                    throw new UnsupportedOperationException(method);
+            }
+        });
+    }
+
+
+    static Balance balance(final String value)
+    {
+        final BigDecimal decimal = new BigDecimal(value);
+        return proxy(Balance.class, (method, args) -> args == null ? decimal : decimal.setScale((Integer)args[0]).toPlainString());
+    }
+
+
+    /**
+     * the SDK creates these itself, there is no public constructor
+     */
+    private static ListenerRegistration registration(Runnable remove)
+    {
+        try {
+            Constructor<ListenerRegistration> constructor = ListenerRegistration.class.getDeclaredConstructor(Runnable.class);
+            constructor.setAccessible(true);
+            return constructor.newInstance(remove);
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    private interface Handler {
+        Object invoke(String method, Object[] args);
+    }
+
+
+    private static <T> T proxy(Class<T> type, Handler handler)
+    {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+                }
+            }
+            return handler.invoke(method.getName(), args);
+        }));
+    }
+}
@@ -0,0 +1,100 @@
+package kin.unity;
+
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+import kin.sdk.Balance;
+import kin.sdk.PaymentInfo;
+
+
+/**
+ * Events pushed into a shared listener stream and fanned out to every accountId watching the address, through the
+ * event coalescer and out of the fake UnityPlayer. With a window of 0 everything runs on the calling thread so the
+ * score covers the whole path, with a window it only covers handing the event over and the flush runs on the executor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ListenerFanOutBenchmark {
+
+    private static final String ADDRESS = "GAIRFJUYO3H3BTRTGJEBDV3X2N5S3NLGUTVDBWGJJGRUNNJCQ3AHSIOO";
+
+    @Param({ "1", "32", "256" })
+    public int subscribers;
+
+    @Param({ "0", "50" })
+    public long windowMillis;
+
+    private final KinPlugin _plugin = KinPlugin.instance();
+    private final Fakes.Streams _streams = new Fakes.Streams();
+    private String[] _accountIds;
+    private PaymentInfo _payment;
+    private Balance[] _balances;
+    private int _nextBalance;
+
+
+    @Setup
+    public void setUp()
+    {
+        check(_plugin.configureEventCoalescing(windowMillis, EventCoalescer.DEFAULT_MAX_PAYMENT_BATCH));
+
+        _accountIds = new String[subscribers];
+        for (int i = 0; i < subscribers; i++) {
+            _accountIds[i] = "fanout" + i;
+            _plugin._putAccount(_accountIds[i], Fakes.account(ADDRESS, _streams));
+            _plugin.addPaymentListener(_accountIds[i]);
+            _plugin.addBalanceListener(_accountIds[i]);
+        }
+
+        _payment = Fakes.payment("GDV3X2N5S3NLGUTVDBWGJJGRUNNJCQ3AHSIOOGAIRFJUYO3H3BTRTGJE", ADDRESS,
+                "5a4ed1b0c9b6e4b1fdb2d3a4c5d6e7f8091a2b3c4d5e6f708192a3b4c5d6e7f8");
+        _balances = new Balance[] { Fakes.balance("100.5"), Fakes.balance("113.0") };
+    }
+
+
+    @TearDown
+    public void tearDown()
+    {
+        for (String accountId : _accountIds) {
+            _plugin.removePaymentListener(accountId);
+            _plugin.removeBalanceListener(accountId);
+            _plugin.freeCachedAccount(accountId);
+        }
+
+        check(_plugin.configureEventCoalescing(EventCoalescer.DEFAULT_WINDOW_MILLIS, EventCoalescer.DEFAULT_MAX_PAYMENT_BATCH));
+    }
+
+
+    @Benchmark
+    public void payment()
+    {
+        _streams.payments.onEvent(_payment);
+    }
+
+
+    /**
+     * alternates between two values so every event is an actual change
+     */
+    @Benchmark
+    public void balance()
+    {
+        _streams.balances.onEvent(_balances[_nextBalance++ & 1]);
+    }
+
+
+    private static void check(String error)
+    {
+        if (!error.isEmpty())
+            throw new IllegalStateException(error);
+    }
+}
@@ -0,0 +1,123 @@
+package kin.unity;
+
+
+import com.unity3d.player.UnityPlayer;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+import kin.sdk.KinClient;
+
+
+/**
+ * Balance and minimum fee lookups from the Unity call to the callback, served from the plugin caches and from the
+ * stub Horizon. horizonLatencyMillis stands in for the round trip to a real Horizon.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LookupBenchmark {
+
+    @Param({ "0", "20" })
+    public long horizonLatencyMillis;
+
+    private final KinPlugin _plugin = KinPlugin.instance();
+    private StubHorizon _horizon;
+    private Replies _replies;
+    private String _clientId;
+    private String _uncachedClientId;
+    private String _accountId;
+
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        _horizon = new StubHorizon(horizonLatencyMillis);
+        _replies = Replies.install();
+
+        _clientId = "lookup" + horizonLatencyMillis;
+        _uncachedClientId = _clientId + "-uncached";
+        _accountId = _clientId + "-account";
+        for (String clientId : new String[] { _clientId, _uncachedClientId })
+            _plugin._putClient(clientId, new KinClient(UnityPlayer.currentActivity, _horizon.environment(), "bnch", clientId));
+
+        check(_plugin.configureFeeCache(_uncachedClientId, 0, 0));
+        check(_plugin.addAccount(_clientId, _accountId));
+
+        // fill the caches
+        balanceFromNetwork();
+        feeFromNetwork();
+        _plugin.getMinimumFee(_clientId);
+        _replies.await(_clientId, "GetMinimumFeeSucceeded");
+    }
+
+
+    @TearDown
+    public void tearDown()
+    {
+        _plugin.freeCachedAccount(_accountId);
+        _plugin.freeCachedClient(_clientId);
+        _plugin.freeCachedClient(_uncachedClientId);
+        UnityPlayer.setReceiver(null);
+        _horizon.stop();
+    }
+
+
+    /**
+     * without a balance listener every getBalance goes to Horizon
+     */
+    @Benchmark
+    public JSONObject balanceFromNetwork() throws Exception
+    {
+        _plugin.getBalance(_accountId);
+        return _replies.await(_accountId, "GetBalanceSucceeded");
+    }
+
+
+    @Benchmark
+    public JSONObject balanceFromCache() throws Exception
+    {
+        _plugin.getBalance(_accountId, Long.MAX_VALUE);
+        return _replies.await(_accountId, "GetBalanceSucceeded");
+    }
+
+
+    @Benchmark
+    public String cachedBalance()
+    {
+        return _plugin.getCachedBalance(_accountId);
+    }
+
+
+    @Benchmark
+    public JSONObject feeFromNetwork() throws Exception
+    {
+        _plugin.getMinimumFee(_uncachedClientId);
+        return _replies.await(_uncachedClientId, "GetMinimumFeeSucceeded");
+    }
+
+
+    @Benchmark
+    public JSONObject feeFromCache() throws Exception
+    {
+        _plugin.getMinimumFee(_clientId);
+        return _replies.await(_clientId, "GetMinimumFeeSucceeded");
+    }
+
+
+    private static void check(String error)
+    {
+        if (!error.isEmpty())
+            throw new IllegalStateException(error);
+    }
+}
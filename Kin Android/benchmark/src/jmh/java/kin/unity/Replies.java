@@ -0,0 +1,68 @@
+package kin.unity;
+
+
+import com.unity3d.player.UnityPlayer;
+
+import org.json.JSONObject;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+
+/**
+ * Collects what the plugin sends to the fake UnityPlayer by AccountId, which is the clientId for client callbacks, so
+ * benchmark threads can wait for the reply to their own call.
+ */
+final class Replies implements UnityPlayer.Receiver {
+
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private final ConcurrentHashMap<String, BlockingQueue<JSONObject>> _replies = new ConcurrentHashMap<>();
+
+
+    static Replies install()
+    {
+        Replies replies = new Replies();
+        UnityPlayer.setReceiver(replies);
+        return replies;
+    }
+
+
+    @Override
+    public void onMessage(String method, String parameter)
+    {
+        JSONObject reply = new JSONObject(parameter).put("Method", method);
+        queue(reply.optString("AccountId")).add(reply);
+    }
+
+
+    /**
+     * waits for the next message sent for id
+     * @return the message, throws if it isn't method
+     */
+    JSONObject await(String id, String method) throws Exception
+    {
+        JSONObject reply = queue(id).poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (reply == null)
+            throw new TimeoutException("no " + method + " for " + id);
+
+        if (!method.equals(reply.getString("Method")))
+            throw new IllegalStateException("expected " + method + " for " + id + " but got " + reply);
+
+        return reply;
+    }
+
+
+    private BlockingQueue<JSONObject> queue(String id)
+    {
+        BlockingQueue<JSONObject> queue = _replies.get(id);
+        if (queue == null) {
+            _replies.putIfAbsent(id, new LinkedBlockingQueue<>());
+            queue = _replies.get(id);
+        }
+        return queue;
+    }
+}
@@ -0,0 +1,117 @@
+package kin.unity;
+
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import kin.sdk.PaymentInfo;
+
+
+/**
+ * Cost of turning results into what crosses the bridge, JSON for UnitySendMessage against the BinaryCodec format.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SerializationBenchmark {
+
+    private static final String ACCOUNT_ID = "abcdefghijk";
+    private static final String FROM = "GAIRFJUYO3H3BTRTGJEBDV3X2N5S3NLGUTVDBWGJJGRUNNJCQ3AHSIOO";
+    private static final String TO = "GDV3X2N5S3NLGUTVDBWGJJGRUNNJCQ3AHSIOOGAIRFJUYO3H3BTRTGJE";
+
+    @Param({ "1", "32", "256" })
+    public int batchSize;
+
+    private final KinPlugin _plugin = KinPlugin.instance();
+    private PaymentInfo _payment;
+    private List<PaymentInfo> _payments;
+    private BatchRequest _balances;
+    private Object[] _events;
+    private Exception _error;
+
+
+    @Setup
+    public void setUp()
+    {
+        _payment = Fakes.payment(FROM, TO, "5a4ed1b0c9b6e4b1fdb2d3a4c5d6e7f8091a2b3c4d5e6f708192a3b4c5d6e7f8");
+        _payments = new ArrayList<>();
+        String[] accountIds = new String[batchSize];
+        _events = new Object[batchSize * 2];
+        for (int i = 0; i < batchSize; i++) {
+            _payments.add(_payment);
+            accountIds[i] = ACCOUNT_ID + i;
+            _events[i * 2] = "OnPayment";
+            _events[i * 2 + 1] = BinaryCodec.payment(_payment, accountIds[i]);
+        }
+
+        _balances = new BatchRequest("batch", accountIds, accountId -> "12345.67890");
+        _balances.run(batch -> {});
+        _error = new IllegalStateException("account " + ACCOUNT_ID + " was not found");
+    }
+
+
+    @Benchmark
+    public String callbackJson()
+    {
+        return _plugin.callbackToJson("12345.67890", ACCOUNT_ID);
+    }
+
+
+    @Benchmark
+    public byte[] callbackBinary()
+    {
+        return BinaryCodec.callback("12345.67890", ACCOUNT_ID);
+    }
+
+
+    @Benchmark
+    public String errorJson()
+    {
+        return _plugin.exceptionToJson(_error, ACCOUNT_ID);
+    }
+
+
+    @Benchmark
+    public String paymentJson()
+    {
+        return _plugin.paymentInfoToJson(_payment, ACCOUNT_ID);
+    }
+
+
+    @Benchmark
+    public byte[] paymentBinary()
+    {
+        return BinaryCodec.payment(_payment, ACCOUNT_ID);
+    }
+
+
+    @Benchmark
+    public byte[] paymentListBinary()
+    {
+        return BinaryCodec.payments(_payments, ACCOUNT_ID);
+    }
+
+
+    @Benchmark
+    public String balanceBatchJson()
+    {
+        return _plugin.batchToJson(_balances);
+    }
+
+
+    @Benchmark
+    public byte[] eventFrame()
+    {
+        return BinaryCodec.frame(_events);
+    }
+}
@@ -0,0 +1,187 @@
+package kin.unity;
+
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import kin.sdk.Environment;
+
+
+/**
+ * Just enough of Horizon on localhost for the SDK's account, fee and submit calls. Every account exists with the same
+ * balance, every transaction succeeds and latencyMillis is added to each response to stand in for the network.
+ */
+final class StubHorizon {
+
+    static final String NETWORK_PASSPHRASE = "Kin Unity benchmark network";
+    static final String BALANCE = "10000.00000";
+    static final int BASE_FEE = 100;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final HttpServer _server;
+    private final ExecutorService _threads;
+    private final long _latencyMillis;
+    private final AtomicLong _requests = new AtomicLong();
+    private final AtomicLong _submitted = new AtomicLong();
+
+
+    StubHorizon(long latencyMillis) throws IOException
+    {
+        _latencyMillis = latencyMillis;
+        _threads = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "StubHorizon");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        _server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        _server.createContext("/accounts/", this::account);
+        _server.createContext("/ledgers", this::ledgers);
+        _server.createContext("/transactions", this::submit);
+        _server.setExecutor(_threads);
+        _server.start();
+    }
+
+
+    Environment environment()
+    {
+        return new Environment("http://127.0.0.1:" + _server.getAddress().getPort(), NETWORK_PASSPHRASE);
+    }
+
+
+    long requests()
+    {
+        return _requests.get();
+    }
+
+
+    long submitted()
+    {
+        return _submitted.get();
+    }
+
+
+    void stop()
+    {
+        _server.stop(0);
+        _threads.shutdownNow();
+    }
+
+
+    private void account(HttpExchange exchange) throws IOException
+    {
+        String address = exchange.getRequestURI().getPath().substring("/accounts/".length());
+        respond(exchange, 200, "{"
+                + "\"id\":\"" + address + "\","
+                + "\"account_id\":\"" + address + "\","
+                + "\"paging_token\":\"\","
+                + "\"sequence\":\"4294967296\","
+                + "\"subentry_count\":0,"
+                + "\"thresholds\":{\"low_threshold\":0,\"med_threshold\":0,\"high_threshold\":0},"
+                + "\"flags\":{\"auth_required\":false,\"auth_revocable\":false},"
+                + "\"balances\":[{\"balance\":\"" + BALANCE + "\",\"asset_type\":\"native\"}],"
+                + "\"signers\":[{\"public_key\":\"" + address + "\",\"key\":\"" + address + "\",\"weight\":1,\"type\":\"ed25519_public_key\"}],"
+                + "\"data\":{}"
+                + "}");
+    }
+
+
+    /**
+     * the SDK reads the minimum fee from the latest ledger
+     */
+    private void ledgers(HttpExchange exchange) throws IOException
+    {
+        respond(exchange, 200, "{\"_embedded\":{\"records\":[{"
+                + "\"id\":\"0000000000000000000000000000000000000000000000000000000000000001\","
+                + "\"paging_token\":\"4294967296\","
+                + "\"hash\":\"0000000000000000000000000000000000000000000000000000000000000001\","
+                + "\"sequence\":1,"
+                + "\"transaction_count\":0,"
+                + "\"operation_count\":0,"
+                + "\"closed_at\":\"2018-11-01T12:00:00Z\","
+                + "\"total_coins\":\"10000000000000.00000\","
+                + "\"fee_pool\":\"0.00000\","
+                + "\"base_fee_in_stroops\":" + BASE_FEE + ","
+                + "\"base_reserve_in_stroops\":0,"
+                + "\"max_tx_set_size\":500"
+                + "}]}}");
+    }
+
+
+    /**
+     * accepts every transaction, its hash is made up from the envelope since nothing checks it
+     */
+    private void submit(HttpExchange exchange) throws IOException
+    {
+        String body = read(exchange.getRequestBody());
+        String envelope = URLDecoder.decode(body.substring(body.indexOf('=') + 1), "UTF-8");
+        _submitted.incrementAndGet();
+
+        respond(exchange, 200, "{"
+                + "\"hash\":\"" + sha256(envelope) + "\","
+                + "\"ledger\":1,"
+                + "\"envelope_xdr\":\"" + envelope + "\","
+                + "\"result_xdr\":\"AAAAAAAAAGQAAAAAAAAAAQAAAAAAAAABAAAAAAAAAAA=\""
+                + "}");
+    }
+
+
+    private void respond(HttpExchange exchange, int status, String json) throws IOException
+    {
+        _requests.incrementAndGet();
+        if (_latencyMillis > 0) {
+            try {
+                Thread.sleep(_latencyMillis);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        byte[] body = json.getBytes(UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/hal+json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+
+    private static String read(InputStream in) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1)
+            out.write(buffer, 0, read);
+        return new String(out.toByteArray(), UTF_8);
+    }
+
+
+    private static String sha256(String value)
+    {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(value.getBytes(UTF_8)))
+                hex.append(String.format("%02x", b));
+            return hex.toString();
+        }
+        catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package android.app;
+
+
+import android.content.Context;
+import android.content.Intent;
+
+
+/**
+ * JVM stand-in, there is no UI thread so runOnUiThread runs right away
+ */
+public class Activity extends Context {
+
+    private final Application _application = new Application();
+
+
+    public Application getApplication()
+    {
+        return _application;
+    }
+
+
+    public void runOnUiThread(Runnable action)
+    {
+        action.run();
+    }
+
+
+    public void startActivity(Intent intent)
+    {
+        throw new UnsupportedOperationException("activities can't be started outside of Android");
+    }
+}
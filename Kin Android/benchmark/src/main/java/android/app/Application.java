@@ -0,0 +1,66 @@
+package android.app;
+
+
+import android.content.Context;
+import android.os.Bundle;
+
+import java.util.ArrayList;
+
+
+/**
+ * JVM stand-in that keeps the registered lifecycle callbacks so a benchmark can move the app to the background with
+ * stop(activity) and back with start(activity)
+ */
+public class Application extends Context {
+
+    public interface ActivityLifecycleCallbacks {
+        void onActivityCreated(Activity activity, Bundle savedInstanceState);
+
+        void onActivityStarted(Activity activity);
+
+        void onActivityResumed(Activity activity);
+
+        void onActivityPaused(Activity activity);
+
+        void onActivityStopped(Activity activity);
+
+        void onActivitySaveInstanceState(Activity activity, Bundle outState);
+
+        void onActivityDestroyed(Activity activity);
+    }
+
+
+    private final ArrayList<ActivityLifecycleCallbacks> _callbacks = new ArrayList<>();
+
+
+    public synchronized void registerActivityLifecycleCallbacks(ActivityLifecycleCallbacks callback)
+    {
+        _callbacks.add(callback);
+    }
+
+
+    public synchronized void unregisterActivityLifecycleCallbacks(ActivityLifecycleCallbacks callback)
+    {
+        _callbacks.remove(callback);
+    }
+
+
+    public void start(Activity activity)
+    {
+        for (ActivityLifecycleCallbacks callback : callbacks())
+            callback.onActivityStarted(activity);
+    }
+
+
+    public void stop(Activity activity)
+    {
+        for (ActivityLifecycleCallbacks callback : callbacks())
+            callback.onActivityStopped(activity);
+    }
+
+
+    private synchronized ArrayList<ActivityLifecycleCallbacks> callbacks()
+    {
+        return new ArrayList<>(_callbacks);
+    }
+}
@@ -0,0 +1,45 @@
+package android.content;
+
+
+import java.io.File;
+import java.util.HashMap;
+
+
+/**
+ * JVM stand-in that keeps shared preferences in memory, which is all the SDK keystore needs. Files go to a fresh temporary
+ * directory.
+ */
+public abstract class Context {
+
+    public static final int MODE_PRIVATE = 0;
+
+    private final HashMap<String, SharedPreferences> _preferences = new HashMap<>();
+    private File _filesDir;
+
+
+    public Context getApplicationContext()
+    {
+        return this;
+    }
+
+
+    public synchronized SharedPreferences getSharedPreferences(String name, int mode)
+    {
+        SharedPreferences preferences = _preferences.get(name);
+        if (preferences == null) {
+            preferences = new MemorySharedPreferences();
+            _preferences.put(name, preferences);
+        }
+        return preferences;
+    }
+
+
+    public synchronized File getFilesDir()
+    {
+        if (_filesDir == null) {
+            _filesDir = new File(System.getProperty("java.io.tmpdir"), "kin-benchmark-" + System.nanoTime());
+            _filesDir.mkdirs();
+        }
+        return _filesDir;
+    }
+}
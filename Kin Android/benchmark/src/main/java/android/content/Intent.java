@@ -0,0 +1,24 @@
+package android.content;
+
+
+/**
+ * JVM stand-in, only here so KinPlugin compiles. Starting activities isn't supported off device.
+ */
+public class Intent {
+
+    public Intent(Context context, Class<?> cls)
+    {
+    }
+
+
+    public Intent setAction(String action)
+    {
+        return this;
+    }
+
+
+    public Intent putExtra(String name, String value)
+    {
+        return this;
+    }
+}
@@ -0,0 +1,141 @@
+package android.content;
+
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+final class MemorySharedPreferences implements SharedPreferences {
+
+    private final HashMap<String, Object> _values = new HashMap<>();
+
+
+    @Override
+    public synchronized Map<String, ?> getAll()
+    {
+        return new HashMap<>(_values);
+    }
+
+
+    @Override
+    public String getString(String key, String defValue)
+    {
+        return (String)get(key, defValue);
+    }
+
+
+    @Override
+    public int getInt(String key, int defValue)
+    {
+        return (Integer)get(key, defValue);
+    }
+
+
+    @Override
+    public long getLong(String key, long defValue)
+    {
+        return (Long)get(key, defValue);
+    }
+
+
+    @Override
+    public boolean getBoolean(String key, boolean defValue)
+    {
+        return (Boolean)get(key, defValue);
+    }
+
+
+    @Override
+    public synchronized boolean contains(String key)
+    {
+        return _values.containsKey(key);
+    }
+
+
+    @Override
+    public Editor edit()
+    {
+        return new MemoryEditor();
+    }
+
+
+    private synchronized Object get(String key, Object defValue)
+    {
+        Object value = _values.get(key);
+        return value != null ? value : defValue;
+    }
+
+
+    /**
+     * changes are applied in one go on commit or apply like on Android
+     */
+    private final class MemoryEditor implements Editor {
+        private final HashMap<String, Object> _changes = new HashMap<>();
+        private boolean _clear;
+
+        @Override
+        public Editor putString(String key, String value)
+        {
+            _changes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putInt(String key, int value)
+        {
+            _changes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putLong(String key, long value)
+        {
+            _changes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putBoolean(String key, boolean value)
+        {
+            _changes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor remove(String key)
+        {
+            _changes.put(key, null);
+            return this;
+        }
+
+        @Override
+        public Editor clear()
+        {
+            _clear = true;
+            return this;
+        }
+
+        @Override
+        public boolean commit()
+        {
+            synchronized (MemorySharedPreferences.this) {
+                if (_clear)
+                    _values.clear();
+
+                for (Map.Entry<String, Object> change : _changes.entrySet()) {
+                    if (change.getValue() == null)
+                        _values.remove(change.getKey());
+                    else
+                        _values.put(change.getKey(), change.getValue());
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void apply()
+        {
+            commit();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package android.content;
+
+
+import java.util.Map;
+
+
+/**
+ * the subset of the Android interface the SDK uses
+ */
+public interface SharedPreferences {
+
+    interface Editor {
+        Editor putString(String key, String value);
+
+        Editor putInt(String key, int value);
+
+        Editor putLong(String key, long value);
+
+        Editor putBoolean(String key, boolean value);
+
+        Editor remove(String key);
+
+        Editor clear();
+
+        boolean commit();
+
+        void apply();
+    }
+
+
+    Map<String, ?> getAll();
+
+    String getString(String key, String defValue);
+
+    int getInt(String key, int defValue);
+
+    long getLong(String key, long defValue);
+
+    boolean getBoolean(String key, boolean defValue);
+
+    boolean contains(String key);
+
+    Editor edit();
+}
@@ -0,0 +1,8 @@
+package android.os;
+
+
+/**
+ * JVM stand-in, only passed through the activity lifecycle callbacks
+ */
+public final class Bundle {
+}
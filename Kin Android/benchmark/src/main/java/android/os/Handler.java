@@ -0,0 +1,36 @@
+package android.os;
+
+
+import java.util.concurrent.TimeUnit;
+
+
+public class Handler {
+
+    private final Looper _looper;
+
+
+    public Handler()
+    {
+        this(Looper.getMainLooper());
+    }
+
+
+    public Handler(Looper looper)
+    {
+        _looper = looper;
+    }
+
+
+    public final boolean post(Runnable runnable)
+    {
+        _looper.thread.execute(runnable);
+        return true;
+    }
+
+
+    public final boolean postDelayed(Runnable runnable, long delayMillis)
+    {
+        _looper.thread.schedule(runnable, delayMillis, TimeUnit.MILLISECONDS);
+        return true;
+    }
+}
@@ -0,0 +1,37 @@
+package android.os;
+
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+
+/**
+ * JVM stand-in, the main looper is a single daemon thread that Handlers post to
+ */
+public final class Looper {
+
+    private static final Looper _main = new Looper();
+
+    final ScheduledExecutorService thread = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "main");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+
+    private Looper()
+    {
+    }
+
+
+    public static Looper getMainLooper()
+    {
+        return _main;
+    }
+
+
+    public static Looper myLooper()
+    {
+        return _main;
+    }
+}
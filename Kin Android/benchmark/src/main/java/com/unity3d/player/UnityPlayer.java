@@ -0,0 +1,59 @@
+package com.unity3d.player;
+
+
+import android.app.Activity;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Stands in for Unity's player so KinPluginBase finds currentActivity and UnitySendMessage through its usual reflective
+ * lookup. Messages are counted and handed to the registered Receiver instead of a game object.
+ */
+public final class UnityPlayer {
+
+    public interface Receiver {
+        void onMessage(String method, String parameter);
+    }
+
+
+    public static Activity currentActivity = new Activity();
+
+    private static final AtomicLong _messages = new AtomicLong();
+    private static final AtomicLong _chars = new AtomicLong();
+    private static volatile Receiver _receiver;
+
+
+    private UnityPlayer()
+    {
+    }
+
+
+    public static void UnitySendMessage(String gameObject, String method, String parameter)
+    {
+        _messages.incrementAndGet();
+        _chars.addAndGet(parameter.length());
+
+        Receiver receiver = _receiver;
+        if (receiver != null)
+            receiver.onMessage(method, parameter);
+    }
+
+
+    public static void setReceiver(Receiver receiver)
+    {
+        _receiver = receiver;
+    }
+
+
+    public static long messages()
+    {
+        return _messages.get();
+    }
+
+
+    public static long chars()
+    {
+        return _chars.get();
+    }
+}
@@ -0,0 +1,11 @@
+package kin.unity;
+
+
+import android.app.Activity;
+
+
+/**
+ * stand-in for the real BackupActivity, backup and restore need the Android UI and are not benchmarked
+ */
+public class BackupActivity extends Activity {
+}
@@ -0,0 +1,88 @@
+package kin.unity;
+
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * A fee is served fresh, then stale while refreshes fail, and only stops being served once it is older than
+ * ttl + maxStale. Runs on the real clock with short ttls.
+ */
+public class FeeCacheTest {
+
+    private static final String CLIENT = "client";
+    private static final long TTL_MILLIS = 200;
+    private static final long MAX_STALE_MILLIS = 400;
+
+    private FeeCache _cache;
+
+
+    @Before
+    public void setUp()
+    {
+        _cache = new FeeCache();
+        _cache.configure(CLIENT, TTL_MILLIS, MAX_STALE_MILLIS);
+    }
+
+
+    @Test
+    public void freshFeeIsServedWithoutRefresh()
+    {
+        assertEquals(-1, _cache.get(CLIENT));
+        assertTrue(_cache.needsRefresh(CLIENT));
+
+        long refreshDelay = _cache.put(CLIENT, 100);
+
+        assertEquals((long)(TTL_MILLIS * 0.8), refreshDelay);
+        assertEquals(100, _cache.get(CLIENT));
+        assertFalse(_cache.needsRefresh(CLIENT));
+    }
+
+
+    @Test
+    public void staleFeeIsServedWhileRefreshesFail() throws InterruptedException
+    {
+        _cache.put(CLIENT, 100);
+        Thread.sleep(TTL_MILLIS + 50);
+
+        // a failed refresh stores nothing, the old fee keeps being handed out and still asks for a refresh
+        assertEquals(100, _cache.get(CLIENT));
+        assertTrue(_cache.needsRefresh(CLIENT));
+
+        Thread.sleep(MAX_STALE_MILLIS);
+        assertEquals(-1, _cache.get(CLIENT));
+        assertTrue(_cache.needsRefresh(CLIENT));
+
+        _cache.put(CLIENT, 200);
+        assertEquals(200, _cache.get(CLIENT));
+        assertFalse(_cache.needsRefresh(CLIENT));
+    }
+
+
+    @Test
+    public void refreshAheadOnlyForFeesThatWereRead()
+    {
+        _cache.put(CLIENT, 100);
+        assertFalse(_cache.consumeAccessed(CLIENT));
+
+        _cache.get(CLIENT);
+        assertTrue(_cache.consumeAccessed(CLIENT));
+        assertFalse(_cache.consumeAccessed(CLIENT));
+    }
+
+
+    @Test
+    public void zeroTtlTurnsCachingOff()
+    {
+        _cache.configure(CLIENT, 0, MAX_STALE_MILLIS);
+
+        assertEquals(-1, _cache.put(CLIENT, 100));
+        assertEquals(-1, _cache.get(CLIENT));
+        assertFalse(_cache.needsRefresh(CLIENT));
+    }
+}
@@ -0,0 +1,138 @@
+package kin.unity;
+
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * JsonWriter replaced JSONObject for the payloads sent to Unity, whatever it writes has to parse to the same values.
+ */
+public class JsonWriterTest {
+
+    private static final String[] STRINGS = {
+            "",
+            "plain",
+            "quote \" and backslash \\",
+            "line\nbreak\rreturn\ttab\bbackspace\fform feed",
+            "control \u0000 \u0001 \u001f",
+            "slash / and </script>",
+            "unicode \u00e9 \u2028 \u20ac \ud83d\ude00",
+    };
+
+
+    @Test
+    public void escapedStringsParseBackUnchanged() throws JSONException
+    {
+        JsonWriter writer = JsonWriter.obtain().beginObject();
+        JSONObject expected = new JSONObject();
+        for (int i = 0; i < STRINGS.length; i++) {
+            writer.put("Key" + i, STRINGS[i]);
+            expected.put("Key" + i, STRINGS[i]);
+        }
+        writer.put("key \"with\" escapes\n", "value");
+        expected.put("key \"with\" escapes\n", "value");
+
+        assertSimilar(expected, writer.endObject().finish());
+    }
+
+
+    @Test
+    public void nullValuesAreLeftOutLikeJSONObject() throws JSONException
+    {
+        String json = JsonWriter.obtain()
+                .beginObject()
+                .put("Present", "value")
+                .put("Missing", (String)null)
+                .putJson("MissingJson", null)
+                .endObject()
+                .finish();
+
+        JSONObject expected = new JSONObject()
+                .put("Present", "value")
+                .put("Missing", (Object)null)
+                .put("MissingJson", (Object)null);
+
+        assertSimilar(expected, json);
+        assertFalse(new JSONObject(json).has("Missing"));
+    }
+
+
+    @Test
+    public void decimalsAndNumbersMatch() throws JSONException
+    {
+        BigDecimal[] amounts = {
+                new BigDecimal("0.00001"),
+                new BigDecimal("-12.3400"),
+                new BigDecimal("1000").stripTrailingZeros(),
+                new BigDecimal("123456789012345678901234567890.5"),
+        };
+
+        JsonWriter writer = JsonWriter.obtain().beginObject();
+        JSONObject expected = new JSONObject();
+        for (int i = 0; i < amounts.length; i++) {
+            // amounts always cross the bridge as strings so C# can parse them into decimals without losing precision
+            writer.put("_Amount" + i, amounts[i].toString());
+            expected.put("_Amount" + i, amounts[i].toString());
+        }
+        writer.put("Min", Long.MIN_VALUE).put("Max", Long.MAX_VALUE).put("Zero", 0).put("Flag", true);
+        expected.put("Min", Long.MIN_VALUE).put("Max", Long.MAX_VALUE).put("Zero", 0).put("Flag", true);
+
+        assertSimilar(expected, writer.endObject().finish());
+    }
+
+
+    @Test
+    public void nestedObjectsArraysAndEmbeddedJsonMatch() throws JSONException
+    {
+        String embedded = JsonWriter.obtain().beginObject().put("Inner", "a\"b").endObject().finish();
+        String json = JsonWriter.obtain()
+                .beginObject()
+                .beginArray("Items")
+                .beginObject().put("Index", 0).endObject()
+                .beginObject().put("Index", 1).put("Error", "failed").endObject()
+                .endArray()
+                .beginArray("Empty").endArray()
+                .putJson("Embedded", embedded)
+                .endObject()
+                .finish();
+
+        JSONObject expected = new JSONObject()
+                .put("Items", new JSONArray()
+                        .put(new JSONObject().put("Index", 0))
+                        .put(new JSONObject().put("Index", 1).put("Error", "failed")))
+                .put("Empty", new JSONArray())
+                .put("Embedded", new JSONObject().put("Inner", "a\"b"));
+
+        assertSimilar(expected, json);
+    }
+
+
+    @Test
+    public void abandonedWriterIsReplacedOnceTheNextOneIsReleased()
+    {
+        JsonWriter abandoned = JsonWriter.obtain().beginObject().put("Half", "written");
+
+        JsonWriter replacement = JsonWriter.obtain();
+        assertTrue(replacement != abandoned);
+        assertEquals("{}", replacement.beginObject().endObject().finish());
+
+        JsonWriter next = JsonWriter.obtain();
+        assertTrue(next == replacement);
+        assertEquals("{}", next.beginObject().endObject().finish());
+    }
+
+
+    private static void assertSimilar(JSONObject expected, String json) throws JSONException
+    {
+        assertTrue(json + " differs from " + expected, expected.similar(new JSONObject(json)));
+    }
+}
@@ -0,0 +1,140 @@
+package kin.unity;
+
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Subscriptions have to keep reading after a failed read, whether the retry runs or the read lane rejects it.
+ */
+public class PaymentSubscriptionsTest {
+
+    private static final String ADDRESS = "GADDRESS";
+
+    private PluginExecutor _executor;
+    private final AtomicInteger _errors = new AtomicInteger();
+    private final List<String> _delivered = Collections.synchronizedList(new ArrayList<String>());
+    private final CountDownLatch _deliveredLatch = new CountDownLatch(1);
+    private PaymentSubscriptions _subscriptions;
+
+
+    @Before
+    public void setUp()
+    {
+        _executor = new PluginExecutor();
+        _subscriptions = new PaymentSubscriptions(_executor, new PaymentSubscriptions.Sink() {
+            @Override
+            public void onPayments(String subscriptionId, String accountId, List<PaymentHistory.Payment> payments, long dropped)
+            {
+                for (PaymentHistory.Payment payment : payments)
+                    _delivered.add(payment.hash);
+                _deliveredLatch.countDown();
+            }
+
+            @Override
+            public void onError(String subscriptionId, Exception e)
+            {
+                _errors.incrementAndGet();
+            }
+        });
+    }
+
+
+    @After
+    public void tearDown()
+    {
+        _executor.shutdown();
+    }
+
+
+    @Test
+    public void resumesAfterFailedRead() throws Exception
+    {
+        _subscriptions.subscribe("sub", "account", ADDRESS, failingSource(1), "10", 10, PaymentSubscriptions.BLOCK);
+        _subscriptions.request("sub", 10);
+
+        assertTrue(_deliveredLatch.await(5, TimeUnit.SECONDS));
+        assertEquals(1, _errors.get());
+        assertEquals(Collections.singletonList("hash11"), _delivered);
+    }
+
+
+    @Test
+    public void resumesAfterRejectedRetry() throws Exception
+    {
+        _executor.configure(1, 1, 1, PluginExecutor.REJECT_ABORT);
+        _subscriptions.subscribe("sub", "account", ADDRESS, failingSource(1), "10", 10, PaymentSubscriptions.BLOCK);
+        _subscriptions.request("sub", 10);
+
+        // the first read failed, keep the read lane busy and its queue full while the retry comes due after a second
+        waitFor(() -> _errors.get() == 1);
+        CountDownLatch busy = new CountDownLatch(1);
+        _executor.execute(PluginExecutor.Lane.READ, () -> await(busy), null);
+        _executor.execute(PluginExecutor.Lane.READ, () -> { }, null);
+
+        // the rejected retry counts as a failure and schedules the next one
+        waitFor(() -> _errors.get() == 2);
+        busy.countDown();
+
+        assertTrue(_deliveredLatch.await(5, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("hash11"), _delivered);
+    }
+
+
+    /**
+     * fails the first failures reads, then returns the payment with token 11 after cursor 10 and nothing after that
+     */
+    private static PaymentHistory.Source failingSource(final int failures)
+    {
+        final AtomicInteger reads = new AtomicInteger();
+        return (address, cursor, ascending, limit) -> {
+            if (reads.incrementAndGet() <= failures)
+                throw new IOException("horizon is down");
+
+            if (!"10".equals(cursor))
+                return new PaymentHistory.Fetched(Collections.<PaymentHistory.Payment>emptyList(), 0, 0, 0);
+
+            PaymentHistory.Payment payment = new PaymentHistory.Payment(11, "hash11", "GFROM", address, "1", "2019-01-01T00:00:00Z", null);
+            return new PaymentHistory.Fetched(Collections.singletonList(payment), 1, 11, 11);
+        };
+    }
+
+
+    private interface Condition {
+        boolean met();
+    }
+
+
+    private static void waitFor(Condition condition) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.met()) {
+            assertTrue("timed out", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+
+    private static void await(CountDownLatch latch)
+    {
+        try {
+            latch.await();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
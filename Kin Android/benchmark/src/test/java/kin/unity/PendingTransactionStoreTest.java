@@ -0,0 +1,108 @@
+package kin.unity;
+
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Transactions leave the store by being taken, by expiring or by being pushed out, and the listener hears about every
+ * one that wasn't taken. Runs on the real clock with short ttls.
+ */
+public class PendingTransactionStoreTest {
+
+    private static final long TTL_MILLIS = 200;
+
+    private final List<String> _evictions = new ArrayList<>();
+    private PendingTransactionStore _store;
+
+
+    @Before
+    public void setUp()
+    {
+        _store = new PendingTransactionStore((transactionId, accountId, expired) ->
+                _evictions.add(transactionId + ":" + accountId + ":" + (expired ? "expired" : "evicted")));
+        _store.configure(2, TTL_MILLIS);
+    }
+
+
+    @Test
+    public void takenTransactionsAreNotReported()
+    {
+        PendingTransactionStore.Pending pending = pending();
+        _store.put("tx1", "account", pending);
+
+        assertTrue(_store.take("tx1") == pending);
+        assertNull(_store.take("tx1"));
+        assertEquals(0, _evictions.size());
+    }
+
+
+    @Test
+    public void expiredTransactionsAreSweptAndReported() throws InterruptedException
+    {
+        _store.put("tx1", "account", pending());
+        _store.put("tx2", "account", pending());
+        Thread.sleep(TTL_MILLIS + 50);
+
+        assertEquals(0, _store.sweep());
+        assertEquals(2, _evictions.size());
+        assertEquals("tx1:account:expired", _evictions.get(0));
+        assertEquals("tx2:account:expired", _evictions.get(1));
+    }
+
+
+    @Test
+    public void takingAnExpiredTransactionReportsItInstead() throws InterruptedException
+    {
+        _store.put("tx1", "account", pending());
+        Thread.sleep(TTL_MILLIS + 50);
+
+        assertNull(_store.take("tx1"));
+        assertEquals(1, _evictions.size());
+        assertEquals("tx1:account:expired", _evictions.get(0));
+    }
+
+
+    @Test
+    public void oldestTransactionIsEvictedWhenFull()
+    {
+        _store.put("tx1", "one", pending());
+        _store.put("tx2", "two", pending());
+        _store.put("tx3", "three", pending());
+
+        assertEquals(2, _store.size());
+        assertEquals(1, _evictions.size());
+        assertEquals("tx1:one:evicted", _evictions.get(0));
+        assertNull(_store.take("tx1"));
+        assertNotNull(_store.take("tx3"));
+    }
+
+
+    @Test
+    public void shrinkingTheStoreEvictsRightAway()
+    {
+        _store.put("tx1", "account", pending());
+        _store.put("tx2", "account", pending());
+
+        _store.configure(1, TTL_MILLIS);
+
+        assertEquals(1, _store.size());
+        assertEquals("tx1:account:evicted", _evictions.get(0));
+    }
+
+
+    private static PendingTransactionStore.Pending pending()
+    {
+        return new PendingTransactionStore.Pending(null, "GDESTINATION", new BigDecimal("10"), 100, null);
+    }
+}
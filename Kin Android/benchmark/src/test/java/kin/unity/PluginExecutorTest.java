@@ -0,0 +1,130 @@
+package kin.unity;
+
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Caller-runs may only take a rejected task inline on a plugin worker, never on the thread that called into the plugin,
+ * and a shut down executor refuses everything until it is restarted.
+ */
+public class PluginExecutorTest {
+
+    private PluginExecutor _executor;
+
+
+    @Before
+    public void setUp()
+    {
+        _executor = new PluginExecutor();
+        _executor.configure(1, 1, 1, PluginExecutor.REJECT_CALLER_RUNS);
+    }
+
+
+    @After
+    public void tearDown()
+    {
+        _executor.shutdown();
+    }
+
+
+    @Test
+    public void callerRunsRejectsTasksFromOutsideTheWorkers() throws InterruptedException
+    {
+        CountDownLatch busy = new CountDownLatch(1);
+        _executor.execute(PluginExecutor.Lane.READ, () -> await(busy), null);
+        _executor.execute(PluginExecutor.Lane.READ, () -> {}, null);
+
+        AtomicBoolean ran = new AtomicBoolean();
+        AtomicInteger rejected = new AtomicInteger();
+        _executor.execute(PluginExecutor.Lane.READ, () -> ran.set(true), e -> rejected.incrementAndGet());
+
+        assertEquals(1, rejected.get());
+        assertFalse(ran.get());
+        busy.countDown();
+    }
+
+
+    @Test
+    public void callerRunsTakesTheTaskInlineOnAWorkerOnce() throws InterruptedException
+    {
+        AtomicReference<Thread> outer = new AtomicReference<>();
+        AtomicReference<Thread> inline = new AtomicReference<>();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+
+        _executor.execute(PluginExecutor.Lane.READ, () -> {
+            outer.set(Thread.currentThread());
+            // fills the queue, so the next two submissions are rejected while this worker is busy
+            _executor.execute(PluginExecutor.Lane.READ, () -> {}, null);
+            _executor.execute(PluginExecutor.Lane.READ, () -> {
+                inline.set(Thread.currentThread());
+                _executor.execute(PluginExecutor.Lane.READ, () -> {}, e -> rejected.incrementAndGet());
+            }, null);
+            done.countDown();
+        }, null);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(outer.get(), inline.get());
+        assertEquals(1, rejected.get());
+    }
+
+
+    @Test
+    public void shutdownCancelsDelayedTasksAndRejectsNewOnes() throws InterruptedException
+    {
+        AtomicBoolean ran = new AtomicBoolean();
+        AtomicInteger rejected = new AtomicInteger();
+        ScheduledFuture<?> pending = _executor.schedule(PluginExecutor.Lane.READ, () -> ran.set(true), 50, e -> rejected.incrementAndGet());
+
+        _executor.shutdown();
+        assertTrue(pending.isDone());
+
+        ScheduledFuture<?> later = _executor.schedule(PluginExecutor.Lane.READ, () -> ran.set(true), 0, e -> rejected.incrementAndGet());
+        assertTrue(later.isCancelled());
+
+        _executor.execute(PluginExecutor.Lane.WRITE, () -> ran.set(true), e -> rejected.incrementAndGet());
+        assertEquals(1, rejected.get());
+
+        Thread.sleep(100);
+        assertFalse(ran.get());
+        assertEquals(1, rejected.get());
+    }
+
+
+    @Test
+    public void restartAcceptsTasksAgain() throws InterruptedException
+    {
+        _executor.shutdown();
+        _executor.restart();
+
+        CountDownLatch ran = new CountDownLatch(2);
+        _executor.execute(PluginExecutor.Lane.READ, ran::countDown, null);
+        _executor.schedule(PluginExecutor.Lane.WRITE, ran::countDown, 10, null);
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+    }
+
+
+    private static void await(CountDownLatch latch)
+    {
+        try {
+            latch.await();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package kin.unity;
+
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Retries stop at the attempt budget and at fatal errors, and the circuit breaker opens, lets a single trial through
+ * once half-open and closes again after it succeeds. Runs on the real clock with a short open period.
+ */
+public class RetryPolicyTest {
+
+    private static final String OPERATION = RetryPolicy.GET_BALANCE;
+    private static final long OPEN_MILLIS = 200;
+
+    private final AtomicInteger _calls = new AtomicInteger();
+    private RetryPolicy _policy;
+
+
+    @Before
+    public void setUp()
+    {
+        _policy = new RetryPolicy();
+        _policy.configure(OPERATION, 1, 0, 0, 1000);
+        _policy.configureCircuitBreaker(2, OPEN_MILLIS);
+    }
+
+
+    @Test
+    public void retryableErrorsAreRetriedUpToMaxAttempts() throws Exception
+    {
+        _policy.configure(OPERATION, 3, 0, 0, 1000);
+
+        assertEquals("ok", _policy.call(OPERATION, () -> {
+            if (_calls.incrementAndGet() < 3)
+                throw new IOException("timeout");
+            return "ok";
+        }));
+        assertEquals(3, _calls.get());
+
+        _calls.set(0);
+        assertFailsWith(IOException.class, this::failing);
+        assertEquals(3, _calls.get());
+    }
+
+
+    @Test
+    public void fatalErrorsAreNotRetriedAndDontOpenTheBreaker() throws Exception
+    {
+        _policy.configure(OPERATION, 3, 0, 0, 1000);
+
+        for (int i = 0; i < 3; i++) {
+            assertFailsWith(IllegalArgumentException.class, () -> {
+                _calls.incrementAndGet();
+                throw new IllegalArgumentException("bad address");
+            });
+        }
+        assertEquals(3, _calls.get());
+        assertEquals("ok", _policy.call(OPERATION, () -> "ok"));
+    }
+
+
+    @Test
+    public void breakerOpensAfterConsecutiveFailures() throws Exception
+    {
+        assertFailsWith(IOException.class, this::failing);
+        assertFailsWith(IOException.class, this::failing);
+
+        assertFailsWith(RetryPolicy.CircuitOpenException.class, this::failing);
+        assertEquals(2, _calls.get());
+    }
+
+
+    @Test
+    public void halfOpenBreakerLetsOneTrialThroughAndReopensIfItFails() throws Exception
+    {
+        assertFailsWith(IOException.class, this::failing);
+        assertFailsWith(IOException.class, this::failing);
+        Thread.sleep(OPEN_MILLIS + 50);
+
+        assertFailsWith(IOException.class, () -> {
+            // a second call while the trial is running fails fast
+            assertFailsWith(RetryPolicy.CircuitOpenException.class, () -> "never called");
+            return failing();
+        });
+
+        assertFailsWith(RetryPolicy.CircuitOpenException.class, this::failing);
+        assertEquals(3, _calls.get());
+    }
+
+
+    @Test
+    public void successfulTrialClosesTheBreaker() throws Exception
+    {
+        assertFailsWith(IOException.class, this::failing);
+        assertFailsWith(IOException.class, this::failing);
+        Thread.sleep(OPEN_MILLIS + 50);
+
+        assertEquals("ok", _policy.call(OPERATION, () -> "ok"));
+
+        // closed again: a single failure is below the threshold and the next call goes out
+        assertFailsWith(IOException.class, this::failing);
+        assertEquals("ok", _policy.call(OPERATION, () -> "ok"));
+    }
+
+
+    private String failing() throws IOException
+    {
+        _calls.incrementAndGet();
+        throw new IOException("timeout");
+    }
+
+
+    private void assertFailsWith(Class<? extends Exception> type, RetryPolicy.Call<String> call) throws InterruptedException
+    {
+        try {
+            _policy.call(OPERATION, call);
+        }
+        catch (InterruptedException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            assertTrue("expected " + type.getSimpleName() + " but got " + e, type.isInstance(e));
+            return;
+        }
+        throw new AssertionError("expected " + type.getSimpleName());
+    }
+}
@@ -0,0 +1,105 @@
+package kin.unity;
+
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Everyone who joins a flight gets its one result, or its one error, exactly once.
+ */
+public class SingleFlightTest {
+
+    private final List<String> _waiters = new ArrayList<>();
+    private final List<Long> _results = new ArrayList<>();
+    private final List<Exception> _errors = new ArrayList<>();
+    private SingleFlight<Long> _flights;
+
+
+    @Before
+    public void setUp()
+    {
+        _flights = new SingleFlight<>((waiterId, result, error) -> {
+            _waiters.add(waiterId);
+            _results.add(result);
+            _errors.add(error);
+        });
+    }
+
+
+    @Test
+    public void resultFansOutToEveryWaiterOnce()
+    {
+        assertTrue(_flights.join("client", "a"));
+        assertFalse(_flights.join("client", "b"));
+        assertFalse(_flights.join("client", "c"));
+        assertFalse(_flights.join("client", "b"));
+
+        _flights.complete("client", 100L, null);
+
+        assertEquals(3, _waiters.size());
+        assertEquals("a", _waiters.get(0));
+        assertEquals("b", _waiters.get(1));
+        assertEquals("c", _waiters.get(2));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(100L, (long)_results.get(i));
+            assertNull(_errors.get(i));
+        }
+    }
+
+
+    @Test
+    public void errorReachesEveryWaiter()
+    {
+        IllegalStateException error = new IllegalStateException("horizon is down");
+        _flights.join("client", "a");
+        _flights.join("client", "b");
+
+        _flights.complete("client", null, error);
+
+        assertEquals(2, _errors.size());
+        for (int i = 0; i < 2; i++) {
+            assertTrue(_errors.get(i) == error);
+            assertNull(_results.get(i));
+        }
+    }
+
+
+    @Test
+    public void keysFlyIndependently()
+    {
+        assertTrue(_flights.join("one", "a"));
+        assertTrue(_flights.join("two", "b"));
+
+        _flights.complete("one", 1L, null);
+
+        assertEquals(1, _waiters.size());
+        assertEquals("a", _waiters.get(0));
+        assertFalse(_flights.join("two", "c"));
+    }
+
+
+    @Test
+    public void backgroundStartIsJoinedAndCompletedAgainLater()
+    {
+        assertTrue(_flights.start("client"));
+        assertFalse(_flights.start("client"));
+        assertFalse(_flights.join("client", "a"));
+
+        _flights.complete("client", 5L, null);
+        assertEquals(1, _waiters.size());
+
+        // a completed flight is gone, completing it again reaches nobody and the next join leads a new one
+        _flights.complete("client", 6L, null);
+        assertEquals(1, _waiters.size());
+        assertTrue(_flights.join("client", "a"));
+    }
+}
@@ -0,0 +1,42 @@
+﻿namespace Kin
+{
+	/// <summary>
+	/// what was last known about the accounts of a KinClient, saved on the device and read back when the client is
+	/// created so a wallet can be drawn before any network call returns. Values can be from a previous run of the app.
+	/// </summary>
+	[System.Serializable]
+	public class AccountSnapshot
+	{
+		[System.Serializable]
+		public struct Account
+		{
+			public int Index;
+			public string PublicAddress;
+			public int _Status;
+			public string _Balance;
+
+			/// <summary>
+			/// milliseconds since the balance was fetched or pushed by a balance listener, -1 if no balance is known
+			/// </summary>
+			public long BalanceAgeMillis;
+
+			/// <summary>
+			/// paging token of the newest payment GetPaymentHistory returned, null if it never ran for the account
+			/// </summary>
+			public string PaymentCursor;
+
+			public bool HasStatus { get { return _Status >= 0; } }
+			public AccountStatus Status { get { return (AccountStatus)_Status; } }
+			public bool HasBalance { get { return !string.IsNullOrEmpty( _Balance ); } }
+			public decimal Balance { get { return HasBalance ? decimal.Parse( _Balance, System.Globalization.NumberStyles.Float ) : 0; } }
+		}
+
+		public string ClientId;
+
+		/// <summary>
+		/// set on a refreshed snapshot when an account couldn't be revalidated and kept its previous values
+		/// </summary>
+		public bool Stale;
+		public Account[] Accounts;
+	}
+}
@@ -0,0 +1,15 @@
+﻿namespace Kin
+{
+	/// <summary>
+	/// what the listeners of a KinClient do while the app is in the background, see KinClient.ConfigureBackground
+	/// </summary>
+	public enum BackgroundMode
+	{
+		/// <summary>streams stay open and polled listeners keep their usual interval</summary>
+		Keep = 0,
+		/// <summary>streams are closed, balance and account creation listeners are polled at the background interval</summary>
+		Throttle = 1,
+		/// <summary>streams are closed and nothing is polled until the app is back in the foreground</summary>
+		Suspend = 2
+	}
+}
@@ -0,0 +1,89 @@
+﻿using System;
+using System.Collections.Generic;
+
+
+namespace Kin
+{
+	/// <summary>
+	/// the result of a batched request for a single KinAccount. Exception is set when the request failed for that account.
+	/// </summary>
+	public class BatchResult<T>
+	{
+		public KinAccount Account { get; internal set; }
+		public T Value { get; internal set; }
+		public KinException Exception { get; internal set; }
+
+
+		public override string ToString()
+		{
+			return string.Format( "Account: {0}, Value: {1}, Exception: {2}", Account != null ? Account._accountId : null, Value, Exception );
+		}
+	}
+
+
+	/// <summary>
+	/// helper class for deserializing the single message native code sends back for a batched request
+	/// </summary>
+	[Serializable]
+	class NativeBatch
+	{
+		[Serializable]
+		internal class Item
+		{
+			public string AccountId;
+			public string Value;
+			public string Error;
+		}
+
+		public string BatchId;
+		public Item[] Items;
+
+
+		/// <summary>
+		/// builds a batch where every account failed because the current platform does not support batched requests
+		/// </summary>
+		internal static NativeBatch Unsupported( string batchId, string[] accountIds )
+		{
+			var batch = new NativeBatch { BatchId = batchId, Items = new Item[accountIds.Length] };
+			for( var i = 0; i < accountIds.Length; i++ )
+			{
+				batch.Items[i] = new Item
+				{
+					AccountId = accountIds[i],
+					Error = string.Format( "{{\"Message\":\"Batched requests are not supported on this platform\",\"NativeType\":\"NotSupported\",\"AccountId\":\"{0}\"}}", accountIds[i] )
+				};
+			}
+
+			return batch;
+		}
+
+
+		/// <summary>
+		/// matches each native result back up with the KinAccount it was requested for
+		/// </summary>
+		internal List<BatchResult<T>> ToResults<T>( KinAccount[] accounts, Func<string, T> parseValue )
+		{
+			var accountsById = new Dictionary<string, KinAccount>();
+			foreach( var account in accounts )
+				accountsById[account._accountId] = account;
+
+			var results = new List<BatchResult<T>>( Items.Length );
+			foreach( var item in Items )
+			{
+				var result = new BatchResult<T>();
+				KinAccount account;
+				if( accountsById.TryGetValue( item.AccountId, out account ) )
+					result.Account = account;
+
+				if( !string.IsNullOrEmpty( item.Error ) )
+					result.Exception = KinException.FromNativeErrorJson( item.Error );
+				else
+					result.Value = parseValue( item.Value );
+
+				results.Add( result );
+			}
+
+			return results;
+		}
+	}
+}
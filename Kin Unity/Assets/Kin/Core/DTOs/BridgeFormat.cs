@@ -0,0 +1,11 @@
+﻿namespace Kin
+{
+	/// <summary>
+	/// how native code encodes callbacks for a KinClient and its accounts
+	/// </summary>
+	public enum BridgeFormat
+	{
+		Json = 0,
+		Binary = 1
+	}
+}
@@ -0,0 +1,16 @@
+﻿namespace Kin
+{
+	/// <summary>
+	/// what the native plugin does with a request when its worker queue is full
+	/// </summary>
+	public enum ExecutorRejectionPolicy
+	{
+		/// <summary>the request fails right away with a RejectedExecutionException</summary>
+		Abort = 0,
+		/// <summary>a request queued by native work runs synchronously on that worker thread, requests from Unity or
+		/// timers fail like Abort so the game never blocks on them</summary>
+		CallerRuns = 1,
+		/// <summary>the oldest queued request fails to make room for the new one</summary>
+		DiscardOldest = 2
+	}
+}
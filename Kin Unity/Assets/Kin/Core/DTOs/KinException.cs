@@ -42,6 +42,13 @@ namespace Kin
 		{}
 
 
+		internal KinException( string message, string nativeType, string accountId ) : base( message )
+		{
+			NativeType = nativeType;
+			AccountId = accountId;
+		}
+
+
 		KinException( KinExceptionData data ) : base( data.Message )
 		{
 			ErrorCode = data.ErrorCode;
@@ -0,0 +1,47 @@
+﻿namespace Kin
+{
+	/// <summary>
+	/// state of the native listener hub that serves payment, balance and account creation listeners
+	/// </summary>
+	[System.Serializable]
+	public struct ListenerStats
+	{
+		/// <summary>
+		/// open network streams, one per address and listener type
+		/// </summary>
+		public int Streams;
+		public int MaxStreams;
+
+		/// <summary>
+		/// balance and account creation listeners past MaxStreams that are polled instead
+		/// </summary>
+		public int Polled;
+
+		/// <summary>
+		/// whether the app is in the background, see KinClient.ConfigureBackground
+		/// </summary>
+		public bool Background;
+
+		/// <summary>
+		/// streams closed for the background, reopened once the app is back in the foreground
+		/// </summary>
+		public int Suspended;
+
+		/// <summary>
+		/// listeners added by accounts, several can share one stream
+		/// </summary>
+		public int Subscribers;
+
+		/// <summary>
+		/// poll passes in a row that had a failed request
+		/// </summary>
+		public int PollFailures;
+
+
+		public override string ToString()
+		{
+			return string.Format( "Streams: {0}/{1}, Polled: {2}, Subscribers: {3}, PollFailures: {4}, Background: {5}, Suspended: {6}",
+				Streams, MaxStreams, Polled, Subscribers, PollFailures, Background, Suspended );
+		}
+	}
+}
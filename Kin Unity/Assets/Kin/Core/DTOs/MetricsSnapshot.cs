@@ -0,0 +1,159 @@
+﻿namespace Kin
+{
+	/// <summary>
+	/// everything the native plugin measures at one point in time. Operation latencies and the bridge and listener
+	/// counters are only recorded while metrics are enabled, the executor and stage stats are always filled in.
+	/// </summary>
+	[System.Serializable]
+	public class MetricsSnapshot
+	{
+		[System.Serializable]
+		public struct OperationMetrics
+		{
+			/// <summary>
+			/// Build, Send, Whitelist, GetBalance, GetStatus, GetMinimumFee, Import, Export or GetPaymentHistory
+			/// </summary>
+			public string Operation;
+			public long Count;
+			public long Errors;
+			public int InFlight;
+			public long TotalMillis;
+			public long MaxMillis;
+
+			/// <summary>
+			/// percentiles are the upper bound of the latency bucket they fall in
+			/// </summary>
+			public long P50Millis;
+			public long P90Millis;
+			public long P99Millis;
+
+			public double AverageMillis { get { return Count > 0 ? (double)TotalMillis / Count : 0; } }
+		}
+
+		[System.Serializable]
+		public struct BridgeMetrics
+		{
+			/// <summary>
+			/// messages sent to Unity and their size, chars for JSON and bytes for binary events
+			/// </summary>
+			public long Messages;
+			public long Bytes;
+		}
+
+		[System.Serializable]
+		public struct ListenerEventMetrics
+		{
+			public long Payments;
+			public long Balances;
+			public long AccountCreations;
+		}
+
+		[System.Serializable]
+		public struct ExecutorMetrics
+		{
+			public int ReadQueue;
+			public int WriteQueue;
+			public int ReadActive;
+			public int WriteActive;
+		}
+
+		[System.Serializable]
+		public struct EventCoalescingMetrics
+		{
+			public long WindowMillis;
+			public int MaxPaymentBatch;
+			public long BalancesReceived;
+			public long BalancesDelivered;
+			public long PaymentBatches;
+		}
+
+		[System.Serializable]
+		public struct ExportCacheMetrics
+		{
+			public bool Enabled;
+			public int Size;
+			public long Hits;
+			public long Misses;
+		}
+
+		[System.Serializable]
+		public struct PaymentHistoryMetrics
+		{
+			public int Addresses;
+			public long Payments;
+			public long Queries;
+
+			/// <summary>
+			/// queries answered without going to Horizon
+			/// </summary>
+			public long LocalPages;
+			public long Fetches;
+		}
+
+		[System.Serializable]
+		public struct PaymentSubscriptionMetrics
+		{
+			public int Subscriptions;
+
+			/// <summary>
+			/// payments waiting for Request across all subscriptions
+			/// </summary>
+			public int Buffered;
+			public long Delivered;
+			public long Dropped;
+			public long Fetches;
+		}
+
+		[System.Serializable]
+		public struct PaymentCatchUpMetrics
+		{
+			/// <summary>
+			/// addresses whose payment stream is closed for the background
+			/// </summary>
+			public int Marked;
+
+			/// <summary>
+			/// addresses whose missed payments are being read after coming back to the foreground
+			/// </summary>
+			public int CatchingUp;
+		}
+
+		public bool Enabled;
+
+		/// <summary>
+		/// milliseconds since metrics were last enabled, the window the counters cover
+		/// </summary>
+		public long ElapsedMillis;
+		public OperationMetrics[] Operations;
+		public BridgeMetrics Bridge;
+		public ListenerEventMetrics ListenerEvents;
+		public ExecutorMetrics Executor;
+		public RetryStats Retries;
+		public TransactionStoreStats TransactionStore;
+		public ListenerStats Listeners;
+		public EventCoalescingMetrics EventCoalescing;
+		public ExportCacheMetrics ExportCache;
+		public PaymentHistoryMetrics PaymentHistory;
+		public PaymentSubscriptionMetrics PaymentSubscriptions;
+		public PaymentCatchUpMetrics PaymentCatchUp;
+
+
+		/// <summary>
+		/// messages sent to Unity per second over ElapsedMillis
+		/// </summary>
+		public double BridgeMessagesPerSecond { get { return perSecond( Bridge.Messages ); } }
+
+		public double BridgeBytesPerSecond { get { return perSecond( Bridge.Bytes ); } }
+
+		/// <summary>
+		/// payment, balance and account creation events received from the listener streams per second
+		/// </summary>
+		public double ListenerEventsPerSecond { get { return perSecond( ListenerEvents.Payments + ListenerEvents.Balances + ListenerEvents.AccountCreations ); } }
+
+
+		double perSecond( long count )
+		{
+			return ElapsedMillis > 0 ? count * 1000.0 / ElapsedMillis : 0;
+		}
+	}
+}
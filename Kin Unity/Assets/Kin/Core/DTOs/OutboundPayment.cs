@@ -0,0 +1,97 @@
+﻿using System;
+using System.Collections.Generic;
+
+
+namespace Kin
+{
+	/// <summary>
+	/// a single payment to send with KinAccount.SendPayments
+	/// </summary>
+	[Serializable]
+	public class OutboundPayment
+	{
+		public string ToAddress;
+		public string Amount;
+		public string Memo;
+
+
+		public OutboundPayment( string toAddress, decimal kinAmount, string memo = null )
+		{
+			ToAddress = toAddress;
+			Amount = kinAmount.ToString();
+			Memo = memo;
+		}
+
+
+		public override string ToString()
+		{
+			return string.Format( "ToAddress: {0}, Amount: {1}, Memo: {2}", ToAddress, Amount, Memo );
+		}
+	}
+
+
+	/// <summary>
+	/// the outcome of a single payment sent with KinAccount.SendPayments. Exception is set when the payment failed.
+	/// </summary>
+	public class PaymentResult
+	{
+		public OutboundPayment Payment { get; internal set; }
+		public string TransactionId { get; internal set; }
+		public KinException Exception { get; internal set; }
+
+
+		public override string ToString()
+		{
+			return string.Format( "Payment: {0}, TransactionId: {1}, Exception: {2}", Payment, TransactionId, Exception );
+		}
+	}
+
+
+	/// <summary>
+	/// helper class for serializing the payments list since JsonUtility can not serialize a top level list
+	/// </summary>
+	[Serializable]
+	class OutboundPaymentList
+	{
+		public List<OutboundPayment> Payments;
+	}
+
+
+	/// <summary>
+	/// helper class for deserializing payment results from native code
+	/// </summary>
+	[Serializable]
+	class NativePaymentBatch
+	{
+		[Serializable]
+		internal class Item
+		{
+			public int Index;
+			public string TransactionId;
+			public string Error;
+		}
+
+		public string BatchId;
+		public string AccountId;
+		public int Total;
+		public Item[] Items;
+
+
+		internal List<PaymentResult> ToResults( List<OutboundPayment> payments )
+		{
+			var results = new List<PaymentResult>( Items.Length );
+			foreach( var item in Items )
+			{
+				var result = new PaymentResult { Payment = payments[item.Index] };
+				if( !string.IsNullOrEmpty( item.Error ) )
+					result.Exception = KinException.FromNativeErrorJson( item.Error );
+				else
+					result.TransactionId = item.TransactionId;
+
+				results.Add( result );
+			}
+
+			return results;
+		}
+	}
+}
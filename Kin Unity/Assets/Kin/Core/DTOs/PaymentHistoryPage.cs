@@ -0,0 +1,17 @@
+﻿namespace Kin
+{
+	/// <summary>
+	/// one page of an account's payment history, newest first. Pass NextCursor to GetPaymentHistory to get the next
+	/// page. Stale is set when Horizon couldn't be reached and the page was served from the history stored on the device.
+	/// Memos are only known for payments that arrived while a payment listener was active, the rest have a null Memo.
+	/// </summary>
+	[System.Serializable]
+	public class PaymentHistoryPage
+	{
+		public string AccountId;
+		public string NextCursor;
+		public bool HasMore;
+		public bool Stale;
+		public PaymentInfo[] Payments;
+	}
+}
@@ -12,6 +12,11 @@
 		public string Memo;
 		public string AccountId;
 
+		/// <summary>
+		/// Horizon paging token, only set on payments delivered by a PaymentSubscription
+		/// </summary>
+		public string PagingToken;
+
 
 		public override string ToString()
 		{
@@ -19,4 +24,26 @@
 			                     CreatedAt, DestinationPublicKey, SourcePublicKey, Amount, Hash, Memo );
 		}
 	}
+
+
+	/// <summary>
+	/// payments of one account that native code delivered together, in the order they arrived
+	/// </summary>
+	[System.Serializable]
+	class NativePaymentList
+	{
+		public PaymentInfo[] Payments;
+	}
+
+
+	/// <summary>
+	/// one delivery of a PaymentSubscription, Dropped counts the payments its overflow policy dropped since the last one
+	/// </summary>
+	[System.Serializable]
+	class NativeSubscriptionPayments
+	{
+		public string SubscriptionId;
+		public long Dropped;
+		public PaymentInfo[] Payments;
+	}
 }
\ No newline at end of file
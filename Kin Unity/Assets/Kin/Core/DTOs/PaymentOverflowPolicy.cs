@@ -0,0 +1,15 @@
+﻿namespace Kin
+{
+	/// <summary>
+	/// what a PaymentSubscription does with new payments while its native buffer is full
+	/// </summary>
+	public enum PaymentOverflowPolicy
+	{
+		/// <summary>the oldest buffered payment is dropped to make room for the new one</summary>
+		DropOldest = 0,
+		/// <summary>the new payment replaces the newest buffered one so the latest payment is always delivered</summary>
+		Coalesce = 1,
+		/// <summary>reading stops until more payments are requested, nothing is dropped</summary>
+		Block = 2
+	}
+}
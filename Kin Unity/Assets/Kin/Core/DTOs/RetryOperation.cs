@@ -0,0 +1,14 @@
+﻿namespace Kin
+{
+	/// <summary>
+	/// network calls that native code retries before reporting an error
+	/// </summary>
+	public enum RetryOperation
+	{
+		GetBalance,
+		GetStatus,
+		GetMinimumFee,
+		BuildTransaction,
+		GetPaymentHistory
+	}
+}
@@ -0,0 +1,34 @@
+﻿namespace Kin
+{
+	/// <summary>
+	/// counters of the native retry layer, one entry per operation that has been called
+	/// </summary>
+	[System.Serializable]
+	public class RetryStats
+	{
+		[System.Serializable]
+		public struct OperationStats
+		{
+			public string Operation;
+			public long Calls;
+
+			/// <summary>
+			/// attempts that failed with a retryable error and were tried again
+			/// </summary>
+			public long Retries;
+
+			/// <summary>
+			/// calls that reported an error to Unity after all retries
+			/// </summary>
+			public long Failures;
+
+			/// <summary>
+			/// calls that failed immediately because the circuit breaker was open
+			/// </summary>
+			public long Rejected;
+			public bool CircuitOpen;
+		}
+
+		public OperationStats[] Operations;
+	}
+}
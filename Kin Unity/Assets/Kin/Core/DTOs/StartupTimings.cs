@@ -0,0 +1,37 @@
+﻿namespace Kin
+{
+	/// <summary>
+	/// how long each step of creating a KinClient took on the native side
+	/// </summary>
+	[System.Serializable]
+	public class StartupTimings
+	{
+		[System.Serializable]
+		public struct StepTiming
+		{
+			/// <summary>
+			/// LoadSnapshot, Queued, CreateClient, LoadAccounts or MinimumFee
+			/// </summary>
+			public string Step;
+			public long Millis;
+		}
+
+		public string ClientId;
+
+		/// <summary>
+		/// milliseconds from the create call until the client was ready
+		/// </summary>
+		public long TotalMillis;
+		public StepTiming[] Steps;
+
+
+		public override string ToString()
+		{
+			var steps = new System.Text.StringBuilder();
+			foreach( var step in Steps )
+				steps.AppendFormat( ", {0}: {1}ms", step.Step, step.Millis );
+
+			return string.Format( "Total: {0}ms{1}", TotalMillis, steps );
+		}
+	}
+}
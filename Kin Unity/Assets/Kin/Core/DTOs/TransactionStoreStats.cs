@@ -0,0 +1,33 @@
+﻿namespace Kin
+{
+	/// <summary>
+	/// counters of the native store that keeps built transactions until they are sent
+	/// </summary>
+	[System.Serializable]
+	public struct TransactionStoreStats
+	{
+		/// <summary>
+		/// transactions currently waiting to be sent
+		/// </summary>
+		public int Size;
+		public int MaxSize;
+
+		/// <summary>
+		/// sends that found their transaction
+		/// </summary>
+		public long Hits;
+
+		/// <summary>
+		/// sends whose transaction was already sent, expired or evicted
+		/// </summary>
+		public long Misses;
+		public long Expired;
+		public long Evicted;
+
+
+		public override string ToString()
+		{
+			return string.Format( "Size: {0}/{1}, Hits: {2}, Misses: {3}, Expired: {4}, Evicted: {5}", Size, MaxSize, Hits, Misses, Expired, Evicted );
+		}
+	}
+}
@@ -57,6 +57,22 @@ namespace Kin
 		}
 
 
+		public static void FireActionInDict<T>( this Dictionary<string,Action<T>> dict, string key, T param )
+		{
+			if( key == null )
+			{
+				Debug.LogWarning( "FireActionInDict received a null key!" );
+				return;
+			}
+
+			if( dict.ContainsKey( key ) )
+			{
+				dict[key]( param );
+				dict.Remove( key );
+			}
+		}
+
+
 		public static void FireActionInDict<T,U>( this Dictionary<string,Action<T,U>> dict, string key, T param1, U param2 )
 		{
 			if( key == null )
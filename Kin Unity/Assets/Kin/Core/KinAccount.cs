@@ -1,5 +1,6 @@
 ﻿using System;
 using System.Collections;
+using System.Collections.Generic;
 using UnityEngine;
 
 
@@ -10,6 +11,15 @@ namespace Kin
 	/// </summary>
 	public class KinAccount
 	{
+		/// <summary>
+		/// helper struct for deserializing a cached balance from native code
+		/// </summary>
+		struct CachedBalance
+		{
+			public string Value;
+			public long AgeMillis;
+		}
+
 		readonly internal string _accountId;
 
 
@@ -88,6 +98,20 @@ namespace Kin
 		}
 
 
+		/// <summary>
+		/// exports the account like Export but derives the key from the passphrase on a native worker thread instead of
+		/// blocking the caller. onComplete gets the exported JSON or the exception that stopped the export.
+		/// </summary>
+		/// <param name="passphrase"></param>
+		/// <param name="onComplete"></param>
+		public void ExportAsync( string passphrase, Action<KinException, string> onComplete )
+		{
+			throwIfRequestInFlight( KinManager.onExport );
+			KinManager.onExport[_accountId] = onComplete;
+			NativeBridge.Get().ExportAsync( _accountId, passphrase );
+		}
+
+
 		/// <summary>
 		/// gets the AccountStatus of this KinAccount
 		/// </summary>
@@ -112,6 +136,59 @@ namespace Kin
 		}
 
 
+		/// <summary>
+		/// gets the balance available in this KinAccount. A cached balance is returned without going to the network if it
+		/// was updated at most maxAgeMillis ago, either by a previous GetBalance call or by an active balance listener.
+		/// </summary>
+		/// <param name="maxAgeMillis"></param>
+		/// <param name="onComplete"></param>
+		public void GetBalance( long maxAgeMillis, Action<KinException, decimal> onComplete )
+		{
+			throwIfRequestInFlight( KinManager.onGetBalance );
+			KinManager.onGetBalance[_accountId] = onComplete;
+			NativeBridge.Get().GetBalance( _accountId, maxAgeMillis );
+		}
+
+
+		/// <summary>
+		/// returns the last known balance of this KinAccount and how many milliseconds ago it was updated without going to
+		/// the network. Returns false if no balance is cached.
+		/// </summary>
+		/// <param name="balance"></param>
+		/// <param name="ageMillis"></param>
+		/// <returns></returns>
+		public bool TryGetCachedBalance( out decimal balance, out long ageMillis )
+		{
+			balance = 0;
+			ageMillis = -1;
+
+			var json = NativeBridge.Get().GetCachedBalance( _accountId );
+			if( string.IsNullOrEmpty( json ) )
+				return false;
+
+			var cached = JsonUtility.FromJson<CachedBalance>( json );
+			balance = decimal.Parse( cached.Value, System.Globalization.NumberStyles.Float );
+			ageMillis = cached.AgeMillis;
+			return true;
+		}
+
+
+		/// <summary>
+		/// gets up to limit payments sent or received by this KinAccount, newest first. Pass null as the cursor for the
+		/// latest payments and the NextCursor of the previous page to keep going back. Pages already seen are served from
+		/// the history stored on the device so only new payments and older pages go to the network. Android only.
+		/// </summary>
+		/// <param name="cursor"></param>
+		/// <param name="limit"></param>
+		/// <param name="onComplete"></param>
+		public void GetPaymentHistory( string cursor, int limit, Action<KinException, PaymentHistoryPage> onComplete )
+		{
+			throwIfRequestInFlight( KinManager.onGetPaymentHistory );
+			KinManager.onGetPaymentHistory[_accountId] = onComplete;
+			NativeBridge.Get().GetPaymentHistory( _accountId, cursor, limit );
+		}
+
+
 		/// <summary>
 		/// builds a Transaction object in preperation for sending or whitelisting the Transaction
 		/// </summary>
@@ -162,6 +239,51 @@ namespace Kin
 		}
 
 
+		/// <summary>
+		/// builds a zero fee transaction, whitelists it with the whitelist service set on the KinClient and sends it in a
+		/// single native call. onComplete gets the transaction id.
+		/// </summary>
+		/// <param name="toAddress"></param>
+		/// <param name="kinAmount"></param>
+		/// <param name="memo"></param>
+		/// <param name="onComplete"></param>
+		public void SendWhitelistedTransaction( string toAddress, decimal kinAmount, string memo, Action<KinException, string> onComplete )
+		{
+			throwIfRequestInFlight( KinManager.onSendTransaction );
+			KinManager.onSendTransaction[_accountId] = onComplete;
+			NativeBridge.Get().SendWhitelistedTransaction( _accountId, toAddress, kinAmount.ToString(), memo );
+		}
+
+
+		/// <summary>
+		/// builds and sends all of the payments in order entirely in native code. onProgress (optional) is called with the
+		/// results of up to progressBatchSize payments at a time while the batch runs and onComplete is called once with the
+		/// results of every payment. Throws an exception if the batch could not be started.
+		/// </summary>
+		/// <param name="payments"></param>
+		/// <param name="fee"></param>
+		/// <param name="onComplete"></param>
+		/// <param name="onProgress"></param>
+		/// <param name="progressBatchSize"></param>
+		public void SendPayments( List<OutboundPayment> payments, int fee, Action<List<PaymentResult>> onComplete, Action<List<PaymentResult>> onProgress = null, int progressBatchSize = 10 )
+		{
+			var batchId = Utils.RandomString();
+			KinManager.onSendPayments[batchId] = batch => onComplete( batch.ToResults( payments ) );
+			if( onProgress != null )
+				KinManager.onSendPaymentsProgress[batchId] = batch => onProgress( batch.ToResults( payments ) );
+
+			var json = JsonUtility.ToJson( new OutboundPaymentList { Payments = payments } );
+			var error = NativeBridge.Get().SendPayments( _accountId, batchId, json, fee, onProgress != null ? progressBatchSize : 0 );
+
+			if( !string.IsNullOrEmpty( error ) )
+			{
+				KinManager.onSendPayments.Remove( batchId );
+				KinManager.onSendPaymentsProgress.Remove( batchId );
+				throw KinException.FromNativeErrorJson( error );
+			}
+		}
+
+
 		/// <summary>
 		/// adds a listener that will be called anytime this KinAccount receives a payment
 		/// </summary>
@@ -173,6 +295,35 @@ namespace Kin
 		}
 
 
+		/// <summary>
+		/// starts a PaymentSubscription that hands onPayments the payments of this KinAccount together with the number
+		/// of payments its overflow policy dropped. Nothing is delivered until Request is called on it. cursor is the
+		/// paging token to start after, null starts after the newest payment. capacity is how many payments native code
+		/// holds while waiting for Request. Throws an exception if the subscription could not be started.
+		/// </summary>
+		/// <param name="onPayments"></param>
+		/// <param name="cursor"></param>
+		/// <param name="capacity"></param>
+		/// <param name="overflowPolicy"></param>
+		/// <param name="onError">called when reading payments failed, it is retried</param>
+		/// <returns></returns>
+		public PaymentSubscription SubscribePayments( Action<PaymentInfo[], long> onPayments, string cursor = null, int capacity = 100,
+			PaymentOverflowPolicy overflowPolicy = PaymentOverflowPolicy.Block, Action<KinException> onError = null )
+		{
+			var subscription = new PaymentSubscription( Utils.RandomString(), cursor, onPayments, onError );
+			KinManager.paymentSubscriptions[subscription._subscriptionId] = subscription;
+
+			var error = NativeBridge.Get().SubscribePayments( subscription._subscriptionId, _accountId, cursor, capacity, (int)overflowPolicy );
+			if( !string.IsNullOrEmpty( error ) )
+			{
+				KinManager.paymentSubscriptions.Remove( subscription._subscriptionId );
+				throw KinException.FromNativeErrorJson( error );
+			}
+
+			return subscription;
+		}
+
+
 		/// <summary>
 		/// removes the payment listener
 		/// </summary>
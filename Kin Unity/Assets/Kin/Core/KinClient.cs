@@ -9,6 +9,11 @@ namespace Kin
 	/// </summary>
 	public class KinClient
 	{
+		/// <summary>
+		/// pass to SetWhitelistService to hand transactions back unchanged instead of calling a whitelist service
+		/// </summary>
+		public const string WhitelistStubUrl = "stub:";
+
 		readonly internal string _clientId;
 
 
@@ -26,6 +31,73 @@ namespace Kin
 		}
 
 
+		KinClient( string clientId )
+		{
+			_clientId = clientId;
+		}
+
+
+		/// <summary>
+		/// creates a KinClient without blocking the calling thread. Native setup (keystore, shared preferences) runs in
+		/// the background and with warm set the accounts are loaded and the minimum fee is fetched as well so the first
+		/// calls are fast. onReady gets the client once it can be used or the exception that stopped it from being created.
+		/// Use GetStartupTimings to see where the time went.
+		/// </summary>
+		/// <param name="environment"></param>
+		/// <param name="appId"></param>
+		/// <param name="onReady"></param>
+		/// <param name="storeKey"></param>
+		/// <param name="warm"></param>
+		public static void CreateAsync( Environment environment, string appId, Action<KinException, KinClient> onReady, string storeKey = null, bool warm = true )
+		{
+			Assert.IsTrue(appId.Length == 4);
+			var client = new KinClient( Utils.RandomString() );
+			KinManager.onClientReady[client._clientId] = ex => onReady( ex, ex == null ? client : null );
+			NativeBridge.Get().CreateClientAsync( client._clientId, environment, appId, storeKey, warm );
+		}
+
+
+		/// <summary>
+		/// returns how long each step of creating this client took on the native side or null if it isn't available on
+		/// this platform
+		/// </summary>
+		/// <returns></returns>
+		public StartupTimings GetStartupTimings()
+		{
+			var json = NativeBridge.Get().GetStartupTimings( _clientId );
+			return string.IsNullOrEmpty( json ) ? null : UnityEngine.JsonUtility.FromJson<StartupTimings>( json );
+		}
+
+
+		/// <summary>
+		/// returns what was last known about this client's accounts without going to the network, read from the device
+		/// when the client was created, so the wallet can be drawn right away. Pass onRefreshed to have the status and
+		/// balance of every account fetched again in the background, it gets the updated snapshot. Calls made while a
+		/// refresh runs share it. Returns null if snapshots aren't available on this platform.
+		/// </summary>
+		/// <param name="onRefreshed"></param>
+		/// <returns></returns>
+		public AccountSnapshot GetAccountSnapshot( Action<AccountSnapshot> onRefreshed = null )
+		{
+			if( onRefreshed != null )
+			{
+				Action<AccountSnapshot> pending;
+				if( KinManager.onAccountSnapshotRefreshed.TryGetValue( _clientId, out pending ) )
+					onRefreshed = pending + onRefreshed;
+				KinManager.onAccountSnapshotRefreshed[_clientId] = onRefreshed;
+			}
+
+			var json = NativeBridge.Get().GetAccountSnapshot( _clientId, onRefreshed != null );
+			if( string.IsNullOrEmpty( json ) )
+			{
+				KinManager.onAccountSnapshotRefreshed.Remove( _clientId );
+				return null;
+			}
+
+			return UnityEngine.JsonUtility.FromJson<AccountSnapshot>( json );
+		}
+
+
 		~KinClient()
 		{
 			// we have to delay this call and do it on the main thread to avoid JNI issues
@@ -53,6 +125,70 @@ namespace Kin
 		}
 
 
+		/// <summary>
+		/// imports an account like ImportAccount but derives the key from the passphrase on a native worker thread instead
+		/// of blocking the caller. onComplete gets the imported account or the exception that stopped the import.
+		/// </summary>
+		/// <param name="exportedJson"></param>
+		/// <param name="passphrase"></param>
+		/// <param name="onComplete"></param>
+		public void ImportAccountAsync( string exportedJson, string passphrase, Action<KinException, KinAccount> onComplete )
+		{
+			var account = new KinAccount( Utils.RandomString() );
+			KinManager.onImportAccount[account._accountId] = ( ex, address ) => onComplete( ex, ex == null ? account : null );
+			NativeBridge.Get().ImportAccountAsync( _clientId, account._accountId, exportedJson, passphrase );
+		}
+
+
+		/// <summary>
+		/// imports many exported accounts that were all exported with the same passphrase off the calling thread.
+		/// onComplete is called once with a result for every exported account, in the same order, holding the imported
+		/// account and its public address as Value or the exception that stopped the import.
+		/// </summary>
+		/// <param name="exportedJsons"></param>
+		/// <param name="passphrase"></param>
+		/// <param name="onComplete"></param>
+		public void ImportAccounts( string[] exportedJsons, string passphrase, Action<List<BatchResult<string>>> onComplete )
+		{
+			var passphrases = new string[exportedJsons.Length];
+			for( var i = 0; i < passphrases.Length; i++ )
+				passphrases[i] = passphrase;
+
+			ImportAccounts( exportedJsons, passphrases, onComplete );
+		}
+
+
+		/// <summary>
+		/// like ImportAccounts but every exported account has its own passphrase at the same index
+		/// </summary>
+		/// <param name="exportedJsons"></param>
+		/// <param name="passphrases"></param>
+		/// <param name="onComplete"></param>
+		public void ImportAccounts( string[] exportedJsons, string[] passphrases, Action<List<BatchResult<string>>> onComplete )
+		{
+			Assert.AreEqual( exportedJsons.Length, passphrases.Length );
+
+			var accounts = new KinAccount[exportedJsons.Length];
+			for( var i = 0; i < accounts.Length; i++ )
+				accounts[i] = new KinAccount( Utils.RandomString() );
+
+			var batchId = Utils.RandomString();
+			KinManager.onBatch[batchId] = batch =>
+			{
+				var results = batch.ToResults( accounts, value => value );
+
+				// accounts that failed to import don't exist on the native side
+				foreach( var result in results )
+				{
+					if( result.Exception != null )
+						result.Account = null;
+				}
+				onComplete( results );
+			};
+			NativeBridge.Get().ImportAccounts( _clientId, batchId, accountIdsOf( accounts ), exportedJsons, passphrases );
+		}
+
+
 		/// <summary>
 		/// gets the total number of KinAccounts on this device for this KinClient
 		/// </summary>
@@ -136,6 +272,118 @@ namespace Kin
 			NativeBridge.Get().GetMinimumFee( _clientId );
 		}
 
+
+		/// <summary>
+		/// returns the last minimum fee fetched from the blockchain without waiting on the network or -1 if no fee has been
+		/// cached yet. A refresh is started in the background when the cached fee is missing or getting old.
+		/// </summary>
+		/// <returns></returns>
+		public int GetCachedMinimumFee()
+		{
+			return (int)NativeBridge.Get().GetCachedMinimumFee( _clientId );
+		}
+
+
+		/// <summary>
+		/// configures how long a fetched minimum fee is considered fresh and how much longer a stale fee may still be returned
+		/// while it is refreshed in the background. A ttl of 0 disables the fee cache. Throws an exception if the values are invalid.
+		/// </summary>
+		/// <param name="ttlMillis"></param>
+		/// <param name="maxStaleMillis"></param>
+		public void ConfigureFeeCache( long ttlMillis, long maxStaleMillis )
+		{
+			var error = NativeBridge.Get().ConfigureFeeCache( _clientId, ttlMillis, maxStaleMillis );
+
+			if( !string.IsNullOrEmpty( error ) )
+				throw KinException.FromNativeErrorJson( error );
+		}
+
+
+		/// <summary>
+		/// configures what the listeners of this client and its accounts do while the app is in the background. Throttle,
+		/// the default, closes their streams and polls balances and account creation every pollIntervalMillis, Suspend stops
+		/// them altogether. Payments that arrive meanwhile are delivered to the payment listeners once the app is back in the
+		/// foreground. Takes effect the next time the app goes to the background. Android only, other platforms ignore it.
+		/// Throws an exception if the values are invalid.
+		/// </summary>
+		/// <param name="mode"></param>
+		/// <param name="pollIntervalMillis"></param>
+		public void ConfigureBackground( BackgroundMode mode, long pollIntervalMillis = 60000 )
+		{
+			var error = NativeBridge.Get().ConfigureBackground( _clientId, mode, pollIntervalMillis );
+
+			if( !string.IsNullOrEmpty( error ) )
+				throw KinException.FromNativeErrorJson( error );
+		}
+
+
+		/// <summary>
+		/// chooses how native code encodes callbacks for this client and its accounts. Binary skips JSON on both sides which
+		/// helps with high volume payment and balance listeners. Only supported on Android, other platforms always use JSON.
+		/// </summary>
+		/// <param name="format"></param>
+		public void SetBridgeFormat( BridgeFormat format )
+		{
+			NativeBridge.Get().SetBridgeFormat( _clientId, format );
+		}
+
+
+		/// <summary>
+		/// sets the app's whitelist service that KinAccount.SendWhitelistedTransaction uses. The service receives a POST with
+		/// {"envelope","network_id"} and must respond with the whitelisted envelope. At most maxConcurrent whitelist requests
+		/// run at once. Pass null to remove the service or WhitelistStubUrl to skip whitelisting in tests. Android only,
+		/// throws an exception on other platforms or if the settings are invalid.
+		/// </summary>
+		/// <param name="url"></param>
+		/// <param name="timeoutMillis"></param>
+		/// <param name="maxConcurrent"></param>
+		public void SetWhitelistService( string url, int timeoutMillis = 10000, int maxConcurrent = 4 )
+		{
+			var error = NativeBridge.Get().SetWhitelistService( _clientId, url, timeoutMillis, maxConcurrent );
+
+			if( !string.IsNullOrEmpty( error ) )
+				throw KinException.FromNativeErrorJson( error );
+		}
+
+		/// <summary>
+		/// gets the balance of many KinAccounts in one request. Native code fetches at most maxParallelism balances at a time
+		/// and onComplete is called once with a result for every account.
+		/// </summary>
+		/// <param name="accounts"></param>
+		/// <param name="onComplete"></param>
+		/// <param name="maxParallelism"></param>
+		public void GetBalances( KinAccount[] accounts, Action<List<BatchResult<decimal>>> onComplete, int maxParallelism = 4 )
+		{
+			var batchId = Utils.RandomString();
+			KinManager.onBatch[batchId] = batch => onComplete( batch.ToResults( accounts, value => decimal.Parse( value, System.Globalization.NumberStyles.Float ) ) );
+			NativeBridge.Get().GetBalances( batchId, accountIdsOf( accounts ), maxParallelism );
+		}
+
+
+		/// <summary>
+		/// gets the AccountStatus of many KinAccounts in one request. Native code fetches at most maxParallelism statuses at
+		/// a time and onComplete is called once with a result for every account.
+		/// </summary>
+		/// <param name="accounts"></param>
+		/// <param name="onComplete"></param>
+		/// <param name="maxParallelism"></param>
+		public void GetStatuses( KinAccount[] accounts, Action<List<BatchResult<AccountStatus>>> onComplete, int maxParallelism = 4 )
+		{
+			var batchId = Utils.RandomString();
+			KinManager.onBatch[batchId] = batch => onComplete( batch.ToResults( accounts, value => (AccountStatus)int.Parse( value ) ) );
+			NativeBridge.Get().GetStatuses( batchId, accountIdsOf( accounts ), maxParallelism );
+		}
+
+
+		static string[] accountIdsOf( KinAccount[] accounts )
+		{
+			var accountIds = new string[accounts.Length];
+			for( var i = 0; i < accounts.Length; i++ )
+				accountIds[i] = accounts[i]._accountId;
+			return accountIds;
+		}
+
+
         /// <summary>
         /// restore and account that was backed up
         /// </summary>
@@ -1,5 +1,6 @@
 ﻿using System;
 using System.Collections.Generic;
+using System.Reflection;
 using UnityEngine;
 
 
@@ -14,27 +15,47 @@ namespace Kin
 		/// <summary>
 		/// helper struct for deserializing JSON into two strings for callbacks from native code
 		/// </summary>
-		struct CallbackParam
+		internal struct CallbackParam
 		{
 			public string AccountId;
 			public string Value;
 		}
 
 		internal static Dictionary<string, List<IPaymentListener>> paymentListeners = new Dictionary<string, List<IPaymentListener>>();
+		internal static Dictionary<string, PaymentSubscription> paymentSubscriptions = new Dictionary<string, PaymentSubscription>();
 		internal static Dictionary<string, List<IBalanceListener>> balanceListeners = new Dictionary<string, List<IBalanceListener>>();
 		internal static Dictionary<string, List<IAccountCreationListener>> accountCreationListeners = new Dictionary<string, List<IAccountCreationListener>>();
 
+		internal static Dictionary<string, Action<KinException>> onClientReady = new Dictionary<string, Action<KinException>>();
+		internal static Dictionary<string, Action<AccountSnapshot>> onAccountSnapshotRefreshed = new Dictionary<string, Action<AccountSnapshot>>();
+		internal static Dictionary<string, Action<KinException, string>> onImportAccount = new Dictionary<string, Action<KinException, string>>();
+		internal static Dictionary<string, Action<KinException, string>> onExport = new Dictionary<string, Action<KinException, string>>();
 		internal static Dictionary<string, Action<KinException, int>> onGetMinimumFee = new Dictionary<string, Action<KinException, int>>();
 		internal static Dictionary<string, Action<KinException, AccountStatus>> onGetStatus = new Dictionary<string, Action<KinException, AccountStatus>>();
 		internal static Dictionary<string, Action<KinException, decimal>> onGetBalance = new Dictionary<string, Action<KinException, decimal>>();
+		internal static Dictionary<string, Action<KinException, PaymentHistoryPage>> onGetPaymentHistory = new Dictionary<string, Action<KinException, PaymentHistoryPage>>();
 		internal static Dictionary<string, Action<KinException, string>> onSendTransaction = new Dictionary<string, Action<KinException, string>>();
 		internal static Dictionary<string, Action<KinException, Transaction>> onBuildTransaction = new Dictionary<string, Action<KinException, Transaction>>();
 
+		internal static Dictionary<string, Action<NativeBatch>> onBatch = new Dictionary<string, Action<NativeBatch>>();
+		internal static Dictionary<string, Action<NativePaymentBatch>> onSendPaymentsProgress = new Dictionary<string, Action<NativePaymentBatch>>();
+		internal static Dictionary<string, Action<NativePaymentBatch>> onSendPayments = new Dictionary<string, Action<NativePaymentBatch>>();
+
         internal static Dictionary<string, Action<KinException, BackupRestoreResult>> onBackup = new Dictionary<string, Action<KinException, BackupRestoreResult>>();
         internal static Dictionary<string, Action<KinException, BackupRestoreResult, KinAccount>> onRestore = new Dictionary<string, Action<KinException, BackupRestoreResult ,KinAccount>>();
 
         internal static KinManager Manager;
 		Queue<Action> _actionQueue = new Queue<Action>();
+
+		// callback methods keyed by name for events drained from the native event buffer. JSON events go through
+		// _callbacks, binary events are decoded by BinaryEventReader and go straight to the typed handlers.
+		Dictionary<string, Action<string>> _callbacks;
+		Dictionary<string, Action<CallbackParam>> _callbackParamHandlers;
+		Dictionary<string, Action<KinException>> _errorHandlers;
+		Dictionary<string, Action<PaymentInfo>> _paymentHandlers;
+		Dictionary<string, Action<PaymentInfo[]>> _paymentListHandlers;
+		Dictionary<string, Action<Transaction>> _transactionHandlers;
+		INativeBridge _bridge;
 		
 
 		/// <summary>
@@ -77,10 +98,99 @@ namespace Kin
 
 
 		/// <summary>
-		/// we use Update only to queue finalizer calls and call them on the main thread
+		/// maps every callback method on this class by name so that drained native events can be dispatched without
+		/// going through SendMessage. Typed handlers are named like their JSON callback with a lowercase first letter.
+		/// </summary>
+		void Awake()
+		{
+			_callbacks = mapHandlers<string>( false );
+			_callbackParamHandlers = mapHandlers<CallbackParam>( true );
+			_errorHandlers = mapHandlers<KinException>( true );
+			_paymentHandlers = mapHandlers<PaymentInfo>( true );
+			_paymentListHandlers = mapHandlers<PaymentInfo[]>( true );
+			_transactionHandlers = mapHandlers<Transaction>( true );
+
+			_bridge = NativeBridge.Get();
+		}
+
+
+		Dictionary<string, Action<T>> mapHandlers<T>( bool typed )
+		{
+			var handlers = new Dictionary<string, Action<T>>();
+			foreach( var method in typeof( KinManager ).GetMethods( BindingFlags.Instance | BindingFlags.NonPublic ) )
+			{
+				var parameters = method.GetParameters();
+				if( method.ReturnType != typeof( void ) || parameters.Length != 1 || parameters[0].ParameterType != typeof( T ) )
+					continue;
+
+				if( typed != char.IsLower( method.Name[0] ) )
+					continue;
+
+				var name = typed ? char.ToUpperInvariant( method.Name[0] ) + method.Name.Substring( 1 ) : method.Name;
+				handlers[name] = (Action<T>)Delegate.CreateDelegate( typeof( Action<T> ), this, method );
+			}
+
+			return handlers;
+		}
+
+
+		internal void dispatchEvent( string method, string parameter )
+		{
+			Action<string> callback;
+			if( _callbacks.TryGetValue( method, out callback ) )
+				callback( parameter );
+			else
+				Debug.LogWarning( "KinManager received an event with no callback: " + method );
+		}
+
+
+		internal void dispatchCallback( string method, CallbackParam param )
+		{
+			dispatchTyped( _callbackParamHandlers, method, param );
+		}
+
+
+		internal void dispatchError( string method, KinException ex )
+		{
+			dispatchTyped( _errorHandlers, method, ex );
+		}
+
+
+		internal void dispatchPayment( string method, PaymentInfo payment )
+		{
+			dispatchTyped( _paymentHandlers, method, payment );
+		}
+
+
+		internal void dispatchPayments( string method, PaymentInfo[] payments )
+		{
+			dispatchTyped( _paymentListHandlers, method, payments );
+		}
+
+
+		internal void dispatchTransaction( string method, Transaction transaction )
+		{
+			dispatchTyped( _transactionHandlers, method, transaction );
+		}
+
+
+		static void dispatchTyped<T>( Dictionary<string, Action<T>> handlers, string method, T value )
+		{
+			Action<T> handler;
+			if( handlers.TryGetValue( method, out handler ) )
+				handler( value );
+			else
+				Debug.LogWarning( "KinManager received a binary event with no handler: " + method );
+		}
+
+
+		/// <summary>
+		/// we use Update to queue finalizer calls and call them on the main thread and to dispatch events queued by native code
 		/// </summary>
 		void Update()
 		{
+			_bridge.DispatchPendingEvents( this );
+
 			if( _actionQueue.Count > 0 )
 			{
 				lock( this )
@@ -101,16 +211,88 @@ namespace Kin
 
 		#region KinClient callbacks
 
+		void ClientReady( string json )
+		{
+			clientReady( JsonUtility.FromJson<CallbackParam>( json ) );
+		}
+
+
+		void clientReady( CallbackParam param )
+		{
+			onClientReady.FireActionInDict( param.AccountId, null );
+		}
+
+
+		void CreateClientFailed( string error )
+		{
+			createClientFailed( KinException.FromNativeErrorJson( error ) );
+		}
+
+
+		void createClientFailed( KinException ex )
+		{
+			onClientReady.FireActionInDict( ex.AccountId, ex );
+		}
+
+
+		void AccountSnapshotRefreshed( string json )
+		{
+			var snapshot = JsonUtility.FromJson<AccountSnapshot>( json );
+			onAccountSnapshotRefreshed.FireActionInDict( snapshot.ClientId, snapshot );
+		}
+
+
+		void ImportAccountSucceeded( string json )
+		{
+			importAccountSucceeded( JsonUtility.FromJson<CallbackParam>( json ) );
+		}
+
+
+		void importAccountSucceeded( CallbackParam param )
+		{
+			onImportAccount.FireActionInDict( param.AccountId, null, param.Value );
+		}
+
+
+		void ImportAccountFailed( string error )
+		{
+			importAccountFailed( KinException.FromNativeErrorJson( error ) );
+		}
+
+
+		void importAccountFailed( KinException ex )
+		{
+			onImportAccount.FireActionInDict( ex.AccountId, ex, null );
+		}
+
+
+		void ImportAccountsCompleted( string json )
+		{
+			var batch = JsonUtility.FromJson<NativeBatch>( json );
+			onBatch.FireActionInDict( batch.BatchId, batch );
+		}
+
+
 		void GetMinimumFeeSucceeded( string json )
 		{
-			var param = JsonUtility.FromJson<CallbackParam>( json );
+			getMinimumFeeSucceeded( JsonUtility.FromJson<CallbackParam>( json ) );
+		}
+
+
+		void getMinimumFeeSucceeded( CallbackParam param )
+		{
 			onGetMinimumFee.FireActionInDict( param.AccountId, null, int.Parse( param.Value ) );
 		}
 
 
 		void GetMinimumFeeFailed( string error )
 		{
-			var ex = KinException.FromNativeErrorJson( error );
+			getMinimumFeeFailed( KinException.FromNativeErrorJson( error ) );
+		}
+
+
+		void getMinimumFeeFailed( KinException ex )
+		{
 			onGetMinimumFee.FireActionInDict( ex.AccountId, ex, -1 );
 		}
 
@@ -119,9 +301,38 @@ namespace Kin
 
 		#region KinAccount callbacks
 
+		void ExportSucceeded( string json )
+		{
+			exportSucceeded( JsonUtility.FromJson<CallbackParam>( json ) );
+		}
+
+
+		void exportSucceeded( CallbackParam param )
+		{
+			onExport.FireActionInDict( param.AccountId, null, param.Value );
+		}
+
+
+		void ExportFailed( string error )
+		{
+			exportFailed( KinException.FromNativeErrorJson( error ) );
+		}
+
+
+		void exportFailed( KinException ex )
+		{
+			onExport.FireActionInDict( ex.AccountId, ex, null );
+		}
+
+
 		void GetStatusSucceeded( string json )
 		{
-			var param = JsonUtility.FromJson<CallbackParam>( json );
+			getStatusSucceeded( JsonUtility.FromJson<CallbackParam>( json ) );
+		}
+
+
+		void getStatusSucceeded( CallbackParam param )
+		{
 			var status = (AccountStatus)int.Parse( param.Value );
 			onGetStatus.FireActionInDict( param.AccountId, null, status );
 		}
@@ -129,14 +340,24 @@ namespace Kin
 
 		void GetStatusFailed( string error )
 		{
-			var ex = KinException.FromNativeErrorJson( error );
+			getStatusFailed( KinException.FromNativeErrorJson( error ) );
+		}
+
+
+		void getStatusFailed( KinException ex )
+		{
 			onGetStatus.FireActionInDict( ex.AccountId, ex, default( AccountStatus ) );
 		}
 
 
 		void GetBalanceSucceeded( string json )
 		{
-			var param = JsonUtility.FromJson<CallbackParam>( json );
+			getBalanceSucceeded( JsonUtility.FromJson<CallbackParam>( json ) );
+		}
+
+
+		void getBalanceSucceeded( CallbackParam param )
+		{
 			var balance = decimal.Parse( param.Value, System.Globalization.NumberStyles.Float );
 			onGetBalance.FireActionInDict( param.AccountId, null, balance );
 		}
@@ -144,35 +365,110 @@ namespace Kin
 
 		void GetBalanceFailed( string json )
 		{
-			var ex = KinException.FromNativeErrorJson( json );
+			getBalanceFailed( KinException.FromNativeErrorJson( json ) );
+		}
+
+
+		void getBalanceFailed( KinException ex )
+		{
 			onGetBalance.FireActionInDict( ex.AccountId, ex, default( decimal ) );
 		}
 
 
+		void GetBalancesCompleted( string json )
+		{
+			var batch = JsonUtility.FromJson<NativeBatch>( json );
+			onBatch.FireActionInDict( batch.BatchId, batch );
+		}
+
+
+		void GetStatusesCompleted( string json )
+		{
+			var batch = JsonUtility.FromJson<NativeBatch>( json );
+			onBatch.FireActionInDict( batch.BatchId, batch );
+		}
+
+
+		void GetPaymentHistorySucceeded( string json )
+		{
+			var page = JsonUtility.FromJson<PaymentHistoryPage>( json );
+			onGetPaymentHistory.FireActionInDict( page.AccountId, null, page );
+		}
+
+
+		void GetPaymentHistoryFailed( string json )
+		{
+			getPaymentHistoryFailed( KinException.FromNativeErrorJson( json ) );
+		}
+
+
+		void getPaymentHistoryFailed( KinException ex )
+		{
+			onGetPaymentHistory.FireActionInDict( ex.AccountId, ex, null );
+		}
+
+
+		void SendPaymentsProgress( string json )
+		{
+			var batch = JsonUtility.FromJson<NativePaymentBatch>( json );
+			Action<NativePaymentBatch> onProgress;
+			if( onSendPaymentsProgress.TryGetValue( batch.BatchId, out onProgress ) )
+				onProgress( batch );
+		}
+
+
+		void SendPaymentsCompleted( string json )
+		{
+			var batch = JsonUtility.FromJson<NativePaymentBatch>( json );
+			onSendPaymentsProgress.Remove( batch.BatchId );
+			onSendPayments.FireActionInDict( batch.BatchId, batch );
+		}
+
+
 		void BuildTransactionSucceeded( string json )
 		{
-			var transaction = JsonUtility.FromJson<Transaction>( json );
+			buildTransactionSucceeded( JsonUtility.FromJson<Transaction>( json ) );
+		}
+
+
+		void buildTransactionSucceeded( Transaction transaction )
+		{
 			onBuildTransaction.FireActionInDict( transaction.AccountId, null, transaction );
 		}
 
 
 		void BuildTransactionFailed( string json )
 		{
-			var ex = KinException.FromNativeErrorJson( json );
+			buildTransactionFailed( KinException.FromNativeErrorJson( json ) );
+		}
+
+
+		void buildTransactionFailed( KinException ex )
+		{
 			onBuildTransaction.FireActionInDict( ex.AccountId, ex, null );
 		}
 
 
 		void SendTransactionSucceeded( string json )
 		{
-			var param = JsonUtility.FromJson<CallbackParam>( json );
+			sendTransactionSucceeded( JsonUtility.FromJson<CallbackParam>( json ) );
+		}
+
+
+		void sendTransactionSucceeded( CallbackParam param )
+		{
 			onSendTransaction.FireActionInDict( param.AccountId, null, param.Value );
 		}
 
 
 		void SendTransactionFailed( string json )
 		{
-			var ex = KinException.FromNativeErrorJson( json );
+			sendTransactionFailed( KinException.FromNativeErrorJson( json ) );
+		}
+
+
+		void sendTransactionFailed( KinException ex )
+		{
 			onSendTransaction.FireActionInDict( ex.AccountId, ex, null );
 		}
 
@@ -182,29 +478,49 @@ namespace Kin
 
         void BackupSucceeded( string json )
         {
-            var param = JsonUtility.FromJson<CallbackParam>(json);
+            backupSucceeded( JsonUtility.FromJson<CallbackParam>( json ) );
+        }
+
+
+        void backupSucceeded( CallbackParam param )
+        {
             onBackup.FireActionInDict(param.AccountId, null, BackupRestoreResult.Success);
         }
 
 
         void BackupCanceled( string json )
         {
-            var param = JsonUtility.FromJson<CallbackParam>(json);
+            backupCanceled( JsonUtility.FromJson<CallbackParam>( json ) );
+        }
+
+
+        void backupCanceled( CallbackParam param )
+        {
             onBackup.FireActionInDict(param.AccountId, null, BackupRestoreResult.Cancel);
         }
 
 
         void BackupFailed( string json )
+        {
+            backupFailed( KinException.FromNativeErrorJson( json ) );
+        }
+
+
+        void backupFailed( KinException ex )
         {
             Debug.Log("In backup failed");
-            var ex = KinException.FromNativeErrorJson(json);
             onBackup.FireActionInDict(ex.AccountId, ex, BackupRestoreResult.Failed);
         }
 
 
         void RestoreSucceeded( string json )
         {
-            var param = JsonUtility.FromJson<CallbackParam>(json);
+            restoreSucceeded( JsonUtility.FromJson<CallbackParam>( json ) );
+        }
+
+
+        void restoreSucceeded( CallbackParam param )
+        {
             // param.Value is the accountId
             KinAccount restoredAccount = new KinAccount(param.Value);
             onRestore.FireActionInDict(param.AccountId, null, BackupRestoreResult.Success, restoredAccount);
@@ -213,14 +529,24 @@ namespace Kin
 
         void RestoreCanceled( string json )
         {
-            var param = JsonUtility.FromJson<CallbackParam>(json);
+            restoreCanceled( JsonUtility.FromJson<CallbackParam>( json ) );
+        }
+
+
+        void restoreCanceled( CallbackParam param )
+        {
             onRestore.FireActionInDict(param.AccountId, null, BackupRestoreResult.Cancel, null);
         }
 
 
         void RestoreFailed( string json )
         {
-            var ex = KinException.FromNativeErrorJson(json);
+            restoreFailed( KinException.FromNativeErrorJson( json ) );
+        }
+
+
+        void restoreFailed( KinException ex )
+        {
             onRestore.FireActionInDict(ex.AccountId, ex, BackupRestoreResult.Failed, null);
         }
 
@@ -231,7 +557,12 @@ namespace Kin
 
         void OnPayment( string json )
 		{
-			var paymentInfo = JsonUtility.FromJson<PaymentInfo>( json );
+			onPayment( JsonUtility.FromJson<PaymentInfo>( json ) );
+		}
+
+
+		void onPayment( PaymentInfo paymentInfo )
+		{
 			if( paymentListeners.ContainsKey( paymentInfo.AccountId ) )
 			{
 				foreach( var listener in paymentListeners[paymentInfo.AccountId] )
@@ -240,9 +571,51 @@ namespace Kin
 		}
 
 
+		void OnPayments( string json )
+		{
+			onPayments( JsonUtility.FromJson<NativePaymentList>( json ).Payments );
+		}
+
+
+		void onPayments( PaymentInfo[] payments )
+		{
+			foreach( var payment in payments )
+				onPayment( payment );
+		}
+
+
+		void OnSubscriptionPayments( string json )
+		{
+			var batch = JsonUtility.FromJson<NativeSubscriptionPayments>( json );
+			PaymentSubscription subscription;
+			if( paymentSubscriptions.TryGetValue( batch.SubscriptionId, out subscription ) )
+				subscription.deliver( batch );
+		}
+
+
+		void SubscriptionFailed( string json )
+		{
+			subscriptionFailed( KinException.FromNativeErrorJson( json ) );
+		}
+
+
+		// the error carries the subscription id in AccountId
+		void subscriptionFailed( KinException ex )
+		{
+			PaymentSubscription subscription;
+			if( paymentSubscriptions.TryGetValue( ex.AccountId, out subscription ) )
+				subscription.fail( ex );
+		}
+
+
 		void OnBalance( string json )
 		{
-			var param = JsonUtility.FromJson<CallbackParam>( json );
+			onBalance( JsonUtility.FromJson<CallbackParam>( json ) );
+		}
+
+
+		void onBalance( CallbackParam param )
+		{
 			var balance = decimal.Parse( param.Value, System.Globalization.NumberStyles.Float );
 			if( balanceListeners.ContainsKey( param.AccountId ) )
 			{
@@ -252,6 +625,24 @@ namespace Kin
 		}
 
 
+		void OnMetricsSnapshot( string json )
+		{
+			KinPluginSettings.onMetricsSnapshot( json );
+		}
+
+
+		void OnTransactionEvicted( string json )
+		{
+			onTransactionEvicted( JsonUtility.FromJson<CallbackParam>( json ) );
+		}
+
+
+		void onTransactionEvicted( CallbackParam param )
+		{
+			KinPluginSettings.onTransactionEvicted( param.Value );
+		}
+
+
 		void OnAccountCreated( string accountId )
 		{
 			if( accountCreationListeners.ContainsKey( accountId ) )
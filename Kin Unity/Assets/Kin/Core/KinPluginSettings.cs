@@ -0,0 +1,251 @@
+﻿using System;
+using UnityEngine;
+
+
+namespace Kin
+{
+	/// <summary>
+	/// plugin wide settings that are not tied to a single KinClient or KinAccount
+	/// </summary>
+	public static class KinPluginSettings
+	{
+		/// <summary>
+		/// called with the transaction id when a built transaction is dropped before it was sent, either because it expired
+		/// or because too many transactions were waiting. Sending it afterwards fails.
+		/// </summary>
+		public static event Action<string> TransactionEvicted;
+
+		/// <summary>
+		/// called with every snapshot native code dumps while SetMetricsDumpInterval is running
+		/// </summary>
+		public static event Action<MetricsSnapshot> MetricsDumped;
+
+		// the binary event frame stores its event count as 16 bits
+		const int MaxEventsPerFrameLimit = 0xffff;
+		static int _maxEventsPerFrame = 256;
+
+
+		/// <summary>
+		/// most native events dispatched per frame, anything past it waits for the next frame. Only used on Android.
+		/// </summary>
+		public static int MaxEventsPerFrame
+		{
+			get { return _maxEventsPerFrame; }
+			set
+			{
+				if( value < 1 || value > MaxEventsPerFrameLimit )
+					throw new ArgumentOutOfRangeException( "value", "MaxEventsPerFrame must be between 1 and " + MaxEventsPerFrameLimit );
+				_maxEventsPerFrame = value;
+			}
+		}
+
+
+		/// <summary>
+		/// configures the native worker pools. Reads (balance, status, fee) and writes (build, send) each get their own pool
+		/// with its own bounded queue. Throws an exception if the settings are invalid.
+		/// </summary>
+		/// <param name="readThreads"></param>
+		/// <param name="writeThreads"></param>
+		/// <param name="queueCapacity"></param>
+		/// <param name="rejectionPolicy"></param>
+		public static void ConfigureExecutor( int readThreads, int writeThreads, int queueCapacity, ExecutorRejectionPolicy rejectionPolicy = ExecutorRejectionPolicy.Abort )
+		{
+			var error = NativeBridge.Get().ConfigureExecutor( readThreads, writeThreads, queueCapacity, (int)rejectionPolicy );
+
+			if( !string.IsNullOrEmpty( error ) )
+				throw KinException.FromNativeErrorJson( error );
+		}
+
+
+		/// <summary>
+		/// drains the native worker pools, stops the periodic native work and saves the account snapshots. Requests that
+		/// are already queued still complete, later requests fail through their usual Failed event until Restart is called.
+		/// </summary>
+		public static void Shutdown()
+		{
+			NativeBridge.Get().Shutdown();
+		}
+
+
+		/// <summary>
+		/// accepts requests again after Shutdown and resumes the periodic native work
+		/// </summary>
+		public static void Restart()
+		{
+			NativeBridge.Get().Restart();
+		}
+
+
+		/// <summary>
+		/// configures how many built but unsent transactions native code keeps and for how long. Throws an exception if the
+		/// settings are invalid.
+		/// </summary>
+		/// <param name="maxSize"></param>
+		/// <param name="ttlMillis"></param>
+		public static void ConfigureTransactionStore( int maxSize, long ttlMillis )
+		{
+			var error = NativeBridge.Get().ConfigureTransactionStore( maxSize, ttlMillis );
+
+			if( !string.IsNullOrEmpty( error ) )
+				throw KinException.FromNativeErrorJson( error );
+		}
+
+
+		/// <summary>
+		/// returns the hit, miss, expiry and eviction counters of the native pending transaction store
+		/// </summary>
+		public static TransactionStoreStats GetTransactionStoreStats()
+		{
+			return JsonUtility.FromJson<TransactionStoreStats>( NativeBridge.Get().GetTransactionStoreStats() );
+		}
+
+
+		/// <summary>
+		/// configures how often native code retries an operation that failed with a retryable (network) error before the
+		/// error is reported. Retries back off exponentially from baseDelayMillis up to maxDelayMillis with random jitter and
+		/// stop once budgetMillis has passed. maxAttempts of 1 turns retries off. Throws an exception if the settings are invalid.
+		/// </summary>
+		/// <param name="operation"></param>
+		/// <param name="maxAttempts"></param>
+		/// <param name="baseDelayMillis"></param>
+		/// <param name="maxDelayMillis"></param>
+		/// <param name="budgetMillis"></param>
+		public static void ConfigureRetries( RetryOperation operation, int maxAttempts, long baseDelayMillis, long maxDelayMillis, long budgetMillis )
+		{
+			var error = NativeBridge.Get().ConfigureRetries( operation.ToString(), maxAttempts, baseDelayMillis, maxDelayMillis, budgetMillis );
+
+			if( !string.IsNullOrEmpty( error ) )
+				throw KinException.FromNativeErrorJson( error );
+		}
+
+
+		/// <summary>
+		/// after failureThreshold calls of an operation in a row failed with retryable errors further calls fail immediately
+		/// with a CircuitOpenException for openMillis. A failureThreshold of 0 turns this off. Throws an exception if the
+		/// settings are invalid.
+		/// </summary>
+		/// <param name="failureThreshold"></param>
+		/// <param name="openMillis"></param>
+		public static void ConfigureCircuitBreaker( int failureThreshold, long openMillis )
+		{
+			var error = NativeBridge.Get().ConfigureCircuitBreaker( failureThreshold, openMillis );
+
+			if( !string.IsNullOrEmpty( error ) )
+				throw KinException.FromNativeErrorJson( error );
+		}
+
+
+		/// <summary>
+		/// overrides whether errors with the given KinException.NativeType are retried
+		/// </summary>
+		/// <param name="nativeType"></param>
+		/// <param name="retryable"></param>
+		public static void SetRetryable( string nativeType, bool retryable )
+		{
+			NativeBridge.Get().SetRetryable( nativeType, retryable );
+		}
+
+
+		public static RetryStats GetRetryStats()
+		{
+			return JsonUtility.FromJson<RetryStats>( NativeBridge.Get().GetRetryStats() );
+		}
+
+
+		/// <summary>
+		/// limits how many network streams the payment, balance and account creation listeners may keep open. Listeners of
+		/// accounts with the same public address always share a stream. Balance and account creation listeners past the
+		/// limit are polled every pollIntervalMillis instead and move to a stream once one frees up. Payment listeners
+		/// always get a stream. Throws an exception if the settings are invalid.
+		/// </summary>
+		/// <param name="maxStreams"></param>
+		/// <param name="pollIntervalMillis"></param>
+		public static void ConfigureListeners( int maxStreams, long pollIntervalMillis )
+		{
+			var error = NativeBridge.Get().ConfigureListeners( maxStreams, pollIntervalMillis );
+
+			if( !string.IsNullOrEmpty( error ) )
+				throw KinException.FromNativeErrorJson( error );
+		}
+
+
+		public static ListenerStats GetListenerStats()
+		{
+			return JsonUtility.FromJson<ListenerStats>( NativeBridge.Get().GetListenerStats() );
+		}
+
+
+		/// <summary>
+		/// keeps the result of every export for the rest of the session so exporting the same account with the same
+		/// passphrase again returns right away instead of deriving the key again. The cached JSON is encrypted with the
+		/// passphrase and passphrases are only kept as a hash. Disabling clears the cache. Only used on Android.
+		/// </summary>
+		/// <param name="enabled"></param>
+		public static void SetExportCacheEnabled( bool enabled )
+		{
+			NativeBridge.Get().SetExportCacheEnabled( enabled );
+		}
+
+
+		/// <summary>
+		/// holds balance and payment listener events for windowMillis so a burst reaches Unity as a single balance update
+		/// and a batch of payments per account. Payments are never dropped and keep their order, a batch is delivered
+		/// early once maxPaymentBatch payments are waiting. A window of 0 delivers every event right away. Throws an
+		/// exception if the settings are invalid.
+		/// </summary>
+		/// <param name="windowMillis"></param>
+		/// <param name="maxPaymentBatch"></param>
+		public static void ConfigureEventCoalescing( long windowMillis, int maxPaymentBatch )
+		{
+			var error = NativeBridge.Get().ConfigureEventCoalescing( windowMillis, maxPaymentBatch );
+
+			if( !string.IsNullOrEmpty( error ) )
+				throw KinException.FromNativeErrorJson( error );
+		}
+
+
+		/// <summary>
+		/// turns native metrics on or off: latency of every network and keystore operation, bridge messages and listener
+		/// events. They cost next to nothing while off, which is the default. Turning them on starts over from zero.
+		/// </summary>
+		/// <param name="enabled"></param>
+		public static void SetMetricsEnabled( bool enabled )
+		{
+			NativeBridge.Get().SetMetricsEnabled( enabled );
+		}
+
+
+		public static MetricsSnapshot GetMetricsSnapshot()
+		{
+			return JsonUtility.FromJson<MetricsSnapshot>( NativeBridge.Get().GetMetricsSnapshot() );
+		}
+
+
+		/// <summary>
+		/// makes native code log a metrics snapshot and raise MetricsDumped every intervalMillis. 0 stops the dumps. Throws
+		/// an exception if the interval is invalid.
+		/// </summary>
+		/// <param name="intervalMillis"></param>
+		public static void SetMetricsDumpInterval( long intervalMillis )
+		{
+			var error = NativeBridge.Get().SetMetricsDumpInterval( intervalMillis );
+
+			if( !string.IsNullOrEmpty( error ) )
+				throw KinException.FromNativeErrorJson( error );
+		}
+
+
+		internal static void onMetricsSnapshot( string json )
+		{
+			if( MetricsDumped != null )
+				MetricsDumped( JsonUtility.FromJson<MetricsSnapshot>( json ) );
+		}
+
+
+		internal static void onTransactionEvicted( string transactionId )
+		{
+			if( TransactionEvicted != null )
+				TransactionEvicted( transactionId );
+		}
+	}
+}
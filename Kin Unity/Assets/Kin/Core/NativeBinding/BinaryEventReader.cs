@@ -0,0 +1,146 @@
+﻿using System.Text;
+using UnityEngine;
+
+
+namespace Kin
+{
+	/// <summary>
+	/// decodes event frames written by the native BinaryCodec and hands each event to the KinManager. Integers are little
+	/// endian and strings are an int32 byte length (-1 for null) followed by UTF-8 bytes.
+	/// </summary>
+	static class BinaryEventReader
+	{
+		const int Version = 1;
+
+		const byte KindJson = 0;
+		const byte KindCallback = 1;
+		const byte KindPayment = 2;
+		const byte KindTransaction = 3;
+		const byte KindError = 4;
+		const byte KindPayments = 5;
+
+
+		/// <summary>
+		/// dispatches every event in the frame and returns how many there were
+		/// </summary>
+		internal static int Dispatch( byte[] frame, KinManager manager )
+		{
+			if( frame == null || frame.Length < 3 )
+				return 0;
+
+			var position = 0;
+			var version = frame[position++];
+			if( version != Version )
+			{
+				Debug.LogError( "Unsupported native event frame version: " + version );
+				return 0;
+			}
+
+			var count = readUInt16( frame, ref position );
+			for( var i = 0; i < count; i++ )
+			{
+				var method = readString( frame, ref position );
+				var kind = frame[position++];
+				var length = readInt32( frame, ref position );
+				var end = position + length;
+
+				switch( kind )
+				{
+					case KindJson:
+						manager.dispatchEvent( method, readString( frame, ref position ) );
+						break;
+					case KindCallback:
+						manager.dispatchCallback( method, new KinManager.CallbackParam
+						{
+							Value = readString( frame, ref position ),
+							AccountId = readString( frame, ref position )
+						} );
+						break;
+					case KindPayment:
+						var payment = readPayment( frame, ref position );
+						payment.AccountId = readString( frame, ref position );
+						manager.dispatchPayment( method, payment );
+						break;
+					case KindPayments:
+						var paymentsAccountId = readString( frame, ref position );
+						var payments = new PaymentInfo[readInt32( frame, ref position )];
+						for( var j = 0; j < payments.Length; j++ )
+						{
+							payments[j] = readPayment( frame, ref position );
+							payments[j].AccountId = paymentsAccountId;
+						}
+						manager.dispatchPayments( method, payments );
+						break;
+					case KindTransaction:
+						manager.dispatchTransaction( method, new Transaction
+						{
+							AccountId = readString( frame, ref position ),
+							Id = readString( frame, ref position ),
+							WhitelistableTransactionPayLoad = readString( frame, ref position ),
+							WhitelistableTransactionNetworkPassphrase = readString( frame, ref position )
+						} );
+						break;
+					case KindError:
+						var message = readString( frame, ref position );
+						var nativeType = readString( frame, ref position );
+						var accountId = readString( frame, ref position );
+						manager.dispatchError( method, new KinException( message, nativeType, accountId ) );
+						break;
+					default:
+						Debug.LogWarning( "Skipping native event with unknown kind " + kind + ": " + method );
+						break;
+				}
+
+				// always trust the length so unknown or extended bodies never desync the frame
+				position = end;
+			}
+
+			return count;
+		}
+
+
+		/// <summary>
+		/// reads the PaymentInfo fields shared by the PAYMENT and PAYMENTS bodies, everything but AccountId
+		/// </summary>
+		static PaymentInfo readPayment( byte[] frame, ref int position )
+		{
+			return new PaymentInfo
+			{
+				_Amount = readString( frame, ref position ),
+				CreatedAt = readString( frame, ref position ),
+				DestinationPublicKey = readString( frame, ref position ),
+				SourcePublicKey = readString( frame, ref position ),
+				Hash = readString( frame, ref position ),
+				Memo = readString( frame, ref position )
+			};
+		}
+
+
+		static int readUInt16( byte[] frame, ref int position )
+		{
+			var value = frame[position] | ( frame[position + 1] << 8 );
+			position += 2;
+			return value;
+		}
+
+
+		static int readInt32( byte[] frame, ref int position )
+		{
+			var value = frame[position] | ( frame[position + 1] << 8 ) | ( frame[position + 2] << 16 ) | ( frame[position + 3] << 24 );
+			position += 4;
+			return value;
+		}
+
+
+		static string readString( byte[] frame, ref int position )
+		{
+			var length = readInt32( frame, ref position );
+			if( length < 0 )
+				return null;
+
+			var value = Encoding.UTF8.GetString( frame, position, length );
+			position += length;
+			return value;
+		}
+	}
+}
@@ -10,14 +10,63 @@ namespace Kin
 	/// </summary>
 	interface INativeBridge
 	{
+		#region Plugin
+
+		string ConfigureExecutor( int readThreads, int writeThreads, int queueCapacity, int rejectionPolicy );
+
+		void Shutdown();
+
+		void Restart();
+
+		void DispatchPendingEvents( KinManager manager );
+
+		string ConfigureTransactionStore( int maxSize, long ttlMillis );
+
+		string GetTransactionStoreStats();
+
+		string ConfigureRetries( string operation, int maxAttempts, long baseDelayMillis, long maxDelayMillis, long budgetMillis );
+
+		string ConfigureCircuitBreaker( int failureThreshold, long openMillis );
+
+		void SetRetryable( string nativeType, bool retryable );
+
+		string GetRetryStats();
+
+		string ConfigureListeners( int maxStreams, long pollIntervalMillis );
+
+		string GetListenerStats();
+
+		void SetExportCacheEnabled( bool enabled );
+
+		void SetMetricsEnabled( bool enabled );
+
+		string GetMetricsSnapshot();
+
+		string SetMetricsDumpInterval( long intervalMillis );
+
+		string ConfigureEventCoalescing( long windowMillis, int maxPaymentBatch );
+
+		#endregion
+
+
 		#region KinClient
 
 		void CreateClient( string clientId, Environment environment, string apiKey, string storeKey = null );
 
+		void CreateClientAsync( string clientId, Environment environment, string apiKey, string storeKey, bool warm );
+
+		string GetStartupTimings( string clientId );
+
+		string GetAccountSnapshot( string clientId, bool revalidate );
+
 		void FreeCachedClient( string clientId );
 
 		string ImportAccount( string clientId, string accountId, string exportedJson, string passphrase );
 
+		void ImportAccountAsync( string clientId, string accountId, string exportedJson, string passphrase );
+
+		void ImportAccounts( string clientId, string batchId, string[] accountIds, string[] exportedJsons, string[] passphrases );
+
 		int GetAccountCount( string clientId );
 
 		string AddAccount( string clientId, string accountId );
@@ -30,6 +79,16 @@ namespace Kin
 
 		void GetMinimumFee( string clientId );
 
+		long GetCachedMinimumFee( string clientId );
+
+		string ConfigureFeeCache( string clientId, long ttlMillis, long maxStaleMillis );
+
+		string ConfigureBackground( string clientId, BackgroundMode mode, long pollIntervalMillis );
+
+		void SetBridgeFormat( string clientId, BridgeFormat format );
+
+		string SetWhitelistService( string clientId, string url, int timeoutMillis, int maxConcurrent );
+
         void RestoreAccount(string clientId);
 
         #endregion
@@ -43,20 +102,46 @@ namespace Kin
 
 		string Export( string accountId, string passphrase );
 
+		void ExportAsync( string accountId, string passphrase );
+
 		void GetStatus( string accountId );
 
 		void GetBalance( string accountId );
 
+		void GetBalance( string accountId, long maxAgeMillis );
+
+		string GetCachedBalance( string accountId );
+
+		void GetBalances( string batchId, string[] accountIds, int maxParallelism );
+
+		void GetStatuses( string batchId, string[] accountIds, int maxParallelism );
+
+		void GetPaymentHistory( string accountId, string cursor, int limit );
+
 		void BuildTransaction( string accountId, string toAddress, string kinAmount, int fee, string memo = null );
 
 		void SendTransaction( string accountId, string transactionId );
 
 		void SendWhitelistTransaction( string accountId, string transactionId, string whitelist );
 
+		void SendWhitelistedTransaction( string accountId, string toAddress, string kinAmount, string memo );
+
+		string SendPayments( string accountId, string batchId, string paymentsJson, int fee, int progressBatchSize );
+
 		void AddPaymentListener( string accountId );
 
 		void RemovePaymentListener( string accountId );
 
+		string SubscribePayments( string subscriptionId, string accountId, string cursor, int capacity, int overflowPolicy );
+
+		void RequestPayments( string subscriptionId, int count );
+
+		void AcknowledgePayments( string subscriptionId, string cursor );
+
+		void ReplayPayments( string subscriptionId );
+
+		void UnsubscribePayments( string subscriptionId );
+
 		void AddBalanceListener( string accountId );
 
 		void RemoveBalanceListener( string accountId );
@@ -10,8 +10,33 @@ namespace Kin
     /// </summary>
     class NativeBridgeAndroid : INativeBridge
     {
+        /// <summary>
+        /// native code calls this when it queues an event while its event buffer was empty. It is called on a native
+        /// thread so all it does is flag that there is something to drain on the next frame.
+        /// </summary>
+        class EventListenerProxy : AndroidJavaProxy
+        {
+            internal volatile bool EventsAvailable;
+
+            internal EventListenerProxy() : base( "kin.unity.KinEventListener" )
+            {}
+
+            void onEventsAvailable()
+            {
+                EventsAvailable = true;
+            }
+        }
+
+
         public static readonly NativeBridgeAndroid Instance = new NativeBridgeAndroid();
         AndroidJavaObject _plugin;
+        EventListenerProxy _eventListener;
+
+        // once any client asks for binary callbacks every drain returns a BinaryCodec frame, which can carry JSON events as well
+        bool _useFrames;
+
+        // mirrors KinPluginBase.FRAME_EVENT, a binary event drained as JSON arrives as a Base64 frame under this method
+        const string BinaryFrameEvent = "_BinaryFrame";
 
 
         internal NativeBridgeAndroid()
@@ -19,9 +44,151 @@ namespace Kin
             // find the plugin instance and cache it
             using( var pluginClass = new AndroidJavaClass( "kin.unity.KinPlugin" ) )
                 _plugin = pluginClass.CallStatic<AndroidJavaObject>( "instance" );
+
+            // route events through the native ring buffer instead of UnitySendMessage
+            _eventListener = new EventListenerProxy();
+            _plugin.Call( "setEventListener", _eventListener );
+        }
+
+
+#region Plugin
+
+        public string ConfigureExecutor( int readThreads, int writeThreads, int queueCapacity, int rejectionPolicy )
+        {
+            return _plugin.Call<string>( "configureExecutor", readThreads, writeThreads, queueCapacity, rejectionPolicy );
+        }
+
+
+        public void Shutdown()
+        {
+            _plugin.Call( "shutdown" );
+        }
+
+
+        public void Restart()
+        {
+            _plugin.Call( "restart" );
+        }
+
+
+        public void DispatchPendingEvents( KinManager manager )
+        {
+            if( !_eventListener.EventsAvailable )
+                return;
+
+            // clear the flag before draining so an event queued while we drain wakes us up again next frame
+            _eventListener.EventsAvailable = false;
+
+            var maxEvents = KinPluginSettings.MaxEventsPerFrame;
+            if( _useFrames )
+            {
+                var frame = _plugin.Call<byte[]>( "drainEventFrame", maxEvents );
+                var count = BinaryEventReader.Dispatch( frame, manager );
+
+                if( count == maxEvents )
+                    _eventListener.EventsAvailable = true;
+                return;
+            }
+
+            var events = _plugin.Call<string[]>( "drainEvents", maxEvents );
+            if( events == null )
+                return;
+
+            for( var i = 0; i < events.Length; i += 2 )
+            {
+                // binary events queued before we switched to frames come wrapped in a frame of their own
+                if( events[i] == BinaryFrameEvent )
+                    BinaryEventReader.Dispatch( Convert.FromBase64String( events[i + 1] ), manager );
+                else
+                    manager.dispatchEvent( events[i], events[i + 1] );
+            }
+
+            // we hit the per frame cap so there may be more waiting
+            if( events.Length == maxEvents * 2 )
+                _eventListener.EventsAvailable = true;
+        }
+
+
+        public string ConfigureTransactionStore( int maxSize, long ttlMillis )
+        {
+            return _plugin.Call<string>( "configureTransactionStore", maxSize, ttlMillis );
+        }
+
+
+        public string GetTransactionStoreStats()
+        {
+            return _plugin.Call<string>( "getTransactionStoreStats" );
+        }
+
+
+        public string ConfigureRetries( string operation, int maxAttempts, long baseDelayMillis, long maxDelayMillis, long budgetMillis )
+        {
+            return _plugin.Call<string>( "configureRetries", operation, maxAttempts, baseDelayMillis, maxDelayMillis, budgetMillis );
+        }
+
+
+        public string ConfigureCircuitBreaker( int failureThreshold, long openMillis )
+        {
+            return _plugin.Call<string>( "configureCircuitBreaker", failureThreshold, openMillis );
+        }
+
+
+        public void SetRetryable( string nativeType, bool retryable )
+        {
+            _plugin.Call( "setRetryable", nativeType, retryable );
+        }
+
+
+        public string GetRetryStats()
+        {
+            return _plugin.Call<string>( "getRetryStats" );
+        }
+
+
+        public string ConfigureListeners( int maxStreams, long pollIntervalMillis )
+        {
+            return _plugin.Call<string>( "configureListeners", maxStreams, pollIntervalMillis );
         }
 
 
+        public string GetListenerStats()
+        {
+            return _plugin.Call<string>( "getListenerStats" );
+        }
+
+
+        public void SetExportCacheEnabled( bool enabled )
+        {
+            _plugin.Call( "setExportCacheEnabled", enabled );
+        }
+
+
+        public void SetMetricsEnabled( bool enabled )
+        {
+            _plugin.Call( "setMetricsEnabled", enabled );
+        }
+
+
+        public string GetMetricsSnapshot()
+        {
+            return _plugin.Call<string>( "getMetricsSnapshot" );
+        }
+
+
+        public string SetMetricsDumpInterval( long intervalMillis )
+        {
+            return _plugin.Call<string>( "setMetricsDumpInterval", intervalMillis );
+        }
+
+
+        public string ConfigureEventCoalescing( long windowMillis, int maxPaymentBatch )
+        {
+            return _plugin.Call<string>( "configureEventCoalescing", windowMillis, maxPaymentBatch );
+        }
+
+#endregion
+
+
 #region KinClient
 
         public void CreateClient( string clientId, Environment environment, string apiKey, string storeKey = null )
@@ -30,6 +197,24 @@ namespace Kin
         }
 
 
+        public void CreateClientAsync( string clientId, Environment environment, string apiKey, string storeKey, bool warm )
+        {
+            _plugin.Call( "createClientAsync", clientId, (int)environment, apiKey, storeKey, warm );
+        }
+
+
+        public string GetStartupTimings( string clientId )
+        {
+            return _plugin.Call<string>( "getStartupTimings", clientId );
+        }
+
+
+        public string GetAccountSnapshot( string clientId, bool revalidate )
+        {
+            return _plugin.Call<string>( "getAccountSnapshot", clientId, revalidate );
+        }
+
+
         public void FreeCachedClient( string clientId )
         {
             _plugin.Call( "freeCachedClient", clientId );
@@ -42,6 +227,18 @@ namespace Kin
         }
 
 
+        public void ImportAccountAsync( string clientId, string accountId, string exportedJson, string passphrase )
+        {
+            _plugin.Call( "importAccountAsync", clientId, accountId, exportedJson, passphrase );
+        }
+
+
+        public void ImportAccounts( string clientId, string batchId, string[] accountIds, string[] exportedJsons, string[] passphrases )
+        {
+            _plugin.Call( "importAccounts", clientId, batchId, accountIds, exportedJsons, passphrases );
+        }
+
+
         public int GetAccountCount( string clientId )
         {
             return _plugin.Call<int>( "getAccountCount", clientId );
@@ -77,6 +274,40 @@ namespace Kin
             _plugin.Call( "getMinimumFee", clientId );
         }
 
+
+        public long GetCachedMinimumFee( string clientId )
+        {
+            return _plugin.Call<long>( "getCachedMinimumFee", clientId );
+        }
+
+
+        public string ConfigureFeeCache( string clientId, long ttlMillis, long maxStaleMillis )
+        {
+            return _plugin.Call<string>( "configureFeeCache", clientId, ttlMillis, maxStaleMillis );
+        }
+
+
+        public string ConfigureBackground( string clientId, BackgroundMode mode, long pollIntervalMillis )
+        {
+            return _plugin.Call<string>( "configureBackground", clientId, (int)mode, pollIntervalMillis );
+        }
+
+
+        public void SetBridgeFormat( string clientId, BridgeFormat format )
+        {
+            // switch to frames first so no binary event can be drained as JSON
+            if( format == BridgeFormat.Binary )
+                _useFrames = true;
+
+            _plugin.Call( "setBridgeFormat", clientId, (int)format );
+        }
+
+
+        public string SetWhitelistService( string clientId, string url, int timeoutMillis, int maxConcurrent )
+        {
+            return _plugin.Call<string>( "setWhitelistService", clientId, url, timeoutMillis, maxConcurrent );
+        }
+
         public void RestoreAccount(string clientId)
         {
             _plugin.Call("startRestoreActivity", clientId);
@@ -105,6 +336,12 @@ namespace Kin
         }
 
 
+        public void ExportAsync( string accountId, string passphrase )
+        {
+            _plugin.Call( "exportAsync", accountId, passphrase );
+        }
+
+
         public void GetStatus( string accountId )
         {
             _plugin.Call( "getStatus", accountId );
@@ -117,6 +354,36 @@ namespace Kin
         }
 
 
+        public void GetBalance( string accountId, long maxAgeMillis )
+        {
+            _plugin.Call( "getBalance", accountId, maxAgeMillis );
+        }
+
+
+        public string GetCachedBalance( string accountId )
+        {
+            return _plugin.Call<string>( "getCachedBalance", accountId );
+        }
+
+
+        public void GetBalances( string batchId, string[] accountIds, int maxParallelism )
+        {
+            _plugin.Call( "getBalances", batchId, accountIds, maxParallelism );
+        }
+
+
+        public void GetStatuses( string batchId, string[] accountIds, int maxParallelism )
+        {
+            _plugin.Call( "getStatuses", batchId, accountIds, maxParallelism );
+        }
+
+
+        public void GetPaymentHistory( string accountId, string cursor, int limit )
+        {
+            _plugin.Call( "getPaymentHistory", accountId, cursor ?? "", limit );
+        }
+
+
         public void BuildTransaction( string accountId, string toAddress, string kinAmount, int fee, string memo = null )
         {
             _plugin.Call( "buildTransaction", accountId, toAddress, kinAmount, fee, memo );
@@ -135,6 +402,18 @@ namespace Kin
         }
 
 
+        public void SendWhitelistedTransaction( string accountId, string toAddress, string kinAmount, string memo )
+        {
+            _plugin.Call( "sendWhitelistedTransaction", accountId, toAddress, kinAmount, memo );
+        }
+
+
+        public string SendPayments( string accountId, string batchId, string paymentsJson, int fee, int progressBatchSize )
+        {
+            return _plugin.Call<string>( "sendPayments", accountId, batchId, paymentsJson, fee, progressBatchSize );
+        }
+
+
         public void AddPaymentListener( string accountId )
         {
             _plugin.Call( "addPaymentListener", accountId );
@@ -147,6 +426,36 @@ namespace Kin
         }
 
 
+        public string SubscribePayments( string subscriptionId, string accountId, string cursor, int capacity, int overflowPolicy )
+        {
+            return _plugin.Call<string>( "subscribePayments", subscriptionId, accountId, cursor ?? "", capacity, overflowPolicy );
+        }
+
+
+        public void RequestPayments( string subscriptionId, int count )
+        {
+            _plugin.Call( "requestPayments", subscriptionId, count );
+        }
+
+
+        public void AcknowledgePayments( string subscriptionId, string cursor )
+        {
+            _plugin.Call( "acknowledgePayments", subscriptionId, cursor ?? "" );
+        }
+
+
+        public void ReplayPayments( string subscriptionId )
+        {
+            _plugin.Call( "replayPayments", subscriptionId );
+        }
+
+
+        public void UnsubscribePayments( string subscriptionId )
+        {
+            _plugin.Call( "unsubscribePayments", subscriptionId );
+        }
+
+
         public void AddBalanceListener( string accountId )
         {
             _plugin.Call( "addBalanceListener", accountId );
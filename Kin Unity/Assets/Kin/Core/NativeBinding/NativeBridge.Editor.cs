@@ -15,12 +15,122 @@ namespace Kin
         static internal INativeBridge Instance { get { return new NativeBridgeEditor(); } }
 
 
+        #region Plugin
+
+        public string ConfigureExecutor(int readThreads, int writeThreads, int queueCapacity, int rejectionPolicy)
+        {
+            return null;
+        }
+
+
+        public void Shutdown()
+        { }
+
+
+        public void Restart()
+        { }
+
+
+        public void DispatchPendingEvents(KinManager manager)
+        { }
+
+
+        public string ConfigureTransactionStore(int maxSize, long ttlMillis)
+        {
+            return null;
+        }
+
+
+        public string GetTransactionStoreStats()
+        {
+            return "{}";
+        }
+
+
+        public string ConfigureRetries(string operation, int maxAttempts, long baseDelayMillis, long maxDelayMillis, long budgetMillis)
+        {
+            return null;
+        }
+
+
+        public string ConfigureCircuitBreaker(int failureThreshold, long openMillis)
+        {
+            return null;
+        }
+
+
+        public void SetRetryable(string nativeType, bool retryable)
+        { }
+
+
+        public string GetRetryStats()
+        {
+            return "{}";
+        }
+
+
+        public string ConfigureListeners(int maxStreams, long pollIntervalMillis)
+        {
+            return null;
+        }
+
+
+        public string GetListenerStats()
+        {
+            return "{}";
+        }
+
+
+        public void SetExportCacheEnabled(bool enabled)
+        { }
+
+
+        public void SetMetricsEnabled(bool enabled)
+        { }
+
+
+        public string GetMetricsSnapshot()
+        {
+            return "{}";
+        }
+
+
+        public string SetMetricsDumpInterval(long intervalMillis)
+        {
+            return null;
+        }
+
+
+        public string ConfigureEventCoalescing(long windowMillis, int maxPaymentBatch)
+        {
+            return null;
+        }
+
+        #endregion
+
+
         #region KinClient
 
         public void CreateClient(string clientId, Environment environment, string apiKey, string storeKey = null)
         { }
 
 
+        public void CreateClientAsync(string clientId, Environment environment, string apiKey, string storeKey, bool warm)
+        { }
+
+
+        public string GetStartupTimings(string clientId)
+        {
+            return null;
+        }
+
+
+        public string GetAccountSnapshot(string clientId, bool revalidate)
+        {
+            return null;
+        }
+
+
         public void FreeCachedClient(string clientId)
         { }
 
@@ -31,6 +141,14 @@ namespace Kin
         }
 
 
+        public void ImportAccountAsync(string clientId, string accountId, string exportedJson, string passphrase)
+        { }
+
+
+        public void ImportAccounts(string clientId, string batchId, string[] accountIds, string[] exportedJsons, string[] passphrases)
+        { }
+
+
         public int GetAccountCount(string clientId)
         {
             return 0;
@@ -62,6 +180,34 @@ namespace Kin
         public void GetMinimumFee(string clientId)
         { }
 
+
+        public long GetCachedMinimumFee(string clientId)
+        {
+            return -1;
+        }
+
+
+        public string ConfigureFeeCache(string clientId, long ttlMillis, long maxStaleMillis)
+        {
+            return null;
+        }
+
+
+        public string ConfigureBackground(string clientId, BackgroundMode mode, long pollIntervalMillis)
+        {
+            return null;
+        }
+
+
+        public void SetBridgeFormat(string clientId, BridgeFormat format)
+        { }
+
+
+        public string SetWhitelistService(string clientId, string url, int timeoutMillis, int maxConcurrent)
+        {
+            return null;
+        }
+
         public void RestoreAccount(string clientId)
         { }
 
@@ -86,6 +232,10 @@ namespace Kin
         }
 
 
+        public void ExportAsync(string accountId, string passphrase)
+        { }
+
+
         public void GetStatus(string accountId)
         { }
 
@@ -94,6 +244,28 @@ namespace Kin
         { }
 
 
+        public void GetBalance(string accountId, long maxAgeMillis)
+        { }
+
+
+        public string GetCachedBalance(string accountId)
+        {
+            return null;
+        }
+
+
+        public void GetBalances(string batchId, string[] accountIds, int maxParallelism)
+        { }
+
+
+        public void GetStatuses(string batchId, string[] accountIds, int maxParallelism)
+        { }
+
+
+        public void GetPaymentHistory(string accountId, string cursor, int limit)
+        { }
+
+
         public void BuildTransaction(string accountId, string toAddress, string kinAmount, int fee, string memo = null)
         { }
 
@@ -106,6 +278,16 @@ namespace Kin
         { }
 
 
+        public void SendWhitelistedTransaction(string accountId, string toAddress, string kinAmount, string memo)
+        { }
+
+
+        public string SendPayments(string accountId, string batchId, string paymentsJson, int fee, int progressBatchSize)
+        {
+            return null;
+        }
+
+
         public void AddPaymentListener(string accountId)
         { }
 
@@ -114,6 +296,28 @@ namespace Kin
         { }
 
 
+        public string SubscribePayments(string subscriptionId, string accountId, string cursor, int capacity, int overflowPolicy)
+        {
+            return null;
+        }
+
+
+        public void RequestPayments(string subscriptionId, int count)
+        { }
+
+
+        public void AcknowledgePayments(string subscriptionId, string cursor)
+        { }
+
+
+        public void ReplayPayments(string subscriptionId)
+        { }
+
+
+        public void UnsubscribePayments(string subscriptionId)
+        { }
+
+
         public void AddBalanceListener(string accountId)
         { }
 
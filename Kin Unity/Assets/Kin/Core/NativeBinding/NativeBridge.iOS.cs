@@ -10,6 +10,107 @@ namespace Kin
 		public static readonly NativeBridgeIos Instance = new NativeBridgeIos();
 
 
+#region Plugin
+
+		// the iOS SDK queues its own network work so there are no plugin managed pools to configure there
+		public string ConfigureExecutor( int readThreads, int writeThreads, int queueCapacity, int rejectionPolicy )
+		{
+			return null;
+		}
+
+
+		public void Shutdown()
+		{}
+
+
+		public void Restart()
+		{}
+
+
+		// iOS still delivers events with UnitySendMessage
+		public void DispatchPendingEvents( KinManager manager )
+		{}
+
+
+		// the iOS SDK does not need built transactions to be kept around natively
+		public string ConfigureTransactionStore( int maxSize, long ttlMillis )
+		{
+			return null;
+		}
+
+
+		public string GetTransactionStoreStats()
+		{
+			return "{}";
+		}
+
+
+		// retries are only implemented in the Android plugin
+		public string ConfigureRetries( string operation, int maxAttempts, long baseDelayMillis, long maxDelayMillis, long budgetMillis )
+		{
+			return null;
+		}
+
+
+		public string ConfigureCircuitBreaker( int failureThreshold, long openMillis )
+		{
+			return null;
+		}
+
+
+		public void SetRetryable( string nativeType, bool retryable )
+		{}
+
+
+		public string GetRetryStats()
+		{
+			return "{}";
+		}
+
+
+		// the iOS plugin keeps one SDK listener per account
+		public string ConfigureListeners( int maxStreams, long pollIntervalMillis )
+		{
+			return null;
+		}
+
+
+		public string GetListenerStats()
+		{
+			return "{}";
+		}
+
+
+		public void SetExportCacheEnabled( bool enabled )
+		{}
+
+
+		// metrics are only recorded by the Android plugin
+		public void SetMetricsEnabled( bool enabled )
+		{}
+
+
+		public string GetMetricsSnapshot()
+		{
+			return "{}";
+		}
+
+
+		public string SetMetricsDumpInterval( long intervalMillis )
+		{
+			return null;
+		}
+
+
+		// the iOS plugin delivers every listener event as it arrives
+		public string ConfigureEventCoalescing( long windowMillis, int maxPaymentBatch )
+		{
+			return null;
+		}
+
+#endregion
+
+
 #region KinClient
 
 		[DllImport("__Internal")]
@@ -21,6 +122,27 @@ namespace Kin
 		}
 
 
+		// the iOS plugin creates clients synchronously, ready is reported on the next frame to keep the callback async
+		public void CreateClientAsync( string clientId, Environment environment, string apiKey, string storeKey, bool warm )
+		{
+			_kinCreateClient( clientId, (int)environment, apiKey, storeKey );
+			KinManager.Manager.queueDelayedCall( () => KinManager.onClientReady.FireActionInDict( clientId, null ) );
+		}
+
+
+		public string GetStartupTimings( string clientId )
+		{
+			return null;
+		}
+
+
+		// account snapshots are only kept by the Android plugin
+		public string GetAccountSnapshot( string clientId, bool revalidate )
+		{
+			return null;
+		}
+
+
 		[DllImport("__Internal")]
 		static extern void _kinFreeCachedClient( string clientId );
 
@@ -39,6 +161,32 @@ namespace Kin
 		}
 
 
+		// the iOS plugin only imports synchronously so the async variants run on the calling thread and report on the next frame
+		public void ImportAccountAsync( string clientId, string accountId, string exportedJson, string passphrase )
+		{
+			var error = KinException.FromNativeErrorJson( ImportAccount( clientId, accountId, exportedJson, passphrase ) );
+			var address = error == null ? GetPublicAddress( accountId ) : null;
+			KinManager.Manager.queueDelayedCall( () => KinManager.onImportAccount.FireActionInDict( accountId, error, address ) );
+		}
+
+
+		public void ImportAccounts( string clientId, string batchId, string[] accountIds, string[] exportedJsons, string[] passphrases )
+		{
+			var batch = new NativeBatch { BatchId = batchId, Items = new NativeBatch.Item[accountIds.Length] };
+			for( var i = 0; i < accountIds.Length; i++ )
+			{
+				var error = ImportAccount( clientId, accountIds[i], exportedJsons[i], passphrases[i] );
+				batch.Items[i] = new NativeBatch.Item { AccountId = accountIds[i] };
+				if( !string.IsNullOrEmpty( error ) )
+					batch.Items[i].Error = error;
+				else
+					batch.Items[i].Value = GetPublicAddress( accountIds[i] );
+			}
+
+			KinManager.Manager.queueDelayedCall( () => KinManager.onBatch.FireActionInDict( batchId, batch ) );
+		}
+
+
 		[DllImport("__Internal")]
 		static extern int _kinGetAccountCount( string clientId );
 
@@ -92,6 +240,38 @@ namespace Kin
 			_kinGetMinimumFee( clientId );
 		}
 
+
+		// the fee cache only exists in the Android plugin so iOS always reports that nothing is cached
+		public long GetCachedMinimumFee( string clientId )
+		{
+			return -1;
+		}
+
+
+		public string ConfigureFeeCache( string clientId, long ttlMillis, long maxStaleMillis )
+		{
+			return null;
+		}
+
+
+		// listeners aren't throttled in the background on iOS
+		public string ConfigureBackground( string clientId, BackgroundMode mode, long pollIntervalMillis )
+		{
+			return null;
+		}
+
+
+		// iOS always sends JSON with UnitySendMessage
+		public void SetBridgeFormat( string clientId, BridgeFormat format )
+		{}
+
+
+		// the native whitelist pipeline only exists in the Android plugin
+		public string SetWhitelistService( string clientId, string url, int timeoutMillis, int maxConcurrent )
+		{
+			return "{\"Message\":\"SetWhitelistService is not supported on iOS\",\"NativeType\":\"NotSupported\"}";
+		}
+
         [DllImport("__Internal")]
         static extern void _kinRestoreAccount(string clientId);
 
@@ -132,6 +312,14 @@ namespace Kin
 		}
 
 
+		public void ExportAsync( string accountId, string passphrase )
+		{
+			var json = Export( accountId, passphrase );
+			var error = KinException.FromNativeErrorJson( json );
+			KinManager.Manager.queueDelayedCall( () => KinManager.onExport.FireActionInDict( accountId, error, error == null ? json : null ) );
+		}
+
+
 		[DllImport("__Internal")]
 		static extern void _kinGetStatus( string accountId );
 
@@ -150,6 +338,47 @@ namespace Kin
 		}
 
 
+		// the balance cache only exists in the Android plugin so iOS always fetches the balance
+		public void GetBalance( string accountId, long maxAgeMillis )
+		{
+			_kinGetBalance( accountId );
+		}
+
+
+		public string GetCachedBalance( string accountId )
+		{
+			return null;
+		}
+
+
+		// batched requests are not implemented in the iOS plugin so every account in the batch fails
+		public void GetBalances( string batchId, string[] accountIds, int maxParallelism )
+		{
+			failUnsupportedBatch( batchId, accountIds );
+		}
+
+
+		public void GetStatuses( string batchId, string[] accountIds, int maxParallelism )
+		{
+			failUnsupportedBatch( batchId, accountIds );
+		}
+
+
+		void failUnsupportedBatch( string batchId, string[] accountIds )
+		{
+			var batch = NativeBatch.Unsupported( batchId, accountIds );
+			KinManager.Manager.queueDelayedCall( () => KinManager.onBatch.FireActionInDict( batchId, batch ) );
+		}
+
+
+		// the payment history store only exists in the Android plugin
+		public void GetPaymentHistory( string accountId, string cursor, int limit )
+		{
+			var ex = new KinException( "GetPaymentHistory is not supported on iOS", "NotSupported", accountId );
+			KinManager.Manager.queueDelayedCall( () => KinManager.onGetPaymentHistory.FireActionInDict( accountId, ex, null ) );
+		}
+
+
 		[DllImport("__Internal")]
 		static extern void _kinBuildTransaction( string accountId, string toAddress, string kinAmount, int fee, string memo );
 
@@ -178,6 +407,20 @@ namespace Kin
 		}
 
 
+		public void SendWhitelistedTransaction( string accountId, string toAddress, string kinAmount, string memo )
+		{
+			var ex = new KinException( "SendWhitelistedTransaction is not supported on iOS", "NotSupported", accountId );
+			KinManager.Manager.queueDelayedCall( () => KinManager.onSendTransaction.FireActionInDict( accountId, ex, null ) );
+		}
+
+
+		// the payment pipeline only exists in the Android plugin
+		public string SendPayments( string accountId, string batchId, string paymentsJson, int fee, int progressBatchSize )
+		{
+			return string.Format( "{{\"Message\":\"SendPayments is not supported on iOS\",\"NativeType\":\"NotSupported\",\"AccountId\":\"{0}\"}}", accountId );
+		}
+
+
 		[DllImport("__Internal")]
 		static extern void _kinAddPaymentListener( string accountId );
 
@@ -196,6 +439,29 @@ namespace Kin
 		}
 
 
+		// payment subscriptions only exist in the Android plugin, SubscribePayments fails so the rest are never called
+		public string SubscribePayments( string subscriptionId, string accountId, string cursor, int capacity, int overflowPolicy )
+		{
+			return string.Format( "{{\"Message\":\"SubscribePayments is not supported on iOS\",\"NativeType\":\"NotSupported\",\"AccountId\":\"{0}\"}}", subscriptionId );
+		}
+
+
+		public void RequestPayments( string subscriptionId, int count )
+		{ }
+
+
+		public void AcknowledgePayments( string subscriptionId, string cursor )
+		{ }
+
+
+		public void ReplayPayments( string subscriptionId )
+		{ }
+
+
+		public void UnsubscribePayments( string subscriptionId )
+		{ }
+
+
 		[DllImport("__Internal")]
 		static extern void _kinAddBalanceListener( string accountId );
 
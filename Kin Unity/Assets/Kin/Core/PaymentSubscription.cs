@@ -0,0 +1,94 @@
+﻿using System;
+using UnityEngine;
+
+namespace Kin
+{
+	/// <summary>
+	/// a stream of an account's payments that only delivers as many payments as were asked for with Request, so a game
+	/// that is paused or busy doesn't get flooded. Payments arrive oldest first with their PagingToken. The last payment
+	/// of a delivery is acknowledged once onPayments returns without throwing and Replay delivers everything after the
+	/// last acknowledged payment again. Pass AcknowledgedCursor to KinAccount.SubscribePayments to continue where an
+	/// earlier subscription stopped.
+	/// </summary>
+	public class PaymentSubscription
+	{
+		readonly internal string _subscriptionId;
+		readonly Action<PaymentInfo[], long> _onPayments;
+		readonly Action<KinException> _onError;
+		bool _unsubscribed;
+
+		/// <summary>
+		/// paging token of the last payment that was handled, null until the first delivery unless a cursor was passed in
+		/// </summary>
+		public string AcknowledgedCursor { get; private set; }
+
+
+		internal PaymentSubscription( string subscriptionId, string cursor, Action<PaymentInfo[], long> onPayments, Action<KinException> onError )
+		{
+			_subscriptionId = subscriptionId;
+			_onPayments = onPayments;
+			_onError = onError;
+			AcknowledgedCursor = cursor;
+		}
+
+
+		/// <summary>
+		/// allows count more payments to be delivered
+		/// </summary>
+		/// <param name="count"></param>
+		public void Request( int count )
+		{
+			if( !_unsubscribed )
+				NativeBridge.Get().RequestPayments( _subscriptionId, count );
+		}
+
+
+		/// <summary>
+		/// drops whatever is buffered and delivers the payments after AcknowledgedCursor again as they are requested
+		/// </summary>
+		public void Replay()
+		{
+			if( !_unsubscribed )
+				NativeBridge.Get().ReplayPayments( _subscriptionId );
+		}
+
+
+		public void Unsubscribe()
+		{
+			if( _unsubscribed )
+				return;
+
+			_unsubscribed = true;
+			KinManager.paymentSubscriptions.Remove( _subscriptionId );
+			NativeBridge.Get().UnsubscribePayments( _subscriptionId );
+		}
+
+
+		internal void deliver( NativeSubscriptionPayments batch )
+		{
+			try
+			{
+				_onPayments( batch.Payments, batch.Dropped );
+			}
+			catch( Exception e )
+			{
+				// not acknowledged so a Replay delivers these payments again
+				Debug.LogException( e );
+				return;
+			}
+
+			if( batch.Payments.Length > 0 && !_unsubscribed )
+			{
+				AcknowledgedCursor = batch.Payments[batch.Payments.Length - 1].PagingToken;
+				NativeBridge.Get().AcknowledgePayments( _subscriptionId, AcknowledgedCursor );
+			}
+		}
+
+
+		internal void fail( KinException ex )
+		{
+			if( _onError != null )
+				_onError( ex );
+		}
+	}
+}
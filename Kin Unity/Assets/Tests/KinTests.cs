@@ -92,6 +92,106 @@ public class KinTests
 	}
 
 
+	[UnityTest]
+	public IEnumerator CreateAsyncShouldReturnUsableClient()
+	{
+		KinClient client = null;
+		var hasResult = false;
+		KinClient.CreateAsync( Environment.Test, "test", ( ex, created ) =>
+		{
+			Assert.IsNull( ex );
+			Assert.IsNotNull( created );
+			client = created;
+			hasResult = true;
+		} );
+
+		yield return new WaitUntil( () => hasResult );
+
+		Assert.IsTrue( client.GetAccountCount() == 0 );
+		Assert.IsNotNull( client.AddAccount() );
+		Assert.IsTrue( client.GetAccountCount() == 1 );
+		if( Application.platform == RuntimePlatform.Android )
+			Assert.IsNotNull( client.GetStartupTimings() );
+	}
+
+
+	[UnityTest]
+	public IEnumerator CreateAsyncWithInvalidAppIdShouldFail()
+	{
+		// iOS creates the client before reporting ready and never reports an error
+		if( Application.platform != RuntimePlatform.Android )
+			yield break;
+
+		var hasResult = false;
+		// four characters get past the managed check, the SDK only takes letters and digits
+		KinClient.CreateAsync( Environment.Test, "t$t!", ( ex, created ) =>
+		{
+			Assert.IsNotNull( ex );
+			Assert.IsNull( created );
+			hasResult = true;
+		} );
+
+		yield return new WaitUntil( () => hasResult );
+	}
+
+
+	[UnityTest]
+	public IEnumerator ExportAsyncShouldExportAccount()
+	{
+		var account = _client.AddAccount();
+		var hasResult = false;
+		account.ExportAsync( _exportPassphrase, ( ex, json ) =>
+		{
+			Assert.IsNull( ex );
+			Assert.IsTrue( !string.IsNullOrEmpty( json ) );
+			hasResult = true;
+		} );
+
+		yield return new WaitUntil( () => hasResult );
+	}
+
+
+	[UnityTest]
+	public IEnumerator ImportAccountAsyncShouldImportExportedAccount()
+	{
+		var account = _client.AddAccount();
+		var address = account.GetPublicAddress();
+		var json = account.Export( _exportPassphrase );
+		_client.ClearAllAccounts();
+
+		var hasResult = false;
+		_client.ImportAccountAsync( json, _exportPassphrase, ( ex, imported ) =>
+		{
+			Assert.IsNull( ex );
+			Assert.IsNotNull( imported );
+			Assert.AreEqual( address, imported.GetPublicAddress() );
+			hasResult = true;
+		} );
+
+		yield return new WaitUntil( () => hasResult );
+		Assert.IsTrue( _client.GetAccountCount() == 1 );
+	}
+
+
+	[UnityTest]
+	public IEnumerator ImportAccountAsyncWithWrongPassphraseShouldFail()
+	{
+		var json = _client.AddAccount().Export( _exportPassphrase );
+		_client.ClearAllAccounts();
+
+		var hasResult = false;
+		_client.ImportAccountAsync( json, _exportPassphrase + "-wrong", ( ex, imported ) =>
+		{
+			Assert.IsNotNull( ex );
+			Assert.IsNull( imported );
+			hasResult = true;
+		} );
+
+		yield return new WaitUntil( () => hasResult );
+		Assert.IsTrue( _client.GetAccountCount() == 0 );
+	}
+
+
 	[UnityTest]
 	public IEnumerator AccountStatusShouldBeNotCreated()
 	{
@@ -123,6 +223,26 @@ public class KinTests
 	}
 
 
+	[UnityTest]
+	public IEnumerator CachedMinimumFeeShouldMatchFetchedFee()
+	{
+		var hasResult = false;
+		var fetchedFee = -1;
+		_client.GetMinimumFee( ( ex, fee ) =>
+		{
+			Assert.IsNull( ex );
+			fetchedFee = fee;
+			hasResult = true;
+		} );
+
+		yield return new WaitUntil( () => hasResult );
+
+		// the fee cache lives in the Android plugin, iOS always reports nothing cached
+		if( Application.platform == RuntimePlatform.Android )
+			Assert.IsTrue( _client.GetCachedMinimumFee() == fetchedFee );
+	}
+
+
 	[UnityTest]
 	public IEnumerator AddAndCreateAccount()
 	{
@@ -144,6 +264,13 @@ public class KinTests
 	}
 
 
+	[UnityTest]
+	public IEnumerator SendPaymentsTest()
+	{
+		yield return new MonoBehaviourTest<SendPaymentsTest>();
+	}
+
+
 	[UnityTest]
 	public IEnumerator BlockchainListenerTest()
 	{
@@ -151,6 +278,20 @@ public class KinTests
 	}
 
 
+	[UnityTest]
+	public IEnumerator PaymentHistoryTest()
+	{
+		yield return new MonoBehaviourTest<PaymentHistoryTest>();
+	}
+
+
+	[UnityTest]
+	public IEnumerator PaymentSubscriptionTest()
+	{
+		yield return new MonoBehaviourTest<PaymentSubscriptionTest>();
+	}
+
+
 	// [UnityTest]
 	// [NUnit.Framework.Timeout( int.MaxValue )]
 	// public IEnumerator TransactionVerificationTest()
@@ -0,0 +1,64 @@
+﻿using System.Collections;
+using System.Collections.Generic;
+using Kin;
+using UnityEngine;
+using UnityEngine.Assertions;
+using UnityEngine.TestTools;
+
+
+public class PaymentHistoryTest : KinMonoBehaviourTestBase
+{
+	PaymentHistoryPage _page;
+
+
+	IEnumerator Start()
+	{
+		// the payment history lives in the Android plugin
+		if( Application.platform != RuntimePlatform.Android )
+		{
+			_isTestFinished = true;
+			yield break;
+		}
+
+		// the activated account has sent payments in the other tests
+		ImportActivatedAccount();
+
+		yield return StartCoroutine( GetPage( null, 2 ) );
+		var first = _page;
+		Assert.IsTrue( first.Payments.Length > 0 && first.Payments.Length <= 2 );
+		Assert.IsFalse( string.IsNullOrEmpty( first.NextCursor ) );
+
+		yield return StartCoroutine( GetPage( first.NextCursor, 2 ) );
+		var second = _page;
+		var firstHashes = new HashSet<string>();
+		foreach( var payment in first.Payments )
+			firstHashes.Add( payment.Hash );
+		foreach( var payment in second.Payments )
+			Assert.IsFalse( firstHashes.Contains( payment.Hash ) );
+
+		// paging back over what was already fetched is served from the device
+		var localPages = KinPluginSettings.GetMetricsSnapshot().PaymentHistory.LocalPages;
+		yield return StartCoroutine( GetPage( first.NextCursor, 2 ) );
+		Assert.AreEqual( second.Payments.Length, _page.Payments.Length );
+		for( var i = 0; i < second.Payments.Length; i++ )
+			Assert.AreEqual( second.Payments[i].Hash, _page.Payments[i].Hash );
+		Assert.IsTrue( KinPluginSettings.GetMetricsSnapshot().PaymentHistory.LocalPages > localPages );
+
+		_isTestFinished = true;
+	}
+
+
+	IEnumerator GetPage( string cursor, int limit )
+	{
+		var hasResult = false;
+		_account.GetPaymentHistory( cursor, limit, ( ex, page ) =>
+		{
+			Assert.IsNull( ex );
+			Assert.IsNotNull( page );
+			_page = page;
+			hasResult = true;
+		} );
+
+		yield return new WaitUntil( () => hasResult );
+	}
+}
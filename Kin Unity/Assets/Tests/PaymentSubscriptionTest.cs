@@ -0,0 +1,197 @@
+﻿using System.Collections;
+using System.Collections.Generic;
+using Kin;
+using UnityEngine;
+using UnityEngine.Assertions;
+using UnityEngine.TestTools;
+
+
+public class PaymentSubscriptionTest : KinMonoBehaviourTestBase
+{
+	// the newest payments of the account, newest first, and the cursor just before the oldest of them
+	PaymentInfo[] _newest;
+	string _cursor;
+
+	List<PaymentInfo> _delivered = new List<PaymentInfo>();
+	long _dropped;
+
+
+	IEnumerator Start()
+	{
+		// payment subscriptions live in the Android plugin
+		if( Application.platform != RuntimePlatform.Android )
+		{
+			_isTestFinished = true;
+			yield break;
+		}
+
+		// the activated account has sent payments in the other tests
+		ImportActivatedAccount();
+
+		yield return StartCoroutine( FindNewestPayments( 5 ) );
+
+		yield return StartCoroutine( DeliversOnlyWhatWasRequested() );
+		yield return StartCoroutine( ReplaysWhatWasNotAcknowledged() );
+		yield return StartCoroutine( DropOldestKeepsTheNewest() );
+		yield return StartCoroutine( CoalesceKeepsTheOldestAndTheLatest() );
+		yield return StartCoroutine( BlockDropsNothing() );
+
+		_isTestFinished = true;
+	}
+
+
+	IEnumerator FindNewestPayments( int count )
+	{
+		var hasResult = false;
+		_account.GetPaymentHistory( null, count, ( ex, page ) =>
+		{
+			Assert.IsNull( ex );
+			Assert.AreEqual( count, page.Payments.Length );
+
+			// the cursor is the oldest payment of the page, everything newer gets delivered
+			_newest = new PaymentInfo[count - 1];
+			System.Array.Copy( page.Payments, _newest, count - 1 );
+			_cursor = page.NextCursor;
+			hasResult = true;
+		} );
+
+		yield return new WaitUntil( () => hasResult );
+	}
+
+
+	IEnumerator DeliversOnlyWhatWasRequested()
+	{
+		var subscription = Subscribe( PaymentOverflowPolicy.Block );
+
+		// reading already started but nothing goes out without demand
+		yield return new WaitForSeconds( 3 );
+		Assert.AreEqual( 0, _delivered.Count );
+
+		subscription.Request( 1 );
+		yield return new WaitUntil( () => _delivered.Count == 1 );
+		yield return new WaitForSeconds( 1 );
+		Assert.AreEqual( 1, _delivered.Count );
+
+		subscription.Request( _newest.Length );
+		yield return new WaitUntil( () => _delivered.Count == _newest.Length );
+		AssertDelivered( 0, _newest.Length );
+		Assert.AreEqual( 0, _dropped );
+		Assert.AreEqual( _delivered[_delivered.Count - 1].PagingToken, subscription.AcknowledgedCursor );
+
+		subscription.Unsubscribe();
+	}
+
+
+	IEnumerator ReplaysWhatWasNotAcknowledged()
+	{
+		var failFirst = true;
+		var subscription = _account.SubscribePayments( ( payments, dropped ) =>
+		{
+			_delivered.AddRange( payments );
+			if( failFirst )
+			{
+				// not handled, so not acknowledged
+				failFirst = false;
+				throw new System.InvalidOperationException( "lost while paused" );
+			}
+		}, _cursor, 10, PaymentOverflowPolicy.Block );
+
+		subscription.Request( 1 );
+		yield return new WaitUntil( () => _delivered.Count == 1 );
+		Assert.AreEqual( _cursor, subscription.AcknowledgedCursor );
+
+		subscription.Replay();
+		subscription.Request( 1 );
+		yield return new WaitUntil( () => _delivered.Count == 2 );
+		Assert.AreEqual( _delivered[0].Hash, _delivered[1].Hash );
+		Assert.AreEqual( _delivered[1].PagingToken, subscription.AcknowledgedCursor );
+
+		subscription.Unsubscribe();
+		_delivered.Clear();
+	}
+
+
+	IEnumerator DropOldestKeepsTheNewest()
+	{
+		var droppedBefore = DroppedSoFar();
+		var subscription = Subscribe( PaymentOverflowPolicy.DropOldest, 2 );
+		yield return new WaitUntil( () => DroppedSoFar() - droppedBefore >= _newest.Length - 2 );
+
+		subscription.Request( _newest.Length );
+		yield return new WaitUntil( () => _delivered.Count == 2 );
+		AssertDelivered( _newest.Length - 2, 2 );
+		Assert.AreEqual( _newest.Length - 2, _dropped );
+
+		subscription.Unsubscribe();
+	}
+
+
+	IEnumerator CoalesceKeepsTheOldestAndTheLatest()
+	{
+		var droppedBefore = DroppedSoFar();
+		var subscription = Subscribe( PaymentOverflowPolicy.Coalesce, 2 );
+		yield return new WaitUntil( () => DroppedSoFar() - droppedBefore >= _newest.Length - 2 );
+
+		subscription.Request( _newest.Length );
+		yield return new WaitUntil( () => _delivered.Count == 2 );
+		Assert.AreEqual( _newest[_newest.Length - 1].Hash, _delivered[0].Hash );
+		Assert.AreEqual( _newest[0].Hash, _delivered[1].Hash );
+		Assert.AreEqual( _newest.Length - 2, _dropped );
+
+		subscription.Unsubscribe();
+	}
+
+
+	IEnumerator BlockDropsNothing()
+	{
+		var subscription = Subscribe( PaymentOverflowPolicy.Block, 2 );
+		yield return new WaitUntil( () => KinPluginSettings.GetMetricsSnapshot().PaymentSubscriptions.Buffered == 2 );
+
+		// the buffer is full so reading waits for demand instead of dropping
+		yield return new WaitForSeconds( 1 );
+		Assert.AreEqual( 2, KinPluginSettings.GetMetricsSnapshot().PaymentSubscriptions.Buffered );
+
+		subscription.Request( _newest.Length );
+		yield return new WaitUntil( () => _delivered.Count == _newest.Length );
+		AssertDelivered( 0, _newest.Length );
+		Assert.AreEqual( 0, _dropped );
+
+		subscription.Unsubscribe();
+	}
+
+
+	/// <summary>
+	/// subscribes after _cursor, collecting into _delivered and _dropped which start out empty
+	/// </summary>
+	PaymentSubscription Subscribe( PaymentOverflowPolicy overflowPolicy, int capacity = 10 )
+	{
+		_delivered.Clear();
+		_dropped = 0;
+
+		return _account.SubscribePayments( ( payments, dropped ) =>
+		{
+			_delivered.AddRange( payments );
+			_dropped += dropped;
+		}, _cursor, capacity, overflowPolicy, ex => Assert.IsNull( ex ) );
+	}
+
+
+	/// <summary>
+	/// payments dropped by every subscription's overflow policy since the plugin started
+	/// </summary>
+	long DroppedSoFar()
+	{
+		return KinPluginSettings.GetMetricsSnapshot().PaymentSubscriptions.Dropped;
+	}
+
+
+	/// <summary>
+	/// the delivered payments are the count oldest of _newest after skip, oldest first
+	/// </summary>
+	void AssertDelivered( int skip, int count )
+	{
+		Assert.AreEqual( count, _delivered.Count );
+		for( var i = 0; i < count; i++ )
+			Assert.AreEqual( _newest[_newest.Length - 1 - skip - i].Hash, _delivered[i].Hash );
+	}
+}
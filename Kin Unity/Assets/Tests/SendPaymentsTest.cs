@@ -0,0 +1,57 @@
+﻿using System.Collections;
+using System.Collections.Generic;
+using Kin;
+using UnityEngine;
+using UnityEngine.Assertions;
+using UnityEngine.TestTools;
+
+
+public class SendPaymentsTest : KinMonoBehaviourTestBase
+{
+	IEnumerator Start()
+	{
+		// batch sends are Android only, iOS refuses them
+		if( Application.platform != RuntimePlatform.Android )
+		{
+			_isTestFinished = true;
+			yield break;
+		}
+
+		ImportActivatedAccount();
+
+		yield return StartCoroutine( CheckAccountBalance( 100 ) );
+
+		// the negative amount fails to build, the payments around it still go out
+		var payments = new List<OutboundPayment>
+		{
+			new OutboundPayment( _sendToAddress, 1, "batch-1" ),
+			new OutboundPayment( _sendToAddress, -5 ),
+			new OutboundPayment( _sendToAddress, 2 )
+		};
+
+		var progressed = 0;
+		List<PaymentResult> results = null;
+		_account.SendPayments( payments, _feeAmount, batch => results = batch, batch => progressed += batch.Count, 1 );
+
+		yield return new WaitUntil( () => results != null );
+
+		Assert.AreEqual( payments.Count, results.Count );
+		for( var i = 0; i < results.Count; i++ )
+			Assert.AreEqual( payments[i], results[i].Payment );
+
+		Assert.IsNull( results[0].Exception );
+		Assert.IsFalse( string.IsNullOrEmpty( results[0].TransactionId ) );
+
+		Assert.IsNotNull( results[1].Exception );
+		Assert.IsNull( results[1].TransactionId );
+
+		Assert.IsNull( results[2].Exception );
+		Assert.IsFalse( string.IsNullOrEmpty( results[2].TransactionId ) );
+		Assert.AreNotEqual( results[0].TransactionId, results[2].TransactionId );
+
+		// progress covers every payment but the last, which only comes with the completed batch
+		Assert.AreEqual( payments.Count - 1, progressed );
+
+		_isTestFinished = true;
+	}
+}